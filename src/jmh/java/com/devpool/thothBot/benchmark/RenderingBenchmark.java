@@ -0,0 +1,77 @@
+package com.devpool.thothBot.benchmark;
+
+import com.devpool.thothBot.scheduler.AbstractCheckerTask;
+import com.devpool.thothBot.util.MessageTemplates;
+import com.vdurmont.emoji.EmojiParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU spent rendering a transaction-like notification, resolving the emoji aliases and formatting the amounts on
+ * every call (legacy) versus with the {@link MessageTemplates}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderingBenchmark {
+    private static final String STAKE_ADDR = "stake1u9ylzsgxaa6xctf4juup682ar3juj85n8tx3hthnljg47zctvm3rc";
+    private static final String HANDLE = "$thoth";
+    private static final String TX_HASH = "f8b8e5d2c9f3e6a1b4c7d0e3f6a9b2c5d8e1f4a7b0c3d6e9f2a5b8c1d4e7f0a3";
+    private static final double FEE = 0.174433;
+    private static final double FUNDS = 12345.678912;
+    private static final double PRICE_USD = 0.7321;
+
+    @Benchmark
+    public String legacy() {
+        return new StringBuilder()
+                .append(EmojiParser.parseToUnicode(":key: <a href=\""))
+                .append(AbstractCheckerTask.CARDANO_SCAN_STAKE_KEY).append(STAKE_ADDR).append("\">").append(HANDLE)
+                .append("</a>\n")
+                .append(EmojiParser.parseToUnicode(":envelope: "))
+                .append("1 new transaction(s)\n\n")
+                .append(EmojiParser.parseToUnicode(":arrow_heading_down: "))
+                .append("<a href=\"").append(AbstractCheckerTask.CARDANO_SCAN_TX).append(TX_HASH).append("\">")
+                .append("Received Funds").append("</a>\n")
+                .append(EmojiParser.parseToUnicode(":small_blue_diamond:"))
+                .append("Fee ").append(String.format("%,.2f", FEE)).append(AbstractCheckerTask.ADA_SYMBOL)
+                .append(" (").append(String.format("%,.2f $", FEE * PRICE_USD)).append(")")
+                .append(EmojiParser.parseToUnicode("\n:small_blue_diamond:"))
+                .append("Received ").append(String.format("%,.2f", FUNDS)).append(AbstractCheckerTask.ADA_SYMBOL)
+                .append(" (").append(String.format("%,.2f $", FUNDS * PRICE_USD)).append(")")
+                .append(EmojiParser.parseToUnicode("\n:memo: With Metadata"))
+                .toString();
+    }
+
+    @Benchmark
+    public String templates() {
+        return new StringBuilder()
+                .append(MessageTemplates.emoji(":key: <a href=\""))
+                .append(AbstractCheckerTask.CARDANO_SCAN_STAKE_KEY).append(STAKE_ADDR).append("\">").append(HANDLE)
+                .append("</a>\n")
+                .append(MessageTemplates.emoji(":envelope: "))
+                .append("1 new transaction(s)\n\n")
+                .append(MessageTemplates.emoji(":arrow_heading_down: "))
+                .append("<a href=\"").append(AbstractCheckerTask.CARDANO_SCAN_TX).append(TX_HASH).append("\">")
+                .append("Received Funds").append("</a>\n")
+                .append(MessageTemplates.emoji(":small_blue_diamond:"))
+                .append("Fee ").append(MessageTemplates.formatAmount(FEE)).append(AbstractCheckerTask.ADA_SYMBOL)
+                .append(" (").append(MessageTemplates.formatAmount(FEE * PRICE_USD)).append(" $").append(")")
+                .append(MessageTemplates.emoji("\n:small_blue_diamond:"))
+                .append("Received ").append(MessageTemplates.formatAmount(FUNDS)).append(AbstractCheckerTask.ADA_SYMBOL)
+                .append(" (").append(MessageTemplates.formatAmount(FUNDS * PRICE_USD)).append(" $").append(")")
+                .append(MessageTemplates.emoji("\n:memo: With Metadata"))
+                .toString();
+    }
+}
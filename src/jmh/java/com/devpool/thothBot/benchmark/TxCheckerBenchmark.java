@@ -0,0 +1,250 @@
+package com.devpool.thothBot.benchmark;
+
+import com.devpool.thothBot.dao.SubscribedAddressIndex;
+import com.devpool.thothBot.dao.data.User;
+import com.devpool.thothBot.doubles.koios.KoiosDataBuilder;
+import com.devpool.thothBot.koios.AssetFacade;
+import com.devpool.thothBot.koios.DrepNameCache;
+import com.devpool.thothBot.koios.KoiosFacade;
+import com.devpool.thothBot.oracle.CoinPaprikaOracle;
+import com.devpool.thothBot.scheduler.AbstractCheckerTask;
+import com.devpool.thothBot.scheduler.TransactionCheckerTaskV2;
+import com.devpool.thothBot.scheduler.TxParticipation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+import rest.koios.client.backend.api.base.Result;
+import rest.koios.client.backend.api.base.common.Asset;
+import rest.koios.client.backend.api.governance.GovernanceService;
+import rest.koios.client.backend.api.governance.model.DRepInfo;
+import rest.koios.client.backend.api.pool.PoolService;
+import rest.koios.client.backend.api.pool.model.PoolInfo;
+import rest.koios.client.backend.api.transactions.model.TxIO;
+import rest.koios.client.backend.api.transactions.model.TxInfo;
+import rest.koios.client.backend.factory.BackendService;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The transaction checker hot path, over the recorded TXs of the integration tests (test-data/txs and
+ * test-data/issues). Every TX is processed from the point of view of the owner of its first input.
+ * The Koios requests, the asset names and the ADA price are served by in-memory stubs, so that only the CPU
+ * spent by the checker itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TxCheckerBenchmark {
+    private static final double PRICE_USD = 0.75;
+    private static final double LEGACY_EPSILON = 0.00001d;
+
+    private record Sample(TxInfo txInfo, User user, TxParticipation participation) {
+    }
+
+    private final List<Sample> samples = new ArrayList<>();
+    private final List<Asset> assets = new ArrayList<>();
+    private BenchmarkTxChecker txChecker;
+
+    /**
+     * Exposes the TX processing of the checker
+     */
+    private static class BenchmarkTxChecker extends TransactionCheckerTaskV2 {
+        StringBuilder render(Sample sample) {
+            return processTxForUser(sample.txInfo(), sample.user(), sample.participation());
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        List<TxInfo> txs = KoiosDataBuilder.getTxInfoTestData();
+        Map<Long, TxInfo> userTxs = new LinkedHashMap<>();
+        Map<Long, User> users = new LinkedHashMap<>();
+        for (TxInfo txInfo : txs) {
+            this.assets.addAll(allAssets(txInfo.getInputs(), txInfo.getOutputs()));
+            if (txInfo.getInputs() == null || txInfo.getInputs().isEmpty()) continue;
+
+            TxIO owned = txInfo.getInputs().get(0);
+            String address = owned.getStakeAddr() != null ? owned.getStakeAddr() : owned.getPaymentAddr().getBech32();
+            User user = new User((long) users.size(), address, 0, 0, 0L, 0L);
+            user.setId((long) users.size());
+            userTxs.put(user.getId(), txInfo);
+            users.put(user.getId(), user);
+        }
+
+        SubscribedAddressIndex index = new SubscribedAddressIndex();
+        index.loadIfNeeded(users::values);
+        for (Map.Entry<Long, TxInfo> userTx : userTxs.entrySet()) {
+            TxParticipation participation = TxParticipation.of(userTx.getValue(), index).get(userTx.getKey());
+            this.samples.add(new Sample(userTx.getValue(), users.get(userTx.getKey()), participation));
+        }
+
+        // Koios serves the pools of the recorded data, and no DReps
+        List<PoolInfo> pools = KoiosDataBuilder.getPoolInformationTestData();
+        PoolService poolService = stub(PoolService.class, args -> successful(pools.stream()
+                .filter(p -> ((List<?>) args[0]).contains(p.getPoolIdBech32())).toList()));
+        GovernanceService governanceService = stub(GovernanceService.class, args -> successful(List.of()));
+        BackendService backendService = stub(BackendService.class,
+                args -> null, Map.of("getPoolService", poolService, "getGovernanceService", governanceService));
+
+        this.txChecker = new BenchmarkTxChecker();
+        this.txChecker.setContracts(Map.of());
+        ReflectionTestUtils.setField(this.txChecker, "assetFacade", new AssetFacade() {
+            @Override
+            public String getAssetDisplayName(String policyId, String assetName) {
+                return AbstractCheckerTask.hexToAscii(assetName, policyId);
+            }
+        });
+        ReflectionTestUtils.setField(this.txChecker, "koiosFacade", new KoiosFacade() {
+            @Override
+            public BackendService getKoiosService() {
+                return backendService;
+            }
+        });
+        ReflectionTestUtils.setField(this.txChecker, "oracle", new CoinPaprikaOracle() {
+            @Override
+            public Double getPriceUsd() {
+                return PRICE_USD;
+            }
+        });
+        ReflectionTestUtils.setField(this.txChecker, "drepNameCache", new DrepNameCache() {
+            @Override
+            public Map<String, String> getDrepNames(Collection<DRepInfo> dreps) {
+                return Map.of();
+            }
+        });
+    }
+
+    @Benchmark
+    public void classifyTxs(Blackhole blackhole) {
+        for (Sample sample : this.samples) {
+            blackhole.consume(TransactionCheckerTaskV2.getTxType(
+                    TransactionCheckerTaskV2.getTxBalance(sample.txInfo(), sample.participation())));
+        }
+    }
+
+    @Benchmark
+    public void diffAssets(Blackhole blackhole) {
+        for (Sample sample : this.samples) {
+            blackhole.consume(TransactionCheckerTaskV2.getAssetsBalance(sample.txInfo(), sample.participation()));
+        }
+    }
+
+    @Benchmark
+    public void diffAssetsLegacy(Blackhole blackhole) {
+        for (Sample sample : this.samples) {
+            blackhole.consume(legacyAssetsBalance(sample.participation()));
+        }
+    }
+
+    @Benchmark
+    public void hexToAscii(Blackhole blackhole) {
+        for (Asset asset : this.assets) {
+            blackhole.consume(AbstractCheckerTask.hexToAscii(asset.getAssetName(), asset.getPolicyId()));
+        }
+    }
+
+    @Benchmark
+    public void renderTxMessages(Blackhole blackhole) {
+        for (Sample sample : this.samples) {
+            blackhole.consume(this.txChecker.render(sample));
+        }
+    }
+
+    private static <T> T stub(Class<T> type, Function<Object[], Object> answer) {
+        return stub(type, answer, Map.of());
+    }
+
+    /**
+     * @return an implementation of the interface returning the given services, or the answer to any other method
+     */
+    private static <T> T stub(Class<T> type, Function<Object[], Object> answer, Map<String, Object> services) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> services.containsKey(method.getName()) ?
+                        services.get(method.getName()) : answer.apply(args)));
+    }
+
+    private static <V> Result<V> successful(V value) {
+        return Result.<V>builder().successful(true).code(200).response("OK").value(value).build();
+    }
+
+    /**
+     * The assets diff before {@link com.devpool.thothBot.scheduler.AssetDeltas}: boxed doubles scaled by the decimals,
+     * with a fuzzy compare to zero
+     */
+    private static Map<Asset, Number> legacyAssetsBalance(TxParticipation participation) {
+        Set<Asset> inputAssets = participation.getInputs().stream()
+                .flatMap(io -> io.getAssetList().stream()).collect(Collectors.toSet());
+        Set<Asset> outputAssets = participation.getOutputs().stream()
+                .flatMap(io -> io.getAssetList().stream()).collect(Collectors.toSet());
+
+        Map<String, Double> inputAssetValues = new HashMap<>();
+        for (Asset ia : inputAssets) {
+            Double val = inputAssetValues.getOrDefault(ia.getFingerprint(), 0d);
+            val += Long.parseLong(ia.getQuantity()) / Math.pow(10, ia.getDecimals());
+            inputAssetValues.put(ia.getFingerprint(), val);
+        }
+
+        Map<String, Double> outputAssetValues = new HashMap<>();
+        for (Asset oa : outputAssets) {
+            Double val = outputAssetValues.getOrDefault(oa.getFingerprint(), 0d);
+            val += Long.parseLong(oa.getQuantity()) / Math.pow(10, oa.getDecimals());
+            outputAssetValues.put(oa.getFingerprint(), val);
+        }
+
+        Map<String, Double> assetValues = new HashMap<>(inputAssetValues);
+        assetValues.replaceAll((k, v) -> v *= -1);
+        for (Map.Entry<String, Double> a : outputAssetValues.entrySet()) {
+            if (assetValues.containsKey(a.getKey()))
+                assetValues.put(a.getKey(), assetValues.get(a.getKey()) + a.getValue());
+            else
+                assetValues.put(a.getKey(), a.getValue());
+        }
+
+        Map<Asset, Number> allAssets = new HashMap<>();
+        for (Map.Entry<String, Double> av : assetValues.entrySet()) {
+            Optional<Asset> asset = inputAssets.stream().filter(a -> a.getFingerprint().equals(av.getKey())).findFirst();
+            if (asset.isEmpty())
+                asset = outputAssets.stream().filter(a -> a.getFingerprint().equals(av.getKey())).findFirst();
+
+            if (asset.isPresent() && Math.abs(av.getValue()) > LEGACY_EPSILON) {
+                if (asset.get().getDecimals() > 0)
+                    allAssets.put(asset.get(), av.getValue());
+                else
+                    allAssets.put(asset.get(), av.getValue().longValue());
+            }
+        }
+        return allAssets;
+    }
+
+    private static List<Asset> allAssets(List<TxIO> inputs, List<TxIO> outputs) {
+        List<Asset> assets = new ArrayList<>();
+        if (inputs != null)
+            inputs.forEach(io -> assets.addAll(io.getAssetList()));
+        if (outputs != null)
+            outputs.forEach(io -> assets.addAll(io.getAssetList()));
+        return assets;
+    }
+}
@@ -0,0 +1,188 @@
+package com.devpool.thothBot.cluster;
+
+import com.devpool.thothBot.dao.ClusterDao;
+import com.devpool.thothBot.dao.UsersShard;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Coordinates the bot instances sharing the same DB. Every instance renews its membership with heartbeats: the live
+ * members split the subscriptions of the checker tasks in shards, by ID, and a single one of them holds the leader
+ * lease, running the global jobs and receiving the Telegram updates. When an instance stops sending heartbeats,
+ * its shard and its lease are taken over by the others once its lease expires.
+ * <p>
+ * The members do not see a membership change at the same heartbeat, so when it happens they first give up their
+ * shard, and take the new one only once the membership is stable for a lease period. The checker tasks check
+ * {@link #ownsShard(UsersShard)} before every users batch and stop their run once the shard changed: two instances
+ * process the same subscriptions at most for the batch in progress when the change is seen, at the cost of a pause
+ * of the checker tasks.
+ * <p>
+ * When the cluster is disabled, the instance is the leader and owns all the subscriptions.
+ */
+@Component
+public class ClusterCoordinator {
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterCoordinator.class);
+    private static final String LEADER_LEASE = "leader";
+
+    @Autowired
+    private ClusterDao clusterDao;
+
+    @Autowired
+    private MetricsHelper metricsHelper;
+
+    @Value("${thoth.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${thoth.cluster.instance-id:}")
+    private String instanceId;
+
+    @Value("${thoth.cluster.heartbeat-secs:10}")
+    private long heartbeatSecs;
+
+    @Value("${thoth.cluster.lease-secs:30}")
+    private long leaseSecs;
+
+    private final List<Consumer<Boolean>> leadershipListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("Cluster-Heartbeat-Thread"));
+    private volatile UsersShard shard = UsersShard.ALL;
+    private volatile boolean leader = true;
+    private List<String> members = List.of();
+    private long membersSinceNanos;
+
+    @PostConstruct
+    public void post() {
+        if (!this.enabled) {
+            LOG.info("Cluster disabled, running as the single bot instance");
+            return;
+        }
+
+        if (this.instanceId == null || this.instanceId.isBlank())
+            this.instanceId = defaultInstanceId();
+
+        // Nothing is owned until the first heartbeat
+        this.shard = UsersShard.NONE;
+        this.leader = false;
+        LOG.info("Joining the cluster as {}, with heartbeats every {} secs and leases of {} secs",
+                this.instanceId, this.heartbeatSecs, this.leaseSecs);
+        this.heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, 0, this.heartbeatSecs, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.heartbeatExecutor.shutdownNow();
+        if (!this.enabled) return;
+
+        try {
+            this.heartbeatExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            this.clusterDao.leave(this.instanceId);
+            LOG.info("Left the cluster as {}", this.instanceId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.warn("Cannot leave the cluster, the lease will expire in {} secs: {}", this.leaseSecs, e.toString());
+        }
+    }
+
+    /**
+     * @return the subscriptions the instance shall process in the checker tasks
+     */
+    public UsersShard getShard() {
+        return this.shard;
+    }
+
+    /**
+     * @return true if the shard taken at the beginning of a run is still the one of the instance, false if the run
+     * shall stop as the shards changed in the meantime
+     */
+    public boolean ownsShard(UsersShard runShard) {
+        if (runShard.equals(this.shard)) return true;
+
+        LOG.debug("The shard {} of {} is not owned anymore, stopping the run", runShard.index(), runShard.count());
+        return false;
+    }
+
+    /**
+     * @return true if the instance shall run the global jobs
+     */
+    public boolean isLeader() {
+        return this.leader;
+    }
+
+    /**
+     * Registers the listener of the leadership changes, notifying it the current leadership right away
+     */
+    public void addLeadershipListener(Consumer<Boolean> listener) {
+        this.leadershipListeners.add(listener);
+        listener.accept(this.leader);
+    }
+
+    private void heartbeat() {
+        UsersShard newShard;
+        boolean newLeader;
+        try {
+            List<String> members = this.clusterDao.heartbeat(this.instanceId, this.leaseSecs);
+            if (!members.equals(this.members)) {
+                LOG.info("Cluster members changed to {}, waiting {} secs before owning a shard", members, this.leaseSecs);
+                this.members = members;
+                this.membersSinceNanos = System.nanoTime();
+            }
+            int index = members.indexOf(this.instanceId);
+            boolean stable = System.nanoTime() - this.membersSinceNanos >= TimeUnit.SECONDS.toNanos(this.leaseSecs);
+            newShard = index < 0 || !stable ? UsersShard.NONE : new UsersShard(index, members.size());
+            newLeader = this.clusterDao.acquireLease(LEADER_LEASE, this.instanceId, this.leaseSecs);
+            this.metricsHelper.hitGauge("cluster_members", members.size());
+        } catch (Exception e) {
+            // The others will take over once our lease expires
+            LOG.error("Cannot renew the cluster membership of {}, stepping down", this.instanceId, e);
+            this.members = List.of();
+            newShard = UsersShard.NONE;
+            newLeader = false;
+        }
+
+        if (!newShard.equals(this.shard)) {
+            LOG.info("Instance {} now owns the shard {} of {}", this.instanceId, newShard.index(), newShard.count());
+            this.shard = newShard;
+        }
+
+        if (newLeader != this.leader) {
+            LOG.info("Instance {} is {} the leader", this.instanceId, newLeader ? "now" : "not anymore");
+            this.leader = newLeader;
+            this.metricsHelper.hitGauge("cluster_leader", newLeader ? 1 : 0);
+            for (Consumer<Boolean> listener : this.leadershipListeners) {
+                try {
+                    listener.accept(newLeader);
+                } catch (Exception e) {
+                    LOG.error("Error while notifying the leadership change", e);
+                }
+            }
+        }
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "thoth";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
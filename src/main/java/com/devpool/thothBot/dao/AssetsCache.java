@@ -0,0 +1,147 @@
+package com.devpool.thothBot.dao;
+
+import com.devpool.thothBot.dao.data.Asset;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import com.devpool.thothBot.util.LruCache;
+import io.micrometer.core.instrument.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * In-memory cache of the assets information, in front of the {@link AssetsDao}. It also remembers, for a while,
+ * the assets that could not be resolved, to avoid looking for them again at every rendering.
+ */
+@Component
+public class AssetsCache {
+    private static final Logger LOG = LoggerFactory.getLogger(AssetsCache.class);
+
+    @Autowired
+    private AssetsDao assetsDao;
+
+    @Autowired
+    private MetricsHelper metricsHelper;
+
+    @Value("${thoth.asset.cache.max-size:50000}")
+    private int maxSize;
+
+    @Value("${thoth.asset.cache.negative-ttl-secs:600}")
+    private long negativeTtlSecs;
+
+    @Value("${thoth.asset.cache.warm-up.enabled:true}")
+    private boolean warmUpEnabled;
+
+    private LruCache<String, CacheEntry> cache;
+
+    private record CacheEntry(Asset asset, long expiresAt) {
+        boolean isUnknown() {
+            return asset == null;
+        }
+    }
+
+    @PostConstruct
+    public void post() {
+        this.cache = new LruCache<>(this.maxSize);
+
+        if (this.warmUpEnabled) {
+            try {
+                List<Asset> assets = this.assetsDao.getAssets(this.maxSize);
+                // Oldest first, so that the latest assets are the last to be evicted
+                for (Asset asset : assets.reversed()) {
+                    this.cache.put(key(asset.getPolicyId(), asset.getAssetName()), new CacheEntry(asset, Long.MAX_VALUE));
+                }
+                LOG.info("Assets cache warmed up with {} asset(s)", assets.size());
+            } catch (Exception e) {
+                LOG.warn("Could not warm up the assets cache: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * Gets the asset information from the cache or, if not cached, from the DB.
+     *
+     * @return the asset, or empty if the asset is not known or it has been recently marked as unknown
+     */
+    public Optional<Asset> getAssetInformation(String policyId, String assetName) {
+        String key = key(policyId, assetName);
+        CacheEntry entry = this.cache.get(key);
+        if (entry != null) {
+            if (!entry.isUnknown()) {
+                hit("hit");
+                return Optional.of(entry.asset());
+            }
+            if (entry.expiresAt() > System.currentTimeMillis()) {
+                hit("negative_hit");
+                return Optional.empty();
+            }
+            this.cache.remove(key);
+        }
+
+        hit("miss");
+        Optional<Asset> asset = this.assetsDao.getAssetInformation(policyId, assetName);
+        asset.ifPresent(a -> put(key, new CacheEntry(a, Long.MAX_VALUE)));
+        return asset;
+    }
+
+    /**
+     * @return true if the asset could not be resolved recently
+     */
+    public boolean isUnknown(String policyId, String assetName) {
+        CacheEntry entry = this.cache.get(key(policyId, assetName));
+        return entry != null && entry.isUnknown() && entry.expiresAt() > System.currentTimeMillis();
+    }
+
+    /**
+     * Remembers that the asset could not be resolved, for the configured negative TTL
+     */
+    public void markUnknown(String policyId, String assetName) {
+        put(key(policyId, assetName), new CacheEntry(null, System.currentTimeMillis() + this.negativeTtlSecs * 1000));
+    }
+
+    /**
+     * Stores the new asset in the DB and in the cache
+     */
+    public void addNewAsset(String policyId, String assetName, String displayName, Integer decimals) {
+        this.assetsDao.addNewAsset(policyId, assetName, displayName, decimals);
+        String key = key(policyId, assetName);
+        this.cache.remove(key);
+        this.assetsDao.getAssetInformation(policyId, assetName).ifPresent(a -> put(key, new CacheEntry(a, Long.MAX_VALUE)));
+    }
+
+    /**
+     * Stores the new assets in the DB, with a single batch, and in the cache
+     */
+    public void addNewAssets(List<Asset> assets) {
+        this.assetsDao.addNewAssets(assets);
+        for (Asset asset : assets) {
+            put(key(asset.getPolicyId(), asset.getAssetName()), new CacheEntry(asset, Long.MAX_VALUE));
+        }
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    private void put(String key, CacheEntry entry) {
+        long evictionsBefore = this.cache.getEvictions();
+        this.cache.put(key, entry);
+        long evicted = this.cache.getEvictions() - evictionsBefore;
+        if (evicted > 0)
+            this.metricsHelper.incrementCounter("asset_cache_evictions", (double) evicted);
+    }
+
+    private void hit(String result) {
+        this.metricsHelper.incrementCounter("asset_cache_requests", Tag.of("result", result));
+    }
+
+    private static String key(String policyId, String assetName) {
+        // The policy ID has a fixed length, so no separator is needed
+        return policyId + assetName;
+    }
+}
@@ -7,11 +7,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -49,6 +51,18 @@ public class AssetsDao {
         return Optional.ofNullable(assets.getFirst());
     }
 
+    /**
+     * @param limit the max number of assets to return
+     * @return the latest added assets
+     */
+    public List<Asset> getAssets(int limit) {
+        return this.namedParameterJdbcTemplate
+                .query("select id, policy_id, asset_name, asset_display_name, decimals from assets order by id desc limit :limit",
+                        Map.of("limit", limit), (rs, numRow) ->
+                                new Asset(rs.getLong(FIELD_ID), rs.getString(FIELD_POLICY_ID),
+                                        rs.getString(FIELD_ASSET_NAME), rs.getString(FIELD_ASSET_DISPLAY_NAME), rs.getInt(FIELD_DECIMALS)));
+    }
+
     @Transactional(isolation = Isolation.REPEATABLE_READ)
     public void addNewAsset(String policyId, String assetName, String displayName, Integer decimals) {
 
@@ -66,6 +80,30 @@ public class AssetsDao {
         }
     }
 
+    /**
+     * Stores the given assets with a single JDBC batch. The assets already stored are skipped.
+     *
+     * @return the number of inserted assets
+     */
+    public int addNewAssets(List<Asset> assets) {
+        if (assets.isEmpty()) return 0;
+
+        SqlParameterSource[] batchParams = assets.stream().map(a -> new MapSqlParameterSource()
+                        .addValue(FIELD_POLICY_ID, a.getPolicyId())
+                        .addValue(FIELD_ASSET_NAME, a.getAssetName())
+                        .addValue(FIELD_ASSET_DISPLAY_NAME, a.getAssetDisplayName().replace("\u0000", ""))
+                        .addValue(FIELD_DECIMALS, a.getDecimals()))
+                .toArray(SqlParameterSource[]::new);
+        int[] insertedRows = this.namedParameterJdbcTemplate.batchUpdate(
+                "insert into assets (policy_id, asset_name, asset_display_name, decimals) values (:policy_id, :asset_name, :asset_display_name, :decimals) " +
+                        "on conflict (policy_id, asset_name) do nothing",
+                batchParams);
+
+        int totInserted = Arrays.stream(insertedRows).map(r -> Math.max(r, 0)).sum();
+        LOG.debug("Inserted {} new asset(s) out of {}", totInserted, assets.size());
+        return totInserted;
+    }
+
     public long countAll() {
         Long outcome = this.jdbcTemplate.queryForObject("select count(id) as assets_counter from assets", Long.class);
         if (outcome == null) return -1;
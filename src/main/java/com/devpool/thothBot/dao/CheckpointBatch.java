@@ -0,0 +1,126 @@
+package com.devpool.thothBot.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects the users checkpoints (block height, epoch number, governance times) advanced during a checker cycle and
+ * writes them with JDBC batches, instead of one update per user. Only the latest value of every user is written.
+ * The checkpoints are flushed once the flush size is reached and when the batch is closed.
+ * It is thread safe, so it can be shared by the users processed concurrently.
+ * <p>
+ * A checkpoint updated inside a transaction, like the one of the notification outbox, is written right away, so that
+ * it is committed together with its notifications. The flush listener is then notified after the commit.
+ */
+public class CheckpointBatch implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointBatch.class);
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final int flushSize;
+    private final BiConsumer<UsersListener.Checkpoint, Map<Long, ? extends Number>> flushListener;
+    private final Map<Long, Long> blockHeights = new LinkedHashMap<>();
+    private final Map<Long, Integer> epochNumbers = new LinkedHashMap<>();
+    private final Map<Long, Long> govVotesBlockTimes = new LinkedHashMap<>();
+    private final Map<Long, Long> govActionBlockTimes = new LinkedHashMap<>();
+
+    /**
+     * @param flushListener notified with the checkpoints written by every flush
+     */
+    CheckpointBatch(NamedParameterJdbcTemplate namedParameterJdbcTemplate, int flushSize,
+                    BiConsumer<UsersListener.Checkpoint, Map<Long, ? extends Number>> flushListener) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.flushSize = Math.max(1, flushSize);
+        this.flushListener = flushListener;
+    }
+
+    public synchronized void updateUserBlockHeight(Long id, long blockHeight) {
+        this.blockHeights.put(id, blockHeight);
+        flushIfNeeded();
+    }
+
+    public synchronized void updateUserEpochNumber(Long id, Integer epochNumber) {
+        this.epochNumbers.put(id, epochNumber);
+        flushIfNeeded();
+    }
+
+    public synchronized void updateUserGovVotesBlockTime(Long id, long timestamp) {
+        this.govVotesBlockTimes.put(id, timestamp);
+        flushIfNeeded();
+    }
+
+    /**
+     * Same as {@link UserDao#updateUserGovActionBlockTime(Long, long)}, for all the subscriptions of the chat
+     */
+    public synchronized void updateUserGovActionBlockTime(Long chatId, long timestamp) {
+        this.govActionBlockTimes.put(chatId, timestamp);
+        flushIfNeeded();
+    }
+
+    /**
+     * @return the number of checkpoints not written yet
+     */
+    public synchronized int size() {
+        return this.blockHeights.size() + this.epochNumbers.size() +
+                this.govVotesBlockTimes.size() + this.govActionBlockTimes.size();
+    }
+
+    public synchronized void flush() {
+        flush("update users set last_block_height = :value where id = :id", "id",
+                UsersListener.Checkpoint.BLOCK_HEIGHT, this.blockHeights);
+        flush("update users set last_epoch_number = :value where id = :id", "id",
+                UsersListener.Checkpoint.EPOCH_NUMBER, this.epochNumbers);
+        flush("update users set last_gov_votes_block_time = :value where id = :id", "id",
+                UsersListener.Checkpoint.GOV_VOTES_BLOCK_TIME, this.govVotesBlockTimes);
+        flush("update users set last_gov_action_block_time = :value where chat_id = :id", "chat_id",
+                UsersListener.Checkpoint.GOV_ACTION_BLOCK_TIME, this.govActionBlockTimes);
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void flushIfNeeded() {
+        if (size() >= this.flushSize || TransactionSynchronizationManager.isActualTransactionActive())
+            flush();
+    }
+
+    private void flush(String sql, String key, UsersListener.Checkpoint checkpoint, Map<Long, ? extends Number> checkpoints) {
+        if (checkpoints.isEmpty()) return;
+
+        SqlParameterSource[] params = checkpoints.entrySet().stream()
+                .map(e -> new MapSqlParameterSource(Map.of("id", e.getKey(), "value", e.getValue())))
+                .toArray(SqlParameterSource[]::new);
+        Map<Long, ? extends Number> written = Map.copyOf(checkpoints);
+        checkpoints.clear();
+
+        int[] updatedRows = this.namedParameterJdbcTemplate.batchUpdate(sql, params);
+        // Subscriptions removed in the meantime are not updated
+        long notUpdated = Arrays.stream(updatedRows).filter(r -> r == 0).count();
+        if (notUpdated > 0)
+            LOG.warn("{} out of {} checkpoint(s) by {} not found, when running {}", notUpdated, params.length, key, sql);
+        else
+            LOG.debug("Written {} checkpoint(s) with {}", params.length, sql);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    flushListener.accept(checkpoint, written);
+                }
+            });
+        } else {
+            this.flushListener.accept(checkpoint, written);
+        }
+    }
+}
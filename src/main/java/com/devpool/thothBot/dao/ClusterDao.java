@@ -0,0 +1,77 @@
+package com.devpool.thothBot.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The live bot instances, renewing their membership with heartbeats, and the leases on the global jobs.
+ * All the times are the DB ones, so that the clocks of the instances do not need to be in sync.
+ */
+@Repository
+public class ClusterDao {
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterDao.class);
+    private static final String FIELD_INSTANCE_ID = "instance_id";
+    private static final String FIELD_NAME = "name";
+    private static final String FIELD_LEASE_SECS = "lease_secs";
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @PostConstruct
+    public void post() {
+        LOG.info("Cluster DAO initialised");
+    }
+
+    /**
+     * Renews the membership of the instance, and removes the members not renewing it anymore
+     *
+     * @return the live members, sorted by instance ID
+     */
+    public List<String> heartbeat(String instanceId, long leaseSecs) {
+        this.namedParameterJdbcTemplate.update(
+                """
+                        insert into cluster_members (instance_id, heartbeat_at) values (:instance_id, now())
+                        on conflict (instance_id) do update set heartbeat_at = excluded.heartbeat_at
+                        """, Map.of(FIELD_INSTANCE_ID, instanceId));
+        int removed = this.namedParameterJdbcTemplate.update(
+                "delete from cluster_members where heartbeat_at < now() - make_interval(secs => :lease_secs)",
+                Map.of(FIELD_LEASE_SECS, leaseSecs));
+        if (removed > 0)
+            LOG.warn("Removed {} cluster member(s) not sending heartbeats for {} secs", removed, leaseSecs);
+
+        return this.namedParameterJdbcTemplate.queryForList(
+                "select instance_id from cluster_members order by instance_id", Map.of(), String.class);
+    }
+
+    /**
+     * Acquires or renews the lease, if free, expired or already held by the instance
+     *
+     * @return true if the instance holds the lease
+     */
+    public boolean acquireLease(String name, String instanceId, long leaseSecs) {
+        return this.namedParameterJdbcTemplate.update(
+                """
+                        insert into cluster_leases (name, instance_id, expires_at)
+                        values (:name, :instance_id, now() + make_interval(secs => :lease_secs))
+                        on conflict (name) do update
+                        set instance_id = excluded.instance_id, expires_at = excluded.expires_at
+                        where cluster_leases.instance_id = excluded.instance_id or cluster_leases.expires_at < now()
+                        """, Map.of(FIELD_NAME, name, FIELD_INSTANCE_ID, instanceId, FIELD_LEASE_SECS, leaseSecs)) > 0;
+    }
+
+    /**
+     * Leaves the cluster, releasing the leases held by the instance
+     */
+    public void leave(String instanceId) {
+        Map<String, String> params = Map.of(FIELD_INSTANCE_ID, instanceId);
+        this.namedParameterJdbcTemplate.update("delete from cluster_leases where instance_id = :instance_id", params);
+        this.namedParameterJdbcTemplate.update("delete from cluster_members where instance_id = :instance_id", params);
+    }
+}
@@ -0,0 +1,79 @@
+package com.devpool.thothBot.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The DRep names resolved from their metadata anchors, together with the anchor they were resolved from
+ */
+@Repository
+public class DrepNameDao {
+    private static final Logger LOG = LoggerFactory.getLogger(DrepNameDao.class);
+    private static final String FIELD_DREP_ID = "drep_id";
+    private static final String FIELD_META_URL = "meta_url";
+    private static final String FIELD_META_HASH = "meta_hash";
+    private static final String FIELD_NAME = "name";
+    private static final String FIELD_UPDATED_AT = "updated_at";
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /**
+     * @param drepId    the DRep ID
+     * @param metaUrl   the metadata anchor URL
+     * @param metaHash  the metadata anchor hash
+     * @param name      the given name, or null if the anchor has no name
+     * @param updatedAt when the name was resolved, in millis
+     */
+    public record DrepName(String drepId, String metaUrl, String metaHash, String name, long updatedAt) {
+    }
+
+    @PostConstruct
+    public void post() {
+        LOG.info("DRep Name DAO initialised");
+    }
+
+    /**
+     * @return DRep ID -> stored name, for the given DReps found in the DB
+     */
+    public Map<String, DrepName> getDrepNames(Collection<String> drepIds) {
+        Map<String, DrepName> drepNames = new HashMap<>();
+        if (drepIds.isEmpty()) return drepNames;
+
+        this.namedParameterJdbcTemplate.query(
+                "select drep_id, meta_url, meta_hash, name, updated_at from drep_names where drep_id in (:drep_id)",
+                Map.of(FIELD_DREP_ID, drepIds),
+                rs -> {
+                    drepNames.put(rs.getString(FIELD_DREP_ID), new DrepName(rs.getString(FIELD_DREP_ID),
+                            rs.getString(FIELD_META_URL), rs.getString(FIELD_META_HASH), rs.getString(FIELD_NAME),
+                            rs.getTimestamp(FIELD_UPDATED_AT).getTime()));
+                });
+        return drepNames;
+    }
+
+    public void saveDrepName(DrepName drepName) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue(FIELD_DREP_ID, drepName.drepId())
+                .addValue(FIELD_META_URL, drepName.metaUrl())
+                .addValue(FIELD_META_HASH, drepName.metaHash())
+                .addValue(FIELD_NAME, drepName.name());
+        int updatedRows = this.namedParameterJdbcTemplate.update(
+                """
+                        insert into drep_names (drep_id, meta_url, meta_hash, name)
+                        values (:drep_id, :meta_url, :meta_hash, :name)
+                        on conflict (drep_id) do update
+                        set meta_url = excluded.meta_url, meta_hash = excluded.meta_hash, name = excluded.name,
+                            updated_at = now()
+                        """, params);
+        LOG.debug("Stored the name {} of DRep {}. Affected rows {}", drepName.name(), drepName.drepId(), updatedRows);
+    }
+}
@@ -0,0 +1,128 @@
+package com.devpool.thothBot.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outbox of the Telegram notifications. The notifications are added in the same transaction of the checkpoint
+ * they belong to, and they are removed from the outbox only once delivered.
+ */
+@Repository
+public class NotificationOutboxDao {
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationOutboxDao.class);
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_CHAT_ID = "chat_id";
+    private static final String FIELD_MESSAGE = "message";
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public record OutboxMessage(long id, long chatId, String message) {
+    }
+
+    @PostConstruct
+    public void post() {
+        LOG.info("Notification Outbox DAO initialised");
+    }
+
+    public void addMessages(Long chatId, List<String> messages) {
+        addMessages(List.of(chatId), messages);
+    }
+
+    /**
+     * Adds the same messages to all the given chats, with a single batch
+     */
+    public void addMessages(Collection<Long> chatIds, List<String> messages) {
+        SqlParameterSource[] params = chatIds.stream()
+                .flatMap(chatId -> messages.stream()
+                        .map(m -> new MapSqlParameterSource(Map.of(FIELD_CHAT_ID, chatId, FIELD_MESSAGE, m))))
+                .toArray(SqlParameterSource[]::new);
+        this.namedParameterJdbcTemplate.batchUpdate(
+                "insert into notification_outbox (chat_id, message) values (:chat_id, :message)", params);
+    }
+
+    /**
+     * Claims the oldest pending messages, skipping the ones claimed by others. A claimed message can be claimed
+     * again once the lease expires, if not marked as sent in the meantime.
+     *
+     * @param limit       max number of messages to claim
+     * @param leaseSecs   how long the messages are reserved to the caller
+     * @param maxAttempts messages claimed this many times are not claimed anymore
+     * @return the claimed messages, oldest first
+     */
+    public List<OutboxMessage> claimMessages(int limit, long leaseSecs, int maxAttempts) {
+        List<OutboxMessage> messages = this.namedParameterJdbcTemplate.query(
+                """
+                        update notification_outbox
+                        set claimed_until = now() + :lease_secs * interval '1 second', attempts = attempts + 1
+                        where id in (
+                            select id
+                            from notification_outbox
+                            where sent_at is null and
+                                  attempts < :max_attempts and
+                                  (claimed_until is null or claimed_until < now())
+                            order by id
+                            limit :limit
+                            for update skip locked)
+                        returning id, chat_id, message
+                        """,
+                Map.of("lease_secs", leaseSecs,
+                        "max_attempts", maxAttempts,
+                        "limit", limit),
+                (rs, rowNum) -> new OutboxMessage(rs.getLong(FIELD_ID), rs.getLong(FIELD_CHAT_ID), rs.getString(FIELD_MESSAGE)));
+        return messages.stream().sorted(Comparator.comparingLong(OutboxMessage::id)).toList();
+    }
+
+    /**
+     * Extends the lease of the given messages, claimed and not sent yet
+     */
+    public void renewClaims(Collection<Long> ids, long leaseSecs) {
+        if (ids.isEmpty()) return;
+        this.namedParameterJdbcTemplate.update(
+                """
+                        update notification_outbox
+                        set claimed_until = now() + :lease_secs * interval '1 second'
+                        where id in (:ids) and sent_at is null
+                        """,
+                Map.of("ids", ids, "lease_secs", leaseSecs));
+    }
+
+    public void markSent(Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        this.namedParameterJdbcTemplate.update(
+                "update notification_outbox set sent_at = now() where id in (:ids)",
+                Map.of("ids", ids));
+    }
+
+    /**
+     * Removes the messages sent, or abandoned, before the given number of hours
+     *
+     * @return the number of removed messages
+     */
+    public int purgeMessages(long retentionHours, int maxAttempts) {
+        return this.namedParameterJdbcTemplate.update(
+                """
+                        delete from notification_outbox
+                        where created_at < now() - :retention_hours * interval '1 hour' and
+                              (sent_at is not null or attempts >= :max_attempts)
+                        """,
+                Map.of("retention_hours", retentionHours, "max_attempts", maxAttempts));
+    }
+
+    public long countPendingMessages() {
+        Long pending = this.namedParameterJdbcTemplate.queryForObject(
+                "select count(id) from notification_outbox where sent_at is null", Map.of(), Long.class);
+        return pending == null ? 0 : pending;
+    }
+}
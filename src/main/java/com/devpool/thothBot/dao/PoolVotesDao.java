@@ -10,8 +10,10 @@ import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 
 import javax.annotation.PostConstruct;
-import java.util.List;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 @Repository
 public class PoolVotesDao {
@@ -22,6 +24,12 @@ public class PoolVotesDao {
 
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
+    /**
+     * A vote of a pool for a gov action
+     */
+    public record PoolVote(String govId, String poolId, long blockTime) {
+    }
+
     public PoolVotesDao(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
         this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
     }
@@ -32,26 +40,22 @@ public class PoolVotesDao {
     }
 
     /**
-     * Get the votes for a given gov action of a pool, lower than the given block time
+     * Get all the known pool votes for the given gov actions, with a single query
      *
-     * @param govId     gov action
-     * @param poolId    the Pool ID
-     * @param blockTime latest block time of the vote
-     * @return the list of block times of all the pool votes for a given gov action
+     * @param govIds the gov actions
+     * @return the votes of all the pools for the given gov actions
      */
-    public List<Long> getVotesForGovAction(String govId, String poolId, long blockTime) {
-        return this.namedParameterJdbcTemplate.query(
-                """
-                        select block_time
-                        from pool_votes
-                        where gov_id = :gov_id and
-                              pool_id = :pool_id and
-                              block_time <= :block_time
-                        """,
-                Map.of(FIELD_GOV_ID, govId,
-                        FIELD_POOL_ID, poolId,
-                        FIELD_BLOCK_TIME, blockTime),
-                (rs, numRow) -> rs.getLong(FIELD_BLOCK_TIME));
+    public Set<PoolVote> getVotesForGovActions(Collection<String> govIds) {
+        Set<PoolVote> votes = new HashSet<>();
+        if (govIds.isEmpty()) return votes;
+
+        this.namedParameterJdbcTemplate.query(
+                "select gov_id, pool_id, block_time from pool_votes where gov_id in (:gov_ids)",
+                Map.of("gov_ids", govIds),
+                rs -> {
+                    votes.add(new PoolVote(rs.getString(FIELD_GOV_ID), rs.getString(FIELD_POOL_ID), rs.getLong(FIELD_BLOCK_TIME)));
+                });
+        return votes;
     }
 
     public void addPoolVote(String govId, String poolId, Long blockTime) {
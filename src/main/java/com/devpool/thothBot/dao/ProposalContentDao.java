@@ -0,0 +1,66 @@
+package com.devpool.thothBot.dao;
+
+import com.devpool.thothBot.model.model.proposal.ProposalContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.sql.Array;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The contents of the governance proposals metadata anchors. The anchors are immutable, so a content never changes
+ * for the same proposal and metadata hash.
+ */
+@Repository
+public class ProposalContentDao {
+    private static final Logger LOG = LoggerFactory.getLogger(ProposalContentDao.class);
+    private static final String FIELD_GOV_ID = "gov_id";
+    private static final String FIELD_META_HASH = "meta_hash";
+    private static final String FIELD_TITLE = "title";
+    private static final String FIELD_ABSTRACT = "abstract";
+    private static final String FIELD_AUTHORS = "authors";
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @PostConstruct
+    public void post() {
+        LOG.info("Proposal Content DAO initialised");
+    }
+
+    public Optional<ProposalContent> getProposalContent(String govId, String metaHash) {
+        List<ProposalContent> contents = this.namedParameterJdbcTemplate.query(
+                "select title, abstract, authors from proposal_contents where gov_id = :gov_id and meta_hash = :meta_hash",
+                Map.of(FIELD_GOV_ID, govId, FIELD_META_HASH, metaHash),
+                (rs, rowNum) -> {
+                    Array authors = rs.getArray(FIELD_AUTHORS);
+                    return new ProposalContent(rs.getString(FIELD_TITLE), rs.getString(FIELD_ABSTRACT),
+                            authors == null ? null : List.of((String[]) authors.getArray()));
+                });
+        return contents.stream().findFirst();
+    }
+
+    public void addProposalContent(String govId, String metaHash, ProposalContent content) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue(FIELD_GOV_ID, govId)
+                .addValue(FIELD_META_HASH, metaHash)
+                .addValue(FIELD_TITLE, content.title())
+                .addValue(FIELD_ABSTRACT, content.abstractText())
+                .addValue(FIELD_AUTHORS, content.authors() == null ? null : content.authors().toArray(new String[0]), Types.ARRAY);
+        int insertedRows = this.namedParameterJdbcTemplate.update(
+                """
+                        insert into proposal_contents (gov_id, meta_hash, title, abstract, authors)
+                        values (:gov_id, :meta_hash, :title, :abstract, :authors)
+                        on conflict do nothing
+                        """, params);
+        LOG.debug("Stored the content of proposal {} with hash {}. Inserted rows {}", govId, metaHash, insertedRows);
+    }
+}
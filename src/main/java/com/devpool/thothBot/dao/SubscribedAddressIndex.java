@@ -0,0 +1,113 @@
+package com.devpool.thothBot.dao;
+
+import com.devpool.thothBot.dao.data.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * In-memory index of the subscribed addresses (stake or payment) to the IDs of the subscriptions (users rows).
+ * Every distinct address is stored once, with all its subscription IDs packed in a small array, so that a lookup
+ * is a single hash access. The index is loaded once and kept up to date by the {@link UserDao} writes. The changes
+ * made by other instances sharing the DB invalidate it: it's then reloaded at the next access, while the lookups keep
+ * being served by the previous one.
+ */
+public class SubscribedAddressIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(SubscribedAddressIndex.class);
+    private static final long[] NO_SUBSCRIPTIONS = new long[0];
+
+    private volatile Map<String, long[]> subscriptionsByAddress = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    public boolean isLoaded() {
+        return this.loaded;
+    }
+
+    /**
+     * Loads the index, if not already loaded
+     *
+     * @param usersSupplier supplier of all the subscriptions
+     */
+    public synchronized void loadIfNeeded(Supplier<Collection<User>> usersSupplier) {
+        if (this.loaded) return;
+
+        Map<String, long[]> loadedSubscriptions = new ConcurrentHashMap<>();
+        Collection<User> users = usersSupplier.get();
+        for (User u : users) {
+            put(loadedSubscriptions, u.getId(), u.getAddress());
+        }
+        this.subscriptionsByAddress = loadedSubscriptions;
+        this.loaded = true;
+        LOG.info("Loaded subscribed address index with {} address(es) for {} subscription(s)",
+                this.subscriptionsByAddress.size(), users.size());
+    }
+
+    /**
+     * Makes the next {@link #loadIfNeeded(Supplier)} reload the index, after the subscriptions changed elsewhere
+     */
+    public synchronized void invalidate() {
+        this.loaded = false;
+    }
+
+    /**
+     * Adds a subscription to the index. It has no effect if the index is not loaded yet or if the
+     * subscription is already indexed.
+     */
+    public synchronized void add(long id, String address) {
+        if (!this.loaded) return;
+        put(this.subscriptionsByAddress, id, address);
+    }
+
+    /**
+     * Removes a subscription from the index. It has no effect if the index is not loaded yet.
+     */
+    public synchronized void remove(long id, String address) {
+        if (!this.loaded) return;
+
+        long[] ids = this.subscriptionsByAddress.get(address);
+        if (ids == null) return;
+
+        long[] remaining = Arrays.stream(ids).filter(i -> i != id).toArray();
+        if (remaining.length == 0)
+            this.subscriptionsByAddress.remove(address);
+        else
+            this.subscriptionsByAddress.put(address, remaining);
+    }
+
+    /**
+     * @param address the stake or payment address
+     * @return the IDs of the subscriptions to the given address. Never null
+     */
+    public long[] getSubscriptionIds(String address) {
+        if (address == null) return NO_SUBSCRIPTIONS;
+        return this.subscriptionsByAddress.getOrDefault(address, NO_SUBSCRIPTIONS);
+    }
+
+    public boolean contains(String address) {
+        return address != null && this.subscriptionsByAddress.containsKey(address);
+    }
+
+    public int size() {
+        return this.subscriptionsByAddress.size();
+    }
+
+    private static void put(Map<String, long[]> subscriptionsByAddress, long id, String address) {
+        long[] ids = subscriptionsByAddress.get(address);
+        if (ids == null) {
+            subscriptionsByAddress.put(address, new long[]{id});
+            return;
+        }
+
+        for (long i : ids) {
+            if (i == id) return;
+        }
+        long[] extended = Arrays.copyOf(ids, ids.length + 1);
+        extended[ids.length] = id;
+        subscriptionsByAddress.put(address, extended);
+    }
+}
@@ -2,11 +2,15 @@ package com.devpool.thothBot.dao;
 
 import com.devpool.thothBot.dao.data.User;
 import com.devpool.thothBot.exceptions.UserNotFoundException;
-import org.apache.commons.collections4.map.HashedMap;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import com.devpool.thothBot.util.LruCache;
+import io.micrometer.core.instrument.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
@@ -14,9 +18,13 @@ import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
 
 import javax.annotation.PostConstruct;
-import java.util.ArrayList;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 @Repository
 public class UserDao {
@@ -29,36 +37,251 @@ public class UserDao {
     private static final String FIELD_LAST_GOV_ACTION_BLOCK_TIME = "last_gov_action_block_time";
     private static final String FIELD_POOL_ID = "pool_id";
     private static final String FIELD_REMAINING_NOTIFICATIONS = "remaining_notifications";
+    private static final String FIELD_LAST_ID = "last_id";
+    private static final String FIELD_SHARD_COUNT = "shard_count";
+    private static final String FIELD_SHARD_INDEX = "shard_index";
+    private static final String USER_FIELDS =
+            "id, chat_id, addr, last_block_height, last_epoch_number, last_gov_votes_block_time, last_gov_action_block_time";
+    private static final RowMapper<User> USER_ROW_MAPPER = (rs, rowNum) -> {
+        User u = new User();
+        u.setId(rs.getLong("id"));
+        u.setChatId(rs.getLong(FIELD_CHAT_ID));
+        u.setAddress(rs.getString(FIELD_ADDR));
+        u.setLastBlockHeight(rs.getInt(FIELD_LAST_BLOCK_HEIGHT));
+        u.setLastEpochNumber(rs.getInt(FIELD_LAST_EPOCH_NUMBER));
+        u.setLastGovVotesBlockTime(rs.getLong(FIELD_LAST_GOV_VOTES_BLOCK_TIME));
+        u.setLastGovActionBlockTime(rs.getLong(FIELD_LAST_GOV_ACTION_BLOCK_TIME));
+        return u;
+    };
     public static final Integer DEFAULT_RETIRING_POOL_NOTIFICATIONS = 5;
 
+    /**
+     * Filter of the subscriptions, applied by the DB
+     */
+    public enum UsersFilter {
+        ALL(""),
+        STAKE_ADDRESSES(" and addr like '" + User.STAKE_ADDR_PREFIX + "%'"),
+        NORMAL_ADDRESSES(" and addr not like '" + User.STAKE_ADDR_PREFIX + "%'");
+
+        private final String condition;
+
+        UsersFilter(String condition) {
+            this.condition = condition;
+        }
+    }
+
     @Autowired
     private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Value("${thoth.users.checkpoint.flush-size:500}")
+    private int checkpointFlushSize;
+
+    @Value("${thoth.users.fetch-size:500}")
+    private int fetchSize;
+
+    @Value("${thoth.users.chat-cache.max-size:1000}")
+    private int chatCacheMaxSize;
+
+    @Value("${thoth.users.chat-cache.ttl-secs:300}")
+    private long chatCacheTtlSecs;
+
+    @Autowired
+    private MetricsHelper metricsHelper;
+
+    private NamedParameterJdbcTemplate pagingJdbcTemplate;
+    private LruCache<Long, ChatSubscriptions> chatCache;
+    private final Object chatCacheLock = new Object();
+    private long chatCacheVersion = 0;
+
+    private record ChatSubscriptions(List<User> users, long expiresAt) {
+    }
+
+    private final SubscribedAddressIndex addressIndex = new SubscribedAddressIndex();
+    private final List<UsersListener> listeners = new CopyOnWriteArrayList<>();
+
     @PostConstruct
     public void post() {
+        // Large reads fetch the rows from the server in chunks, instead of all at once
+        JdbcTemplate pagingTemplate = new JdbcTemplate(this.jdbcTemplate.getDataSource());
+        pagingTemplate.setFetchSize(this.fetchSize);
+        this.pagingJdbcTemplate = new NamedParameterJdbcTemplate(pagingTemplate);
+        this.chatCache = new LruCache<>(this.chatCacheMaxSize);
         LOG.info("User DAO initialised");
     }
 
+    /**
+     * Loads all the subscriptions in memory. Prefer {@link #getUsersBatches(UsersFilter, int)} when iterating them all
+     *
+     * @return all the subscriptions
+     */
     public List<User> getUsers() {
-        SqlRowSet rs = this.jdbcTemplate.queryForRowSet(
-                "select id, chat_id, addr, last_block_height, last_epoch_number, last_gov_votes_block_time, last_gov_action_block_time from users");
-        Map<Long, User> users = new HashedMap<>();
-        while (rs.next()) {
-            Long userId = rs.getLong("id");
-            User u = new User();
-            u.setId(userId);
-            u.setChatId(rs.getLong(FIELD_CHAT_ID));
-            u.setAddress(rs.getString(FIELD_ADDR));
-            u.setLastBlockHeight(rs.getInt(FIELD_LAST_BLOCK_HEIGHT));
-            u.setLastEpochNumber(rs.getInt(FIELD_LAST_EPOCH_NUMBER));
-            u.setLastGovVotesBlockTime(rs.getLong(FIELD_LAST_GOV_VOTES_BLOCK_TIME));
-            u.setLastGovActionBlockTime(rs.getLong(FIELD_LAST_GOV_ACTION_BLOCK_TIME));
-            users.putIfAbsent(userId, u);
-        }
-        return new ArrayList<>(users.values());
+        return this.pagingJdbcTemplate.query("select " + USER_FIELDS + " from users order by id", USER_ROW_MAPPER);
+    }
+
+    /**
+     * Iterates the subscriptions in batches, sorted by ID. Every batch is a page read from the DB (keyset pagination
+     * on the ID) only when the previous one has been consumed, so that the memory does not grow with the number
+     * of subscriptions.
+     *
+     * @param filter    the subscriptions to include
+     * @param batchSize the max size of every batch
+     * @return the lazy stream of the batches
+     */
+    public Stream<List<User>> getUsersBatches(UsersFilter filter, int batchSize) {
+        return getUsersBatches(filter, batchSize, UsersShard.ALL);
+    }
+
+    /**
+     * Same as {@link #getUsersBatches(UsersFilter, int)}, only for the subscriptions of the given shard
+     */
+    public Stream<List<User>> getUsersBatches(UsersFilter filter, int batchSize, UsersShard shard) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize must be greater than 0, batchSize=" + batchSize);
+
+        return Stream.iterate(getUsersPage(filter, shard, 0, batchSize), page -> !page.isEmpty(),
+                page -> page.size() < batchSize ? List.of() :
+                        getUsersPage(filter, shard, page.get(page.size() - 1).getId(), batchSize));
+    }
+
+    private List<User> getUsersPage(UsersFilter filter, UsersShard shard, long lastId, int limit) {
+        return this.pagingJdbcTemplate.query(
+                "select " + USER_FIELDS + " from users where id > :last_id" + filter.condition + shardCondition(shard) +
+                        " order by id limit :limit",
+                Map.of(FIELD_LAST_ID, lastId, "limit", limit, FIELD_SHARD_COUNT, shard.count(), FIELD_SHARD_INDEX, shard.index()),
+                USER_ROW_MAPPER);
+    }
+
+    /**
+     * @return the subscriptions of the given chat
+     */
+    public List<User> getUsersByChatId(long chatId) {
+        return this.namedParameterJdbcTemplate.query(
+                "select " + USER_FIELDS + " from users where chat_id = :chat_id order by id",
+                Map.of(FIELD_CHAT_ID, chatId), USER_ROW_MAPPER);
+    }
+
+    /**
+     * Same as {@link #getUsersByChatId(long)}, served by a cache invalidated at every subscription change of the chat.
+     * Meant for the interactive commands: the checkpoints of the returned subscriptions can be stale.
+     *
+     * @return the subscriptions of the given chat, not modifiable
+     */
+    public List<User> getChatSubscriptions(long chatId) {
+        ChatSubscriptions cached = this.chatCache.get(chatId);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            this.metricsHelper.incrementCounter("users_chat_cache_requests", Tag.of("result", "hit"));
+            return cached.users();
+        }
+
+        this.metricsHelper.incrementCounter("users_chat_cache_requests", Tag.of("result", "miss"));
+        long version;
+        synchronized (this.chatCacheLock) {
+            version = this.chatCacheVersion;
+        }
+        List<User> users = List.copyOf(getUsersByChatId(chatId));
+        synchronized (this.chatCacheLock) {
+            // Don't cache what was read before a concurrent subscription change
+            if (version == this.chatCacheVersion)
+                this.chatCache.put(chatId, new ChatSubscriptions(users, System.currentTimeMillis() + this.chatCacheTtlSecs * 1000));
+        }
+        return users;
+    }
+
+    /**
+     * Invalidates the cached subscriptions of all the chats, as the subscriptions changed elsewhere
+     */
+    public void invalidateChatSubscriptions() {
+        synchronized (this.chatCacheLock) {
+            this.chatCacheVersion++;
+            this.chatCache.clear();
+        }
+    }
+
+    private void invalidateChatSubscriptions(Long chatId) {
+        synchronized (this.chatCacheLock) {
+            this.chatCacheVersion++;
+            this.chatCache.remove(chatId);
+        }
+    }
+
+    /**
+     * @return the subscriptions of the given address, by any chat
+     */
+    public List<User> getUsersByAddress(String address) {
+        return this.namedParameterJdbcTemplate.query(
+                "select " + USER_FIELDS + " from users where addr = :addr order by id",
+                Map.of(FIELD_ADDR, address), USER_ROW_MAPPER);
+    }
+
+    /**
+     * @return the subscriptions with the given IDs. The IDs not found are ignored
+     */
+    public List<User> getUsersByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+
+        return this.namedParameterJdbcTemplate.query(
+                "select " + USER_FIELDS + " from users where id in (:ids) order by id",
+                Map.of("ids", ids), USER_ROW_MAPPER);
+    }
+
+    /**
+     * @return the chat IDs having at least one subscription
+     */
+    public List<Long> getChatIds() {
+        return this.jdbcTemplate.queryForList("select distinct chat_id from users", Long.class);
+    }
+
+    /**
+     * @return the lowest block height among the subscriptions of the shard, or null if there are no subscriptions
+     */
+    public Integer getLowestBlockHeight(UsersShard shard) {
+        return this.namedParameterJdbcTemplate.queryForObject(
+                "select min(last_block_height) from users where true" + shardCondition(shard),
+                Map.of(FIELD_SHARD_COUNT, shard.count(), FIELD_SHARD_INDEX, shard.index()), Integer.class);
+    }
+
+    /**
+     * @return the condition selecting the subscriptions of the shard, with the shard_count and shard_index parameters
+     */
+    private static String shardCondition(UsersShard shard) {
+        return UsersShard.ALL.equals(shard) ? "" : " and mod(id, :shard_count) = :shard_index";
+    }
+
+    /**
+     * @return the index of the subscribed addresses, loaded at the first access and kept up to date on subscriptions changes
+     */
+    public SubscribedAddressIndex getAddressIndex() {
+        if (!this.addressIndex.isLoaded())
+            this.addressIndex.loadIfNeeded(this::getUsers);
+        return this.addressIndex;
+    }
+
+    /**
+     * Reloads the index of the subscribed addresses at its next access, as the subscriptions changed elsewhere
+     */
+    public void invalidateAddressIndex() {
+        this.addressIndex.invalidate();
+    }
+
+    /**
+     * @return a new batch of checkpoints, to be closed at the end of the checker cycle
+     */
+    public CheckpointBatch newCheckpointBatch() {
+        return new CheckpointBatch(this.namedParameterJdbcTemplate, this.checkpointFlushSize, this::checkpointsUpdated);
+    }
+
+    /**
+     * Registers a listener of the subscriptions changes written by this DAO
+     */
+    public void addListener(UsersListener listener) {
+        this.listeners.add(listener);
+    }
+
+    private void checkpointsUpdated(UsersListener.Checkpoint checkpoint, Map<Long, ? extends Number> values) {
+        this.listeners.forEach(l -> l.checkpointsUpdated(checkpoint, values));
     }
 
     public long countSubscriptions() {
@@ -91,7 +314,16 @@ public class UserDao {
                         FIELD_LAST_GOV_ACTION_BLOCK_TIME, user.getLastGovActionBlockTime())),
                 keyHolder, new String[]{"id"});
 
-        LOG.debug("Inserted new user with key {}: {}", keyHolder.getKeyAs(Long.class), user);
+        Long id = keyHolder.getKeyAs(Long.class);
+        LOG.debug("Inserted new user with key {}: {}", id, user);
+        invalidateChatSubscriptions(user.getChatId());
+        if (id != null && !this.listeners.isEmpty()) {
+            User added = new User(user);
+            added.setId(id);
+            this.listeners.forEach(l -> l.userAdded(added));
+        }
+        if (id != null)
+            this.addressIndex.add(id, user.getAddress());
     }
 
     public void updateUserBlockHeight(Long id, long blockHeight) {
@@ -106,9 +338,40 @@ public class UserDao {
                     updatedNumOfRows, id);
         } else {
             LOG.debug("Updated block height to {} for user ID {}", blockHeight, id);
+            checkpointsUpdated(UsersListener.Checkpoint.BLOCK_HEIGHT, Map.of(id, blockHeight));
         }
     }
 
+    /**
+     * Moves forward the block height of the users of the shard that are behind the given one
+     *
+     * @param blockHeight the block height already processed for everybody in the shard
+     * @param shard       the users processed
+     * @param excludedIds the users not to move forward, as their processing failed
+     * @return the number of updated users
+     */
+    public int advanceUsersBlockHeight(long blockHeight, UsersShard shard, Collection<Long> excludedIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource(FIELD_LAST_BLOCK_HEIGHT, blockHeight)
+                .addValue(FIELD_SHARD_COUNT, shard.count())
+                .addValue(FIELD_SHARD_INDEX, shard.index());
+        String conditions = shardCondition(shard);
+        if (!excludedIds.isEmpty()) {
+            conditions += " and id not in (:excluded_ids)";
+            params.addValue("excluded_ids", excludedIds);
+        }
+
+        List<Long> advancedIds = namedParameterJdbcTemplate.queryForList(
+                "update users set last_block_height = :last_block_height where last_block_height < :last_block_height" +
+                        conditions + " returning id", params, Long.class);
+        LOG.debug("Advanced block height to {} for {} user(s)", blockHeight, advancedIds.size());
+        if (!advancedIds.isEmpty() && !this.listeners.isEmpty()) {
+            Map<Long, Long> values = new HashMap<>();
+            advancedIds.forEach(id -> values.put(id, blockHeight));
+            checkpointsUpdated(UsersListener.Checkpoint.BLOCK_HEIGHT, values);
+        }
+        return advancedIds.size();
+    }
+
     public void updateUserGovVotesBlockTime(Long id, long timestamp) {
         int updatedNumOfRows = namedParameterJdbcTemplate.update(
                 "update users set last_gov_votes_block_time = :last_gov_votes_block_time where id = :id",
@@ -121,6 +384,7 @@ public class UserDao {
                     updatedNumOfRows, id);
         } else {
             LOG.debug("Updated governance votes block time to {} for user ID {}", timestamp, id);
+            checkpointsUpdated(UsersListener.Checkpoint.GOV_VOTES_BLOCK_TIME, Map.of(id, timestamp));
         }
     }
 
@@ -132,6 +396,28 @@ public class UserDao {
                         FIELD_CHAT_ID, chatId)));
             LOG.debug("Updated governance action block time to {} for user CHAT-ID {}. Affected rows {}",
                     timestamp, chatId, updatedNumOfRows);
+        checkpointsUpdated(UsersListener.Checkpoint.GOV_ACTION_BLOCK_TIME, Map.of(chatId, timestamp));
+    }
+
+    /**
+     * Same as {@link #updateUserGovActionBlockTime(Long, long)} for all the given chats, with a single update
+     */
+    public void updateUsersGovActionBlockTime(Collection<Long> chatIds, long timestamp) {
+        if (chatIds.isEmpty()) return;
+
+        int updatedNumOfRows = namedParameterJdbcTemplate.update(
+                "update users set last_gov_action_block_time = :last_gov_action_block_time where chat_id = any(:chat_ids)",
+                new MapSqlParameterSource()
+                        .addValue(FIELD_LAST_GOV_ACTION_BLOCK_TIME, timestamp)
+                        .addValue("chat_ids", chatIds.toArray(new Long[0]), Types.ARRAY));
+        LOG.debug("Updated governance action block time to {} for {} CHAT-ID(s). Affected rows {}",
+                timestamp, chatIds.size(), updatedNumOfRows);
+
+        if (!this.listeners.isEmpty()) {
+            Map<Long, Long> values = new HashMap<>();
+            chatIds.forEach(chatId -> values.put(chatId, timestamp));
+            checkpointsUpdated(UsersListener.Checkpoint.GOV_ACTION_BLOCK_TIME, values);
+        }
     }
 
     public void updateUserEpochNumber(Long id, Integer epochNumber) {
@@ -145,14 +431,19 @@ public class UserDao {
             LOG.error("Unexpected updated number of rows for the user with id {}, when updating the epoch number. This is a bug!", id);
         } else {
             LOG.debug("Updated user epoch number to {} for user ID {}", epochNumber, id);
+            checkpointsUpdated(UsersListener.Checkpoint.EPOCH_NUMBER, Map.of(id, epochNumber));
         }
     }
 
     public boolean removeAddress(Long chatId, String addr) {
-        int removedRows = this.namedParameterJdbcTemplate.update(
-                "delete from users where chat_id = :chat_id and addr = :addr;",
+        List<Long> removedIds = this.namedParameterJdbcTemplate.queryForList(
+                "delete from users where chat_id = :chat_id and addr = :addr returning id",
                 Map.of(FIELD_CHAT_ID, chatId,
-                        FIELD_ADDR, addr));
+                        FIELD_ADDR, addr), Long.class);
+        int removedRows = removedIds.size();
+        removedIds.forEach(id -> this.addressIndex.remove(id, addr));
+        invalidateChatSubscriptions(chatId);
+        removedIds.forEach(id -> this.listeners.forEach(l -> l.userRemoved(id)));
 
         if (removedRows > 1)
             LOG.error("Unexpected deletion of address {} for chat-id {}. The expected removed rows was 1 but got {}",
@@ -168,24 +459,16 @@ public class UserDao {
     }
 
     public User getUser(long id) throws UserNotFoundException {
-        SqlRowSet rs = this.namedParameterJdbcTemplate.queryForRowSet(
-                "select id, chat_id, addr, last_block_height, last_epoch_number, last_gov_votes_block_time from users where id = :id",
-                Map.of("id", id));
+        List<User> users = this.namedParameterJdbcTemplate.query(
+                "select " + USER_FIELDS + " from users where id = :id",
+                Map.of("id", id), USER_ROW_MAPPER);
 
-        if (!rs.next()) {
+        if (users.isEmpty()) {
             LOG.warn("Cannot find the user with ID {}", id);
             throw new UserNotFoundException("Cannot find the user with ID " + id);
         }
 
-        User u = new User();
-        u.setId(rs.getLong("id"));
-        u.setChatId(rs.getLong(FIELD_CHAT_ID));
-        u.setAddress(rs.getString(FIELD_ADDR));
-        u.setLastBlockHeight(rs.getInt(FIELD_LAST_BLOCK_HEIGHT));
-        u.setLastEpochNumber(rs.getInt(FIELD_LAST_EPOCH_NUMBER));
-        u.setLastGovVotesBlockTime(rs.getLong(FIELD_LAST_GOV_VOTES_BLOCK_TIME));
-
-        return u;
+        return users.get(0);
     }
 
     public int getRemainingUserNotificationForRetiringPool(long chatId, String poolId) {
@@ -0,0 +1,246 @@
+package com.devpool.thothBot.dao;
+
+import com.devpool.thothBot.cluster.ClusterCoordinator;
+import com.devpool.thothBot.dao.data.User;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory registry of all the subscriptions, shared by the scheduled tasks. It is loaded once and then kept up to
+ * date with the changes written by the {@link UserDao}. With multiple instances sharing the same DB, the subscriptions
+ * added and removed are announced with a Postgres NOTIFY and the other instances reload the registry at their next
+ * snapshot, together with the {@link SubscribedAddressIndex} and the chat subscriptions cache of the {@link UserDao}. The notifications are enabled by
+ * default when running in a cluster, even without the registry. The checkpoints written by the other instances are not
+ * announced: as the snapshots are read by the jobs of the leader only, the registry is reloaded when the instance
+ * becomes the leader, reading the checkpoints written by the previous one.
+ * When disabled, every snapshot is read from the DB.
+ */
+@Component
+public class UserRegistry implements UsersListener {
+    private static final Logger LOG = LoggerFactory.getLogger(UserRegistry.class);
+    private static final String NOTIFY_CHANNEL = "thoth_users";
+    private static final long LISTEN_RETRY_MILLIS = 5000;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ClusterCoordinator clusterCoordinator;
+
+    @Value("${thoth.users.registry.enabled:false}")
+    private boolean enabled;
+
+    @Value("${thoth.users.registry.listen-notify.enabled:${thoth.cluster.enabled:false}}")
+    private boolean listenNotifyEnabled;
+
+    @Value("${thoth.users.registry.listen-notify.poll-ms:1000}")
+    private int listenPollMillis;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private Map<Long, User> users = new HashMap<>();
+    private boolean loaded = false;
+    private volatile boolean reloadNeeded = false;
+    private UsersSnapshot snapshot;
+    private ExecutorService listener;
+    private volatile boolean running = false;
+
+    @PostConstruct
+    public void post() {
+        if (!this.enabled && !this.listenNotifyEnabled) return;
+
+        this.userDao.addListener(this);
+        if (this.enabled)
+            this.clusterCoordinator.addLeadershipListener(this::leadershipChanged);
+        if (this.listenNotifyEnabled) {
+            this.running = true;
+            this.listener = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("User-Registry-Listener"));
+            this.listener.execute(this::listen);
+        }
+        LOG.info("User registry enabled: {}, listening for other instances changes: {}", this.enabled, this.listenNotifyEnabled);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.running = false;
+        if (this.listener != null)
+            this.listener.shutdownNow();
+    }
+
+    /**
+     * @return a consistent view of all the subscriptions
+     */
+    public UsersSnapshot snapshot() {
+        if (!this.enabled)
+            return new UsersSnapshot(this.userDao.getUsers());
+
+        synchronized (this) {
+            if (!this.loaded || this.reloadNeeded)
+                load();
+            if (this.snapshot == null)
+                this.snapshot = new UsersSnapshot(this.users.values());
+            return this.snapshot;
+        }
+    }
+
+    @Override
+    public void userAdded(User user) {
+        update(() -> this.users.put(user.getId(), new User(user)));
+        notifyOtherInstances();
+    }
+
+    @Override
+    public void userRemoved(long id) {
+        update(() -> this.users.remove(id));
+        notifyOtherInstances();
+    }
+
+    @Override
+    public void checkpointsUpdated(Checkpoint checkpoint, Map<Long, ? extends Number> values) {
+        update(() -> {
+            if (checkpoint == Checkpoint.GOV_ACTION_BLOCK_TIME) {
+                replaceAll(u -> {
+                    Number value = values.get(u.getChatId());
+                    if (value == null) return null;
+                    User updated = new User(u);
+                    updated.setLastGovActionBlockTime(value.longValue());
+                    return updated;
+                });
+                return;
+            }
+
+            for (Map.Entry<Long, ? extends Number> entry : values.entrySet()) {
+                this.users.computeIfPresent(entry.getKey(), (id, u) -> {
+                    User updated = new User(u);
+                    switch (checkpoint) {
+                        case BLOCK_HEIGHT -> updated.setLastBlockHeight(entry.getValue().intValue());
+                        case EPOCH_NUMBER -> updated.setLastEpochNumber(entry.getValue().intValue());
+                        case GOV_VOTES_BLOCK_TIME -> updated.setLastGovVotesBlockTime(entry.getValue().longValue());
+                        default -> throw new IllegalArgumentException("Unexpected checkpoint " + checkpoint);
+                    }
+                    return updated;
+                });
+            }
+        });
+    }
+
+    private synchronized void update(Runnable change) {
+        // Not loaded yet: the change will be read with the whole registry
+        if (!this.loaded) return;
+        change.run();
+        this.snapshot = null;
+    }
+
+    /**
+     * Replaces the users for which the given function returns a new instance
+     */
+    private void replaceAll(UnaryOperator<User> updater) {
+        this.users.replaceAll((id, u) -> {
+            User updated = updater.apply(u);
+            return updated != null ? updated : u;
+        });
+    }
+
+    private void load() {
+        // Reset before reading, so that a change announced in the meantime triggers a new reload
+        this.reloadNeeded = false;
+        Map<Long, User> loadedUsers = new HashMap<>();
+        try {
+            for (User u : this.userDao.getUsers())
+                loadedUsers.put(u.getId(), u);
+        } catch (RuntimeException e) {
+            // The previous registry is kept until the next successful reload
+            this.reloadNeeded = true;
+            throw e;
+        }
+        this.users = loadedUsers;
+        this.loaded = true;
+        this.snapshot = null;
+        LOG.info("Loaded user registry with {} subscription(s)", this.users.size());
+    }
+
+    private void notifyOtherInstances() {
+        if (!this.listenNotifyEnabled) return;
+
+        try {
+            this.jdbcTemplate.query("select pg_notify(?, ?)", rs -> null, NOTIFY_CHANNEL, this.instanceId);
+        } catch (Exception e) {
+            LOG.warn("Cannot notify the users changes to the other instances: {}", e.toString());
+        }
+    }
+
+    private void leadershipChanged(boolean leader) {
+        if (leader)
+            this.reloadNeeded = true;
+    }
+
+    private void otherInstanceChanges() {
+        this.reloadNeeded = true;
+        this.userDao.invalidateAddressIndex();
+        this.userDao.invalidateChatSubscriptions();
+    }
+
+    /**
+     * Listens for the changes of the other instances, on a connection dedicated to it
+     */
+    private void listen() {
+        while (this.running) {
+            try (Connection connection = this.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + NOTIFY_CHANNEL);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                // Changes could have been missed while not listening
+                otherInstanceChanges();
+                LOG.debug("Listening for the users changes on channel {}", NOTIFY_CHANNEL);
+
+                while (this.running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(this.listenPollMillis);
+                    if (notifications == null) continue;
+
+                    for (PGNotification notification : notifications) {
+                        if (!this.instanceId.equals(notification.getParameter())) {
+                            LOG.debug("Users changed by another instance {}", notification.getParameter());
+                            otherInstanceChanges();
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!this.running) return;
+                LOG.warn("Error while listening for the users changes: {}. Retrying in {} ms",
+                        e.toString(), LISTEN_RETRY_MILLIS);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(LISTEN_RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
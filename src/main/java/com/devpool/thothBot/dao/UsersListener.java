@@ -0,0 +1,31 @@
+package com.devpool.thothBot.dao;
+
+import com.devpool.thothBot.dao.data.User;
+
+import java.util.Map;
+
+/**
+ * Listener of the changes of the subscriptions written by the {@link UserDao}
+ */
+public interface UsersListener {
+    /**
+     * The checkpoints of the subscriptions
+     */
+    enum Checkpoint {
+        BLOCK_HEIGHT, EPOCH_NUMBER, GOV_VOTES_BLOCK_TIME,
+        /**
+         * Keyed by chat ID, as it is updated for all the subscriptions of the chat
+         */
+        GOV_ACTION_BLOCK_TIME
+    }
+
+    void userAdded(User user);
+
+    void userRemoved(long id);
+
+    /**
+     * @param checkpoint the updated checkpoint
+     * @param values     subscription ID (or chat ID) -> new value
+     */
+    void checkpointsUpdated(Checkpoint checkpoint, Map<Long, ? extends Number> values);
+}
@@ -0,0 +1,23 @@
+package com.devpool.thothBot.dao;
+
+/**
+ * The subscriptions owned by a bot instance: the ones whose ID modulo the number of instances is the instance index
+ *
+ * @param index the index of the instance, among the live ones
+ * @param count the number of live instances
+ */
+public record UsersShard(int index, int count) {
+    /**
+     * All the subscriptions, when running a single instance
+     */
+    public static final UsersShard ALL = new UsersShard(0, 1);
+
+    /**
+     * No subscriptions, while the instance is not a member of the cluster
+     */
+    public static final UsersShard NONE = new UsersShard(-1, 1);
+
+    public boolean owns(long userId) {
+        return Math.floorMod(userId, this.count) == this.index;
+    }
+}
@@ -0,0 +1,83 @@
+package com.devpool.thothBot.dao;
+
+import com.devpool.thothBot.dao.data.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of all the subscriptions, sorted by ID and pre-partitioned for the scheduled tasks.
+ * The {@link User} instances of a snapshot are never modified: a change of a subscription creates a new instance.
+ */
+public final class UsersSnapshot {
+    private final List<User> users;
+    private final List<User> stakeUsers;
+    private final List<User> addressUsers;
+    private final List<User> uniqueChatUsers;
+    private final Map<Long, User> usersById;
+    private final Map<String, List<User>> usersByAddress;
+
+    UsersSnapshot(Collection<User> allUsers) {
+        List<User> sorted = new ArrayList<>(allUsers);
+        sorted.sort(Comparator.comparing(User::getId));
+
+        Map<Long, User> byId = new HashMap<>();
+        Map<Long, User> byChat = new LinkedHashMap<>();
+        Map<String, List<User>> byAddress = new HashMap<>();
+        for (User u : sorted) {
+            byId.put(u.getId(), u);
+            byChat.putIfAbsent(u.getChatId(), u);
+            byAddress.computeIfAbsent(u.getAddress(), a -> new ArrayList<>()).add(u);
+        }
+        byAddress.replaceAll((a, l) -> List.copyOf(l));
+
+        this.users = List.copyOf(sorted);
+        this.stakeUsers = sorted.stream().filter(User::isStakeAddress).toList();
+        this.addressUsers = sorted.stream().filter(User::isNormalAddress).toList();
+        this.uniqueChatUsers = List.copyOf(byChat.values());
+        this.usersById = Map.copyOf(byId);
+        this.usersByAddress = Map.copyOf(byAddress);
+    }
+
+    public List<User> getUsers() {
+        return this.users;
+    }
+
+    public List<User> getStakeUsers() {
+        return this.stakeUsers;
+    }
+
+    public List<User> getAddressUsers() {
+        return this.addressUsers;
+    }
+
+    /**
+     * @return the first subscription (lowest ID) of every chat
+     */
+    public List<User> getUniqueChatUsers() {
+        return this.uniqueChatUsers;
+    }
+
+    /**
+     * @return the subscription with the given ID, or null if not found
+     */
+    public User getUser(long id) {
+        return this.usersById.get(id);
+    }
+
+    /**
+     * @return the subscriptions to the given address. Never null
+     */
+    public List<User> getUsersByAddress(String address) {
+        return this.usersByAddress.getOrDefault(address, List.of());
+    }
+
+    public int size() {
+        return this.users.size();
+    }
+}
@@ -1,7 +1,7 @@
 package com.devpool.thothBot.dao.data;
 
 public class User {
-    private static final String STAKE_ADDR_PREFIX = "stake1";
+    public static final String STAKE_ADDR_PREFIX = "stake1";
     private Long id;
     private Long chatId;
     private String address;
@@ -23,6 +23,12 @@ public class User {
     public User() {
     }
 
+    public User(User other) {
+        this(other.chatId, other.address, other.lastBlockHeight, other.lastEpochNumber,
+                other.lastGovVotesBlockTime, other.lastGovActionBlockTime);
+        this.id = other.id;
+    }
+
     @Override
     public String toString() {
         return "User{" +
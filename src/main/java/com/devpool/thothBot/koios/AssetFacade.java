@@ -1,10 +1,14 @@
 package com.devpool.thothBot.koios;
 
+import com.devpool.thothBot.cluster.ClusterCoordinator;
+import com.devpool.thothBot.dao.AssetsCache;
 import com.devpool.thothBot.dao.AssetsDao;
 import com.devpool.thothBot.dao.UserDao;
 import com.devpool.thothBot.dao.data.Asset;
 import com.devpool.thothBot.dao.data.User;
 import com.devpool.thothBot.scheduler.AbstractCheckerTask;
+import com.devpool.thothBot.util.CollectionsUtil;
+import com.devpool.thothBot.util.MessageTemplates;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,13 +18,14 @@ import org.springframework.stereotype.Component;
 import rest.koios.client.backend.api.account.model.AccountAsset;
 import rest.koios.client.backend.api.address.model.AddressAsset;
 import rest.koios.client.backend.api.asset.model.AssetInformation;
+import rest.koios.client.backend.api.asset.model.TokenRegistryMetadata;
 import rest.koios.client.backend.api.base.Result;
 import rest.koios.client.backend.api.base.exception.ApiException;
+import rest.koios.client.utils.Tuple;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -41,17 +46,28 @@ public class AssetFacade implements Runnable {
     @Autowired
     private AssetsDao assetsDao;
 
+    @Autowired
+    private AssetsCache assetsCache;
+
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private ClusterCoordinator clusterCoordinator;
+
     private ScheduledExecutorService scheduledExecutorService;
 
     private ExecutorService usersExecutorService;
-    private ExecutorService assetsExecutorService;
 
     @Value("${thoth.asset.fetching.enabled:true}")
     private boolean isFetchingEnabled;
 
+    @Value("${thoth.asset.fetching.bulk-size:50}")
+    private int bulkSize;
+
+    private record AssetId(String policyId, String assetName) {
+    }
+
 
     @PostConstruct
     public void post() {
@@ -62,10 +78,6 @@ public class AssetFacade implements Runnable {
         this.usersExecutorService = Executors.newFixedThreadPool(5,
                 new CustomizableThreadFactory("UserScanSyncWorker"));
 
-        this.assetsExecutorService = Executors.newFixedThreadPool(5,
-                new CustomizableThreadFactory("AssetScanSyncWorker"));
-
-
         if (this.isFetchingEnabled) {
             LOG.info("Starting Asset Facade Fetching mechanism");
             this.scheduledExecutorService.scheduleWithFixedDelay(this, 1, 30, TimeUnit.MINUTES);
@@ -76,206 +88,206 @@ public class AssetFacade implements Runnable {
     public void shutdown() {
         LOG.info("Shutting down executor services");
         this.scheduledExecutorService.shutdown();
-        this.assetsExecutorService.shutdown();
         this.usersExecutorService.shutdown();
     }
 
     public void refreshAssetsForUserNow(String addr) {
-        this.usersExecutorService.submit(new UserScannerWorker(new User(-1L, addr, -1, -1, 0L, 0L), this.koiosFacade));
+        this.usersExecutorService.submit(() -> {
+            try {
+                Set<AssetId> unresolvedAssets = new LinkedHashSet<>();
+                collectUnresolvedAssets(addr, unresolvedAssets);
+                resolveAssets(unresolvedAssets);
+            } catch (Exception e) {
+                LOG.error("Unknown error while syncing the assets for {}", addr, e);
+            }
+        });
     }
 
     public String getAssetDisplayName(String policyId, String assetName) throws ApiException {
-        Optional<Asset> cachedAsset = this.assetsDao.getAssetInformation(policyId, assetName);
+        Optional<Asset> cachedAsset = resolveAsset(policyId, assetName);
         String displayName = AbstractCheckerTask.hexToAscii(assetName, policyId);
 
-        if (cachedAsset.isEmpty()) {
-            LOG.debug("Asset {}, {} not cached. Retrieving it...", policyId, assetName);
-            // We need to get the decimals for the asset. Note, this will be cached
-            Result<AssetInformation> assetInfoResult = this.koiosFacade.getKoiosService()
-                    .getAssetService().getAssetInformation(policyId, assetName);
-            if (!assetInfoResult.isSuccessful()) {
-                LOG.warn("Failed to retrieve asset {} information from KOIOS, due to {} ({})",
-                        policyId, assetInfoResult.getResponse(), assetInfoResult.getCode());
-            } else if (assetInfoResult.isSuccessful() && assetInfoResult.getValue().getTokenRegistryMetadata() != null) {
-                displayName = assetInfoResult.getValue().getTokenRegistryMetadata().getName();
-            }
-
-            if (assetInfoResult.isSuccessful()) {
-                if (ADA_HANDLE_POLICY_ID.equals(policyId)) {
-                    // normalize ADA handle
-                    if (displayName.indexOf('@') != -1) {
-                        displayName = displayName.substring(displayName.indexOf('@') + 1);
-                    }
-                    displayName = ADA_HANDLE_PREFIX + displayName;
-                }
-                // Cache it for the future
-                this.assetsDao.addNewAsset(policyId, assetName, displayName,
-                        assetInfoResult.getValue().getTokenRegistryMetadata() == null ? -1 :
-                                assetInfoResult.getValue().getTokenRegistryMetadata().getDecimals());
-            }
-        } else {
-            if (cachedAsset.get().getAssetDisplayName() != null)
-                displayName = cachedAsset.get().getAssetDisplayName();
-        }
+        if (cachedAsset.isPresent() && cachedAsset.get().getAssetDisplayName() != null)
+            displayName = cachedAsset.get().getAssetDisplayName();
 
         return displayName;
     }
 
     public Object getAssetQuantity(String policyId, String assetName, Long quantity) throws ApiException {
-        Optional<Asset> cachedAsset = this.assetsDao.getAssetInformation(policyId, assetName);
+        Optional<Asset> cachedAsset = resolveAsset(policyId, assetName);
         Object assetQuantity = quantity;
-        String displayName = AbstractCheckerTask.hexToAscii(assetName, policyId);
-        if (cachedAsset.isEmpty()) {
-            LOG.debug("Asset {}, {} not cached. Retrieving it...", policyId, assetName);
-            // We need to get the decimals for the asset. Note, this will be cached
-            Result<AssetInformation> assetInfoResult = this.koiosFacade.getKoiosService()
-                    .getAssetService().getAssetInformation(policyId, assetName);
-            if (!assetInfoResult.isSuccessful()) {
-                LOG.warn("Failed to retrieve asset {} information from KOIOS, due to {} ({})",
-                        policyId, assetInfoResult.getResponse(), assetInfoResult.getCode());
-            } else if (assetInfoResult.isSuccessful() && assetInfoResult.getValue().getTokenRegistryMetadata() != null) {
-                assetQuantity = quantity / Math.pow(10, assetInfoResult.getValue().getTokenRegistryMetadata().getDecimals());
-                if (assetInfoResult.getValue().getTokenRegistryMetadata().getName() != null)
-                    displayName = assetInfoResult.getValue().getTokenRegistryMetadata().getName();
-            }
 
-            if (assetInfoResult.isSuccessful()) {
-                if (ADA_HANDLE_POLICY_ID.equals(policyId)) {
-                    // normalize ADA handle
-                    if (displayName.indexOf('@') != -1) {
-                        displayName = displayName.substring(displayName.indexOf('@') + 1);
-                    }
-                    displayName = ADA_HANDLE_PREFIX + displayName;
-                }
-                // Cache it for the future
-                this.assetsDao.addNewAsset(policyId, assetName, displayName,
-                        assetInfoResult.getValue().getTokenRegistryMetadata() == null ? -1 :
-                                assetInfoResult.getValue().getTokenRegistryMetadata().getDecimals());
+        if (cachedAsset.isPresent() && cachedAsset.get().getDecimals() != -1)
+            assetQuantity = quantity / Math.pow(10, cachedAsset.get().getDecimals());
+
+        return assetQuantity;
+    }
+
+    /**
+     * Gets the asset from the cache or, if unknown, from Koios. The assets retrieved from Koios are cached
+     *
+     * @return the asset, or empty if it could not be retrieved
+     */
+    private Optional<Asset> resolveAsset(String policyId, String assetName) throws ApiException {
+        Optional<Asset> cachedAsset = this.assetsCache.getAssetInformation(policyId, assetName);
+        if (cachedAsset.isPresent() || this.assetsCache.isUnknown(policyId, assetName))
+            return cachedAsset;
+
+        LOG.debug("Asset {}, {} not cached. Retrieving it...", policyId, assetName);
+        // We need to get the decimals for the asset. Note, this will be cached
+        Result<AssetInformation> assetInfoResult = this.koiosFacade.getKoiosService()
+                .getAssetService().getAssetInformation(policyId, assetName);
+        if (!assetInfoResult.isSuccessful()) {
+            LOG.warn("Failed to retrieve asset {} information from KOIOS, due to {} ({})",
+                    policyId, assetInfoResult.getResponse(), assetInfoResult.getCode());
+            this.assetsCache.markUnknown(policyId, assetName);
+            return Optional.empty();
+        }
+
+        // Cache it for the future
+        Asset asset = buildAsset(policyId, assetName, assetInfoResult.getValue());
+        this.assetsCache.addNewAsset(policyId, assetName, asset.getAssetDisplayName(), asset.getDecimals());
+
+        return this.assetsCache.getAssetInformation(policyId, assetName);
+    }
+
+    private static Asset buildAsset(String policyId, String assetName, AssetInformation assetInformation) {
+        String displayName = AbstractCheckerTask.hexToAscii(assetName, policyId);
+        TokenRegistryMetadata tokenRegistryMetadata = assetInformation.getTokenRegistryMetadata();
+        if (tokenRegistryMetadata != null && tokenRegistryMetadata.getName() != null)
+            displayName = tokenRegistryMetadata.getName();
+
+        if (ADA_HANDLE_POLICY_ID.equals(policyId)) {
+            // normalize ADA handle
+            if (displayName.indexOf('@') != -1) {
+                displayName = displayName.substring(displayName.indexOf('@') + 1);
             }
-        } else {
-            // We have it cached
-            if (cachedAsset.get().getDecimals() != -1)
-                assetQuantity = quantity / Math.pow(10, cachedAsset.get().getDecimals());
+            displayName = ADA_HANDLE_PREFIX + displayName;
         }
 
-        return assetQuantity;
+        return new Asset(null, policyId, assetName, displayName.replace("\u0000", ""),
+                tokenRegistryMetadata == null ? -1 : tokenRegistryMetadata.getDecimals());
     }
 
     public String formatAssetQuantity(Object assetQuantity) {
         if (assetQuantity == null) return "?";
 
         return assetQuantity instanceof Double ?
-                String.format("%,.2f", (Double) assetQuantity) :
-                String.format("%,d", (Long) assetQuantity);
+                MessageTemplates.formatAmount((Double) assetQuantity) :
+                MessageTemplates.formatQuantity((Long) assetQuantity);
     }
 
     @Override
     public void run() {
+        if (!this.clusterCoordinator.isLeader()) {
+            LOG.debug("Not syncing the assets cached information, as this instance is not the leader");
+            return;
+        }
+
         LOG.debug("Syncing assets cached information");
 
         try {
-            List<User> allUsers = this.userDao.getUsers();
-
-            int flowControl = 0;
-            for (User u : allUsers) {
-                if (flowControl % 2 == 0)
-                    Thread.sleep(3000); // Avoid reaching Koios limits
-                this.usersExecutorService.submit(new UserScannerWorker(u, this.koiosFacade));
-                flowControl++;
+            // Collect the unknown assets of all the users first, so that shared assets are resolved only once
+            Set<AssetId> unresolvedAssets = new LinkedHashSet<>();
+            long usersCount = 0;
+            Iterator<List<User>> usersBatches = this.userDao.getUsersBatches(UserDao.UsersFilter.ALL, this.bulkSize).iterator();
+            while (usersBatches.hasNext() && !Thread.currentThread().isInterrupted()) {
+                for (User u : usersBatches.next()) {
+                    usersCount++;
+                    try {
+                        collectUnresolvedAssets(u.getAddress(), unresolvedAssets);
+                    } catch (ApiException e) {
+                        LOG.warn("Issue while syncing the assets for user {}, due to {}", u.getAddress(), e.toString());
+                    }
+                }
             }
+            LOG.debug("Found {} asset(s) to resolve among {} user(s)", unresolvedAssets.size(), usersCount);
+
+            resolveAssets(unresolvedAssets);
+            if (Thread.currentThread().isInterrupted())
+                LOG.warn("Assets syncing interrupted");
         } catch (Exception e) {
             LOG.error("Unknown exception while syncing the assets cache", e);
-            Thread.currentThread().interrupt();
         }
     }
 
-    public long countTotalCachedAssets() {
-        return this.assetsDao.countAll();
-    }
-
-    public class UserScannerWorker implements Runnable {
-        private final Logger LOG = LoggerFactory.getLogger(UserScannerWorker.class);
-        private final User user;
-        private final KoiosFacade koiosFacade;
-
-        public UserScannerWorker(User user, KoiosFacade koiosFacade) {
-            this.user = user;
-            this.koiosFacade = koiosFacade;
+    /**
+     * Collects the assets held by the given address that are not cached yet
+     */
+    private void collectUnresolvedAssets(String address, Set<AssetId> unresolvedAssets) throws ApiException {
+        LOG.debug("Syncing assets for account {}", address);
+        List<rest.koios.client.backend.api.base.common.Asset> assetsToProcess;
+
+        if (User.isStakingAddress(address)) {
+            Result<List<AccountAsset>> result = this.koiosFacade.getKoiosService()
+                    .getAccountService().getAccountAssets(List.of(address), null, null);
+            if (!result.isSuccessful()) {
+                LOG.warn("Can't sync the user {} assets, due to {}", address, result.getResponse());
+                return;
+            }
+            assetsToProcess = result.getValue().stream().map(rest.koios.client.backend.api.base.common.Asset.class::cast).collect(Collectors.toList());
+        } else {
+            // Non-staking address
+            Result<List<AddressAsset>> result = this.koiosFacade.getKoiosService()
+                    .getAddressService().getAddressAssets(List.of(address), null);
+            if (!result.isSuccessful()) {
+                LOG.warn("Can't sync the user {} assets, due to {}", address, result.getResponse());
+                return;
+            }
+            assetsToProcess = result.getValue().stream().map(rest.koios.client.backend.api.base.common.Asset.class::cast).collect(Collectors.toList());
         }
 
-        @Override
-        public void run() {
-            try {
-                LOG.debug("Syncing assets for account {}", this.user.getAddress());
-                List<rest.koios.client.backend.api.base.common.Asset> assetsToProcess;
-
-                if (this.user.isStakeAddress()) {
-                    Result<List<AccountAsset>> result = this.koiosFacade.getKoiosService()
-                            .getAccountService().getAccountAssets(List.of(user.getAddress()), null, null);
-                    if (!result.isSuccessful()) {
-                        LOG.warn("Can't sync the user {} assets, due to {}", this.user.getAddress(), result.getResponse());
-                        return;
-                    }
-
-                    if (result.getValue().isEmpty()) {
-                        LOG.debug("The account {} has no assets to sync", this.user.getAddress());
-                        return;
-                    }
-                    assetsToProcess = result.getValue().stream().map(rest.koios.client.backend.api.base.common.Asset.class::cast).collect(Collectors.toList());
-                } else {
-                    // Non-staking address
-                    Result<List<AddressAsset>> result = this.koiosFacade.getKoiosService()
-                            .getAddressService().getAddressAssets(List.of(user.getAddress()), null);
-                    if (!result.isSuccessful()) {
-                        LOG.warn("Can't sync the user {} assets, due to {}", this.user.getAddress(), result.getResponse());
-                        return;
-                    }
-
-                    if (result.getValue().isEmpty()) {
-                        LOG.debug("The account {} has no assets to sync", this.user.getAddress());
-                        return;
-                    }
-                    assetsToProcess = result.getValue().stream().map(rest.koios.client.backend.api.base.common.Asset.class::cast).collect(Collectors.toList());
-                }
+        if (assetsToProcess.isEmpty()) {
+            LOG.debug("The account {} has no assets to sync", address);
+            return;
+        }
 
-                int flowControl = 0;
-                for (rest.koios.client.backend.api.base.common.Asset asset : assetsToProcess) {
-                    if (flowControl % 2 == 0)
-                        Thread.sleep(3000); //Avoid saturating the Koios limits
-                    AssetFacade.this.assetsExecutorService.submit(new AssetScannerWorker(asset));
-                    flowControl++;
-                }
-            } catch (ApiException e) {
-                LOG.warn("Issue while syncing the assets for user {}, due to {}", this.user.getAddress(), e.toString());
-            } catch (Exception e) {
-                LOG.error("Unknown error in user worker for user {}", this.user.getAddress(), e);
-                Thread.currentThread().interrupt();
+        for (rest.koios.client.backend.api.base.common.Asset asset : assetsToProcess) {
+            AssetId assetId = new AssetId(asset.getPolicyId(), asset.getAssetName());
+            if (!unresolvedAssets.contains(assetId)
+                    && !this.assetsCache.isUnknown(asset.getPolicyId(), asset.getAssetName())
+                    && this.assetsCache.getAssetInformation(asset.getPolicyId(), asset.getAssetName()).isEmpty()) {
+                unresolvedAssets.add(assetId);
             }
         }
     }
 
-    public class AssetScannerWorker implements Runnable {
-        private final Logger LOG = LoggerFactory.getLogger(AssetScannerWorker.class);
-
-        private final rest.koios.client.backend.api.base.common.Asset asset;
+    /**
+     * Resolves the given assets with bulk Koios requests and stores them all at once
+     */
+    private void resolveAssets(Collection<AssetId> unresolvedAssets) {
+        Iterator<List<AssetId>> batches = CollectionsUtil.batchesList(new ArrayList<>(unresolvedAssets), this.bulkSize).iterator();
+        while (batches.hasNext() && !Thread.currentThread().isInterrupted()) {
+            List<AssetId> batch = batches.next();
+            try {
+                Result<List<AssetInformation>> result = this.koiosFacade.getKoiosService().getAssetService()
+                        .getAssetInformationBulk(batch.stream().map(a -> new Tuple<>(a.policyId(), a.assetName())).toList(), null);
+                if (!result.isSuccessful()) {
+                    LOG.warn("Failed to retrieve {} asset(s) information from KOIOS, due to {} ({})",
+                            batch.size(), result.getResponse(), result.getCode());
+                    continue;
+                }
 
-        public AssetScannerWorker(rest.koios.client.backend.api.base.common.Asset asset) {
-            this.asset = asset;
-        }
+                List<Asset> newAssets = new ArrayList<>();
+                Set<AssetId> resolved = new HashSet<>();
+                for (AssetInformation assetInformation : result.getValue()) {
+                    AssetId assetId = new AssetId(assetInformation.getPolicyId(), assetInformation.getAssetName());
+                    if (resolved.add(assetId))
+                        newAssets.add(buildAsset(assetId.policyId(), assetId.assetName(), assetInformation));
+                }
+                this.assetsCache.addNewAssets(newAssets);
 
-        @Override
-        public void run() {
-            try {
-                AssetFacade.this.getAssetQuantity(
-                        this.asset.getPolicyId(), asset.getAssetName(), Long.parseLong(asset.getQuantity()));
+                // Whatever Koios did not return is unknown
+                batch.stream().filter(a -> !resolved.contains(a))
+                        .forEach(a -> this.assetsCache.markUnknown(a.policyId(), a.assetName()));
+                LOG.debug("Resolved {} asset(s) out of {}", newAssets.size(), batch.size());
             } catch (ApiException e) {
-                LOG.warn("API Error when trying to refresh the asset cache for {}, {}. Due to {}",
-                        this.asset.getPolicyId(), this.asset.getAssetName(), e.toString());
-            } catch (Exception e) {
-                LOG.error("Unknown error in asset worker for asset {}, {}",
-                        this.asset.getPolicyId(), this.asset.getAssetName(), e);
+                LOG.warn("API Error when trying to resolve {} asset(s), due to {}", batch.size(), e.toString());
             }
         }
     }
 
+    public long countTotalCachedAssets() {
+        return this.assetsDao.countAll();
+    }
 }
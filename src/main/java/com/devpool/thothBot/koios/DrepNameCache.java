@@ -0,0 +1,228 @@
+package com.devpool.thothBot.koios;
+
+import com.devpool.thothBot.dao.DrepNameDao;
+import com.devpool.thothBot.model.model.Body;
+import com.devpool.thothBot.model.model.DrepMetadata;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import com.devpool.thothBot.scheduler.AbstractCheckerTask;
+import com.devpool.thothBot.util.LruCache;
+import io.micrometer.core.instrument.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import rest.koios.client.backend.api.governance.model.DRepInfo;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cache of the DRep names, resolved from their metadata anchors (often on IPFS). The names are kept in memory and in
+ * the DB together with the anchor they were resolved from. A name is served as long as it is fresh and the anchor
+ * of the DRep did not change: otherwise the known name is still served while it's refreshed in background.
+ * The DReps never resolved before are fetched concurrently, by a bounded pool, waiting up to the fetch timeout.
+ */
+@Component
+public class DrepNameCache {
+    private static final Logger LOG = LoggerFactory.getLogger(DrepNameCache.class);
+
+    @Autowired
+    private DrepNameDao drepNameDao;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private MetricsHelper metricsHelper;
+
+    @Value("${thoth.drep-names.cache.max-size:5000}")
+    private int maxSize;
+
+    @Value("${thoth.drep-names.cache.ttl-secs:86400}")
+    private long ttlSecs;
+
+    @Value("${thoth.drep-names.cache.negative-ttl-secs:600}")
+    private long negativeTtlSecs;
+
+    @Value("${thoth.drep-names.fetch-threads:4}")
+    private int fetchThreads;
+
+    @Value("${thoth.drep-names.fetch-timeout-secs:10}")
+    private long fetchTimeoutSecs;
+
+    private LruCache<String, CacheEntry> cache;
+    private ExecutorService fetchExecutor;
+    private final Map<String, Future<CacheEntry>> inFlight = new ConcurrentHashMap<>();
+
+    private record CacheEntry(String metaUrl, String metaHash, String name, long expiresAt) {
+        boolean isFresh(DRepInfo drep) {
+            return Objects.equals(this.metaUrl, drep.getMetaUrl()) && Objects.equals(this.metaHash, drep.getMetaHash())
+                    && this.expiresAt > System.currentTimeMillis();
+        }
+    }
+
+    @PostConstruct
+    public void post() {
+        this.cache = new LruCache<>(this.maxSize);
+        this.fetchExecutor = Executors.newFixedThreadPool(this.fetchThreads,
+                new CustomizableThreadFactory("DRep-Name-Fetcher-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.fetchExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the names of the given DReps
+     *
+     * @param dreps the DReps information, with their current metadata anchor
+     * @return DRep ID -> given name, for the DReps whose name is known
+     */
+    public Map<String, String> getDrepNames(Collection<DRepInfo> dreps) {
+        Map<String, String> drepNames = new LinkedHashMap<>();
+        List<DRepInfo> missingDreps = new ArrayList<>();
+        for (DRepInfo drep : dreps) {
+            if (drep.getMetaUrl() == null) continue;
+
+            CacheEntry entry = this.cache.get(drep.getDrepId());
+            if (entry == null) {
+                missingDreps.add(drep);
+                continue;
+            }
+            serve(drep, entry, drepNames, "hit");
+        }
+        if (missingDreps.isEmpty())
+            return drepNames;
+
+        Map<String, DrepNameDao.DrepName> storedNames = this.drepNameDao.getDrepNames(
+                missingDreps.stream().map(DRepInfo::getDrepId).toList());
+        Map<String, Future<CacheEntry>> futures = new LinkedHashMap<>();
+        for (DRepInfo drep : missingDreps) {
+            DrepNameDao.DrepName stored = storedNames.get(drep.getDrepId());
+            if (stored != null) {
+                CacheEntry entry = new CacheEntry(stored.metaUrl(), stored.metaHash(), stored.name(),
+                        stored.updatedAt() + TimeUnit.SECONDS.toMillis(this.ttlSecs));
+                this.cache.put(drep.getDrepId(), entry);
+                serve(drep, entry, drepNames, "db_hit");
+                continue;
+            }
+
+            hit("miss");
+            try {
+                futures.put(drep.getDrepId(), refresh(drep));
+            } catch (RejectedExecutionException e) {
+                LOG.debug("DRep name fetch rejected: {}", e.toString());
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(this.fetchTimeoutSecs);
+        for (Map.Entry<String, Future<CacheEntry>> future : futures.entrySet()) {
+            try {
+                String name = future.getValue().get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS).name();
+                if (name != null)
+                    drepNames.put(future.getKey(), name);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                // The fetch goes on in background, the name will be served next time
+                LOG.warn("Cannot get the name of the DRep {} due to {}", future.getKey(), e.toString());
+            }
+        }
+        return drepNames;
+    }
+
+    /**
+     * Serves the name of the cached entry, refreshing it in background if stale
+     */
+    private void serve(DRepInfo drep, CacheEntry entry, Map<String, String> drepNames, String result) {
+        if (entry.name() != null)
+            drepNames.put(drep.getDrepId(), entry.name());
+
+        if (entry.isFresh(drep)) {
+            hit(result);
+            return;
+        }
+
+        hit("stale");
+        try {
+            refresh(drep);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("DRep name refresh rejected: {}", e.toString());
+        }
+    }
+
+    /**
+     * Fetches the name of the DRep, unless already being fetched
+     */
+    private Future<CacheEntry> refresh(DRepInfo drep) {
+        return this.inFlight.computeIfAbsent(drep.getDrepId(), drepId -> this.fetchExecutor.submit(
+                KoiosRequestPriority.propagate(() -> {
+                    try {
+                        return fetchDrepName(drep);
+                    } finally {
+                        this.inFlight.remove(drepId);
+                    }
+                })));
+    }
+
+    private CacheEntry fetchDrepName(DRepInfo drep) {
+        LOG.debug("Drep {} has the url {}", drep.getDrepId(), drep.getMetaUrl());
+        try {
+            var uri = AbstractCheckerTask.handleIpfsUri(new URI(drep.getMetaUrl()));
+            ResponseEntity<DrepMetadata> entity = this.restTemplate.getForEntity(uri, DrepMetadata.class);
+            if (!entity.getStatusCode().equals(HttpStatus.OK))
+                throw new IllegalStateException("Returned status code %s".formatted(entity.getStatusCode()));
+
+            var givenName = Optional.ofNullable(entity.getBody())
+                    .map(DrepMetadata::getBody)
+                    .map(Body::getGivenName)
+                    .map(Object::toString)
+                    .orElse(null);
+            LOG.debug("Got a DRep name {} for ID {}", givenName, drep.getDrepId());
+
+            this.drepNameDao.saveDrepName(new DrepNameDao.DrepName(drep.getDrepId(), drep.getMetaUrl(),
+                    drep.getMetaHash(), givenName, System.currentTimeMillis()));
+            CacheEntry entry = new CacheEntry(drep.getMetaUrl(), drep.getMetaHash(), givenName,
+                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(this.ttlSecs));
+            this.cache.put(drep.getDrepId(), entry);
+            return entry;
+        } catch (Exception e) {
+            LOG.warn("Can't get drep metadata from URL {} due to {}", drep.getMetaUrl(), e.toString());
+
+            // Keep serving the previous name, if any, retrying after a while
+            CacheEntry previous = this.cache.get(drep.getDrepId());
+            CacheEntry entry = new CacheEntry(drep.getMetaUrl(), drep.getMetaHash(),
+                    previous == null ? null : previous.name(),
+                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(this.negativeTtlSecs));
+            this.cache.put(drep.getDrepId(), entry);
+            return entry;
+        }
+    }
+
+    private void hit(String result) {
+        this.metricsHelper.incrementCounter("drep_name_cache_requests", Tag.of("result", result));
+    }
+}
@@ -32,6 +32,40 @@ public class KoiosFacade {
     @Value("${thoth.koios.api.token:#{null}}")
     private String koiosApiToken;
 
+    @Value("${thoth.koios.rate-limit.enabled:true}")
+    private boolean rateLimitEnabled;
+
+    @Value("${thoth.koios.rate-limit.requests-per-sec:10}")
+    private double rateLimitRequestsPerSec;
+
+    @Value("${thoth.koios.rate-limit.min-requests-per-sec:1}")
+    private double rateLimitMinRequestsPerSec;
+
+    @Value("${thoth.koios.rate-limit.burst:20}")
+    private int rateLimitBurst;
+
+    @Value("${thoth.koios.rate-limit.interactive-reserve:5}")
+    private int rateLimitInteractiveReserve;
+
+    private KoiosRateLimiter rateLimiter;
+
+    @Value("${thoth.koios.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${thoth.koios.cache.tip-ttl-secs:20}")
+    private long cacheTipTtlSecs;
+
+    @Value("${thoth.koios.cache.epoch-info-ttl-secs:3600}")
+    private long cacheEpochInfoTtlSecs;
+
+    @Value("${thoth.koios.cache.pool-info-ttl-secs:21600}")
+    private long cachePoolInfoTtlSecs;
+
+    @Value("${thoth.koios.cache.drep-info-ttl-secs:21600}")
+    private long cacheDrepInfoTtlSecs;
+
+    private KoiosResponseCache responseCache;
+
     @Autowired
     private MetricsHelper metricsHelper;
 
@@ -48,6 +82,23 @@ public class KoiosFacade {
             this.koiosService = new BackendServiceImpl(this.koiosEndpoint, this.koiosEndpoint);
         }
 
+        if (this.rateLimitEnabled) {
+            LOG.info("Rate limiting KOIOS requests to {} requests/sec, with burst {} and {} reserved to user commands",
+                    this.rateLimitRequestsPerSec, this.rateLimitBurst, this.rateLimitInteractiveReserve);
+            this.rateLimiter = new KoiosRateLimiter(this.rateLimitRequestsPerSec, this.rateLimitMinRequestsPerSec,
+                    this.rateLimitBurst, this.rateLimitInteractiveReserve);
+            this.koiosService = this.rateLimiter.rateLimited(this.koiosService, BackendService.class);
+        }
+
+        // The cache goes in front of the rate limiter, so that the cached responses do not consume tokens
+        if (this.cacheEnabled) {
+            LOG.info("Caching KOIOS responses: tip for {} secs, epoch info for {} secs, pool info for {} secs, drep info for {} secs",
+                    this.cacheTipTtlSecs, this.cacheEpochInfoTtlSecs, this.cachePoolInfoTtlSecs, this.cacheDrepInfoTtlSecs);
+            this.responseCache = new KoiosResponseCache(this.cacheTipTtlSecs, this.cacheEpochInfoTtlSecs,
+                    this.cachePoolInfoTtlSecs, this.cacheDrepInfoTtlSecs, this.metricsHelper);
+            this.koiosService = this.responseCache.cached(this.koiosService, BackendService.class);
+        }
+
         // Create performance samples
         performanceSampler.schedule(new TimerTask() {
             @Override
@@ -75,6 +126,11 @@ public class KoiosFacade {
                 // Update gauge metric
                 this.metricsHelper.hitGauge("koios_api_hits_per_sec", (long) apiCallsPerSecond);
                 LOG.trace("Calculated new gauge sample for koios {} hits/sec", apiCallsPerSecond);
+                if (this.responseCache != null)
+                    this.responseCache.cleanUp();
+                if (this.rateLimiter != null)
+                    this.metricsHelper.hitGauge("koios_api_rate_limit_per_sec",
+                            (long) this.rateLimiter.getCurrentRequestsPerSec());
             }
         }
     }
@@ -0,0 +1,112 @@
+package com.devpool.thothBot.koios;
+
+import com.devpool.thothBot.util.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rest.koios.client.backend.api.base.Result;
+import rest.koios.client.backend.api.base.exception.ApiException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token bucket rate limiter for all the Koios requests. Background requests can't consume the tokens reserved to the
+ * interactive ones. The rate adapts to the Koios responses: it's halved when Koios answers with 429 or 5xx, and it
+ * slowly grows back to the configured rate with the successful responses.
+ */
+public class KoiosRateLimiter {
+    private static final Logger LOG = LoggerFactory.getLogger(KoiosRateLimiter.class);
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    private final TokenBucket tokenBucket;
+    private final double maxRequestsPerSec;
+    private final double minRequestsPerSec;
+    private final double interactiveReserve;
+
+    public KoiosRateLimiter(double requestsPerSec, double minRequestsPerSec, int burst, int interactiveReserve) {
+        this.maxRequestsPerSec = requestsPerSec;
+        this.minRequestsPerSec = Math.min(minRequestsPerSec, requestsPerSec);
+        this.tokenBucket = new TokenBucket(Math.max(1, burst), requestsPerSec);
+        // Background requests must always be able to get a token
+        this.interactiveReserve = Math.max(0, Math.min(interactiveReserve, this.tokenBucket.getCapacity() - 1));
+    }
+
+    /**
+     * Waits for the permission to send a request with the given priority
+     */
+    public void acquire(KoiosRequestPriority priority) throws InterruptedException {
+        this.tokenBucket.acquire(1, priority == KoiosRequestPriority.INTERACTIVE ? 0 : this.interactiveReserve);
+    }
+
+    /**
+     * Adapts the rate to the response code: multiplicative decrease on throttling and server errors,
+     * additive increase otherwise.
+     */
+    public void onResponse(int code) {
+        double currentRate = this.tokenBucket.getRefillPerSecond();
+        if (code == HTTP_TOO_MANY_REQUESTS || code >= HTTP_SERVER_ERROR) {
+            double newRate = Math.max(this.minRequestsPerSec, currentRate / 2);
+            if (newRate < currentRate) {
+                this.tokenBucket.setRefillPerSecond(newRate);
+                LOG.warn("Koios answered with {}. Slowing down to {} requests/sec", code, newRate);
+            }
+        } else if (currentRate < this.maxRequestsPerSec) {
+            this.tokenBucket.setRefillPerSecond(Math.min(this.maxRequestsPerSec, currentRate + this.maxRequestsPerSec / 100));
+        }
+    }
+
+    public double getCurrentRequestsPerSec() {
+        return this.tokenBucket.getRefillPerSecond();
+    }
+
+    /**
+     * Wraps the given service (and the services it returns) so that every request goes through the rate limiter
+     *
+     * @param service the service interface implementation
+     * @param type    the service interface
+     * @return the rate limited service
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T rateLimited(T service, Class<T> type) {
+        Map<Method, Object> subServices = new ConcurrentHashMap<>();
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class)
+                return invoke(service, method, args);
+
+            // Services factory, like the BackendService: wrap the returned services
+            if ((args == null || args.length == 0) && method.getReturnType().isInterface()) {
+                return subServices.computeIfAbsent(method, m -> {
+                    try {
+                        return rateLimited(invoke(service, m, null), (Class<Object>) m.getReturnType());
+                    } catch (Throwable e) {
+                        throw new IllegalStateException("Cannot get the Koios service " + m.getName(), e);
+                    }
+                });
+            }
+
+            try {
+                acquire(KoiosRequestPriority.current());
+            } catch (InterruptedException e) {
+                // Every Koios request declares the ApiException: anything else would be undeclared for the caller
+                Thread.currentThread().interrupt();
+                throw new ApiException("Interrupted while waiting for the Koios rate limiter", e);
+            }
+            Object result = invoke(service, method, args);
+            if (result instanceof Result<?> koiosResult)
+                onResponse(koiosResult.getCode());
+            return result;
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.devpool.thothBot.koios;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Priority of the Koios requests issued by the current thread. Requests are {@link #BACKGROUND} unless the thread
+ * is serving a user command.
+ */
+public enum KoiosRequestPriority {
+    INTERACTIVE, BACKGROUND;
+
+    private static final ThreadLocal<KoiosRequestPriority> CURRENT = ThreadLocal.withInitial(() -> BACKGROUND);
+
+    public static KoiosRequestPriority current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the priority of the Koios requests issued by the current thread, until {@link #reset()} is called
+     */
+    public static void set(KoiosRequestPriority priority) {
+        CURRENT.set(priority);
+    }
+
+    public static void reset() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return the task running with the priority of the current thread, whatever thread runs it
+     */
+    public static <V> Callable<V> propagate(Callable<V> task) {
+        KoiosRequestPriority priority = current();
+        return () -> {
+            KoiosRequestPriority previous = current();
+            set(priority);
+            try {
+                return task.call();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * @return the task running with the priority of the current thread, whatever thread runs it
+     */
+    public static Runnable propagate(Runnable task) {
+        KoiosRequestPriority priority = current();
+        return () -> {
+            KoiosRequestPriority previous = current();
+            set(priority);
+            try {
+                task.run();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,203 @@
+package com.devpool.thothBot.koios;
+
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import com.devpool.thothBot.util.TtlCache;
+import io.micrometer.core.instrument.Tag;
+import rest.koios.client.backend.api.base.Result;
+import rest.koios.client.backend.api.epoch.model.EpochInfo;
+import rest.koios.client.backend.api.governance.model.DRepInfo;
+import rest.koios.client.backend.api.network.model.Tip;
+import rest.koios.client.backend.api.pool.model.PoolInfo;
+import rest.koios.client.backend.factory.options.Option;
+import rest.koios.client.backend.factory.options.OptionType;
+import rest.koios.client.backend.factory.options.Options;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Cache of the Koios responses of slowly changing data: the chain tip, the epochs, the pools and the DReps information.
+ * Every endpoint has its own time to live, and concurrent requests for the same data are coalesced into
+ * a single Koios request. Pools and DReps are cached one by one, so that a request only asks Koios for the missing ones.
+ * All the other Koios requests are not affected.
+ */
+public class KoiosResponseCache {
+    private static final String CHAIN_TIP = "getChainTip";
+    private static final String EPOCH_INFO = "getEpochInformationByEpoch";
+    private static final String POOL_INFO = "getPoolInformation";
+    private static final String DREP_INFO = "getDRepsInfo";
+    private static final int HTTP_OK = 200;
+
+    private final MetricsHelper metricsHelper;
+    private final TtlCache<String, Tip> tipCache;
+    private final TtlCache<Integer, EpochInfo> epochCache;
+    private final TtlCache<String, PoolInfo> poolCache;
+    private final TtlCache<String, DRepInfo> drepCache;
+
+    /**
+     * Signals a failed Koios response, that must not be cached
+     */
+    private static class FailedResponseException extends Exception {
+        private final transient Result<?> result;
+
+        FailedResponseException(Result<?> result) {
+            super(result.getResponse(), null, false, false);
+            this.result = result;
+        }
+    }
+
+    /**
+     * @param tipTtlSecs       time to live of the chain tip. Zero disables its caching
+     * @param epochInfoTtlSecs time to live of the epochs information. Zero disables its caching
+     * @param poolInfoTtlSecs  time to live of the pools information. Zero disables its caching
+     * @param drepInfoTtlSecs  time to live of the DReps information. Zero disables its caching
+     * @param metricsHelper    the metrics helper
+     */
+    public KoiosResponseCache(long tipTtlSecs, long epochInfoTtlSecs, long poolInfoTtlSecs, long drepInfoTtlSecs,
+                              MetricsHelper metricsHelper) {
+        this.metricsHelper = metricsHelper;
+        this.tipCache = tipTtlSecs > 0 ? new TtlCache<>(tipTtlSecs, TimeUnit.SECONDS) : null;
+        this.epochCache = epochInfoTtlSecs > 0 ? new TtlCache<>(epochInfoTtlSecs, TimeUnit.SECONDS) : null;
+        this.poolCache = poolInfoTtlSecs > 0 ? new TtlCache<>(poolInfoTtlSecs, TimeUnit.SECONDS) : null;
+        this.drepCache = drepInfoTtlSecs > 0 ? new TtlCache<>(drepInfoTtlSecs, TimeUnit.SECONDS) : null;
+    }
+
+    /**
+     * Removes the expired responses
+     */
+    public void cleanUp() {
+        for (TtlCache<?, ?> cache : new TtlCache<?, ?>[]{this.tipCache, this.epochCache, this.poolCache, this.drepCache}) {
+            if (cache != null)
+                cache.cleanUp();
+        }
+    }
+
+    /**
+     * Wraps the given service (and the services it returns) so that the requests to the cached endpoints
+     * are served by the cache
+     *
+     * @param service the service interface implementation
+     * @param type    the service interface
+     * @return the caching service
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T cached(T service, Class<T> type) {
+        Map<Method, Object> subServices = new ConcurrentHashMap<>();
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class)
+                return invoke(service, method, args);
+
+            // Services factory, like the BackendService: wrap the returned services
+            if ((args == null || args.length == 0) && method.getReturnType().isInterface()) {
+                return subServices.computeIfAbsent(method, m -> {
+                    try {
+                        return cached(invoke(service, m, null), (Class<Object>) m.getReturnType());
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Cannot get the Koios service " + m.getName(), e);
+                    }
+                });
+            }
+
+            return switch (method.getName()) {
+                case CHAIN_TIP -> this.tipCache == null ? invoke(service, method, args) :
+                        getSingle(this.tipCache, CHAIN_TIP, CHAIN_TIP, () -> invoke(service, method, args));
+                case EPOCH_INFO -> this.epochCache == null || args[0] == null ? invoke(service, method, args) :
+                        getSingle(this.epochCache, EPOCH_INFO, (Integer) args[0], () -> invoke(service, method, args));
+                case POOL_INFO -> this.poolCache == null || !isCacheable(args) ? invoke(service, method, args) :
+                        getMany(this.poolCache, POOL_INFO, PoolInfo::getPoolIdBech32, service, method, args);
+                case DREP_INFO -> this.drepCache == null || !isCacheable(args) ? invoke(service, method, args) :
+                        getMany(this.drepCache, DREP_INFO, DRepInfo::getDrepId, service, method, args);
+                default -> invoke(service, method, args);
+            };
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, V> Result<V> getSingle(TtlCache<K, V> cache, String endpoint, K key, ResultLoader loader) throws Exception {
+        try {
+            V value = cache.get(key, () -> successfulValue(loader.load()), lookup -> hit(endpoint, lookup));
+            return successful(value);
+        } catch (FailedResponseException e) {
+            return (Result<V>) e.result;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> Result<List<V>> getMany(TtlCache<String, V> cache, String endpoint, Function<V, String> idGetter,
+                                        Object service, Method method, Object[] args) throws Exception {
+        List<String> ids = (List<String>) args[0];
+        try {
+            Map<String, V> values = cache.getAll(ids, missingIds -> {
+                Object[] missingArgs = args.clone();
+                missingArgs[0] = missingIds;
+                List<V> loaded = successfulValue((Result<List<V>>) invoke(service, method, missingArgs));
+                Map<String, V> loadedById = new LinkedHashMap<>();
+                if (loaded != null)
+                    loaded.forEach(v -> loadedById.put(idGetter.apply(v), v));
+                return loadedById;
+            }, lookup -> hit(endpoint, lookup));
+            return successful(new ArrayList<>(values.values()));
+        } catch (FailedResponseException e) {
+            return (Result<List<V>>) e.result;
+        }
+    }
+
+    /**
+     * Pools and DReps can be cached one by one only if the request does not filter, sort or skip them
+     */
+    private static boolean isCacheable(Object[] args) {
+        if (!(args[0] instanceof List<?>))
+            return false;
+        if (args.length < 2 || args[1] == null)
+            return true;
+
+        for (Option option : ((Options) args[1]).getOptionList()) {
+            if (option.getOptionType() == OptionType.LIMIT)
+                continue;
+            if (option.getOptionType() == OptionType.OFFSET && "0".equals(option.getValue()))
+                continue;
+            return false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V successfulValue(Object result) throws FailedResponseException {
+        Result<V> koiosResult = (Result<V>) result;
+        if (!koiosResult.isSuccessful())
+            throw new FailedResponseException(koiosResult);
+        return koiosResult.getValue();
+    }
+
+    private static <V> Result<V> successful(V value) {
+        return Result.<V>builder().successful(true).code(HTTP_OK).response("OK").value(value).build();
+    }
+
+    private void hit(String endpoint, TtlCache.Lookup lookup) {
+        this.metricsHelper.incrementCounter("koios_cache_requests",
+                Tag.of("endpoint", endpoint), Tag.of("result", lookup.name().toLowerCase()));
+    }
+
+    @FunctionalInterface
+    private interface ResultLoader {
+        Object load() throws Exception;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Exception {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Error error)
+                throw error;
+            throw (Exception) e.getCause();
+        }
+    }
+}
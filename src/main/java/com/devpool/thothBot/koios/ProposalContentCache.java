@@ -0,0 +1,264 @@
+package com.devpool.thothBot.koios;
+
+import com.devpool.thothBot.dao.ProposalContentDao;
+import com.devpool.thothBot.model.model.proposal.ProposalAuthors;
+import com.devpool.thothBot.model.model.proposal.ProposalBody;
+import com.devpool.thothBot.model.model.proposal.ProposalContent;
+import com.devpool.thothBot.model.model.proposal.ProposalMetadata;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import com.devpool.thothBot.scheduler.AbstractCheckerTask;
+import com.devpool.thothBot.util.LruCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import io.micrometer.core.instrument.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import rest.koios.client.backend.api.governance.model.Proposal;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cache of the governance proposals content, resolved from the metadata anchors (often on IPFS). The anchors are
+ * content-addressed, so a resolved content is stored forever in the DB and in memory, keyed by proposal ID and
+ * metadata hash. The anchors that can't be resolved are retried only after a while.
+ */
+@Component
+public class ProposalContentCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ProposalContentCache.class);
+    private static final int MAX_GOV_ACTION_ABSTRACT_LEN = 500;
+
+    @Autowired
+    private ProposalContentDao proposalContentDao;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private MetricsHelper metricsHelper;
+
+    @Value("${thoth.proposal-content.cache.max-size:1000}")
+    private int maxSize;
+
+    @Value("${thoth.proposal-content.cache.negative-ttl-secs:600}")
+    private long negativeTtlSecs;
+
+    @Value("${thoth.proposal-content.fetch-threads:4}")
+    private int fetchThreads;
+
+    @Value("${thoth.proposal-content.fetch-timeout-secs:20}")
+    private long fetchTimeoutSecs;
+
+    private LruCache<String, CacheEntry> cache;
+    private ExecutorService fetchExecutor;
+
+    private record CacheEntry(ProposalContent content, long expiresAt) {
+    }
+
+    @PostConstruct
+    public void post() {
+        this.cache = new LruCache<>(this.maxSize);
+        this.fetchExecutor = Executors.newFixedThreadPool(this.fetchThreads,
+                new CustomizableThreadFactory("Proposal-Content-Fetcher-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.fetchExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the content of the proposal, from its inline metadata, from the cache, or by resolving its anchor
+     *
+     * @return the content. If it can't be resolved, the content has the short proposal ID as title only
+     */
+    public ProposalContent getProposalContent(Proposal proposal) throws URISyntaxException {
+        return getProposalContent(proposal.getMetaJson(), proposal.getMetaUrl(), proposal.getMetaHash(),
+                proposal.getProposalId());
+    }
+
+    /**
+     * Same as {@link #getProposalContent(Proposal)} for all the given proposals, resolving the missing anchors
+     * concurrently
+     *
+     * @return proposal ID -> content, in the same order of the given proposals
+     */
+    public Map<String, ProposalContent> getProposalContents(List<Proposal> proposals) {
+        Map<String, Future<ProposalContent>> futures = new LinkedHashMap<>();
+        for (Proposal proposal : proposals) {
+            futures.putIfAbsent(proposal.getProposalId(), this.fetchExecutor.submit(
+                    KoiosRequestPriority.propagate(() -> getProposalContent(proposal))));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(this.fetchTimeoutSecs);
+        Map<String, ProposalContent> contents = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<ProposalContent>> future : futures.entrySet()) {
+            try {
+                contents.put(future.getKey(), future.getValue().get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                contents.put(future.getKey(), defaultContent(future.getKey()));
+            } catch (ExecutionException | TimeoutException e) {
+                LOG.warn("Cannot get the content of the proposal {} due to {}", future.getKey(), e.toString());
+                contents.put(future.getKey(), defaultContent(future.getKey()));
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Resolves, in background, the anchors of the given proposals that are not cached yet
+     */
+    public void prefetch(List<Proposal> proposals) {
+        for (Proposal proposal : proposals) {
+            if (isInline(proposal.getMetaJson()) || this.cache.get(key(proposal.getProposalId(), proposal.getMetaHash())) != null)
+                continue;
+
+            try {
+                this.fetchExecutor.execute(KoiosRequestPriority.propagate(() -> {
+                    try {
+                        getProposalContent(proposal);
+                    } catch (Exception e) {
+                        LOG.debug("Cannot prefetch the content of the proposal {} due to {}",
+                                proposal.getProposalId(), e.toString());
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Proposal content prefetch rejected: {}", e.toString());
+                return;
+            }
+        }
+    }
+
+    public ProposalContent getProposalContent(JsonNode metaJson, String metaUrl, String metaHash, String proposalId)
+            throws URISyntaxException {
+        if (isInline(metaJson))
+            return parseProposalContent(metaJson, proposalId);
+
+        String key = key(proposalId, metaHash);
+        CacheEntry entry = this.cache.get(key);
+        if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+            hit(entry.expiresAt() == Long.MAX_VALUE ? "hit" : "negative_hit");
+            return entry.content();
+        }
+
+        Optional<ProposalContent> stored = this.proposalContentDao.getProposalContent(proposalId, hashOrEmpty(metaHash));
+        if (stored.isPresent()) {
+            hit("db_hit");
+            this.cache.put(key, new CacheEntry(stored.get(), Long.MAX_VALUE));
+            return stored.get();
+        }
+
+        hit("miss");
+        Optional<ProposalContent> resolved = resolveProposalContent(metaUrl, proposalId);
+        if (resolved.isEmpty()) {
+            ProposalContent content = defaultContent(proposalId);
+            this.cache.put(key, new CacheEntry(content, System.currentTimeMillis() + this.negativeTtlSecs * 1000));
+            return content;
+        }
+
+        this.proposalContentDao.addProposalContent(proposalId, hashOrEmpty(metaHash), resolved.get());
+        this.cache.put(key, new CacheEntry(resolved.get(), Long.MAX_VALUE));
+        return resolved.get();
+    }
+
+    private Optional<ProposalContent> resolveProposalContent(String metaUrl, String proposalId) throws URISyntaxException {
+        var titleDefault = defaultContent(proposalId).title();
+
+        // try resolving the URL
+        var uri = new URI(metaUrl);
+        uri = AbstractCheckerTask.handleIpfsUri(uri);
+        try {
+            ResponseEntity<ProposalMetadata> entity = restTemplate.getForEntity(uri, ProposalMetadata.class);
+            if (entity.getStatusCode() != HttpStatus.OK || entity.getBody() == null) {
+                throw new RestClientException("Returned status code %s".formatted(entity.getStatusCode()));
+            }
+
+            var title = Optional.ofNullable(entity.getBody().body())
+                    .map(ProposalBody::title).orElse(titleDefault);
+            var abstractText = Optional.ofNullable(entity.getBody().body())
+                    .map(ProposalBody::abstractValue)
+                    .map(ProposalContentCache::truncateAbstract)
+                    .orElse(null);
+
+            var authors = Optional.ofNullable(entity.getBody().authors()).orElse(List.of());
+            return Optional.of(new ProposalContent(title, abstractText,
+                    authors.stream().map(ProposalAuthors::name).toList()));
+
+        } catch (RestClientException e) {
+            LOG.info("Cannot retrieve the proposal metadata using URL {}, due to {}",
+                    uri, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static ProposalContent parseProposalContent(JsonNode metaJson, String proposalId) {
+        var titleNode = metaJson.findValue("title");
+        var abstractNode = metaJson.findValue("abstract");
+        var title = Optional.ofNullable(titleNode)
+                .map(JsonNode::textValue)
+                .orElse(defaultContent(proposalId).title());
+        var abstractText = Optional.ofNullable(abstractNode)
+                .map(JsonNode::textValue)
+                .map(ProposalContentCache::truncateAbstract)
+                .orElse(null);
+
+        // Get authors
+        var authorsNode = metaJson.findValue("authors");
+        List<String> authorNames = new ArrayList<>();
+        for (Iterator<JsonNode> it = authorsNode.elements(); it.hasNext(); ) {
+            JsonNode authorChildNode = it.next();
+            var name = Optional.ofNullable(authorChildNode.findValue("name"))
+                    .map(JsonNode::textValue);
+            name.ifPresent(authorNames::add);
+        }
+        return new ProposalContent(title, abstractText, authorNames);
+    }
+
+    private static String truncateAbstract(String s) {
+        return s.length() > MAX_GOV_ACTION_ABSTRACT_LEN ? s.substring(0, MAX_GOV_ACTION_ABSTRACT_LEN) + "..." : s;
+    }
+
+    private static ProposalContent defaultContent(String proposalId) {
+        return new ProposalContent(proposalId.substring(proposalId.length() - 8), null, null);
+    }
+
+    private static boolean isInline(JsonNode metaJson) {
+        return metaJson != null && !(metaJson instanceof NullNode);
+    }
+
+    private static String hashOrEmpty(String metaHash) {
+        return metaHash == null ? "" : metaHash;
+    }
+
+    private static String key(String proposalId, String metaHash) {
+        return proposalId + "#" + hashOrEmpty(metaHash);
+    }
+
+    private void hit(String result) {
+        this.metricsHelper.incrementCounter("proposal_content_cache_requests", Tag.of("result", result));
+    }
+}
@@ -73,10 +73,11 @@ public class MetricsHelper {
         initMeterRegistry();
 
         List<Tag> tagsList = Arrays.asList(tags);
-        Counter cachedCounter = this.countersCache.get(Arrays.toString(tags));
+        String cacheKey = counterName + tagsList;
+        Counter cachedCounter = this.countersCache.get(cacheKey);
         if (cachedCounter == null) {
             cachedCounter = this.meterRegistry.counter(METRICS_NAME_PREFIX + counterName, tagsList);
-            this.countersCache.put(tagsList.toString(), cachedCounter);
+            this.countersCache.put(cacheKey, cachedCounter);
         }
 
         cachedCounter.increment(increment);
@@ -90,11 +91,12 @@ public class MetricsHelper {
         initMeterRegistry();
 
         List<Tag> tagsList = Arrays.asList(tags);
-        Timer cachedMethodTimer = this.timersCache.get(tagsList.toString());
+        String cacheKey = timerName + tagsList;
+        Timer cachedMethodTimer = this.timersCache.get(cacheKey);
 
         if (cachedMethodTimer == null) {
             cachedMethodTimer = this.meterRegistry.timer(METRICS_NAME_PREFIX + timerName, tagsList);
-            this.timersCache.put(tagsList.toString(), cachedMethodTimer);
+            this.timersCache.put(cacheKey, cachedMethodTimer);
         }
 
         cachedMethodTimer.record(amount, timeUnit);
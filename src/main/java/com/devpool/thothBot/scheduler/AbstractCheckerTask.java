@@ -1,34 +1,29 @@
 package com.devpool.thothBot.scheduler;
 
+import com.devpool.thothBot.cluster.ClusterCoordinator;
 import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.UserRegistry;
 import com.devpool.thothBot.dao.data.User;
 import com.devpool.thothBot.koios.AssetFacade;
+import com.devpool.thothBot.koios.DrepNameCache;
 import com.devpool.thothBot.koios.KoiosFacade;
-import com.devpool.thothBot.model.model.Body;
-import com.devpool.thothBot.model.model.DrepMetadata;
-import com.devpool.thothBot.model.model.proposal.ProposalAuthors;
-import com.devpool.thothBot.model.model.proposal.ProposalBody;
+import com.devpool.thothBot.koios.ProposalContentCache;
 import com.devpool.thothBot.model.model.proposal.ProposalContent;
-import com.devpool.thothBot.model.model.proposal.ProposalMetadata;
 import com.devpool.thothBot.oracle.CoinPaprikaOracle;
+import com.devpool.thothBot.telegram.NotificationOutbox;
 import com.devpool.thothBot.util.CollectionsUtil;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.NullNode;
 import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 import rest.koios.client.backend.api.account.model.AccountAsset;
 import rest.koios.client.backend.api.account.model.AccountInfo;
 import rest.koios.client.backend.api.address.model.AddressAsset;
 import rest.koios.client.backend.api.base.Result;
 import rest.koios.client.backend.api.base.common.Asset;
 import rest.koios.client.backend.api.base.exception.ApiException;
+import rest.koios.client.backend.api.governance.model.Proposal;
 import rest.koios.client.backend.api.pool.model.PoolInfo;
 import rest.koios.client.backend.factory.options.Limit;
 import rest.koios.client.backend.factory.options.Offset;
@@ -51,6 +46,7 @@ public abstract class AbstractCheckerTask {
 
     protected static final long DEFAULT_PAGINATION_SIZE = 1000;
     public static final double LOVELACE = 1000000.0;
+    public static final int ADA_DECIMALS = 6;
     public static final String ADA_SYMBOL = " " + '\u20B3';
     public static final String CARDANO_SCAN_STAKE_KEY = "https://cardanoscan.io/stakekey/";
     public static final String CARDANO_SCAN_ADDR_KEY = "https://cardanoscan.io/address/";
@@ -62,11 +58,13 @@ public abstract class AbstractCheckerTask {
     protected static final DateTimeFormatter TX_DATETIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy, hh:mm a");
     protected static final String IPFS_SCHEME = "ipfs";
     protected static final String IPFS_HTTP_URI = "https://c-ipfs-gw.nmkr.io/ipfs/%s";
-    private static final int MAX_GOV_ACTION_ABSTRACT_LEN = 500;
 
     @Autowired
     protected UserDao userDao;
 
+    @Autowired
+    protected UserRegistry userRegistry;
+
     @Autowired
     protected KoiosFacade koiosFacade;
     @Autowired
@@ -76,7 +74,13 @@ public abstract class AbstractCheckerTask {
     @Value("${thoth.users-batch-size:100}")
     protected Integer usersBatchSize;
     @Autowired
-    protected RestTemplate restTemplate;
+    protected NotificationOutbox notificationOutbox;
+    @Autowired
+    protected ProposalContentCache proposalContentCache;
+    @Autowired
+    protected DrepNameCache drepNameCache;
+    @Autowired
+    protected ClusterCoordinator clusterCoordinator;
 
     protected Timer execTimer;
 
@@ -228,30 +232,7 @@ public abstract class AbstractCheckerTask {
                                     (DREP_HASH_PREFIX))
                             .collect(Collectors.toList()), null);
             if (drepResp.isSuccessful()) {
-                for (var drep : drepResp.getValue()) {
-                    var drepUrl = drep.getMetaUrl();
-                    if (drepUrl != null) {
-                        LOG.debug("Drep {} has the url {}", drep.getDrepId(), drepUrl);
-
-                        try {
-                            var uri = new URI(drepUrl);
-                            uri = handleIpfsUri(uri);
-                            ResponseEntity<DrepMetadata> entity = this.restTemplate.getForEntity(uri, DrepMetadata.class);
-                            var givenName = Optional.ofNullable(entity.getBody())
-                                    .map(DrepMetadata::getBody)
-                                    .map(Body::getGivenName)
-                                    .map(Object::toString)
-                                    .orElse(null);
-
-                            if (entity.getStatusCode().equals(HttpStatus.OK) && givenName != null) {
-                                LOG.debug("Got a DRep name {} for ID {}", givenName, drep.getDrepId());
-                                drepNames.put(drep.getDrepId(), givenName);
-                            }
-                        } catch (Exception e) {
-                            LOG.warn("Can't get drep metadata from URL {} due to {}", drepUrl, e.toString());
-                        }
-                    }
-                }
+                drepNames.putAll(this.drepNameCache.getDrepNames(drepResp.getValue()));
             } else
                 LOG.warn("Cannot retrieve drep information due to {}", drepResp.getResponse());
         } catch (ApiException e) {
@@ -261,7 +242,7 @@ public abstract class AbstractCheckerTask {
         return drepNames;
     }
 
-    protected URI handleIpfsUri(URI uri) throws URISyntaxException {
+    public static URI handleIpfsUri(URI uri) throws URISyntaxException {
         if (uri.getHost().equals("ipfs.io")) {
             var ipsHash = uri.getPath().substring(uri.getPath().lastIndexOf('/')+1);
             return new URI(IPFS_HTTP_URI.formatted(ipsHash));
@@ -331,57 +312,7 @@ public abstract class AbstractCheckerTask {
         return allPoolIdsStakingAddresses;
     }
 
-    protected ProposalContent getProposalContent(JsonNode metaJson, String metaUrl, String proposalId) throws URISyntaxException {
-        var titleDefault = proposalId.substring(proposalId.length() - 8);
-        if (metaJson != null && !(metaJson instanceof NullNode)) {
-            var titleNode = metaJson.findValue("title");
-            var abstractNode = metaJson.findValue("abstract");
-            var title = Optional.ofNullable(titleNode)
-                    .map(JsonNode::textValue)
-                    .orElse(titleDefault);
-            var abstractText = Optional.ofNullable(abstractNode)
-                    .map(JsonNode::textValue)
-                    .map(s -> s.length() > MAX_GOV_ACTION_ABSTRACT_LEN ?
-                            s.substring(0, MAX_GOV_ACTION_ABSTRACT_LEN) + "..." : s)
-                    .orElse(null);
-
-            // Get authors
-            var authorsNode = metaJson.findValue("authors");
-            List<String> authorNames = new ArrayList<>();
-            for (Iterator<JsonNode> it = authorsNode.elements(); it.hasNext(); ) {
-                JsonNode authorChildNode = it.next();
-                var name = Optional.ofNullable(authorChildNode.findValue("name"))
-                        .map(JsonNode::textValue);
-                name.ifPresent(authorNames::add);
-            }
-            return new ProposalContent(title, abstractText, authorNames);
-        }
-
-        // try resolving the URL
-        var uri = new URI(metaUrl);
-        uri = handleIpfsUri(uri);
-        try {
-            ResponseEntity<ProposalMetadata> entity = restTemplate.getForEntity(uri, ProposalMetadata.class);
-            if (entity.getStatusCode() != HttpStatus.OK || entity.getBody() == null) {
-                throw new RestClientException("Returned status code %s".formatted(entity.getStatusCode()));
-            }
-
-            var title = Optional.ofNullable(entity.getBody().body())
-                    .map(ProposalBody::title).orElse(titleDefault);
-            var abstractText = Optional.ofNullable(entity.getBody().body())
-                    .map(ProposalBody::abstractValue)
-                    .map(s -> s.length() > MAX_GOV_ACTION_ABSTRACT_LEN ?
-                            s.substring(0, MAX_GOV_ACTION_ABSTRACT_LEN) + "..." : s)
-                    .orElse(null);
-
-            var authors = Optional.ofNullable(entity.getBody().authors()).orElse(List.of());
-            return new ProposalContent(title, abstractText,
-                    authors.stream().map(ProposalAuthors::name).toList());
-
-        } catch (RestClientException e) {
-            LOG.info("Cannot retrieve the proposal metadata using URL {}, due to {}",
-                    uri, e.getMessage());
-            return new ProposalContent(titleDefault, null, null);
-        }
+    protected ProposalContent getProposalContent(Proposal proposal) throws URISyntaxException {
+        return this.proposalContentCache.getProposalContent(proposal);
     }
 }
@@ -0,0 +1,228 @@
+package com.devpool.thothBot.scheduler;
+
+import rest.koios.client.backend.api.base.common.Asset;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * The assets balance of a TX participant: the quantities received (positive) and sent (negative), by fingerprint.
+ * The quantities are exact fixed-point amounts, in the smallest unit of the asset, scaled by its decimals.
+ * They are kept in primitive arrays, in insertion order, with an open addressing index on the fingerprints,
+ * so that summing the inputs and outputs of a TX does not box nor lose precision. The Cardano quantities are unsigned
+ * 64 bits: the rare balances not fitting a long fall back to a {@link BigInteger}.
+ */
+public class AssetDeltas {
+    private static final int MIN_CAPACITY = 8;
+
+    private String[] fingerprints = new String[MIN_CAPACITY];
+    private Asset[] assets = new Asset[MIN_CAPACITY];
+    private long[] quantities = new long[MIN_CAPACITY];
+    // Entry index -> balance not fitting the long quantity, allocated at the first of them
+    private BigInteger[] largeQuantities;
+    // fingerprint hash slot -> entry index + 1. Zero is an empty slot
+    private int[] index = new int[MIN_CAPACITY * 2];
+    private int size = 0;
+
+    /**
+     * Adds the quantity of the asset, received by the participant
+     */
+    public void add(Asset asset, long quantity) {
+        int entry = entryOf(asset);
+        if (!isLarge(entry)) {
+            try {
+                this.quantities[entry] = Math.addExact(this.quantities[entry], quantity);
+                return;
+            } catch (ArithmeticException e) {
+                // Beyond the long range: falls back to the BigInteger
+            }
+        }
+        setQuantity(entry, getLargeQuantity(entry).add(BigInteger.valueOf(quantity)));
+    }
+
+    /**
+     * Subtracts the quantity of the asset, sent by the participant
+     */
+    public void subtract(Asset asset, long quantity) {
+        int entry = entryOf(asset);
+        if (!isLarge(entry)) {
+            try {
+                this.quantities[entry] = Math.subtractExact(this.quantities[entry], quantity);
+                return;
+            } catch (ArithmeticException e) {
+                // Beyond the long range: falls back to the BigInteger
+            }
+        }
+        setQuantity(entry, getLargeQuantity(entry).subtract(BigInteger.valueOf(quantity)));
+    }
+
+    /**
+     * Same as {@link #add(Asset, long)}, with the quantity as returned by Koios, up to the unsigned 64 bits
+     *
+     * @throws NumberFormatException if the quantity is not a number
+     */
+    public void add(Asset asset, String quantity) {
+        try {
+            add(asset, Long.parseLong(quantity));
+        } catch (NumberFormatException e) {
+            int entry = entryOf(asset);
+            setQuantity(entry, getLargeQuantity(entry).add(new BigInteger(quantity)));
+        }
+    }
+
+    /**
+     * Same as {@link #subtract(Asset, long)}, with the quantity as returned by Koios, up to the unsigned 64 bits
+     *
+     * @throws NumberFormatException if the quantity is not a number
+     */
+    public void subtract(Asset asset, String quantity) {
+        try {
+            subtract(asset, Long.parseLong(quantity));
+        } catch (NumberFormatException e) {
+            int entry = entryOf(asset);
+            setQuantity(entry, getLargeQuantity(entry).subtract(new BigInteger(quantity)));
+        }
+    }
+
+    /**
+     * @return the number of assets, including the ones with a zero balance
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param entry the entry index, from zero to {@link #size()} excluded
+     * @return the first asset added with the fingerprint of the entry
+     */
+    public Asset getAsset(int entry) {
+        return this.assets[entry];
+    }
+
+    /**
+     * @throws ArithmeticException if the balance does not fit a long, see {@link #getLargeQuantity(int)}
+     */
+    public long getQuantity(int entry) {
+        if (isLarge(entry))
+            throw new ArithmeticException("The balance of " + this.fingerprints[entry] + " does not fit a long");
+        return this.quantities[entry];
+    }
+
+    /**
+     * @return the balance of the entry, whatever its size
+     */
+    public BigInteger getLargeQuantity(int entry) {
+        return isLarge(entry) ? this.largeQuantities[entry] : BigInteger.valueOf(this.quantities[entry]);
+    }
+
+    /**
+     * @return true if the balance of the entry does not fit a long
+     */
+    public boolean isLarge(int entry) {
+        return this.largeQuantities != null && this.largeQuantities[entry] != null;
+    }
+
+    /**
+     * @return -1, 0 or 1 as the balance of the entry is negative, zero or positive
+     */
+    public int signum(int entry) {
+        return isLarge(entry) ? this.largeQuantities[entry].signum() : Long.signum(this.quantities[entry]);
+    }
+
+    public int getDecimals(int entry) {
+        Integer decimals = this.assets[entry].getDecimals();
+        return decimals == null ? 0 : decimals;
+    }
+
+    /**
+     * @return the balance of the given fingerprint, zero if not found
+     * @throws ArithmeticException if the balance does not fit a long
+     */
+    public long getQuantity(String fingerprint) {
+        int slot = slotOf(fingerprint);
+        return this.index[slot] == 0 ? 0 : getQuantity(this.index[slot] - 1);
+    }
+
+    public boolean hasSent() {
+        for (int i = 0; i < this.size; i++) {
+            if (signum(i) < 0) return true;
+        }
+        return false;
+    }
+
+    public boolean hasReceived() {
+        for (int i = 0; i < this.size; i++) {
+            if (signum(i) > 0) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < this.size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(this.fingerprints[i]).append('=').append(getLargeQuantity(i));
+        }
+        return sb.append('}').toString();
+    }
+
+    private void setQuantity(int entry, BigInteger quantity) {
+        if (quantity.bitLength() < Long.SIZE) {
+            this.quantities[entry] = quantity.longValue();
+            if (this.largeQuantities != null)
+                this.largeQuantities[entry] = null;
+            return;
+        }
+
+        if (this.largeQuantities == null)
+            this.largeQuantities = new BigInteger[this.fingerprints.length];
+        this.largeQuantities[entry] = quantity;
+    }
+
+    private int entryOf(Asset asset) {
+        int slot = slotOf(asset.getFingerprint());
+        if (this.index[slot] != 0)
+            return this.index[slot] - 1;
+
+        if (this.size == this.fingerprints.length) {
+            grow();
+            slot = slotOf(asset.getFingerprint());
+        }
+
+        int entry = this.size++;
+        this.fingerprints[entry] = asset.getFingerprint();
+        this.assets[entry] = asset;
+        this.index[slot] = entry + 1;
+        return entry;
+    }
+
+    /**
+     * @return the slot of the fingerprint, or the empty slot where it would be added
+     */
+    private int slotOf(String fingerprint) {
+        int mask = this.index.length - 1;
+        int slot = mix(fingerprint.hashCode()) & mask;
+        while (this.index[slot] != 0 && !this.fingerprints[this.index[slot] - 1].equals(fingerprint)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = this.fingerprints.length * 2;
+        this.fingerprints = Arrays.copyOf(this.fingerprints, capacity);
+        this.assets = Arrays.copyOf(this.assets, capacity);
+        this.quantities = Arrays.copyOf(this.quantities, capacity);
+        if (this.largeQuantities != null)
+            this.largeQuantities = Arrays.copyOf(this.largeQuantities, capacity);
+        this.index = new int[capacity * 2];
+        for (int i = 0; i < this.size; i++) {
+            this.index[slotOf(this.fingerprints[i])] = i + 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
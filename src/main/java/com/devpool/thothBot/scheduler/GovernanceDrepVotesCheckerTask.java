@@ -1,11 +1,13 @@
 package com.devpool.thothBot.scheduler;
 
+import com.devpool.thothBot.dao.CheckpointBatch;
+import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.UsersShard;
 import com.devpool.thothBot.dao.data.User;
 import com.devpool.thothBot.model.model.proposal.ProposalContent;
 import com.devpool.thothBot.monitoring.MetricsHelper;
-import com.devpool.thothBot.telegram.TelegramFacade;
 import com.devpool.thothBot.util.CollectionsUtil;
-import com.vdurmont.emoji.EmojiParser;
+import com.devpool.thothBot.util.MessageTemplates;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,7 +32,6 @@ import java.util.stream.Collectors;
 public class GovernanceDrepVotesCheckerTask extends AbstractCheckerTask implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(GovernanceDrepVotesCheckerTask.class);
     private static final String FIELD_BLOCK_TIME = "block_time";
-    private final TelegramFacade telegramFacade;
     private final MetricsHelper metricsHelper;
 
     @PostConstruct
@@ -41,8 +42,7 @@ public class GovernanceDrepVotesCheckerTask extends AbstractCheckerTask implemen
                 .publishPercentiles(0.9, 0.95, 0.99));
     }
 
-    public GovernanceDrepVotesCheckerTask(TelegramFacade telegramFacade, MetricsHelper metricsHelper) {
-        this.telegramFacade = telegramFacade;
+    public GovernanceDrepVotesCheckerTask(MetricsHelper metricsHelper) {
         this.metricsHelper = metricsHelper;
     }
 
@@ -51,7 +51,7 @@ public class GovernanceDrepVotesCheckerTask extends AbstractCheckerTask implemen
         execTimer.record(() -> {
             LOG.info("Checking for new DRep governance votes");
             Map<String, ProposalContent> proposalsContent = new HashMap<>();
-            Optional<List<Proposal>> allProposals = Optional.empty();
+            Map<String, Proposal> proposalsById = new HashMap<>();
             try {
                 var tip = koiosFacade.getKoiosService().getNetworkService().getChainTip();
                 if (!tip.isSuccessful()) {
@@ -67,21 +67,39 @@ public class GovernanceDrepVotesCheckerTask extends AbstractCheckerTask implemen
                     if (!proposals.isSuccessful()) {
                         LOG.warn("Cannot get proposals: {}, {}", proposals.getCode(), proposals.getResponse());
                     } else {
-                        allProposals = Optional.of(proposals.getValue());
+                        proposals.getValue().forEach(p -> proposalsById.put(p.getProposalId(), p));
+                        // Warm up the contents of the new proposals, for the notifications and the commands
+                        this.proposalContentCache.prefetch(proposals.getValue());
                     }
                 }
 
-                LOG.info("Checking governance votes for {} wallets", this.userDao.getUsers().size());
+                LOG.info("Checking governance votes for {} wallets", this.userDao.countSubscriptions());
                 // Filter out non-staking users
-                Iterator<List<User>> batchIterator = CollectionsUtil.batchesList(
-                        userDao.getUsers().stream().filter(User::isStakeAddress).toList(),
-                        this.usersBatchSize).iterator();
+                UsersShard shard = this.clusterCoordinator.getShard();
+                Iterator<List<User>> batchIterator = this.userDao.getUsersBatches(
+                        UserDao.UsersFilter.STAKE_ADDRESSES, this.usersBatchSize, shard).iterator();
 
+                // DrepAddr -> users delegating to it
+                Map<String, List<User>> drepFollowers = new LinkedHashMap<>();
                 while (batchIterator.hasNext()) {
+                    // Stopped once the shard changed, the new owner processing the users
+                    if (!this.clusterCoordinator.ownsShard(shard))
+                        return;
+
                     List<User> usersBatch = batchIterator.next();
                     LOG.debug("Processing users batch size {}", usersBatch.size());
 
-                    processUserBatch(usersBatch, proposalsContent, allProposals);
+                    collectDrepFollowers(usersBatch, drepFollowers);
+                }
+                LOG.debug("Found {} dreps followed by {} user(s)", drepFollowers.size(),
+                        drepFollowers.values().stream().mapToInt(List::size).sum());
+
+                try (CheckpointBatch checkpoints = this.userDao.newCheckpointBatch()) {
+                    Iterator<List<String>> drepsIterator = CollectionsUtil.batchesList(
+                            List.copyOf(drepFollowers.keySet()), this.usersBatchSize).iterator();
+                    while (drepsIterator.hasNext() && this.clusterCoordinator.ownsShard(shard)) {
+                        processDrepBatch(drepsIterator.next(), drepFollowers, proposalsContent, proposalsById, checkpoints);
+                    }
                 }
             } catch (Exception e) {
                 LOG.error("Caught throwable while checking governance votes", e);
@@ -91,12 +109,7 @@ public class GovernanceDrepVotesCheckerTask extends AbstractCheckerTask implemen
         });
     }
 
-    private void processUserBatch(List<User> usersBatch, Map<String, ProposalContent> proposalsContent, Optional<List<Proposal>> proposals) {
-        // 1. for the batch, grab the cached info and get the drep they delegate (if any)
-        // 2. for each user, check the drep votes (cache it locally in case more users are delegating to the same drep)
-        // 2.1 check if there are new votes since last time we checked (last gov votes block time)
-        // 2.2 if so, notify the user
-
+    private void collectDrepFollowers(List<User> usersBatch, Map<String, List<User>> drepFollowers) {
         Options defaultOpts = Options.builder()
                 .option(Limit.of(DEFAULT_PAGINATION_SIZE))
                 .option(Offset.of(0))
@@ -106,7 +119,7 @@ public class GovernanceDrepVotesCheckerTask extends AbstractCheckerTask implemen
         Map<String, String> batchDreps;
         try {
             var response = koiosFacade.getKoiosService().getAccountService().getCachedAccountInformation(
-                    usersBatch.stream().map(User::getAddress).toList(), defaultOpts);
+                    usersBatch.stream().map(User::getAddress).distinct().toList(), defaultOpts);
 
             if (!response.isSuccessful())
                 throw new ApiException("Response was not successful.");
@@ -126,68 +139,99 @@ public class GovernanceDrepVotesCheckerTask extends AbstractCheckerTask implemen
             return; // We'll try again later
         }
 
-        var drepNames = super.getDrepNames(batchDreps.values().stream().distinct().toList());
-        var handles = super.getAdaHandleForAccount(batchDreps.keySet().toArray(new String[0]));
-        for (var user : batchDreps.entrySet()) {
-            var drepName = drepNames.get(user.getValue());
-            LOG.trace("Processing votes for user {} with drep {} (name {})",
-                    user.getKey(), user.getValue(), drepName);
+        for (User user : usersBatch) {
+            var drepId = batchDreps.get(user.getAddress());
+            if (drepId != null)
+                drepFollowers.computeIfAbsent(drepId, k -> new ArrayList<>()).add(user);
+        }
+    }
+
+    private void processDrepBatch(List<String> drepIds, Map<String, List<User>> drepFollowers,
+                                  Map<String, ProposalContent> proposalsContent, Map<String, Proposal> proposalsById,
+                                  CheckpointBatch checkpoints) {
+        // 1. for every drep, get the votes since the oldest last gov votes block time of its followers (once per drep)
+        // 2. for each follower, keep the votes newer than its last gov votes block time
+        // 2.1 if any, notify the user
+
+        var drepNames = super.getDrepNames(drepIds);
+        var handles = super.getAdaHandleForAccount(drepIds.stream()
+                .flatMap(d -> drepFollowers.get(d).stream())
+                .map(User::getAddress).distinct().toArray(String[]::new));
+
+        for (String drepId : drepIds) {
+            var drepName = drepNames.get(drepId);
+            var followers = drepFollowers.get(drepId);
+            long fromBlockTime = followers.stream().mapToLong(User::getLastGovVotesBlockTime).min().orElseThrow();
+            LOG.trace("Processing votes for drep {} (name {}) followed by {} user(s), since {}",
+                    drepId, drepName, followers.size(), fromBlockTime);
 
-            var userEntity = usersBatch.stream()
-                    .filter(u -> u.getAddress().equals(user.getKey())).findAny().orElseThrow();
             try {
                 long currentTs = System.currentTimeMillis() / 1000;
+                var drepVotes = getDrepVotes(drepId, fromBlockTime);
+                if (drepVotes.isEmpty()) continue;
 
-                // We get the new votes only
-                var filteredOptions = Options.builder()
-                        .option(Limit.of(DEFAULT_PAGINATION_SIZE))
-                        .option(Offset.of(0))
-                        .option(Filter.of(FIELD_BLOCK_TIME, FilterType.GT, userEntity.getLastGovVotesBlockTime().toString()))
-                        .build();
-                var response = koiosFacade.getKoiosService().getGovernanceService().getDRepsVotes(user.getValue(), filteredOptions);
-                if (!response.isSuccessful())
-                    throw new ApiException("response was not successful.");
+                // Get the proposal content (cached)
+                for (String proposalId : drepVotes.stream().map(DRepVote::getProposalId).distinct().toList()) {
+                    var prop = proposalsById.get(proposalId);
+                    if (prop == null || proposalsContent.containsKey(proposalId)) continue;
 
-                var drepVotes = response.getValue();
+                    try {
+                        var content = getProposalContent(prop);
+                        proposalsContent.put(proposalId, content);
+                    } catch (URISyntaxException e) {
+                        LOG.warn("URI syntax error for URL {} and proposalID {}: {}",
+                                prop.getMetaUrl(), proposalId, e.toString());
+                    }
+                }
+
+                for (User follower : followers) {
+                    // We notify the new votes only
+                    var userVotes = drepVotes.stream()
+                            .filter(v -> v.getBlockTime() > follower.getLastGovVotesBlockTime())
+                            .toList();
+                    if (userVotes.isEmpty()) continue;
 
-                if (!drepVotes.isEmpty()) {
                     LOG.debug("The user {} follows the drep {} (name {}) and got {} new vote(s)",
-                            user.getKey(), user.getValue(), drepName, drepVotes.size());
-
-                    // Get the proposal content (cached)
-                    for (String proposalId : drepVotes.stream().map(DRepVote::getProposalId).toList()) {
-                        if (!proposalsContent.containsKey(proposalId)) {
-                            var prop = proposals
-                                    .orElse(List.of())
-                                    .stream()
-                                    .filter(p -> p.getProposalId().equals(proposalId)).findAny();
-
-                            if (prop.isEmpty()) continue;
-
-                            try {
-                                var content = getProposalContent(prop.get().getMetaJson(), prop.get().getMetaUrl(), proposalId);
-                                proposalsContent.put(proposalId, content);
-                            } catch (URISyntaxException e) {
-                                LOG.warn("URI syntax error for URL {} and proposalID {}: {}",
-                                        prop.get().getMetaUrl(), proposalId, e.toString());
-                            }
-                        }
-                    }
-                    userDao.updateUserGovVotesBlockTime(userEntity.getId(), currentTs);
-                    renderUserNotification(userEntity, user.getValue(), drepName, drepVotes, handles, proposalsContent);
+                            follower.getAddress(), drepId, drepName, userVotes.size());
+
+                    String message = renderUserNotification(follower, drepId, drepName, userVotes, handles, proposalsContent);
+                    this.notificationOutbox.send(follower.getChatId(), message,
+                            () -> checkpoints.updateUserGovVotesBlockTime(follower.getId(), currentTs));
                 }
             } catch (ApiException e) {
-                LOG.warn("Can't check governance votes for user {} and drep {} due to {}",
-                        user.getKey(), user.getValue(), e, e);
+                LOG.warn("Can't check governance votes for drep {} followed by {} user(s) due to {}",
+                        drepId, followers.size(), e, e);
             }
         }
     }
 
-    private void renderUserNotification(User user, String drepId, String drepName,
+    private List<DRepVote> getDrepVotes(String drepId, long fromBlockTime) throws ApiException {
+        List<DRepVote> drepVotes = new ArrayList<>();
+        List<DRepVote> page;
+        long offset = 0;
+        do {
+            var filteredOptions = Options.builder()
+                    .option(Limit.of(DEFAULT_PAGINATION_SIZE))
+                    .option(Offset.of(offset))
+                    .option(Filter.of(FIELD_BLOCK_TIME, FilterType.GT, Long.toString(fromBlockTime)))
+                    .build();
+            var response = koiosFacade.getKoiosService().getGovernanceService().getDRepsVotes(drepId, filteredOptions);
+            if (!response.isSuccessful())
+                throw new ApiException("response was not successful.");
+
+            page = response.getValue();
+            drepVotes.addAll(page);
+            offset += DEFAULT_PAGINATION_SIZE;
+        } while (page.size() == DEFAULT_PAGINATION_SIZE);
+
+        return drepVotes;
+    }
+
+    private String renderUserNotification(User user, String drepId, String drepName,
                                         List<DRepVote> drepVotes, Map<String, String> handles,
                                         Map<String, ProposalContent> proposalsContent) {
         StringBuilder sb = new StringBuilder();
-        sb.append(EmojiParser.parseToUnicode(":memo: The DRep <a href=\""))
+        sb.append(MessageTemplates.emoji(":memo: The DRep <a href=\""))
                 .append(GOV_TOOLS_DREP)
                 .append(drepId)
                 .append("\">")
@@ -205,22 +249,22 @@ public class GovernanceDrepVotesCheckerTask extends AbstractCheckerTask implemen
                     .orElse(new ProposalContent(vote.getProposalId().substring(vote.getProposalId().length() - 8),
                             null, null));
 
-            sb.append(EmojiParser.parseToUnicode(":page_with_curl: "))
+            sb.append(MessageTemplates.emoji(":page_with_curl: "))
                     .append("Action <a href=\"")
                     .append(String.format(GOV_TOOLS_PROPOSAL, vote.getProposalId()))
                     .append("\">")
                     .append(content.title())
                     .append("</a>\n")
-                    .append(EmojiParser.parseToUnicode(" :black_nib: "))
+                    .append(MessageTemplates.emoji(" :black_nib: "))
                     .append(vote.getVote())
                     .append(" (<i>")
                     .append(TX_DATETIME_FORMATTER.format(LocalDateTime.ofEpochSecond(vote.getBlockTime(), 0, ZoneOffset.UTC)))
                     .append("</i>)\n\n");
         }
 
-        this.telegramFacade.sendMessageTo(user.getChatId(), sb.toString());
         if (LOG.isTraceEnabled()) {
             LOG.trace("Sending telegram message for DREP governance votes: {}", sb);
         }
+        return sb.toString();
     }
 }
@@ -1,9 +1,10 @@
 package com.devpool.thothBot.scheduler;
 
 import com.devpool.thothBot.dao.data.User;
+import com.devpool.thothBot.model.model.proposal.ProposalContent;
 import com.devpool.thothBot.monitoring.MetricsHelper;
 import com.devpool.thothBot.telegram.TelegramFacade;
-import com.vdurmont.emoji.EmojiParser;
+import com.devpool.thothBot.util.MessageTemplates;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,9 +17,10 @@ import rest.koios.client.backend.factory.options.Options;
 import rest.koios.client.backend.factory.options.filters.Filter;
 import rest.koios.client.backend.factory.options.filters.FilterType;
 
-import java.net.URISyntaxException;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -46,11 +48,9 @@ public class GovernanceNewProposalsTask extends AbstractCheckerTask implements R
     public void run() {
         execTimer.record(() -> {
             try {
-                LOG.info("Checking governance new proposals for {} wallets", this.userDao.getUsers().size());
+                LOG.info("Checking governance new proposals for {} wallets", this.userDao.countSubscriptions());
                 // Filter out unique users (unique chat-ids)
-                var uniqueUsers = userDao.getUsers().stream()
-                        .collect(Collectors.toMap(User::getChatId, u -> u, (existing, replacement) -> existing))
-                        .values().stream().toList();
+                var uniqueUsers = this.userRegistry.snapshot().getUniqueChatUsers();
 
                 // Grab last actions
                 Long maxBlockTimeUsers = uniqueUsers.stream()
@@ -71,13 +71,7 @@ public class GovernanceNewProposalsTask extends AbstractCheckerTask implements R
                     return;
                 }
 
-                for (User user : uniqueUsers) {
-                    try {
-                        notifyUser(user, proposalsResp.getValue());
-                    } catch (Exception e) {
-                        LOG.warn("Cannot notify the user {} of new proposals", user.getChatId(), e);
-                    }
-                }
+                notifyUsers(uniqueUsers, proposalsResp.getValue());
             } catch (Exception e) {
                 LOG.error("Caught throwable while checking governance votes", e);
             } finally {
@@ -86,42 +80,59 @@ public class GovernanceNewProposalsTask extends AbstractCheckerTask implements R
         });
     }
 
-    private void notifyUser(User user, List<Proposal> proposals) throws URISyntaxException {
+    /**
+     * Renders every proposal message once and broadcasts it to all the chats not notified about it yet.
+     * The chats with the same governance action checkpoint get the very same messages, so they are notified
+     * and checkpointed together.
+     */
+    private void notifyUsers(List<User> users, List<Proposal> proposals) {
+        if (proposals.isEmpty()) return;
+
+        Map<String, ProposalContent> contents = this.proposalContentCache.getProposalContents(proposals);
+        Map<Proposal, String> renderedProposals = new LinkedHashMap<>();
         for (Proposal proposal : proposals) {
-            var sb = new StringBuilder();
-            if (proposal.getBlockTime() <= user.getLastGovActionBlockTime()) {
-                LOG.debug("Skipping proposal {} notification, for user with chat-id {}",
-                        proposal.getProposalId(), user.getChatId());
-                continue;
-            } else {
-                LOG.debug("Notifying user {} about new proposal {}", user.getChatId(), proposal.getProposalId());
-            }
+            renderedProposals.put(proposal, renderProposal(proposal, contents.get(proposal.getProposalId())));
+        }
 
-            // build notification
-            var proposalContent = getProposalContent(proposal.getMetaJson(), proposal.getMetaUrl(), proposal.getProposalId());
-            sb.append(EmojiParser.parseToUnicode(":page_with_curl: New proposal "))
-                    .append("<a href=\"")
-                    .append(String.format(GOV_TOOLS_PROPOSAL, proposal.getProposalId()))
-                    .append("\">")
-                    .append(proposalContent.title())
-                    .append("</a>\n")
-                    .append(EmojiParser.parseToUnicode(":label: "))
-                    .append(proposal.getProposalType()).append("\n")
-                    .append(EmojiParser.parseToUnicode(":hourglass_flowing_sand: Expiring epoch "))
-                    .append(proposal.getExpiration() == null ? "unknown" : proposal.getExpiration());
-
-            if (!Optional.ofNullable(proposalContent.authors()).orElse(List.of()).isEmpty()) {
-                sb.append(EmojiParser.parseToUnicode("\n:black_nib: Authors "))
-                        .append(String.join(",", proposalContent.authors()));
-            }
-            sb.append(EmojiParser.parseToUnicode("\n:memo: <strong>Abstract</strong>\n<i>"))
-                    .append(Optional.ofNullable(proposalContent.abstractText()).orElse("Abstract not found")).append("</i>");
+        Map<Long, List<Long>> chatsByBlockTime = users.stream().collect(Collectors.groupingBy(
+                User::getLastGovActionBlockTime, Collectors.mapping(User::getChatId, Collectors.toList())));
 
-            telegramFacade.sendMessageTo(user.getChatId(), sb.toString());
+        // Update the latest block time to avoid spamming the users
+        long latestBlockTime = proposals.stream().mapToLong(Proposal::getBlockTime).max().orElseThrow();
+        for (Map.Entry<Long, List<Long>> chats : chatsByBlockTime.entrySet()) {
+            List<String> messages = renderedProposals.entrySet().stream()
+                    .filter(e -> e.getKey().getBlockTime() > chats.getKey())
+                    .map(Map.Entry::getValue)
+                    .toList();
+            LOG.debug("Notifying {} chat(s) about {} new proposal(s)", chats.getValue().size(), messages.size());
+            try {
+                notificationOutbox.broadcast(chats.getValue(), messages,
+                        () -> this.userDao.updateUsersGovActionBlockTime(chats.getValue(), latestBlockTime));
+            } catch (Exception e) {
+                LOG.warn("Cannot notify the chats {} of new proposals", chats.getValue(), e);
+            }
         }
+    }
 
-        // Update the latest block time to avoid spamming the user
-        var latestBlockTime = proposals.stream().map(Proposal::getBlockTime).max(Comparator.naturalOrder());
-        latestBlockTime.ifPresent(bt -> userDao.updateUserGovActionBlockTime(user.getChatId(), bt));
+    private static String renderProposal(Proposal proposal, ProposalContent proposalContent) {
+        var sb = new StringBuilder();
+        sb.append(MessageTemplates.emoji(":page_with_curl: New proposal "))
+                .append("<a href=\"")
+                .append(String.format(GOV_TOOLS_PROPOSAL, proposal.getProposalId()))
+                .append("\">")
+                .append(proposalContent.title())
+                .append("</a>\n")
+                .append(MessageTemplates.emoji(":label: "))
+                .append(proposal.getProposalType()).append("\n")
+                .append(MessageTemplates.emoji(":hourglass_flowing_sand: Expiring epoch "))
+                .append(proposal.getExpiration() == null ? "unknown" : proposal.getExpiration());
+
+        if (!Optional.ofNullable(proposalContent.authors()).orElse(List.of()).isEmpty()) {
+            sb.append(MessageTemplates.emoji("\n:black_nib: Authors "))
+                    .append(String.join(",", proposalContent.authors()));
+        }
+        sb.append(MessageTemplates.emoji("\n:memo: <strong>Abstract</strong>\n<i>"))
+                .append(Optional.ofNullable(proposalContent.abstractText()).orElse("Abstract not found")).append("</i>");
+        return sb.toString();
     }
 }
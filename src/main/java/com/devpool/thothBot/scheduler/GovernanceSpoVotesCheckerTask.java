@@ -5,7 +5,7 @@ import com.devpool.thothBot.dao.data.User;
 import com.devpool.thothBot.monitoring.MetricsHelper;
 import com.devpool.thothBot.telegram.TelegramFacade;
 import com.devpool.thothBot.util.CollectionsUtil;
-import com.vdurmont.emoji.EmojiParser;
+import com.devpool.thothBot.util.MessageTemplates;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -92,7 +92,7 @@ public class GovernanceSpoVotesCheckerTask extends AbstractCheckerTask implement
                 }
 
                 // get all pool addresses
-                var stakingUsers = userDao.getUsers().stream().filter(User::isStakeAddress).toList();
+                var stakingUsers = this.userRegistry.snapshot().getStakeUsers();
                 var allStakingAddresses = stakingUsers.stream().map(User::getAddress).distinct().toList();
 
                 LOG.debug("Checking for retiring/retired pools among {} staking addresses", allStakingAddresses.size());
@@ -100,13 +100,25 @@ public class GovernanceSpoVotesCheckerTask extends AbstractCheckerTask implement
                 // Staking Address -> Pool Address
                 var stakingAddrAndPools = collectPoolAddressesAssociatedToStakingAddresses(allStakingAddresses);
 
+                // Pool Address -> subscribed users staking with it
+                Map<String, List<User>> poolSubscribers = new HashMap<>();
+                for (User user : stakingUsers) {
+                    var poolId = stakingAddrAndPools.get(user.getAddress());
+                    if (poolId != null)
+                        poolSubscribers.computeIfAbsent(poolId, k -> new ArrayList<>()).add(user);
+                }
+
                 // Get ADA Handles
                 Map<String, String> handles = getAdaHandleForAccount(allStakingAddresses.toArray(new String[0]));
 
                 Map<String, String> poolNamesCache = new HashMap<>();
 
+                // All the votes already notified for the active proposals
+                Set<PoolVotesDao.PoolVote> knownVotes = this.poolVotesDao.getVotesForGovActions(
+                        proposalsResp.getValue().stream().map(Proposal::getProposalId).toList());
+
                 for (Proposal proposal : proposalsResp.getValue()) {
-                    processAction(proposal, stakingUsers, stakingAddrAndPools, handles, poolNamesCache);
+                    processAction(proposal, poolSubscribers, knownVotes, handles, poolNamesCache);
                 }
 
             } catch (Exception e) {
@@ -118,8 +130,8 @@ public class GovernanceSpoVotesCheckerTask extends AbstractCheckerTask implement
     }
 
     private void processAction(Proposal proposal,
-                               List<User> stakingUsers,
-                               Map<String, String> stakingAddrAndPools,
+                               Map<String, List<User>> poolSubscribers,
+                               Set<PoolVotesDao.PoolVote> knownVotes,
                                Map<String, String> handles, Map<String, String> poolNamesCache) {
         try {
             LOG.debug("Processing proposal {} of type {}. Looking for new SPO votes",
@@ -128,7 +140,7 @@ public class GovernanceSpoVotesCheckerTask extends AbstractCheckerTask implement
             var proposalId = proposal.getProposalId();
 
             // Collect al the pools and check (batching max 5)
-            var iter = CollectionsUtil.batchesList(stakingAddrAndPools.values().stream().distinct().toList(),
+            var iter = CollectionsUtil.batchesList(List.copyOf(poolSubscribers.keySet()),
                     POOL_BATCH_SIZE).iterator();
 
             while (iter.hasNext()) {
@@ -163,21 +175,10 @@ public class GovernanceSpoVotesCheckerTask extends AbstractCheckerTask implement
                     for (ProposalVote proposalVote : propVotesRes.getValue()) {
                         var blockTime = proposalVote.getBlockTime();
                         var poolId = proposalVote.getVoterId();
-                        // if the return is not empty, this means4
-                        var poolVotes = poolVotesDao.getVotesForGovAction(proposalId, poolId, blockTime);
-                        var lastPoolVoteBlockTime = poolVotes.stream()
-                                .max(Comparator.naturalOrder())
-                                .orElse(0L);
 
                         // We got a new vote from the pool?
-                        if (blockTime > lastPoolVoteBlockTime) {
-                            // The list of stake addresses (from subscribed users) who stake to the pool
-                            var userStakeAddresses = stakingAddrAndPools.entrySet().stream()
-                                    .filter(e -> poolId.equals(e.getValue()))
-                                    .map(Map.Entry::getKey).toList();
-                            var usersToNotify = stakingUsers.stream()
-                                    .filter(u -> userStakeAddresses.contains(u.getAddress()))
-                                    .toList();
+                        if (knownVotes.add(new PoolVotesDao.PoolVote(proposalId, poolId, blockTime))) {
+                            var usersToNotify = poolSubscribers.getOrDefault(poolId, List.of());
 
                             notifyUsers(proposal, proposalVote, usersToNotify, poolNamesCache, handles);
                             poolVotesDao.addPoolVote(proposalId, poolId, blockTime);
@@ -225,7 +226,7 @@ public class GovernanceSpoVotesCheckerTask extends AbstractCheckerTask implement
         for (User user : usersToNotify) {
             StringBuilder sb = new StringBuilder();
             var poolName = poolNamesCache.get(proposalVote.getVoterId());
-            sb.append(EmojiParser.parseToUnicode(":memo: The SPO <a href=\""))
+            sb.append(MessageTemplates.emoji(":memo: The SPO <a href=\""))
                     .append(CARDANO_SCAN_STAKE_POOL)
                     .append(proposalVote.getVoterId())
                     .append("\">")
@@ -238,13 +239,13 @@ public class GovernanceSpoVotesCheckerTask extends AbstractCheckerTask implement
                     .append(handles.get(user.getAddress()))
                     .append("</a>, has voted:\n");
 
-            sb.append(EmojiParser.parseToUnicode(":small_blue_diamond: "))
+            sb.append(MessageTemplates.emoji(":small_blue_diamond: "))
                     .append("Action <a href=\"")
                     .append(String.format(GOV_TOOLS_PROPOSAL, proposal.getProposalId()))
                     .append("\">")
                     .append(proposal.getProposalId().substring(proposal.getProposalId().length() - 8))
                     .append("</a>")
-                    .append(EmojiParser.parseToUnicode(" :arrow_right: "))
+                    .append(MessageTemplates.emoji(" :arrow_right: "))
                     .append(proposalVote.getVote())
                     .append(" (<i>")
                     .append(TX_DATETIME_FORMATTER.format(LocalDateTime.ofEpochSecond(proposalVote.getBlockTime(), 0, ZoneOffset.UTC)))
@@ -4,9 +4,8 @@ import com.devpool.thothBot.dao.UserDao;
 import com.devpool.thothBot.dao.data.User;
 import com.devpool.thothBot.monitoring.MetricsHelper;
 import com.devpool.thothBot.subscription.SubscriptionManager;
-import com.devpool.thothBot.telegram.TelegramFacade;
 import com.devpool.thothBot.util.CollectionsUtil;
-import com.vdurmont.emoji.EmojiParser;
+import com.devpool.thothBot.util.MessageTemplates;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,9 +31,6 @@ import java.util.stream.Collectors;
 public class RetiredPoolCheckerTask extends AbstractCheckerTask implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(RetiredPoolCheckerTask.class);
 
-    @Autowired
-    private TelegramFacade telegramFacade;
-
     @Autowired
     private MetricsHelper metricsHelper;
 
@@ -52,10 +48,10 @@ public class RetiredPoolCheckerTask extends AbstractCheckerTask implements Runna
             LOG.debug("Starting thread to check for retired/retiring pools");
 
             try {
-                LOG.info("Checking retired/retiring pools for {} wallets", this.userDao.getUsers().size());
+                LOG.info("Checking retired/retiring pools for {} wallets", this.userDao.countSubscriptions());
 
                 // Filter out non-staking users
-                var stakingUsers = userDao.getUsers().stream().filter(User::isStakeAddress).toList();
+                var stakingUsers = this.userRegistry.snapshot().getStakeUsers();
 
                 // get all pool addresses
                 var allStakingAddresses = stakingUsers.stream().map(User::getAddress).distinct().toList();
@@ -121,11 +117,12 @@ public class RetiredPoolCheckerTask extends AbstractCheckerTask implements Runna
 
         for (Map.Entry<Long, List<PoolInfo>> userEntry : usersToNotify.entrySet()) {
             StringBuilder sb = new StringBuilder();
-            sb.append(EmojiParser.parseToUnicode(":alarm_clock:"))
+            sb.append(MessageTemplates.emoji(":alarm_clock:"))
                     .append("Your wallet is staking with a retired or retiring pool!\n")
                     .append("You will receive a maximum of ")
                     .append(UserDao.DEFAULT_RETIRING_POOL_NOTIFICATIONS).append(" reminders.\n");
             boolean notificationEmpty = true;
+            List<Runnable> checkpoints = new ArrayList<>();
             for (PoolInfo poolInfo : userEntry.getValue()) {
                 int remainingNotifications = this.userDao.getRemainingUserNotificationForRetiringPool(userEntry.getKey(), poolInfo.getPoolIdBech32());
                 if (remainingNotifications <= 0) {
@@ -136,7 +133,7 @@ public class RetiredPoolCheckerTask extends AbstractCheckerTask implements Runna
                 notificationEmpty = false;
 
                 var poolName = getPoolName(poolInfo);
-                sb.append(EmojiParser.parseToUnicode(":skull: "))
+                sb.append(MessageTemplates.emoji(":skull: "))
                         .append("<a href=\"")
                         .append(CARDANO_SCAN_STAKE_POOL).append(poolInfo.getPoolIdBech32()).append("\">")
                         .append(poolName).append("</a> is ")
@@ -148,18 +145,19 @@ public class RetiredPoolCheckerTask extends AbstractCheckerTask implements Runna
 
                 if (remainingNotifications == 1) {
                     sb.append(" This is the last WARNING!");
-                    sb.append(EmojiParser.parseToUnicode(":scream:"));
+                    sb.append(MessageTemplates.emoji(":scream:"));
                 }
                 sb.append("\n");
 
-                this.userDao.setRemainingUserNotificationForRetiringPool(userEntry.getKey(), poolInfo.getPoolIdBech32(), remainingNotifications - 1);
+                checkpoints.add(() -> this.userDao.setRemainingUserNotificationForRetiringPool(
+                        userEntry.getKey(), poolInfo.getPoolIdBech32(), remainingNotifications - 1));
             }
 
             sb.append("\nPlease consider staking with ")
                     .append("<a href=\"")
                     .append(CARDANO_SCAN_STAKE_POOL).append(SubscriptionManager.DEV_POOL_ID).append("\">")
                     .append("DEV pool!</a>")
-                    .append(EmojiParser.parseToUnicode(":pray:"));
+                    .append(MessageTemplates.emoji(":pray:"));
 
             if (notificationEmpty) {
                 LOG.debug("The wallet {} has some retiring/retired pools, but already received all the notifications.",
@@ -167,7 +165,7 @@ public class RetiredPoolCheckerTask extends AbstractCheckerTask implements Runna
                 return;
             }
 
-            this.telegramFacade.sendMessageTo(userEntry.getKey(), sb.toString());
+            this.notificationOutbox.send(userEntry.getKey(), sb.toString(), () -> checkpoints.forEach(Runnable::run));
             if (LOG.isTraceEnabled()) {
                 LOG.trace("Sending telegram message for staking rewards: {}", sb);
             }
@@ -1,22 +1,44 @@
 package com.devpool.thothBot.scheduler;
 
+import com.devpool.thothBot.cluster.ClusterCoordinator;
+import com.devpool.thothBot.monitoring.MetricsHelper;
 import com.devpool.thothBot.subscription.SubscriptionManager;
+import io.micrometer.core.instrument.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Schedules the periodic tasks. A single ticker thread only hands the runs over: every task has its own worker
+ * thread, so that a long daily job never delays the TX checker. A tick is skipped when the previous run of the task
+ * is still active. The interval and the jitter of each task can be configured with
+ * {@code thoth.scheduler.<task>.interval-secs} and {@code thoth.scheduler.<task>.jitter-secs}.
+ * <p>
+ * The checker tasks run on every bot instance, each one on its own shard of the subscriptions, while the global jobs
+ * run only on the leader instance.
+ */
 @Component
 public class SchedulerController {
     private static final Logger LOG = LoggerFactory.getLogger(SchedulerController.class);
-    private ScheduledExecutorService executorService;
+    private static final String TASK_TAG = "task";
+    private ScheduledExecutorService ticker;
+    private final List<ScheduledTask> scheduledTasks = new ArrayList<>();
 
     private final TransactionCheckerTaskV2 transactionCheckerTask;
     private final StakingRewardsCheckerTask stakingRewardsCheckerTask;
@@ -26,6 +48,15 @@ public class SchedulerController {
     private final GovernanceNewProposalsTask governanceNewProposalsTask;
     private final RetiredPoolCheckerTask retiredPoolCheckerTask;
 
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MetricsHelper metricsHelper;
+
+    @Autowired
+    private ClusterCoordinator clusterCoordinator;
+
     @Value("${thoth.disable-scheduler:false}")
     private Boolean disableScheduler;
 
@@ -58,34 +89,126 @@ public class SchedulerController {
     @PostConstruct
     public void post() {
         LOG.info("Creating Scheduling Controller");
-        this.executorService = Executors.newScheduledThreadPool(4,
-                new CustomizableThreadFactory("WalletCheckerThread"));
+        this.ticker = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("SchedulerTickerThread"));
 
         if (Boolean.TRUE.equals(this.disableScheduler)) {
             LOG.warn("Running with TX and Staking scheduler disabled!");
         } else {
-            this.executorService.scheduleWithFixedDelay(this.transactionCheckerTask, scheduledJobsInitialDelaySecs, 120, TimeUnit.SECONDS);
-            this.executorService.scheduleWithFixedDelay(this.stakingRewardsCheckerTask, scheduledJobsInitialDelaySecs, 15 * 60, TimeUnit.SECONDS);
-            this.executorService.scheduleWithFixedDelay(this.governanceDrepVotesCheckerTask, scheduledJobsInitialDelaySecs, 60 * 60 * 6, TimeUnit.SECONDS);
-            this.executorService.scheduleWithFixedDelay(this.retiredPoolCheckerTask, scheduledJobsInitialDelaySecs, 60 * 60 * 24, TimeUnit.SECONDS);
+            schedule("tx-checker", this.transactionCheckerTask, false, scheduledJobsInitialDelaySecs, 120);
+            schedule("staking-rewards", this.stakingRewardsCheckerTask, false, scheduledJobsInitialDelaySecs, 15 * 60);
+            schedule("gov-drep-votes", this.governanceDrepVotesCheckerTask, false, scheduledJobsInitialDelaySecs, 60 * 60 * 6);
+            schedule("retired-pools", this.retiredPoolCheckerTask, true, scheduledJobsInitialDelaySecs, 60 * 60 * 24);
             if (Boolean.TRUE.equals(this.govSpoVotesEnabled)) {
-                this.executorService.scheduleWithFixedDelay(this.governanceSpoVotesCheckerTask, scheduledJobsInitialDelaySecs, 60 * 60 * 25, TimeUnit.SECONDS);
+                schedule("gov-spo-votes", this.governanceSpoVotesCheckerTask, true, scheduledJobsInitialDelaySecs, 60 * 60 * 25);
             }
             if (Boolean.TRUE.equals(this.govNewPropEnabled)) {
-                this.executorService.scheduleWithFixedDelay(this.governanceNewProposalsTask, scheduledJobsInitialDelaySecs, 60 * 60 * 22, TimeUnit.SECONDS);
+                schedule("gov-new-proposals", this.governanceNewProposalsTask, true, scheduledJobsInitialDelaySecs, 60 * 60 * 22);
             }
         }
 
         if (Boolean.TRUE.equals(this.disableSubscriptionManager)) {
             LOG.warn("Running with subscription manager scheduler disabled!");
         } else {
-            this.executorService.scheduleWithFixedDelay(this.subscriptionManager, scheduledJobsInitialDelaySecs * 2, 60 * 60 * 12, TimeUnit.SECONDS);
+            schedule("subscription-manager", this.subscriptionManager, true, scheduledJobsInitialDelaySecs * 2, 60 * 60 * 12);
         }
     }
 
     @PreDestroy
     public void shutdown() {
         LOG.info("Shutting down scheduler");
-        this.executorService.shutdown();
+        this.ticker.shutdown();
+        this.scheduledTasks.forEach(t -> t.worker.shutdown());
+    }
+
+    /**
+     * @param leaderOnly true for the global jobs, running only on the leader instance
+     */
+    private void schedule(String name, Runnable task, boolean leaderOnly, long initialDelaySecs, long defaultIntervalSecs) {
+        long intervalSecs = this.environment.getProperty("thoth.scheduler." + name + ".interval-secs", Long.class, defaultIntervalSecs);
+        long jitterSecs = this.environment.getProperty("thoth.scheduler." + name + ".jitter-secs", Long.class, 0L);
+        if (intervalSecs <= 0) {
+            LOG.warn("Running with the {} task disabled, as its interval is {}", name, intervalSecs);
+            return;
+        }
+
+        ScheduledTask scheduledTask = new ScheduledTask(name, task, leaderOnly, TimeUnit.SECONDS.toMillis(intervalSecs),
+                TimeUnit.SECONDS.toMillis(jitterSecs));
+        this.scheduledTasks.add(scheduledTask);
+        LOG.info("Scheduling the {} task every {} secs, with up to {} secs of jitter", name, intervalSecs, jitterSecs);
+        scheduledTask.scheduleTick(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(initialDelaySecs));
+    }
+
+    /**
+     * A periodic task with its own worker thread. The ticks are planned at a fixed rate, plus the jitter, from the
+     * previous planned tick, so that the skipped and the late runs do not shift the following ones.
+     */
+    private class ScheduledTask {
+        private final String name;
+        private final Runnable task;
+        private final boolean leaderOnly;
+        private final long intervalMs;
+        private final long jitterMs;
+        private final ExecutorService worker;
+        private final AtomicBoolean running = new AtomicBoolean(false);
+
+        private ScheduledTask(String name, Runnable task, boolean leaderOnly, long intervalMs, long jitterMs) {
+            this.name = name;
+            this.task = task;
+            this.leaderOnly = leaderOnly;
+            this.intervalMs = intervalMs;
+            this.jitterMs = jitterMs;
+            this.worker = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("Scheduler-" + name + "-"));
+        }
+
+        private void scheduleTick(long tickAt) {
+            try {
+                ticker.schedule(() -> tick(tickAt),
+                        Math.max(0, tickAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Scheduler shut down, not scheduling the {} task anymore", this.name);
+            }
+        }
+
+        private void tick(long tickAt) {
+            long nextTickAt = tickAt + this.intervalMs +
+                    (this.jitterMs > 0 ? ThreadLocalRandom.current().nextLong(this.jitterMs + 1) : 0);
+            try {
+                if (this.leaderOnly && !clusterCoordinator.isLeader()) {
+                    LOG.debug("Not running the {} task, as this instance is not the leader", this.name);
+                    return;
+                }
+
+                if (!this.running.compareAndSet(false, true)) {
+                    LOG.warn("Skipping the {} task tick, as its previous run is still active", this.name);
+                    metricsHelper.incrementCounter("scheduler_skipped_ticks", Tag.of(TASK_TAG, this.name));
+                    return;
+                }
+
+                try {
+                    this.worker.execute(() -> run(tickAt));
+                } catch (RejectedExecutionException e) {
+                    this.running.set(false);
+                    throw e;
+                }
+            } finally {
+                scheduleTick(nextTickAt);
+            }
+        }
+
+        private void run(long tickAt) {
+            long startedAt = System.currentTimeMillis();
+            metricsHelper.recordTime("scheduler_task_lag", startedAt - tickAt, TimeUnit.MILLISECONDS,
+                    Tag.of(TASK_TAG, this.name));
+            try {
+                this.task.run();
+            } catch (Exception e) {
+                LOG.error("Unexpected error while running the {} task", this.name, e);
+            } finally {
+                metricsHelper.recordTime("scheduler_task_duration", System.currentTimeMillis() - startedAt,
+                        TimeUnit.MILLISECONDS, Tag.of(TASK_TAG, this.name));
+                this.running.set(false);
+            }
+        }
     }
 }
@@ -1,10 +1,11 @@
 package com.devpool.thothBot.scheduler;
 
+import com.devpool.thothBot.dao.CheckpointBatch;
+import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.UsersShard;
 import com.devpool.thothBot.dao.data.User;
 import com.devpool.thothBot.monitoring.MetricsHelper;
-import com.devpool.thothBot.telegram.TelegramFacade;
-import com.devpool.thothBot.util.CollectionsUtil;
-import com.vdurmont.emoji.EmojiParser;
+import com.devpool.thothBot.util.MessageTemplates;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,9 +29,6 @@ import java.util.stream.Collectors;
 public class StakingRewardsCheckerTask extends AbstractCheckerTask implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(StakingRewardsCheckerTask.class);
 
-    @Autowired
-    private TelegramFacade telegramFacade;
-
     @Autowired
     private MetricsHelper metricsHelper;
 
@@ -56,17 +54,20 @@ public class StakingRewardsCheckerTask extends AbstractCheckerTask implements Ru
 
                 Integer currentEpochNumber = chainTipRes.getValue().getEpochNo();
 
-                LOG.info("Checking staking rewards for {} wallets", this.userDao.getUsers().size());
+                LOG.info("Checking staking rewards for {} wallets", this.userDao.countSubscriptions());
                 // Filter out non-staking users
-                Iterator<List<User>> batchIterator = CollectionsUtil.batchesList(
-                        userDao.getUsers().stream().filter(User::isStakeAddress).collect(Collectors.toList()),
-                        this.usersBatchSize).iterator();
+                UsersShard shard = this.clusterCoordinator.getShard();
+                Iterator<List<User>> batchIterator = this.userDao.getUsersBatches(
+                        UserDao.UsersFilter.STAKE_ADDRESSES, this.usersBatchSize, shard).iterator();
 
-                while (batchIterator.hasNext()) {
-                    List<User> usersBatch = batchIterator.next();
-                    LOG.debug("Processing users batch size {}", usersBatch.size());
+                try (CheckpointBatch checkpoints = this.userDao.newCheckpointBatch()) {
+                    // Stopped once the shard changed, the new owner processing the remaining users
+                    while (batchIterator.hasNext() && this.clusterCoordinator.ownsShard(shard)) {
+                        List<User> usersBatch = batchIterator.next();
+                        LOG.debug("Processing users batch size {}", usersBatch.size());
 
-                    processUserBatch(usersBatch, currentEpochNumber);
+                        processUserBatch(usersBatch, currentEpochNumber, checkpoints);
+                    }
                 }
             } catch (Exception e) {
                 LOG.error("Caught throwable while checking wallet staking rewards", e);
@@ -74,7 +75,7 @@ public class StakingRewardsCheckerTask extends AbstractCheckerTask implements Ru
         });
     }
 
-    private void processUserBatch(List<User> usersBatch, Integer currentEpochNumber) {
+    private void processUserBatch(List<User> usersBatch, Integer currentEpochNumber, CheckpointBatch checkpoints) {
         Map<String, User> accountsToProcess = new HashMap<>();
         for (User u : usersBatch) {
             if (Objects.equals(u.getLastEpochNumber(), currentEpochNumber))
@@ -131,17 +132,17 @@ public class StakingRewardsCheckerTask extends AbstractCheckerTask implements Ru
                 if (accountRewards.getRewards().isEmpty()) continue;
 
                 StringBuilder sb = new StringBuilder();
-                sb.append(EmojiParser.parseToUnicode(":key: <a href=\""))
+                sb.append(MessageTemplates.emoji(":key: <a href=\""))
                         .append(CARDANO_SCAN_STAKE_KEY)
                         .append(accountRewards.getStakeAddress())
                         .append("\">")
                         .append(handles.getOrDefault(accountRewards.getStakeAddress(), shortenAddr(accountRewards.getStakeAddress())))
                         .append("</a>\n")
-                        .append((EmojiParser.parseToUnicode(":envelope: ")))
+                        .append((MessageTemplates.emoji(":envelope: ")))
                         .append(accountRewards.getRewards().size())
                         .append(" reward(s)\n\n");
                 for (AccountReward reward : accountRewards.getRewards()) {
-                    sb.append(EmojiParser.parseToUnicode(":arrow_heading_down: "));
+                    sb.append(MessageTemplates.emoji(":arrow_heading_down: "));
                     String poolName = getPoolName(poolInfoList, reward.getPoolId());
                     if (poolName != null) {
                         sb.append("<a href=\"");
@@ -152,17 +153,18 @@ public class StakingRewardsCheckerTask extends AbstractCheckerTask implements Ru
                     sb.append("\n").append(translateRewardsType(reward.getType()));
                     sb.append(" ");
                     double adaValue = Long.parseLong(reward.getAmount()) / LOVELACE;
-                    sb.append(String.format("%,.2f", adaValue));
+                    sb.append(MessageTemplates.formatAmount(adaValue));
                     sb.append(ADA_SYMBOL);
                     if (latestCardanoPriceUsd != null) {
                         sb.append(" (");
-                        sb.append(String.format("%,.2f $", adaValue * latestCardanoPriceUsd));
+                        sb.append(MessageTemplates.formatAmount(adaValue * latestCardanoPriceUsd)).append(" $");
                         sb.append(")");
                     }
                     sb.append("\n\n");
 
-                    this.userDao.updateUserEpochNumber(accountsToProcess.get(accountRewards.getStakeAddress()).getId(), currentEpochNumber);
-                    this.telegramFacade.sendMessageTo(accountsToProcess.get(accountRewards.getStakeAddress()).getChatId(), sb.toString());
+                    User user = accountsToProcess.get(accountRewards.getStakeAddress());
+                    this.notificationOutbox.send(user.getChatId(), sb.toString(),
+                            () -> checkpoints.updateUserEpochNumber(user.getId(), currentEpochNumber));
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Sending telegram message for staking rewards: {}", sb);
                     }
@@ -1,15 +1,19 @@
 package com.devpool.thothBot.scheduler;
 
+import com.devpool.thothBot.dao.CheckpointBatch;
+import com.devpool.thothBot.dao.SubscribedAddressIndex;
+import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.UsersShard;
 import com.devpool.thothBot.dao.data.User;
 import com.devpool.thothBot.exceptions.KoiosResponseException;
 import com.devpool.thothBot.koios.AssetFacade;
 import com.devpool.thothBot.monitoring.MetricsHelper;
 import com.devpool.thothBot.telegram.TelegramFacade;
 import com.devpool.thothBot.util.CollectionsUtil;
+import com.devpool.thothBot.util.MessageTemplates;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.NullNode;
-import com.vdurmont.emoji.EmojiParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,12 +24,14 @@ import rest.koios.client.backend.api.base.Result;
 import rest.koios.client.backend.api.base.common.Asset;
 import rest.koios.client.backend.api.base.common.UTxO;
 import rest.koios.client.backend.api.base.exception.ApiException;
+import rest.koios.client.backend.api.block.model.Block;
+import rest.koios.client.backend.api.block.model.BlockTxHash;
 import rest.koios.client.backend.api.network.model.Tip;
 import rest.koios.client.backend.api.pool.model.PoolInfo;
 import rest.koios.client.backend.api.transactions.model.TxCertificate;
+import rest.koios.client.backend.api.transactions.model.TxIO;
 import rest.koios.client.backend.api.transactions.model.TxInfo;
 import rest.koios.client.backend.api.transactions.model.TxPlutusContract;
-import rest.koios.client.backend.api.transactions.model.TxWithdrawal;
 import rest.koios.client.backend.factory.options.*;
 import rest.koios.client.backend.factory.options.filters.Filter;
 import rest.koios.client.backend.factory.options.filters.FilterType;
@@ -35,6 +41,11 @@ import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.stream.Collectors;
 
 @Component
@@ -45,14 +56,36 @@ public class TransactionCheckerTaskV2 extends AbstractCheckerTask implements Run
     private static final String DREP_DELEGATION_CERTIFICATE = "vote_delegation";
     private static final String BLOCK_HEIGHT_FIELD = "block_height";
     private static final int MAX_TX_IN_TELEGRAM_NOTIFICATION = 3;
+    private static final int CHAIN_FOLLOWER_KOIOS_BATCH_SIZE = 50;
+    private static final int TX_INFO_BATCH_SIZE = 50;
+    private static final ThreadFactory TX_CHECKER_THREAD_FACTORY = Thread.ofVirtual().name("TX-Checker-", 0).factory();
 
-    private static final double EPSILON = 0.00001d;
     private static final String JSON_POOL_BECH32 = "pool_id_bech32";
     private static final String JSON_DREP_ID = "drep_id";
 
     @Value("${thoth.test.allow-jumbo-message}")
     private Boolean allowJumboMessage;
 
+    @Value("${thoth.tx-checker.parallel.enabled:false}")
+    private boolean parallelEnabled;
+
+    @Value("${thoth.tx-checker.parallel.koios-permits:8}")
+    private int koiosPermitsCount;
+
+    /**
+     * Bounds the number of users (or batches) hitting Koios at the same time
+     */
+    private Semaphore koiosPermits;
+
+    @Value("${thoth.tx-checker.chain-follower.enabled:false}")
+    private boolean chainFollowerEnabled;
+
+    @Value("${thoth.tx-checker.chain-follower.max-blocks-per-run:360}")
+    private int chainFollowerMaxBlocksPerRun;
+
+    @Value("${thoth.tx-checker.chain-follower.max-lag-blocks:4320}")
+    private int chainFollowerMaxLagBlocks;
+
     private Map<String, String> contracts;
 
     @Autowired
@@ -83,6 +116,8 @@ public class TransactionCheckerTaskV2 extends AbstractCheckerTask implements Run
 
     @PostConstruct
     public void post() {
+        this.koiosPermits = new Semaphore(Math.max(1, this.koiosPermitsCount));
+
         // Create performance samples
         performanceSampler.schedule(new TimerTask() {
             @Override
@@ -120,276 +155,471 @@ public class TransactionCheckerTaskV2 extends AbstractCheckerTask implements Run
     @Override
     public void run() {
         execTimer.record(() -> {
-            LOG.info("Checking activities for {} wallets", this.userDao.getUsers().size());
-            Iterator<List<User>> batchIterator = CollectionsUtil.batchesList(userDao.getUsers(), this.usersBatchSize).iterator();
-
-            while (batchIterator.hasNext()) {
-                List<User> usersBatch = batchIterator.next();
-                List<User> addrUsersBatch = usersBatch.stream().filter(User::isNormalAddress).collect(Collectors.toList());
-                List<User> stakeUsersBatch = usersBatch.stream().filter(User::isStakeAddress).collect(Collectors.toList());
-
-                LOG.debug("Processing users batch size {}, stake batch {}, address batch{}",
-                        usersBatch.size(), stakeUsersBatch.size(), addrUsersBatch.size());
+            if (this.chainFollowerEnabled) {
                 try {
-                    processUsersBatch(stakeUsersBatch, addrUsersBatch);
+                    followChain();
                 } catch (Exception e) {
-                    LOG.error("Error while processing user batch", e);
+                    LOG.error("Error while following the chain", e);
                 }
+                return;
+            }
+
+            LOG.info("Checking activities for {} wallets", this.userDao.countSubscriptions());
+            UsersShard shard = this.clusterCoordinator.getShard();
+            Iterator<List<User>> batchIterator = this.userDao.getUsersBatches(
+                    UserDao.UsersFilter.ALL, this.usersBatchSize, shard).iterator();
+
+            // The batches are read from the DB as they are processed: only as many as the Koios permits are in memory
+            int maxBatchTasks = this.parallelEnabled ? Math.max(1, this.koiosPermitsCount) : 1;
+            CheckpointBatch checkpoints = this.userDao.newCheckpointBatch();
+            try {
+                List<Runnable> batchTasks = new ArrayList<>();
+                while (batchIterator.hasNext() && this.clusterCoordinator.ownsShard(shard)) {
+                    batchTasks.add(newUsersBatchTask(batchIterator.next(), shard, checkpoints));
+                    if (batchTasks.size() == maxBatchTasks || !batchIterator.hasNext()) {
+                        runTasks(batchTasks);
+                        batchTasks = new ArrayList<>();
+                    }
+                }
+            } finally {
+                checkpoints.close();
             }
         });
     }
 
-    private void processUsersBatch(List<User> stakeUsersBatch, List<User> addrUsersBatch) throws KoiosResponseException, ApiException {
-        // get the network last tip
+    private Runnable newUsersBatchTask(List<User> usersBatch, UsersShard shard, CheckpointBatch checkpoints) {
+        List<User> addrUsersBatch = usersBatch.stream().filter(User::isNormalAddress).collect(Collectors.toList());
+        List<User> stakeUsersBatch = usersBatch.stream().filter(User::isStakeAddress).collect(Collectors.toList());
+
+        return () -> {
+            if (!this.clusterCoordinator.ownsShard(shard))
+                return;
+
+            LOG.debug("Processing users batch size {}, stake batch {}, address batch{}",
+                    usersBatch.size(), stakeUsersBatch.size(), addrUsersBatch.size());
+            try {
+                processUsersBatch(stakeUsersBatch, addrUsersBatch, checkpoints);
+            } catch (Exception e) {
+                LOG.error("Error while processing user batch", e);
+            }
+        };
+    }
+
+    /**
+     * Block driven ingestion: instead of asking Koios for the UTxOs of every user, it walks the blocks minted since
+     * the lowest user block height (bounded by the max lag) and matches every TX against the subscribed addresses.
+     * The Koios cost grows with the chain throughput, not with the number of users.
+     */
+    private void followChain() throws KoiosResponseException, ApiException {
+        // Only the users of the shard of this instance are followed, the cursor included
+        UsersShard shard = this.clusterCoordinator.getShard();
+        Integer lowestUserBlockHeight = this.userDao.getLowestBlockHeight(shard);
+        if (lowestUserBlockHeight == null) {
+            LOG.debug("No users to follow the chain for");
+            return;
+        }
+
         Result<Tip> chainTipResp = this.koiosFacade.getKoiosService().getNetworkService().getChainTip();
         if (!chainTipResp.isSuccessful()) {
-            LOG.error("Could not get the chain tip for the processing of the batch user. Code {}, Response {}",
+            LOG.error("Could not get the chain tip for following the chain. Code {}, Response {}",
                     chainTipResp.getCode(), chainTipResp.getResponse());
             return;
         }
+        int tipBlockNo = chainTipResp.getValue().getBlockNo();
 
-        // Among this batch of users, get the smallest block height. Old TXs will be filtered via software later to avoid
-        // duplication of notifications
-        Optional<User> lowestBlockHeightForStake = stakeUsersBatch.stream().min(Comparator.comparing(User::getLastBlockHeight));
-        Optional<User> lowestBlockHeightForAddr = addrUsersBatch.stream().min(Comparator.comparing(User::getLastBlockHeight));
+        // Lowest user block height is the follower cursor. Very stale users are not allowed to drag it too far back
+        int fromBlockHeight = Math.max(lowestUserBlockHeight, tipBlockNo - this.chainFollowerMaxLagBlocks);
+        int toBlockHeight = Math.min(tipBlockNo, fromBlockHeight + this.chainFollowerMaxBlocksPerRun);
+        if (fromBlockHeight >= toBlockHeight) {
+            LOG.debug("Chain follower is up to date with the tip {}", tipBlockNo);
+            return;
+        }
+        LOG.info("Following the chain from block {} to block {} for {} wallets",
+                fromBlockHeight + 1, toBlockHeight, this.userDao.countSubscriptions());
+
+        SubscribedAddressIndex addressIndex = this.userDao.getAddressIndex();
+
+        List<String> blockHashes = getBlockHashes(fromBlockHeight, toBlockHeight);
+        List<String> txHashes = getBlocksTxHashes(blockHashes);
+        LOG.debug("Found {} TX(s) in {} block(s)", txHashes.size(), blockHashes.size());
+
+        // user ID -> matching TXs and their participation, only for the users of the shard
+        Map<Long, Map<TxInfo, TxParticipation>> userIdTxs = new HashMap<>();
+        for (TxInfo txInfo : getTransactionsInformation(txHashes).values()) {
+            for (Map.Entry<Long, TxParticipation> participation : TxParticipation.of(txInfo, addressIndex).entrySet()) {
+                if (!shard.owns(participation.getKey())) continue;
+                userIdTxs.computeIfAbsent(participation.getKey(), k -> new IdentityHashMap<>())
+                        .put(txInfo, participation.getValue());
+            }
+        }
 
-        // address -> list of UTxOS
-        Map<String, List<UTxO>> addressesUtxOs = new HashMap<>();
+        // Only the matched users are loaded. Sorted by user ID to keep a stable processing order
+        Map<User, Map<TxInfo, TxParticipation>> userTxs = new TreeMap<>(Comparator.comparing(User::getId));
+        for (User u : this.userDao.getUsersByIds(userIdTxs.keySet())) {
+            Map<TxInfo, TxParticipation> txs = userIdTxs.get(u.getId());
+            txs.keySet().removeIf(txInfo -> txInfo.getBlockHeight() <= u.getLastBlockHeight());
+            if (!txs.isEmpty())
+                userTxs.put(u, txs);
+        }
+
+        // The shard could have been given up while collecting the TXs: the new owner notifies them
+        if (!this.clusterCoordinator.ownsShard(shard))
+            return;
 
-        Result<List<UTxO>> resp;
+        Map<String, String> handles = userTxs.isEmpty() ? Collections.emptyMap() :
+                getAdaHandleForAccount(userTxs.keySet().stream().map(User::getAddress).distinct().toArray(String[]::new));
+
+        CheckpointBatch checkpoints = this.userDao.newCheckpointBatch();
+        // The users failing are left behind, to be processed again at the next run
+        Set<Long> failedUserIds = ConcurrentHashMap.newKeySet();
+        List<Runnable> userTasks = new ArrayList<>();
+        for (Map.Entry<User, Map<TxInfo, TxParticipation>> entry : userTxs.entrySet()) {
+            userTasks.add(() -> {
+                User user = entry.getKey();
+                if (!this.clusterCoordinator.ownsShard(shard)) {
+                    failedUserIds.add(user.getId());
+                    return;
+                }
+                this.koiosPermits.acquireUninterruptibly();
+                try {
+                    List<StringBuilder> txBuilders = new ArrayList<>();
+                    entry.getValue().entrySet().stream()
+                            .sorted(Comparator.comparing(e -> e.getKey().getBlockHeight()))
+                            .forEach(e -> txBuilders.add(processTxForUser(e.getKey(), user, e.getValue())));
+
+                    notifyTelegramUser(txBuilders, user, handles,
+                            () -> checkpoints.updateUserBlockHeight(user.getId(), toBlockHeight));
+                } catch (Exception e) {
+                    failedUserIds.add(user.getId());
+                    LOG.error("Exception while processing {} TX(s) for the user {}",
+                            entry.getValue().size(), user, e);
+                } finally {
+                    this.koiosPermits.release();
+                }
+            });
+        }
+        try {
+            runTasks(userTasks);
+        } finally {
+            checkpoints.close();
+        }
+
+        if (!this.clusterCoordinator.ownsShard(shard))
+            return;
+
+        // Every other user of the shard has seen the processed blocks too
+        int advancedUsers = this.userDao.advanceUsersBlockHeight(toBlockHeight, shard, failedUserIds);
+        LOG.debug("Chain follower processed blocks up to {}, {} user(s) notified, {} user(s) failed, {} user(s) advanced",
+                toBlockHeight, userTxs.size() - failedUserIds.size(), failedUserIds.size(), advancedUsers);
+    }
+
+    /**
+     * Fetches the information of the given TXs, in Koios sized chunks
+     *
+     * @param txHashes the TX hashes, with no duplicates
+     * @return TX hash -> TX information, in the order returned by Koios
+     */
+    private Map<String, TxInfo> getTransactionsInformation(Collection<String> txHashes) throws KoiosResponseException, ApiException {
+        Map<String, TxInfo> txInfos = new LinkedHashMap<>();
+        Options options = Options.builder()
+                .option(Limit.of(DEFAULT_PAGINATION_SIZE))
+                .option(Offset.of(0))
+                .build();
+        Iterator<List<String>> txHashesBatches = CollectionsUtil.batchesList(new ArrayList<>(txHashes), TX_INFO_BATCH_SIZE).iterator();
+        while (txHashesBatches.hasNext()) {
+            Result<List<TxInfo>> txInfoResp = this.koiosFacade.getKoiosService().getTransactionsService()
+                    .getTransactionInformation(txHashesBatches.next(), options);
+            if (!txInfoResp.isSuccessful()) {
+                throw new KoiosResponseException(String.format("Failed to retrieve TXs information. Code %d, Response %s",
+                        txInfoResp.getCode(), txInfoResp.getResponse()));
+            }
+
+            txInfoResp.getValue().forEach(txInfo -> txInfos.put(txInfo.getTxHash(), txInfo));
+        }
+
+        return txInfos;
+    }
+
+    private List<String> getBlockHashes(int fromBlockHeight, int toBlockHeight) throws KoiosResponseException, ApiException {
+        List<String> blockHashes = new ArrayList<>();
+        Result<List<Block>> resp;
         long offset = 0;
-        // First staking addresses
         do {
-            int blockHeight = 0;
-            if (lowestBlockHeightForStake.isPresent())
-                blockHeight = lowestBlockHeightForStake.get().getLastBlockHeight();
-
             Options options = Options.builder()
                     .option(Limit.of(DEFAULT_PAGINATION_SIZE))
                     .option(Offset.of(offset))
-                    .option(Filter.of(BLOCK_HEIGHT_FIELD, FilterType.GT, Integer.toString(blockHeight)))
-                    .option(Order.by(BLOCK_HEIGHT_FIELD, SortType.DESC))
+                    .option(Filter.of(BLOCK_HEIGHT_FIELD, FilterType.GT, Integer.toString(fromBlockHeight)))
+                    .option(Filter.of(BLOCK_HEIGHT_FIELD, FilterType.LTE, Integer.toString(toBlockHeight)))
+                    .option(Order.by(BLOCK_HEIGHT_FIELD, SortType.ASC))
                     .build();
             offset += DEFAULT_PAGINATION_SIZE;
 
-            // Retrieve all UTXOs
-            resp = this.koiosFacade.getKoiosService().getAccountService().getAccountUTxOs(
-                    stakeUsersBatch.stream().map(User::getAddress).collect(Collectors.toList()), false, options);
-
+            resp = this.koiosFacade.getKoiosService().getBlockService().getBlockList(options);
             if (!resp.isSuccessful()) {
-                LOG.warn("Failed to retrieve staking address UTXOs. Code {}, Response {}",
-                        resp.getCode(), resp.getResponse());
-                throw new KoiosResponseException(String.format("Failed to retrieve staking address UTXOs. Code %d, Response %s",
+                throw new KoiosResponseException(String.format("Failed to retrieve the blocks list. Code %d, Response %s",
                         resp.getCode(), resp.getResponse()));
             }
 
-            for (UTxO uTxO : resp.getValue()) {
-                addressesUtxOs.computeIfAbsent(uTxO.getStakeAddress(), u -> new ArrayList<>()).add(uTxO);
-            }
-        } while (resp.isSuccessful() && !resp.getValue().isEmpty());
+            resp.getValue().stream().map(Block::getHash).forEach(blockHashes::add);
+        } while (resp.getValue().size() == DEFAULT_PAGINATION_SIZE);
 
-        // Same for the normal address
-        offset = 0;
-        do {
-            int blockHeight = 0;
-            if (lowestBlockHeightForAddr.isPresent())
-                blockHeight = lowestBlockHeightForAddr.get().getLastBlockHeight();
+        return blockHashes;
+    }
 
-            Options options = Options.builder()
-                    .option(Limit.of(DEFAULT_PAGINATION_SIZE))
-                    .option(Offset.of(offset))
-                    .option(Filter.of(BLOCK_HEIGHT_FIELD, FilterType.GT, Integer.toString(blockHeight)))
-                    .option(Order.by(BLOCK_HEIGHT_FIELD, SortType.DESC)).build();
-            offset += DEFAULT_PAGINATION_SIZE;
+    private List<String> getBlocksTxHashes(List<String> blockHashes) throws KoiosResponseException, ApiException {
+        List<String> txHashes = new ArrayList<>();
+        Iterator<List<String>> blockHashesBatches = CollectionsUtil.batchesList(blockHashes, CHAIN_FOLLOWER_KOIOS_BATCH_SIZE).iterator();
+        while (blockHashesBatches.hasNext()) {
+            List<String> blockHashesBatch = blockHashesBatches.next();
+            Result<List<BlockTxHash>> resp;
+            long offset = 0;
+            do {
+                Options options = Options.builder()
+                        .option(Limit.of(DEFAULT_PAGINATION_SIZE))
+                        .option(Offset.of(offset))
+                        .build();
+                offset += DEFAULT_PAGINATION_SIZE;
+
+                resp = this.koiosFacade.getKoiosService().getBlockService().getBlockTransactions(blockHashesBatch, options);
+                if (!resp.isSuccessful()) {
+                    throw new KoiosResponseException(String.format("Failed to retrieve the blocks TXs. Code %d, Response %s",
+                            resp.getCode(), resp.getResponse()));
+                }
 
-            // Retrieve all UTXOs
-            resp = this.koiosFacade.getKoiosService().getAddressService().getAddressUTxOs(
-                    addrUsersBatch.stream().map(User::getAddress).collect(Collectors.toList()), false, options);
+                resp.getValue().stream().map(BlockTxHash::getTxHash).forEach(txHashes::add);
+            } while (resp.getValue().size() == DEFAULT_PAGINATION_SIZE);
+        }
 
-            if (!resp.isSuccessful()) {
-                LOG.warn("Failed to retrieve normal address UTXOs. Code {}, Response {}",
-                        resp.getCode(), resp.getResponse());
-                throw new KoiosResponseException(String.format("Failed to retrieve normal address UTXOs. Code %d, Response %s",
-                        resp.getCode(), resp.getResponse()));
-            }
+        return txHashes;
+    }
+
+    private void processUsersBatch(List<User> stakeUsersBatch, List<User> addrUsersBatch, CheckpointBatch checkpoints) throws KoiosResponseException, ApiException {
+        Result<Tip> chainTipResp;
+        Map<String, List<UTxO>> addressesUtxOs;
+        Map<String, String> handles;
 
-            for (UTxO uTxO : resp.getValue()) {
-                addressesUtxOs.computeIfAbsent(uTxO.getAddress(), u -> new ArrayList<>()).add(uTxO);
+        this.koiosPermits.acquireUninterruptibly();
+        try {
+            // get the network last tip
+            chainTipResp = this.koiosFacade.getKoiosService().getNetworkService().getChainTip();
+            if (!chainTipResp.isSuccessful()) {
+                LOG.error("Could not get the chain tip for the processing of the batch user. Code {}, Response {}",
+                        chainTipResp.getCode(), chainTipResp.getResponse());
+                return;
             }
-        } while (resp.isSuccessful() && !resp.getValue().isEmpty());
 
-        // Get ADA Handles
-        List<String> userAddresses = stakeUsersBatch.stream().map(User::getAddress).collect(Collectors.toList());
-        userAddresses.addAll(addrUsersBatch.stream().map(User::getAddress).collect(Collectors.toList()));
-        Map<String, String> handles = getAdaHandleForAccount(userAddresses.toArray(new String[0]));
+            // Among this batch of users, get the smallest block height. Old TXs will be filtered via software later to avoid
+            // duplication of notifications
+            Optional<User> lowestBlockHeightForStake = stakeUsersBatch.stream().min(Comparator.comparing(User::getLastBlockHeight));
+            Optional<User> lowestBlockHeightForAddr = addrUsersBatch.stream().min(Comparator.comparing(User::getLastBlockHeight));
+
+            // address -> list of UTxOS
+            addressesUtxOs = new HashMap<>();
+
+            Result<List<UTxO>> resp;
+            long offset = 0;
+            // First staking addresses
+            do {
+                int blockHeight = 0;
+                if (lowestBlockHeightForStake.isPresent())
+                    blockHeight = lowestBlockHeightForStake.get().getLastBlockHeight();
+
+                Options options = Options.builder()
+                        .option(Limit.of(DEFAULT_PAGINATION_SIZE))
+                        .option(Offset.of(offset))
+                        .option(Filter.of(BLOCK_HEIGHT_FIELD, FilterType.GT, Integer.toString(blockHeight)))
+                        .option(Order.by(BLOCK_HEIGHT_FIELD, SortType.DESC))
+                        .build();
+                offset += DEFAULT_PAGINATION_SIZE;
+
+                // Retrieve all UTXOs
+                resp = this.koiosFacade.getKoiosService().getAccountService().getAccountUTxOs(
+                        stakeUsersBatch.stream().map(User::getAddress).collect(Collectors.toList()), false, options);
+
+                if (!resp.isSuccessful()) {
+                    LOG.warn("Failed to retrieve staking address UTXOs. Code {}, Response {}",
+                            resp.getCode(), resp.getResponse());
+                    throw new KoiosResponseException(String.format("Failed to retrieve staking address UTXOs. Code %d, Response %s",
+                            resp.getCode(), resp.getResponse()));
+                }
+
+                for (UTxO uTxO : resp.getValue()) {
+                    addressesUtxOs.computeIfAbsent(uTxO.getStakeAddress(), u -> new ArrayList<>()).add(uTxO);
+                }
+            } while (resp.isSuccessful() && !resp.getValue().isEmpty());
+
+            // Same for the normal address
+            offset = 0;
+            do {
+                int blockHeight = 0;
+                if (lowestBlockHeightForAddr.isPresent())
+                    blockHeight = lowestBlockHeightForAddr.get().getLastBlockHeight();
+
+                Options options = Options.builder()
+                        .option(Limit.of(DEFAULT_PAGINATION_SIZE))
+                        .option(Offset.of(offset))
+                        .option(Filter.of(BLOCK_HEIGHT_FIELD, FilterType.GT, Integer.toString(blockHeight)))
+                        .option(Order.by(BLOCK_HEIGHT_FIELD, SortType.DESC)).build();
+                offset += DEFAULT_PAGINATION_SIZE;
+
+                // Retrieve all UTXOs
+                resp = this.koiosFacade.getKoiosService().getAddressService().getAddressUTxOs(
+                        addrUsersBatch.stream().map(User::getAddress).collect(Collectors.toList()), false, options);
+
+                if (!resp.isSuccessful()) {
+                    LOG.warn("Failed to retrieve normal address UTXOs. Code {}, Response {}",
+                            resp.getCode(), resp.getResponse());
+                    throw new KoiosResponseException(String.format("Failed to retrieve normal address UTXOs. Code %d, Response %s",
+                            resp.getCode(), resp.getResponse()));
+                }
+
+                for (UTxO uTxO : resp.getValue()) {
+                    addressesUtxOs.computeIfAbsent(uTxO.getAddress(), u -> new ArrayList<>()).add(uTxO);
+                }
+            } while (resp.isSuccessful() && !resp.getValue().isEmpty());
+
+            // Get ADA Handles
+            List<String> userAddresses = stakeUsersBatch.stream().map(User::getAddress).collect(Collectors.toList());
+            userAddresses.addAll(addrUsersBatch.stream().map(User::getAddress).collect(Collectors.toList()));
+            handles = getAdaHandleForAccount(userAddresses.toArray(new String[0]));
+        } finally {
+            this.koiosPermits.release();
+        }
 
-        // Eventually it can be parallelized
+        // user -> UTxOs not seen yet by the user. This is due to the fact that we collected TXs from other users too,
+        // in the same Koios call
+        Map<User, List<UTxO>> usersNewUtxOs = new LinkedHashMap<>();
         for (User u : stakeUsersBatch) {
             if (addressesUtxOs.containsKey(u.getAddress())) {
-                processUserTxs(u, addressesUtxOs.get(u.getAddress()), chainTipResp.getValue().getBlockNo(), handles);
+                usersNewUtxOs.put(u, getNewUtxOs(u, addressesUtxOs.get(u.getAddress())));
             }
         }
 
         for (User u : addrUsersBatch) {
             if (addressesUtxOs.containsKey(u.getAddress())) {
-                processUserTxs(u, addressesUtxOs.get(u.getAddress()), chainTipResp.getValue().getBlockNo(), handles);
+                usersNewUtxOs.put(u, getNewUtxOs(u, addressesUtxOs.get(u.getAddress())));
             }
         }
-    }
 
-    private void processUserTxs(User user, List<UTxO> uTxOS, Integer blockNo, Map<String, String> handles) throws ApiException {
+        // Get the TXs information once for the whole batch, as many users could be part of the same TXs
+        Set<String> allTxHashes = usersNewUtxOs.values().stream().flatMap(List::stream).map(UTxO::getTxHash)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        LOG.debug("Getting TX information for {} TX(s), for a batch of {} user(s)", allTxHashes.size(), usersNewUtxOs.size());
+        if (LOG.isTraceEnabled())
+            LOG.trace("Getting TX information for the following TXs {}", allTxHashes);
+
+        Map<String, TxInfo> txInfos;
+        this.koiosPermits.acquireUninterruptibly();
         try {
-            // Cleanup any eventual old TX. This is due to the fact that we collected TXs from other users too, in the same Koios call
-            uTxOS.removeIf(utxo -> utxo.getBlockHeight() <= user.getLastBlockHeight());
+            txInfos = getTransactionsInformation(allTxHashes);
+        } finally {
+            this.koiosPermits.release();
+        }
 
+        // The subscriptions taking part in every TX, matched once for all the users of the batch
+        SubscribedAddressIndex addressIndex = this.userDao.getAddressIndex();
+        Map<String, Map<Long, TxParticipation>> txParticipations = new HashMap<>();
+        for (TxInfo txInfo : txInfos.values())
+            txParticipations.put(txInfo.getTxHash(), TxParticipation.of(txInfo, addressIndex));
+
+        Integer blockNo = chainTipResp.getValue().getBlockNo();
+        List<Runnable> userTasks = new ArrayList<>();
+        usersNewUtxOs.forEach((u, newUtxOs) -> userTasks.add(() -> processUserTxs(u, newUtxOs, blockNo, handles, txInfos,
+                txParticipations, checkpoints)));
+        runTasks(userTasks);
+    }
+
+    private static List<UTxO> getNewUtxOs(User user, List<UTxO> uTxOS) {
+        return uTxOS.stream().filter(utxo -> utxo.getBlockHeight() > user.getLastBlockHeight()).collect(Collectors.toList());
+    }
+
+    private void processUserTxs(User user, List<UTxO> uTxOS, Integer blockNo, Map<String, String> handles,
+                                Map<String, TxInfo> batchTxInfos, Map<String, Map<Long, TxParticipation>> txParticipations,
+                                CheckpointBatch checkpoints) {
+        this.koiosPermits.acquireUninterruptibly();
+        try {
             if (uTxOS.isEmpty()) {
                 LOG.debug("No new TX found for user {} with last block height {}. Updating the user {} with the last block height from the tip {}",
                         user.getAddress(), user.getLastBlockHeight(), user.getId(), blockNo);
-                this.userDao.updateUserBlockHeight(user.getId(), blockNo);
+                checkpoints.updateUserBlockHeight(user.getId(), blockNo);
                 return;
             }
 
-            // Get all UTxOs TX hashes
-            List<String> allTxHashes = uTxOS.stream().map(UTxO::getTxHash).distinct().collect(Collectors.toList());
-            LOG.debug("Getting TX information for {} TX(s), for a the user with address {}",
-                    allTxHashes.size(), user.getAddress());
-            if (LOG.isTraceEnabled())
-                LOG.trace("Getting TX information for the following TXs {}", allTxHashes);
-            // No need to do multi queries here unless you got 1000+ transactions since the last check
-            Options options = Options.builder()
-                    .option(Limit.of(DEFAULT_PAGINATION_SIZE))
-                    .option(Offset.of(0))
-                    .build();
-            Result<List<TxInfo>> txInfoResp = this.koiosFacade.getKoiosService().getTransactionsService().getTransactionInformation(allTxHashes, options);
+            // Get all UTxOs TX information, already fetched for the whole batch
+            Set<String> userTxHashes = uTxOS.stream().map(UTxO::getTxHash)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            List<TxInfo> userTxInfos = userTxHashes.stream().map(batchTxInfos::get).filter(Objects::nonNull)
+                    .collect(Collectors.toList());
 
-            if (!txInfoResp.isSuccessful()) {
-                LOG.error("Cannot get the TXs information (total of {} UTXOs) for the user {} using block height {}",
-                        uTxOS.size(), user.getAddress(), blockNo);
-                return;
+            if (userTxInfos.size() != userTxHashes.size()) {
+                LOG.warn("Got {} TX(s) information out of {} TX(s) for the user {}",
+                        userTxInfos.size(), userTxHashes.size(), user.getAddress());
             }
             LOG.debug("Got all TXs {} for the user {}",
-                    txInfoResp.getValue().size(), user.getAddress());
+                    userTxInfos.size(), user.getAddress());
 
             List<StringBuilder> txBuilders = new ArrayList<>();
-            for (TxInfo txInfo : txInfoResp.getValue()) {
-                StringBuilder sb = processTxForUser(txInfo, user);
+            for (TxInfo txInfo : userTxInfos) {
+                TxParticipation participation = txParticipations.getOrDefault(txInfo.getTxHash(), Map.of())
+                        .getOrDefault(user.getId(), new TxParticipation());
+                StringBuilder sb = processTxForUser(txInfo, user, participation);
                 txBuilders.add(sb);
             }
 
-            if (!txInfoResp.getValue().isEmpty()) {
-                // update the highest block for the user
-                Optional<TxInfo> maxBlockHeight = txInfoResp.getValue().stream().max(Comparator.comparing(TxInfo::getBlockHeight));
-
+            // update the highest block for the user
+            Optional<TxInfo> maxBlockHeight = userTxInfos.stream().max(Comparator.comparing(TxInfo::getBlockHeight));
+            Runnable checkpoint = () -> {
                 if (maxBlockHeight.isPresent()) {
                     // Update the user with the new block height plus 1 to avoid picking the last TX
-                    this.userDao.updateUserBlockHeight(user.getId(), maxBlockHeight.get().getBlockHeight() + 1);
+                    checkpoints.updateUserBlockHeight(user.getId(), maxBlockHeight.get().getBlockHeight() + 1);
                     LOG.debug("Updated last block height to {} for user {}",
                             maxBlockHeight.get().getBlockHeight() + 1, user.getId());
-                } else {
+                } else if (!userTxInfos.isEmpty()) {
                     LOG.error("Can't find max block height among {} TX(s) for user {}",
-                            txInfoResp.getValue().size(), user.getId());
+                            userTxInfos.size(), user.getId());
                 }
-            }
+            };
 
-            // compose telegram messages and send them for the user
-            notifyTelegramUser(txBuilders, user, handles);
+            // compose telegram messages and send them for the user, together with the new block height
+            notifyTelegramUser(txBuilders, user, handles, checkpoint);
         } catch (Exception e) {
             LOG.error("Exception while processing {} TX(s) for the user {}",
                     uTxOS.size(), user, e);
+        } finally {
+            this.koiosPermits.release();
         }
     }
 
-    private StringBuilder processTxForUser(TxInfo txInfo, User user) {
-        // check input and output of the TX to determine the nature of the TX itself
-        long allInputValueLovelace = txInfo.getInputs()
-                .stream().filter(tx -> user.getAddress().equals(tx.getStakeAddr()) ||
-                        user.getAddress().equals(tx.getPaymentAddr().getBech32()))
-                .mapToLong(tx -> Long.parseLong(tx.getValue())).sum();
-        long allOutputValueLovelace = txInfo.getOutputs().stream()
-                .filter(tx -> user.getAddress().equals(tx.getStakeAddr()) ||
-                        user.getAddress().equals(tx.getPaymentAddr().getBech32()))
-                .mapToLong(tx -> Long.parseLong(tx.getValue())).sum();
-        long feeLovelace = Long.parseLong(txInfo.getFee());
-        long txBalance = allOutputValueLovelace - allInputValueLovelace;
-
-        long totalWithdrawalsLovelace = getWithdrawalLovelace(txInfo, user);
-        txBalance -= totalWithdrawalsLovelace;
+    /**
+     * Runs the given tasks, one after the other or concurrently on virtual threads if the parallel processing is enabled.
+     * It returns once all the tasks are completed.
+     */
+    private void runTasks(List<Runnable> tasks) {
+        if (!this.parallelEnabled || tasks.size() < 2) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
 
-        if (txBalance < 0 && allOutputValueLovelace > 0)
-            txBalance += feeLovelace;
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(TX_CHECKER_THREAD_FACTORY)) {
+            tasks.forEach(executor::submit);
+        }
+    }
 
-        TxType txType;
-        if (txBalance == 0)
-            txType = TxType.TX_INTERNAL;
-        else if (txBalance > 0)
-            txType = TxType.TX_RECEIVED;
-        else
-            txType = TxType.TX_SENT;
+    /**
+     * Processes the TX from the point of view of the user, rendering its notification
+     */
+    protected StringBuilder processTxForUser(TxInfo txInfo, User user, TxParticipation participation) {
+        long feeLovelace = Long.parseLong(txInfo.getFee());
+        long totalWithdrawalsLovelace = participation.getWithdrawalsLovelace();
+        if (totalWithdrawalsLovelace > 0)
+            LOG.debug("Found {} ADA withdrawal for TX {}", totalWithdrawalsLovelace, txInfo.getTxHash());
 
+        long txBalance = getTxBalance(txInfo, participation);
+        TxType txType = getTxType(txBalance);
         LOG.debug("User {} TX {} is of type {}, with balance {}",
                 user.getAddress(), txInfo.getTxHash(), txType, txBalance);
 
-        Double fee = feeLovelace / LOVELACE;
-
-        // We need to check if there are new assets that we received, even if it's a "sent" TX
-        // We make a diff between all input and output assets that belong to this account. The new ones are the received new assets
-        Set<Asset> inputAssets = txInfo.getInputs().stream()
-                .filter(tx -> user.getAddress().equals(tx.getStakeAddr()) || user.getAddress().equals(tx.getPaymentAddr().getBech32()))
-                .flatMap(io -> io.getAssetList().stream()).collect(Collectors.toSet());
-        Set<Asset> outputAssets = txInfo.getOutputs().stream()
-                .filter(tx -> user.getAddress().equals(tx.getStakeAddr()) || user.getAddress().equals(tx.getPaymentAddr().getBech32()))
-                .flatMap(io -> io.getAssetList().stream()).collect(Collectors.toSet());
-
-        Map<String, Double> inputAssetValues = new HashMap<>();
-        for (Asset ia : inputAssets) {
-            Double val = inputAssetValues.getOrDefault(ia.getFingerprint(), 0d);
-            val += Long.parseLong(ia.getQuantity()) / Math.pow(10, ia.getDecimals());
-            inputAssetValues.put(ia.getFingerprint(), val);
-        }
-
-        Map<String, Double> outputAssetValues = new HashMap<>();
-        for (Asset oa : outputAssets) {
-            Double val = outputAssetValues.getOrDefault(oa.getFingerprint(), 0d);
-            val += Long.parseLong(oa.getQuantity()) / Math.pow(10, oa.getDecimals());
-            outputAssetValues.put(oa.getFingerprint(), val);
-        }
-
-        Map<String, Double> assetValues = new HashMap<>(inputAssetValues);
-        // Input tokens shall be negative because they are leaving the wallet
-        assetValues.replaceAll((k, v) -> v *= -1);
-
-        for (Map.Entry<String, Double> a : outputAssetValues.entrySet()) {
-            if (assetValues.containsKey(a.getKey()))
-                assetValues.put(a.getKey(), assetValues.get(a.getKey()) + a.getValue());
-            else
-                assetValues.put(a.getKey(), a.getValue());
-        }
-
-        Map<Asset, Number> allAssets = new HashMap<>();
-        for (Map.Entry<String, Double> av : assetValues.entrySet()) {
-            // find the asset in input or output
-            Optional<Asset> asset = inputAssets.stream().filter(a -> a.getFingerprint().equals(av.getKey())).findFirst();
-            if (asset.isEmpty())
-                asset = outputAssets.stream().filter(a -> a.getFingerprint().equals(av.getKey())).findFirst();
-
-            if (asset.isEmpty()) {
-                LOG.error("Cannot find the asset with fingerprint {} among input/output lists, in the Tx {}",
-                        av.getKey(), txInfo.getTxHash());
-                continue;
-            }
-
-            // double fuzzy compare to avoid micro precision
-            if (Math.abs(av.getValue()) > EPSILON) {
-                if (asset.get().getDecimals() > 0)
-                    allAssets.put(asset.get(), av.getValue());
-                else
-                    allAssets.put(asset.get(), av.getValue().longValue());
-            }
-        }
-
-        LOG.debug("All assets in TX: {}", assetValues);
-        double totalWithdrawals = totalWithdrawalsLovelace / LOVELACE;
-        double receivedOrSentFunds = txBalance / LOVELACE;
+        AssetDeltas allAssets = getAssetsBalance(txInfo, participation);
 
         // Check for certificates in case it's a delegation TX
         String delegateToPoolName = null;
@@ -431,7 +661,7 @@ public class TransactionCheckerTaskV2 extends AbstractCheckerTask implements Run
             }
         }
 
-        LOG.debug("fee={} ADA, {}={} ADA", fee, txType, receivedOrSentFunds);
+        LOG.debug("fee={} lovelace, {}={} lovelace", feeLovelace, txType, txBalance);
         Double latestCardanoPriceUsd = this.oracle.getPriceUsd();
 
         // Check for any metadata worth showing
@@ -450,18 +680,77 @@ public class TransactionCheckerTaskV2 extends AbstractCheckerTask implements Run
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("TX {} Amount {} Fees {} USD Price {} Pool Delegation {} ({}) Message {} Assets {}",
-                    txInfo.getTxHash(), receivedOrSentFunds, fee, latestCardanoPriceUsd, delegateToPoolName, delegateToPoolId,
-                    metadataMessage, allAssets.keySet().stream().map(Asset::getFingerprint).collect(Collectors.joining("\n")));
+                    txInfo.getTxHash(), txBalance, feeLovelace, latestCardanoPriceUsd, delegateToPoolName, delegateToPoolId,
+                    metadataMessage, allAssets);
         }
 
         StringBuilder sb = new StringBuilder();
-        renderSingleTransactionMessage(sb, txInfo, allAssets, txType, latestCardanoPriceUsd, fee,
-                receivedOrSentFunds, delegateToPoolName, delegateToPoolId, metadataMessage, totalWithdrawals,
+        renderSingleTransactionMessage(sb, txInfo, allAssets, txType, latestCardanoPriceUsd, feeLovelace,
+                txBalance, delegateToPoolName, delegateToPoolId, metadataMessage, totalWithdrawalsLovelace,
                 delegationDrepId, delegationDrepName);
         return sb;
     }
 
+    /**
+     * @return the ADA balance of the TX for the participant, in lovelace, without the withdrawals and,
+     * if it sent funds, without the fee
+     */
+    public static long getTxBalance(TxInfo txInfo, TxParticipation participation) {
+        // check input and output of the TX to determine the nature of the TX itself
+        long allInputValueLovelace = participation.getInputs().stream()
+                .mapToLong(tx -> Long.parseLong(tx.getValue())).sum();
+        long allOutputValueLovelace = participation.getOutputs().stream()
+                .mapToLong(tx -> Long.parseLong(tx.getValue())).sum();
+        long feeLovelace = Long.parseLong(txInfo.getFee());
+        long txBalance = allOutputValueLovelace - allInputValueLovelace;
+        txBalance -= participation.getWithdrawalsLovelace();
+
+        if (txBalance < 0 && allOutputValueLovelace > 0)
+            txBalance += feeLovelace;
+
+        return txBalance;
+    }
+
+    public static TxType getTxType(long txBalance) {
+        if (txBalance == 0)
+            return TxType.TX_INTERNAL;
+        else if (txBalance > 0)
+            return TxType.TX_RECEIVED;
+        else
+            return TxType.TX_SENT;
+    }
+
+    /**
+     * @return the assets received (positive) and sent (negative) by the participant, as exact quantities
+     */
+    public static AssetDeltas getAssetsBalance(TxInfo txInfo, TxParticipation participation) {
+        // We need to check if there are new assets that we received, even if it's a "sent" TX
+        // We make a diff between all input and output assets that belong to this account. The new ones are the received new assets
+        AssetDeltas assetDeltas = new AssetDeltas();
+        for (TxIO input : participation.getInputs()) {
+            // Input tokens shall be negative because they are leaving the wallet
+            for (Asset asset : input.getAssetList())
+                assetDeltas.subtract(asset, asset.getQuantity());
+        }
+        for (TxIO output : participation.getOutputs()) {
+            for (Asset asset : output.getAssetList())
+                assetDeltas.add(asset, asset.getQuantity());
+        }
+
+        LOG.debug("All assets in TX {}: {}", txInfo.getTxHash(), assetDeltas);
+        return assetDeltas;
+    }
+
     public void notifyTelegramUser(List<StringBuilder> txBuilders, User user, Map<String, String> handles) {
+        notifyTelegramUser(txBuilders, user, handles, () -> {
+        });
+    }
+
+    /**
+     * Renders the TXs messages for the user and sends them, together with the given checkpoint
+     */
+    public void notifyTelegramUser(List<StringBuilder> txBuilders, User user, Map<String, String> handles, Runnable checkpoint) {
+        List<String> messages = new ArrayList<>();
         Iterator<List<StringBuilder>> batches = CollectionsUtil.batchesList(txBuilders, MAX_TX_IN_TELEGRAM_NOTIFICATION).iterator();
 
         while (batches.hasNext()) {
@@ -483,50 +772,38 @@ public class TransactionCheckerTaskV2 extends AbstractCheckerTask implements Run
                 LOG.trace("Telegram message for chat-id {}: {}", user.getChatId(), messageBuilder);
             }
 
-            // Notify the user
-            this.telegramFacade.sendMessageTo(user.getChatId(), messageBuilder.toString());
+            messages.add(messageBuilder.toString());
         }
+
+        // Notify the user
+        this.notificationOutbox.send(user.getChatId(), messages, checkpoint);
     }
 
     private StringBuilder renderTransactionMessageHeader(User u, Map<String, String> handles, int noTxs) {
         // Message header
         StringBuilder messageBuilder = new StringBuilder();
-        messageBuilder.append(EmojiParser.parseToUnicode(":key: <a href=\""))
+        messageBuilder.append(MessageTemplates.emoji(":key: <a href=\""))
                 .append(u.isStakeAddress() ? CARDANO_SCAN_STAKE_KEY : CARDANO_SCAN_ADDR_KEY)
                 .append(u.getAddress()).append("\">")
                 .append(handles.getOrDefault(u.getAddress(), shortenAddr(u.getAddress())))
                 .append("</a>\n")
-                .append(EmojiParser.parseToUnicode(":envelope: "))
+                .append(MessageTemplates.emoji(":envelope: "))
                 .append(noTxs)
                 .append(" new transaction(s)\n\n");
 
         return messageBuilder;
     }
 
-    private long getWithdrawalLovelace(TxInfo txInfo, User user) {
-        long totalWithdrawals = 0;
-        if (txInfo.getWithdrawals() != null && !txInfo.getWithdrawals().isEmpty()) {
-            for (TxWithdrawal withdrawal : txInfo.getWithdrawals()) {
-                // Let's check if the withdrawals was for us
-                if (withdrawal.getStakeAddr().equals(user.getAddress()))
-                    totalWithdrawals += Long.parseLong(withdrawal.getAmount());
-            }
-            LOG.debug("Found {} ADA withdrawal for TX {}", totalWithdrawals, txInfo.getTxHash());
-        }
-
-        return totalWithdrawals;
-    }
-
     private StringBuilder renderSingleTransactionMessage(StringBuilder messageBuilder, TxInfo txInfo,
-                                                         Map<Asset, Number> allAssets, TxType txType,
-                                                         Double latestCardanoPriceUsd, Double fee, double receivedOrSentFunds,
+                                                         AssetDeltas allAssets, TxType txType,
+                                                         Double latestCardanoPriceUsd, long fee, long receivedOrSentFunds,
                                                          String delegateToPoolName, String delegateToPoolId, String metadataMessage,
-                                                         double totalWithdrawals, String delegationDrepId, String delegationDrepName) {
+                                                         long totalWithdrawals, String delegationDrepId, String delegationDrepName) {
 
         String fundsTokenText = "";
         // Check how many received and sent tokens we have (negative is sent, positive is received)
-        boolean sentTokens = allAssets.values().stream().anyMatch(v -> v.doubleValue() < 0);
-        boolean receivedTokens = allAssets.values().stream().anyMatch(v -> v.doubleValue() > 0);
+        boolean sentTokens = allAssets.hasSent();
+        boolean receivedTokens = allAssets.hasReceived();
 
         if (sentTokens && receivedTokens)
             fundsTokenText = "Funds, Sent and Received Tokens";
@@ -539,13 +816,13 @@ public class TransactionCheckerTaskV2 extends AbstractCheckerTask implements Run
 
         switch (txType) {
             case TX_RECEIVED:
-                messageBuilder.append(EmojiParser.parseToUnicode(":arrow_heading_down: "));
+                messageBuilder.append(MessageTemplates.emoji(":arrow_heading_down: "));
                 break;
             case TX_SENT:
-                messageBuilder.append(EmojiParser.parseToUnicode(":arrow_heading_up: "));
+                messageBuilder.append(MessageTemplates.emoji(":arrow_heading_up: "));
                 break;
             case TX_INTERNAL:
-                messageBuilder.append(EmojiParser.parseToUnicode(":repeat: "));
+                messageBuilder.append(MessageTemplates.emoji(":repeat: "));
                 break;
         }
 
@@ -561,51 +838,51 @@ public class TransactionCheckerTaskV2 extends AbstractCheckerTask implements Run
                 .append(TX_DATETIME_FORMATTER.format(LocalDateTime.ofEpochSecond(txInfo.getTxTimestamp(), 0, ZoneOffset.UTC)))
                 .append("</i>")
                 .append("\n")
-                .append(EmojiParser.parseToUnicode(":small_blue_diamond:"))
+                .append(MessageTemplates.emoji(":small_blue_diamond:"))
                 .append("Fee ")
-                .append(String.format("%,.2f", fee))
+                .append(MessageTemplates.formatAmount(fee, ADA_DECIMALS))
                 .append(ADA_SYMBOL);
 
         // USD value fees
         if (latestCardanoPriceUsd != null) {
-            messageBuilder.append(" (").append(String.format("%,.2f $", fee * latestCardanoPriceUsd)).append(")");
+            messageBuilder.append(" (").append(MessageTemplates.formatAmount(fee / LOVELACE * latestCardanoPriceUsd)).append(" $").append(")");
         }
 
         // Received/Sent funds
         if (txType != TxType.TX_INTERNAL) {
-            messageBuilder.append(EmojiParser.parseToUnicode("\n:small_blue_diamond:"))
+            messageBuilder.append(MessageTemplates.emoji("\n:small_blue_diamond:"))
                     .append(txType == TxType.TX_RECEIVED ? "Received " : "Sent ")
-                    .append(String.format("%,.2f", receivedOrSentFunds)).append(ADA_SYMBOL);
+                    .append(MessageTemplates.formatAmount(receivedOrSentFunds, ADA_DECIMALS)).append(ADA_SYMBOL);
 
             // USD value if any
             if (latestCardanoPriceUsd != null) {
                 messageBuilder
                         .append(" (")
-                        .append(String.format("%,.2f $", receivedOrSentFunds * latestCardanoPriceUsd))
+                        .append(MessageTemplates.formatAmount(receivedOrSentFunds / LOVELACE * latestCardanoPriceUsd)).append(" $")
                         .append(")");
             }
         }
 
         if (totalWithdrawals > 0) {
             // We got some withdrawals
-            messageBuilder.append(EmojiParser.parseToUnicode("\n:small_red_triangle_down: Withdrawal "))
-                    .append(String.format("%,.2f", totalWithdrawals)).append(ADA_SYMBOL);
+            messageBuilder.append(MessageTemplates.emoji("\n:small_red_triangle_down: Withdrawal "))
+                    .append(MessageTemplates.formatAmount(totalWithdrawals, ADA_DECIMALS)).append(ADA_SYMBOL);
 
             // USD value if any
             if (latestCardanoPriceUsd != null) {
                 messageBuilder
                         .append(" (")
-                        .append(String.format("%,.2f $", totalWithdrawals * latestCardanoPriceUsd))
+                        .append(MessageTemplates.formatAmount(totalWithdrawals / LOVELACE * latestCardanoPriceUsd)).append(" $")
                         .append(")");
             }
         }
 
         // Plutus contract?
         if (txInfo.getPlutusContracts() != null && !txInfo.getPlutusContracts().isEmpty()) {
-            messageBuilder.append(EmojiParser.parseToUnicode("\n:page_with_curl: Plutus Contracts:"));
+            messageBuilder.append(MessageTemplates.emoji("\n:page_with_curl: Plutus Contracts:"));
 
             for (TxPlutusContract plutusContract : txInfo.getPlutusContracts()) {
-                messageBuilder.append(EmojiParser.parseToUnicode("\n\t:black_small_square:"));
+                messageBuilder.append(MessageTemplates.emoji("\n\t:black_small_square:"));
 
                 if (plutusContract.getAddress() != null && this.contracts.containsKey(plutusContract.getAddress())) {
                     messageBuilder.append(" [").append(this.contracts.get(plutusContract.getAddress())).append("] ");
@@ -620,7 +897,7 @@ public class TransactionCheckerTaskV2 extends AbstractCheckerTask implements Run
         // delegation to pool?
         if (delegateToPoolName != null && delegateToPoolId != null) {
             messageBuilder
-                    .append(EmojiParser.parseToUnicode("\n:classical_building:"))
+                    .append(MessageTemplates.emoji("\n:classical_building:"))
                     .append(" Delegated to ")
                     .append("<a href=\"")
                     .append(CARDANO_SCAN_STAKE_POOL)
@@ -633,7 +910,7 @@ public class TransactionCheckerTaskV2 extends AbstractCheckerTask implements Run
         // delegation to drep?
         if (delegationDrepId != null && delegationDrepName != null) {
             messageBuilder
-                    .append(EmojiParser.parseToUnicode("\n:scales: "))
+                    .append(MessageTemplates.emoji("\n:scales: "))
                     .append(" DRep delegation to ");
             if (delegationDrepId.startsWith(DREP_HASH_PREFIX)) {
                 messageBuilder.append("<a href=\"")
@@ -650,29 +927,43 @@ public class TransactionCheckerTaskV2 extends AbstractCheckerTask implements Run
         // Message on metadata?
         if (metadataMessage != null) {
             messageBuilder
-                    .append(EmojiParser.parseToUnicode("\n:speech_balloon:"))
+                    .append(MessageTemplates.emoji("\n:speech_balloon:"))
                     .append(metadataMessage);
         }
 
         if (metadataMessage == null && txInfo.getMetadata() != null) {
             messageBuilder
-                    .append(EmojiParser.parseToUnicode("\n:memo: With Metadata"));
+                    .append(MessageTemplates.emoji("\n:memo: With Metadata"));
         }
 
         // Any assets?
-        for (Map.Entry<Asset, Number> asset : allAssets.entrySet()) {
-            String assetName = hexToAscii(asset.getKey().getAssetName(), asset.getKey().getPolicyId());
+        for (int i = 0; i < allAssets.size(); i++) {
+            if (allAssets.signum(i) == 0) continue; // Moved within the wallet
+
+            Asset asset = allAssets.getAsset(i);
+            String assetName = hexToAscii(asset.getAssetName(), asset.getPolicyId());
             try {
-                assetName = this.assetFacade.getAssetDisplayName(asset.getKey().getPolicyId(), asset.getKey().getAssetName());
+                assetName = this.assetFacade.getAssetDisplayName(asset.getPolicyId(), asset.getAssetName());
             } catch (ApiException e) {
                 LOG.warn("Could not get the asset quantity for asset {}/{}: {}",
-                        asset.getKey().getPolicyId(), asset.getKey().getAssetName(), e.toString());
+                        asset.getPolicyId(), asset.getAssetName(), e.toString());
             }
 
+            int decimals = allAssets.getDecimals(i);
+            String quantity;
+            if (allAssets.isLarge(i)) {
+                quantity = decimals > 0 ?
+                        MessageTemplates.formatAmount(allAssets.getLargeQuantity(i), decimals) :
+                        MessageTemplates.formatQuantity(allAssets.getLargeQuantity(i));
+            } else {
+                quantity = decimals > 0 ?
+                        MessageTemplates.formatAmount(allAssets.getQuantity(i), decimals) :
+                        MessageTemplates.formatQuantity(allAssets.getQuantity(i));
+            }
             messageBuilder
-                    .append(EmojiParser.parseToUnicode("\n:small_orange_diamond:"))
+                    .append(MessageTemplates.emoji("\n:small_orange_diamond:"))
                     .append(assetName).append(" ")
-                    .append(this.assetFacade.formatAssetQuantity(asset.getValue()));
+                    .append(quantity);
         }
 
         messageBuilder.append("\n\n"); // Some padding between TXs
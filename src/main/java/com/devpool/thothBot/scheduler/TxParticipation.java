@@ -0,0 +1,79 @@
+package com.devpool.thothBot.scheduler;
+
+import com.devpool.thothBot.dao.SubscribedAddressIndex;
+import rest.koios.client.backend.api.transactions.model.TxIO;
+import rest.koios.client.backend.api.transactions.model.TxInfo;
+import rest.koios.client.backend.api.transactions.model.TxWithdrawal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The part of a TX that belongs to a single subscription: its inputs, outputs and withdrawals.
+ * All the subscriptions involved in a TX are resolved with a single pass over the TX, via {@link #of(TxInfo, SubscribedAddressIndex)}.
+ */
+public class TxParticipation {
+    private final List<TxIO> inputs = new ArrayList<>();
+    private final List<TxIO> outputs = new ArrayList<>();
+    private long withdrawalsLovelace = 0;
+
+    /**
+     * @param txInfo the TX
+     * @param index  the subscribed addresses index
+     * @return subscription ID -> participation to the TX, for every subscription involved in the TX
+     */
+    public static Map<Long, TxParticipation> of(TxInfo txInfo, SubscribedAddressIndex index) {
+        Map<Long, TxParticipation> participations = new HashMap<>();
+
+        if (txInfo.getInputs() != null) {
+            for (TxIO io : txInfo.getInputs()) {
+                for (long id : getSubscriptionIds(io, index))
+                    participations.computeIfAbsent(id, k -> new TxParticipation()).inputs.add(io);
+            }
+        }
+
+        if (txInfo.getOutputs() != null) {
+            for (TxIO io : txInfo.getOutputs()) {
+                for (long id : getSubscriptionIds(io, index))
+                    participations.computeIfAbsent(id, k -> new TxParticipation()).outputs.add(io);
+            }
+        }
+
+        if (txInfo.getWithdrawals() != null) {
+            for (TxWithdrawal withdrawal : txInfo.getWithdrawals()) {
+                for (long id : index.getSubscriptionIds(withdrawal.getStakeAddr()))
+                    participations.computeIfAbsent(id, k -> new TxParticipation()).withdrawalsLovelace +=
+                            Long.parseLong(withdrawal.getAmount());
+            }
+        }
+
+        return participations;
+    }
+
+    private static long[] getSubscriptionIds(TxIO io, SubscribedAddressIndex index) {
+        long[] stakeIds = index.getSubscriptionIds(io.getStakeAddr());
+        long[] paymentIds = index.getSubscriptionIds(io.getPaymentAddr() != null ? io.getPaymentAddr().getBech32() : null);
+        if (stakeIds.length == 0) return paymentIds;
+        if (paymentIds.length == 0) return stakeIds;
+
+        long[] all = new long[stakeIds.length + paymentIds.length];
+        System.arraycopy(stakeIds, 0, all, 0, stakeIds.length);
+        System.arraycopy(paymentIds, 0, all, stakeIds.length, paymentIds.length);
+        return all;
+    }
+
+    public List<TxIO> getInputs() {
+        return Collections.unmodifiableList(inputs);
+    }
+
+    public List<TxIO> getOutputs() {
+        return Collections.unmodifiableList(outputs);
+    }
+
+    public long getWithdrawalsLovelace() {
+        return withdrawalsLovelace;
+    }
+}
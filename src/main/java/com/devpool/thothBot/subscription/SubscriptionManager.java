@@ -1,6 +1,7 @@
 package com.devpool.thothBot.subscription;
 
 import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.UserRegistry;
 import com.devpool.thothBot.dao.data.User;
 import com.devpool.thothBot.exceptions.KoiosResponseException;
 import com.devpool.thothBot.exceptions.SubscriptionException;
@@ -8,7 +9,7 @@ import com.devpool.thothBot.koios.KoiosFacade;
 import com.devpool.thothBot.scheduler.AbstractCheckerTask;
 import com.devpool.thothBot.telegram.TelegramFacade;
 import com.devpool.thothBot.util.CollectionsUtil;
-import com.vdurmont.emoji.EmojiParser;
+import com.devpool.thothBot.util.MessageTemplates;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -63,6 +64,9 @@ public class SubscriptionManager implements Runnable, ISubscriptionManager {
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private UserRegistry userRegistry;
+
     @Lazy
     @Autowired
     private TelegramFacade telegramFacade;
@@ -72,8 +76,8 @@ public class SubscriptionManager implements Runnable, ISubscriptionManager {
     public void post() throws Exception {
         this.helpText = new BufferedReader(new InputStreamReader(
                 this.subscriptionHelpResource.getInputStream())).lines().collect(Collectors.joining("\n"));
-        this.helpText = this.helpText.replace("%white_small_square", EmojiParser.parseToUnicode(":white_small_square:"));
-        this.helpText = this.helpText.replace("%speaking_head_in_silhouette", EmojiParser.parseToUnicode(":speaking_head_in_silhouette:"));
+        this.helpText = this.helpText.replace("%white_small_square", MessageTemplates.emoji(":white_small_square:"));
+        this.helpText = this.helpText.replace("%speaking_head_in_silhouette", MessageTemplates.emoji(":speaking_head_in_silhouette:"));
     }
 
 
@@ -93,10 +97,9 @@ public class SubscriptionManager implements Runnable, ISubscriptionManager {
 
         LOG.debug("The stake address {} is not delegated to DEV. Checking NFTs for subscriptions and stolen NFTs", address);
 
-        List<User> allUsers = this.userDao.getUsers();
+        List<User> userSubscriptions = this.userDao.getChatSubscriptions(chatId);
 
-        List<String> allUserSubscriptions = allUsers.stream()
-                .filter(u -> u.getChatId().equals(chatId))
+        List<String> allUserSubscriptions = userSubscriptions.stream()
                 .map(User::getAddress).distinct().collect(Collectors.toList());
 
         // retrieve all assets belonging to this user
@@ -112,8 +115,8 @@ public class SubscriptionManager implements Runnable, ISubscriptionManager {
 
         // Before proceeding, we need to verify that the address the user wasts to subscribe to,
         // does not have NFTs if it already belongs to someone.
-        Optional<User> originalUser = allUsers.stream()
-                .filter(u -> !Objects.equals(u.getChatId(), chatId) && u.getAddress().equals(address))
+        Optional<User> originalUser = this.userDao.getUsersByAddress(address).stream()
+                .filter(u -> !Objects.equals(u.getChatId(), chatId))
                 .findAny();
 
         if (originalUser.isPresent()) {
@@ -133,8 +136,7 @@ public class SubscriptionManager implements Runnable, ISubscriptionManager {
                 .filter(a -> a.getPolicyId().equals(this.freeForAllNftPolicyId) || a.getPolicyId().equals(this.stakeNftPolicyId)).count();
 
         // Get current subscriptions
-        long noCurrentSubscriptions = allUsers.stream()
-                .filter(u -> u.getChatId().equals(chatId)).count() - devStakers;
+        long noCurrentSubscriptions = userSubscriptions.size() - devStakers;
 
         LOG.debug("The user {} holds {} subscription NFTs, and it is currently subscribed to {} accounts/addresses",
                 chatId, noUserSubscriptionNfts, noCurrentSubscriptions);
@@ -352,7 +354,7 @@ public class SubscriptionManager implements Runnable, ISubscriptionManager {
 
     @Override
     public void run() {
-        List<User> allUsers = this.userDao.getUsers();
+        List<User> allUsers = this.userRegistry.snapshot().getUsers();
         Map<Long, List<String>> allSubscriptions = new HashMap<>();
         Map<Long, List<String>> addressSubscriptions = new HashMap<>();
         Map<Long, List<String>> accountSubscriptions = new HashMap<>();
@@ -455,7 +457,7 @@ public class SubscriptionManager implements Runnable, ISubscriptionManager {
                 .append("the following subscriptions have been removed:\n");
         for (String addr : subscriptionsToBeRemoved) {
             this.userDao.removeAddress(chatId, addr);
-            sb.append(EmojiParser.parseToUnicode(":small_blue_diamond:"))
+            sb.append(MessageTemplates.emoji(":small_blue_diamond:"))
                     .append(AbstractCheckerTask.shortenAddr(addr))
                     .append("\n");
         }
@@ -0,0 +1,219 @@
+package com.devpool.thothBot.telegram;
+
+import com.devpool.thothBot.dao.NotificationOutboxDao;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the notifications of the checker tasks together with their checkpoints. When the outbox is enabled, the
+ * notifications are stored in the DB in the same transaction of the checkpoint, and a worker delivers them afterward,
+ * marking them as sent once delivered: a crash or a Telegram outage can't lose a notification anymore (at-least-once
+ * delivery). Otherwise, the checkpoint is saved and the notifications are sent right away.
+ * <p>
+ * The claims of the notifications still waiting in the Telegram outbound queue are renewed at every poll, so that a
+ * large backlog is not claimed, and sent, twice. At most {@code thoth.notification.outbox.max-in-flight} notifications
+ * are claimed at the same time.
+ */
+@Component
+public class NotificationOutbox {
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationOutbox.class);
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Autowired
+    private TelegramFacade telegramFacade;
+
+    @Autowired
+    private NotificationOutboxDao notificationOutboxDao;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MetricsHelper metricsHelper;
+
+    @Value("${thoth.notification.outbox.enabled:false}")
+    private boolean enabled;
+
+    @Value("${thoth.notification.outbox.poll-interval-ms:1000}")
+    private long pollIntervalMillis;
+
+    @Value("${thoth.notification.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${thoth.notification.outbox.lease-secs:300}")
+    private long leaseSecs;
+
+    @Value("${thoth.notification.outbox.max-in-flight:1000}")
+    private int maxInFlight;
+
+    @Value("${thoth.notification.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${thoth.notification.outbox.retention-hours:24}")
+    private long retentionHours;
+
+    private final Queue<Long> sentMessages = new ConcurrentLinkedQueue<>();
+    // Claimed and not marked as sent yet
+    private final Set<Long> inFlightMessages = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("Notification-Outbox-Worker"));
+    private volatile boolean running = false;
+    private long lastPurgeMillis = 0;
+
+    @PostConstruct
+    public void post() {
+        if (this.enabled) {
+            this.running = true;
+            this.worker.scheduleWithFixedDelay(this::deliverPendingMessages,
+                    this.pollIntervalMillis, this.pollIntervalMillis, TimeUnit.MILLISECONDS);
+            LOG.info("Notification outbox enabled, polling every {} ms", this.pollIntervalMillis);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.running = false;
+        this.worker.shutdownNow();
+        try {
+            if (this.worker.awaitTermination(5, TimeUnit.SECONDS))
+                flushSentMessages();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Saves the checkpoint and sends the message
+     *
+     * @param chatId     the chat ID to notify
+     * @param message    the message
+     * @param checkpoint the DB updates the message belongs to
+     */
+    public void send(Long chatId, String message, Runnable checkpoint) {
+        send(chatId, List.of(message), checkpoint);
+    }
+
+    /**
+     * Saves the checkpoint and sends the messages, in order
+     *
+     * @param chatId     the chat ID to notify
+     * @param messages   the messages
+     * @param checkpoint the DB updates the messages belong to
+     */
+    public void send(Long chatId, List<String> messages, Runnable checkpoint) {
+        if (!this.enabled) {
+            checkpoint.run();
+            messages.forEach(m -> this.telegramFacade.sendMessageTo(chatId, m));
+            return;
+        }
+
+        this.transactionTemplate.executeWithoutResult(status -> {
+            checkpoint.run();
+            if (!messages.isEmpty())
+                this.notificationOutboxDao.addMessages(chatId, messages);
+        });
+    }
+
+    /**
+     * Saves the checkpoint and sends the same messages, in order, to all the given chats
+     *
+     * @param chatIds    the chat IDs to notify
+     * @param messages   the messages, rendered once for all the chats
+     * @param checkpoint the DB updates the messages belong to
+     */
+    public void broadcast(Collection<Long> chatIds, List<String> messages, Runnable checkpoint) {
+        if (!this.enabled) {
+            checkpoint.run();
+            chatIds.forEach(chatId -> messages.forEach(m -> this.telegramFacade.sendMessageTo(chatId, m)));
+            return;
+        }
+
+        this.transactionTemplate.executeWithoutResult(status -> {
+            checkpoint.run();
+            if (!messages.isEmpty() && !chatIds.isEmpty())
+                this.notificationOutboxDao.addMessages(chatIds, messages);
+        });
+    }
+
+    private void deliverPendingMessages() {
+        try {
+            flushSentMessages();
+            if (!this.inFlightMessages.isEmpty())
+                this.notificationOutboxDao.renewClaims(List.copyOf(this.inFlightMessages), this.leaseSecs);
+
+            List<NotificationOutboxDao.OutboxMessage> messages;
+            int limit;
+            do {
+                limit = Math.min(this.batchSize, this.maxInFlight - this.inFlightMessages.size());
+                if (limit <= 0) break;
+
+                messages = this.notificationOutboxDao.claimMessages(limit, this.leaseSecs, this.maxAttempts);
+                for (NotificationOutboxDao.OutboxMessage message : messages) {
+                    // Claimed again because the renewal failed: it's still in the Telegram queue
+                    if (!this.inFlightMessages.add(message.id())) continue;
+                    this.telegramFacade.sendMessageTo(message.chatId(), message.message(),
+                            successful -> messageDelivered(message.id(), successful));
+                }
+                if (!messages.isEmpty())
+                    LOG.debug("Claimed {} notification(s) from the outbox", messages.size());
+            } while (messages.size() == limit && this.running);
+
+            if (System.currentTimeMillis() - this.lastPurgeMillis > PURGE_INTERVAL_MILLIS) {
+                this.lastPurgeMillis = System.currentTimeMillis();
+                int purged = this.notificationOutboxDao.purgeMessages(this.retentionHours, this.maxAttempts);
+                LOG.debug("Purged {} notification(s) from the outbox", purged);
+            }
+            this.metricsHelper.hitGauge("notification_outbox_pending", this.notificationOutboxDao.countPendingMessages());
+        } catch (Exception e) {
+            LOG.error("Error while delivering the outbox notifications: {}", e, e);
+        }
+    }
+
+    private void messageDelivered(long id, boolean successful) {
+        if (!successful) {
+            // It will be claimed again once the lease expires, up to the max attempts
+            this.inFlightMessages.remove(id);
+            this.metricsHelper.incrementCounter("notification_outbox_failures");
+            return;
+        }
+
+        this.sentMessages.add(id);
+        if (!this.running)
+            flushSentMessages();
+    }
+
+    private void flushSentMessages() {
+        List<Long> ids = new ArrayList<>();
+        Long id;
+        while ((id = this.sentMessages.poll()) != null)
+            ids.add(id);
+
+        try {
+            this.notificationOutboxDao.markSent(ids);
+        } catch (Exception e) {
+            // They will be sent again, once the lease expires
+            LOG.error("Can't mark {} notification(s) as sent: {}", ids.size(), e.toString());
+        } finally {
+            ids.forEach(this.inFlightMessages::remove);
+        }
+    }
+}
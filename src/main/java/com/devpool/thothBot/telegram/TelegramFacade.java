@@ -1,5 +1,6 @@
 package com.devpool.thothBot.telegram;
 
+import com.devpool.thothBot.cluster.ClusterCoordinator;
 import com.devpool.thothBot.monitoring.MetricsHelper;
 import com.devpool.thothBot.telegram.command.HelpCmd;
 import com.devpool.thothBot.telegram.command.IBotCommand;
@@ -9,12 +10,13 @@ import com.pengrad.telegrambot.model.LinkPreviewOptions;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.model.request.ParseMode;
 import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.request.SetWebhook;
+import com.pengrad.telegrambot.response.BaseResponse;
 import com.pengrad.telegrambot.response.SendResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
@@ -23,12 +25,13 @@ import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component
 public class TelegramFacade {
     private static final Logger LOG = LoggerFactory.getLogger(TelegramFacade.class);
-    private static final int COMMAND_MAX_THREADS = 50;
+    private static final long COMMAND_INTERRUPT_GRACE_MILLIS = 100;
 
     @Autowired
     private List<IBotCommand> commands;
@@ -36,6 +39,9 @@ public class TelegramFacade {
     @Autowired
     private MetricsHelper metricsHelper;
 
+    @Autowired
+    private ClusterCoordinator clusterCoordinator;
+
     private long totalMessages;
     private long totalCommands;
 
@@ -48,21 +54,72 @@ public class TelegramFacade {
 
     private final Timer performanceSampler = new Timer("Telegram Facade Sampler", true);
 
-    private final ExecutorService commandRunnerExecutor = Executors.newFixedThreadPool(COMMAND_MAX_THREADS,
-            new CustomizableThreadFactory("Telegram-Cmd-Thread"));
+    /**
+     * Every update is handled on its own virtual thread, waiting for its command to complete, up to its timeout
+     */
+    private final ExecutorService commandExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("Telegram-Cmd-", 0).factory());
 
-    private final ScheduledExecutorService commandCompletionExecutor = Executors.newScheduledThreadPool(COMMAND_MAX_THREADS,
-            new CustomizableThreadFactory("Telegram-Cmd-Completion-Thread"));
+    /**
+     * Bounds the updates being handled at the same time
+     */
+    private Semaphore updatesAdmission;
     private TelegramBot bot;
 
+    @Value("${thoth.telegram.updates.max-pending:500}")
+    private int maxPendingUpdates;
+
+    @Value("${thoth.telegram.updates.admission-timeout-ms:200}")
+    private long updatesAdmissionTimeoutMillis;
+
+    @Value("${thoth.telegram.webhook.enabled:false}")
+    private boolean webhookEnabled;
+
+    @Value("${thoth.telegram.webhook.url:}")
+    private String webhookUrl;
+
+    @Value("${thoth.telegram.webhook.secret-token:}")
+    private String webhookSecretToken;
+
     @Value("${telegram.bot.token}")
     private String botToken;
 
+    @Value("${thoth.telegram.outbound.enabled:true}")
+    private boolean outboundQueueEnabled;
+
+    @Value("${thoth.telegram.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${thoth.telegram.outbound.enqueue-timeout-ms:60000}")
+    private long outboundEnqueueTimeoutMillis;
+
+    @Value("${thoth.telegram.outbound.global-messages-per-sec:30}")
+    private double outboundGlobalMessagesPerSec;
+
+    @Value("${thoth.telegram.outbound.chat-messages-per-sec:1}")
+    private double outboundChatMessagesPerSec;
+
+    @Value("${thoth.telegram.outbound.max-attempts:5}")
+    private int outboundMaxAttempts;
+
+    @Value("${thoth.telegram.outbound.senders:8}")
+    private int outboundSenders;
+
+    private TelegramOutboundQueue outboundQueue;
+
     @PostConstruct
     public void post() {
         // Create your bot passing the token received from @BotFather
         this.bot = new TelegramBot(this.botToken);
 
+        if (this.outboundQueueEnabled) {
+            this.outboundQueue = new TelegramOutboundQueue(this.bot, this.metricsHelper, this::notificationSent,
+                    this.outboundQueueCapacity, this.outboundEnqueueTimeoutMillis, this.outboundGlobalMessagesPerSec,
+                    this.outboundChatMessagesPerSec, this.outboundMaxAttempts, this.outboundSenders);
+            LOG.info("Sending notifications asynchronously, up to {} msgs/sec and {} msgs/sec per chat",
+                    this.outboundGlobalMessagesPerSec, this.outboundChatMessagesPerSec);
+        }
+
         // Create performance samples
         performanceSampler.schedule(new TimerTask() {
             @Override
@@ -71,11 +128,14 @@ public class TelegramFacade {
             }
         }, 1000, 5000);
 
-        // Register for updates
-        bot.setUpdatesListener(updates -> {
-            updates.forEach(u -> processUpdate(u, bot));
-            return UpdatesListener.CONFIRMED_UPDATES_ALL;
-        });
+        this.updatesAdmission = new Semaphore(Math.max(1, this.maxPendingUpdates));
+
+        // Register for updates. Only the leader instance polls them, as Telegram allows a single consumer.
+        // The webhook instead is registered by the leader, and served by any instance
+        if (this.webhookEnabled)
+            this.clusterCoordinator.addLeadershipListener(this::registerWebhookIfLeader);
+        else
+            this.clusterCoordinator.addLeadershipListener(this::pollUpdatesIfLeader);
 
         LOG.info("Telegram Facade initialised");
     }
@@ -90,6 +150,10 @@ public class TelegramFacade {
             this.metricsHelper.hitGauge("telegram_timeout_commands", this.timeoutCommands);
             this.metricsHelper.hitGauge("telegram_tot_notifications_success", this.totalNotificationsSentSuccessful);
             this.metricsHelper.hitGauge("telegram_tot_notifications_failed", this.totalNotificationsSentFailed);
+            if (this.outboundQueue != null) {
+                this.metricsHelper.hitGauge("telegram_outbound_queue_depth", this.outboundQueue.getQueueDepth());
+                this.outboundQueue.cleanUp();
+            }
 
             LOG.trace("Calculated new gauge sample for telegram facade {} msgs, {} cmds, {} errors, {} timeout, {} notifications successful, {} notifications failed",
                     this.totalMessages, this.totalCommands, this.errorCommands, this.timeoutCommands,
@@ -97,7 +161,49 @@ public class TelegramFacade {
         }
     }
 
+    /**
+     * Admits the update, if there are less than the max pending ones, and handles it asynchronously
+     *
+     * @return false if the update was not admitted, and it should be delivered again later
+     */
+    public boolean admitUpdate(Update update) {
+        try {
+            if (!this.updatesAdmission.tryAcquire(this.updatesAdmissionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                this.metricsHelper.incrementCounter("telegram_rejected_updates");
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        handleAdmittedUpdate(update);
+        return true;
+    }
+
+    private void handleAdmittedUpdate(Update update) {
+        try {
+            this.commandExecutor.execute(() -> {
+                try {
+                    handleUpdate(update, this.bot);
+                } finally {
+                    this.updatesAdmission.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.updatesAdmission.release();
+            LOG.warn("Not handling the update {}, shutting down", update.updateId());
+        }
+    }
+
+    /**
+     * Handles the update asynchronously, without any admission control
+     */
     public void processUpdate(Update update, TelegramBot bot) {
+        this.commandExecutor.execute(() -> handleUpdate(update, bot));
+    }
+
+    private void handleUpdate(Update update, TelegramBot bot) {
         if (update == null) {
             LOG.warn("Update is null");
             return;
@@ -150,58 +256,123 @@ public class TelegramFacade {
         }
 
         TelegramMessageCallable commandCallable = new TelegramMessageCallable(id, command, update, this.bot, from, payload);
-        Future<Boolean> commandFuture = this.commandRunnerExecutor.submit(commandCallable);
-
-        // check after XYZ secs if the command is completed. If not, we kill it.
-        // This way we don't block other commands in the pipeline
-        this.commandCompletionExecutor.schedule(() -> {
-            try {
-                Boolean outcome = commandFuture.get(100, TimeUnit.MILLISECONDS);
-                if (Boolean.FALSE.equals(outcome))
-                    synchronized (this.performanceSampler) {
-                        this.errorCommands++;
-                    }
-            } catch (TimeoutException e) {
+        Future<Boolean> commandFuture = this.commandExecutor.submit(commandCallable);
+
+        // Wait for the command up to its timeout. If not completed, we kill it.
+        // This is a virtual thread, so waiting doesn't block other commands in the pipeline
+        try {
+            Boolean outcome = commandFuture.get(TimeUnit.SECONDS.toMillis(command.getCommandExecutionTimeoutSeconds()) +
+                    COMMAND_INTERRUPT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            if (Boolean.FALSE.equals(outcome))
                 synchronized (this.performanceSampler) {
-                    this.timeoutCommands++;
+                    this.errorCommands++;
                 }
-                commandFuture.cancel(true); // Interrupt the command thread
-                LOG.warn("The command execution {}, from {}, timed out", payload, from);
-                bot.execute(new SendMessage(id,
-                        "Sorry, your command timed out. Please retry later"));
-            } catch (ExecutionException | InterruptedException e) {
-                LOG.error("Exception while waiting for command {} to complete its execution", payload, e);
-                if (Thread.interrupted())
+        } catch (TimeoutException e) {
+            synchronized (this.performanceSampler) {
+                this.timeoutCommands++;
+            }
+            commandFuture.cancel(true); // Interrupt the command thread
+            LOG.warn("The command execution {}, from {}, timed out", payload, from);
+            bot.execute(new SendMessage(id,
+                    "Sorry, your command timed out. Please retry later"));
+        } catch (ExecutionException | InterruptedException e) {
+            LOG.error("Exception while waiting for command {} to complete its execution", payload, e);
+            if (Thread.interrupted())
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private void pollUpdatesIfLeader(boolean leader) {
+        if (!leader) {
+            LOG.info("Not polling the Telegram updates, as this instance is not the leader");
+            this.bot.removeGetUpdatesListener();
+            return;
+        }
+
+        LOG.info("Polling the Telegram updates");
+        this.bot.setUpdatesListener(updates -> {
+            // Waiting for the admission slows down the polling, leaving the updates on the Telegram side
+            for (Update u : updates) {
+                try {
+                    this.updatesAdmission.acquire();
+                } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
+                    return u.updateId() - 1; // Confirm only the admitted ones
+                }
+                handleAdmittedUpdate(u);
             }
-        }, command.getCommandExecutionTimeoutSeconds(), TimeUnit.SECONDS);
+            return UpdatesListener.CONFIRMED_UPDATES_ALL;
+        });
+    }
+
+    private void registerWebhookIfLeader(boolean leader) {
+        if (!leader) return;
+
+        SetWebhook setWebhook = new SetWebhook().url(this.webhookUrl);
+        if (!this.webhookSecretToken.isEmpty())
+            setWebhook.secretToken(this.webhookSecretToken);
+
+        BaseResponse response = this.bot.execute(setWebhook);
+        if (response.isOk())
+            LOG.info("Receiving the Telegram updates with the webhook {}", this.webhookUrl);
+        else
+            LOG.error("Cannot register the Telegram webhook {}: {} {}",
+                    this.webhookUrl, response.errorCode(), response.description());
     }
 
     @PreDestroy
     public void shutdown() {
         LOG.info("Shutting down...");
+        if (this.outboundQueue != null)
+            this.outboundQueue.shutdown(10, TimeUnit.SECONDS);
         this.bot.shutdown();
         this.performanceSampler.cancel();
-        this.commandRunnerExecutor.shutdown();
-        this.commandCompletionExecutor.shutdown();
+        this.commandExecutor.shutdown();
     }
 
+    /**
+     * Sends the message to the given chat. If the outbound queue is enabled, the message is only enqueued and
+     * it is delivered asynchronously.
+     */
     public void sendMessageTo(Long chatId, String message) {
+        sendMessageTo(chatId, message, null);
+    }
+
+    /**
+     * Same as {@link #sendMessageTo(Long, String)}, notifying the given listener, if any, with the final outcome
+     * of the delivery
+     */
+    public void sendMessageTo(Long chatId, String message, Consumer<Boolean> outcomeListener) {
         SendMessage sm = new SendMessage(chatId, message)
                 .parseMode(ParseMode.HTML)
                 .linkPreviewOptions(new LinkPreviewOptions().isDisabled(true));
+        if (this.outboundQueue != null) {
+            if (!this.outboundQueue.enqueue(chatId, sm, outcomeListener)) {
+                notificationSent(chatId, false);
+                if (outcomeListener != null)
+                    outcomeListener.accept(false);
+            }
+            return;
+        }
+
         SendResponse outcome = bot.execute(sm);
         if (outcome.isOk()) {
             LOG.debug("Sent message to {} with result isOk={} errorCode={} description={} ",
                     chatId, outcome.isOk(), outcome.errorCode(), outcome.description());
-            synchronized (this.performanceSampler) {
-                this.totalNotificationsSentSuccessful++;
-            }
         } else {
             LOG.error("Can't send message due to code={} description={} message={}", outcome.errorCode(), outcome.description(), message);
-            synchronized (this.performanceSampler) {
+        }
+        notificationSent(chatId, outcome.isOk());
+        if (outcomeListener != null)
+            outcomeListener.accept(outcome.isOk());
+    }
+
+    private void notificationSent(Long chatId, boolean successful) {
+        synchronized (this.performanceSampler) {
+            if (successful)
+                this.totalNotificationsSentSuccessful++;
+            else
                 this.totalNotificationsSentFailed++;
-            }
         }
     }
 
@@ -1,5 +1,6 @@
 package com.devpool.thothBot.telegram;
 
+import com.devpool.thothBot.koios.KoiosRequestPriority;
 import com.devpool.thothBot.telegram.command.IBotCommand;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.Update;
@@ -30,6 +31,8 @@ public class TelegramMessageCallable implements Callable<Boolean> {
     @Override
     public Boolean call() {
         LOG.debug("Command {} has been started by {}", payload, from);
+        // User commands go ahead of the background Koios requests
+        KoiosRequestPriority.set(KoiosRequestPriority.INTERACTIVE);
         try {
             this.command.execute(this.update, this.bot);
         } catch (Exception e) {
@@ -40,6 +43,8 @@ public class TelegramMessageCallable implements Callable<Boolean> {
             bot.execute(new SendMessage(id,
                     "Command " + this.payload + " execution failed with an unexpected error: " + e));
             return false;
+        } finally {
+            KoiosRequestPriority.reset();
         }
         return true;
     }
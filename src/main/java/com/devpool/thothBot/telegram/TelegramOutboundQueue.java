@@ -0,0 +1,302 @@
+package com.devpool.thothBot.telegram;
+
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import com.devpool.thothBot.util.TokenBucket;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import io.micrometer.core.instrument.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of the outgoing Telegram messages, delivered asynchronously. The messages of the same chat are
+ * delivered one at a time, in order, and no faster than the per chat rate, while all the chats together do not exceed
+ * the global rate. A 429 response postpones the chat by the {@code retry_after} given by Telegram, up to
+ * {@value #MAX_THROTTLED_ATTEMPTS} times, while network and server errors are retried with exponential backoff.
+ */
+public class TelegramOutboundQueue {
+    private static final Logger LOG = LoggerFactory.getLogger(TelegramOutboundQueue.class);
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+    private static final long BACKOFF_BASE_MILLIS = 1000;
+    private static final long BACKOFF_MAX_MILLIS = 60000;
+    private static final int MAX_THROTTLED_ATTEMPTS = 10;
+
+    private final TelegramBot bot;
+    private final MetricsHelper metricsHelper;
+    private final BiConsumer<Long, Boolean> outcomeListener;
+    private final Semaphore capacity;
+    private final int queueCapacity;
+    private final long enqueueTimeoutMillis;
+    private final int maxAttempts;
+    private final long chatIntervalNanos;
+    private final TokenBucket globalRate;
+    private final Map<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final DelayQueue<ChatQueue> readyChats = new DelayQueue<>();
+    private final ExecutorService dispatcherExecutor = Executors.newSingleThreadExecutor(
+            new CustomizableThreadFactory("Telegram-Outbound-Dispatcher"));
+    private final ExecutorService senderExecutor;
+    private volatile boolean running = true;
+
+    private record OutboundMessage(SendMessage message, long enqueuedAt, Consumer<Boolean> outcomeListener) {
+    }
+
+    /**
+     * The pending messages of a chat. It is in the ready queue, waiting for its turn, as long as it has pending
+     * messages and none of them is being delivered.
+     */
+    private static class ChatQueue implements Delayed {
+        private final Long chatId;
+        private final Queue<OutboundMessage> messages = new ArrayDeque<>();
+        private boolean scheduled = false;
+        private int attempts = 0;
+        private int throttledAttempts = 0;
+        private long readyAt;
+        private long nextAllowedAt;
+
+        ChatQueue(Long chatId) {
+            this.chatId = chatId;
+            this.nextAllowedAt = System.nanoTime();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(this.readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(this.readyAt, ((ChatQueue) o).readyAt);
+        }
+    }
+
+    /**
+     * @param bot                    the Telegram bot
+     * @param metricsHelper          the metrics helper
+     * @param outcomeListener        notified with the chat ID and the final outcome of every message
+     * @param queueCapacity          max number of pending messages
+     * @param enqueueTimeoutMillis   max time to wait for room in the queue, before dropping the message
+     * @param globalMessagesPerSec   max messages per second, across all chats
+     * @param chatMessagesPerSec     max messages per second to the same chat
+     * @param maxAttempts            max delivery attempts of a message
+     * @param senders                number of threads delivering the messages
+     */
+    public TelegramOutboundQueue(TelegramBot bot, MetricsHelper metricsHelper, BiConsumer<Long, Boolean> outcomeListener,
+                                 int queueCapacity, long enqueueTimeoutMillis, double globalMessagesPerSec,
+                                 double chatMessagesPerSec, int maxAttempts, int senders) {
+        this.bot = bot;
+        this.metricsHelper = metricsHelper;
+        this.outcomeListener = outcomeListener;
+        this.queueCapacity = queueCapacity;
+        this.capacity = new Semaphore(queueCapacity);
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.chatIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / chatMessagesPerSec);
+        this.globalRate = new TokenBucket(Math.max(1, globalMessagesPerSec), globalMessagesPerSec);
+        this.senderExecutor = Executors.newFixedThreadPool(senders, new CustomizableThreadFactory("Telegram-Outbound-Sender-"));
+        this.dispatcherExecutor.execute(this::dispatch);
+    }
+
+    /**
+     * Enqueues the message, waiting for room in the queue if full
+     *
+     * @return false if the message was dropped because the queue is full or shut down
+     */
+    public boolean enqueue(Long chatId, SendMessage message) {
+        return enqueue(chatId, message, null);
+    }
+
+    /**
+     * Same as {@link #enqueue(Long, SendMessage)}, notifying the given listener with the final outcome of the delivery
+     */
+    public boolean enqueue(Long chatId, SendMessage message, Consumer<Boolean> outcomeListener) {
+        try {
+            if (!this.running || !this.capacity.tryAcquire(this.enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                LOG.error("Dropping message to {}: the outbound queue is full or shut down", chatId);
+                this.metricsHelper.incrementCounter("telegram_outbound_dropped");
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        OutboundMessage outboundMessage = new OutboundMessage(message, System.nanoTime(), outcomeListener);
+        this.chats.compute(chatId, (id, chat) -> {
+            if (chat == null)
+                chat = new ChatQueue(id);
+            synchronized (chat) {
+                chat.messages.add(outboundMessage);
+                if (!chat.scheduled)
+                    schedule(chat, chat.nextAllowedAt);
+            }
+            return chat;
+        });
+        return true;
+    }
+
+    /**
+     * @return the number of pending messages
+     */
+    public int getQueueDepth() {
+        return this.queueCapacity - this.capacity.availablePermits();
+    }
+
+    /**
+     * Forgets the chats without pending messages, that can already receive a new message
+     */
+    public void cleanUp() {
+        long now = System.nanoTime();
+        for (Long chatId : this.chats.keySet()) {
+            this.chats.computeIfPresent(chatId, (id, chat) -> {
+                synchronized (chat) {
+                    return !chat.scheduled && chat.messages.isEmpty() && chat.nextAllowedAt - now <= 0 ? null : chat;
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops accepting new messages and waits, up to the given timeout, for the pending ones to be delivered
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        this.running = false;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            while (getQueueDepth() > 0 && deadline - System.nanoTime() > 0) {
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (getQueueDepth() > 0)
+            LOG.warn("Shutting down with {} undelivered message(s)", getQueueDepth());
+        this.dispatcherExecutor.shutdownNow();
+        this.senderExecutor.shutdownNow();
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ChatQueue chat = this.readyChats.take();
+                this.globalRate.acquire();
+                this.senderExecutor.execute(() -> deliver(chat));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Outbound queue shut down");
+                return;
+            }
+        }
+    }
+
+    private void deliver(ChatQueue chat) {
+        OutboundMessage outboundMessage;
+        synchronized (chat) {
+            outboundMessage = chat.messages.peek();
+        }
+
+        long nextAttemptAt = System.nanoTime() + this.chatIntervalNanos;
+        boolean done = true;
+        try {
+            SendResponse response = null;
+            Exception error = null;
+            try {
+                response = this.bot.execute(outboundMessage.message());
+            } catch (Exception e) {
+                error = e;
+            }
+
+            long now = System.nanoTime();
+            nextAttemptAt = now + this.chatIntervalNanos;
+            if (response != null && response.isOk()) {
+                LOG.debug("Sent message to {}", chat.chatId);
+                outcome(chat.chatId, outboundMessage, true);
+                this.metricsHelper.recordTime("telegram_outbound_latency", now - outboundMessage.enqueuedAt(), TimeUnit.NANOSECONDS);
+            } else if (response != null && response.errorCode() == HTTP_TOO_MANY_REQUESTS &&
+                    chat.throttledAttempts + 1 < MAX_THROTTLED_ATTEMPTS) {
+                // Telegram tells us how long to wait. It's not counted as a failed attempt
+                chat.throttledAttempts++;
+                Integer retryAfter = response.parameters() != null ? response.parameters().retryAfter() : null;
+                long retryAfterMillis = retryAfter != null ? TimeUnit.SECONDS.toMillis(retryAfter) : backoffMillis(chat.throttledAttempts);
+                nextAttemptAt = now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis);
+                done = false;
+                LOG.warn("Telegram is throttling the messages to {}. Retrying after {} ms", chat.chatId, retryAfterMillis);
+                this.metricsHelper.incrementCounter("telegram_outbound_retries", Tag.of("reason", "throttled"));
+            } else if ((error != null || response.errorCode() >= HTTP_SERVER_ERROR) && chat.attempts + 1 < this.maxAttempts) {
+                chat.attempts++;
+                long backoffMillis = backoffMillis(chat.attempts);
+                nextAttemptAt = now + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+                done = false;
+                LOG.warn("Can't send message to {}, attempt {}, due to {}. Retrying after {} ms", chat.chatId, chat.attempts,
+                        error != null ? error.toString() : response.errorCode() + " " + response.description(), backoffMillis);
+                this.metricsHelper.incrementCounter("telegram_outbound_retries", Tag.of("reason", "error"));
+            } else {
+                if (error != null)
+                    LOG.error("Can't send message to {} due to {}. message={}", chat.chatId, error.toString(),
+                            outboundMessage.message().getParameters().get("text"));
+                else
+                    LOG.error("Can't send message to {} due to code={} description={} message={}", chat.chatId,
+                            response.errorCode(), response.description(), outboundMessage.message().getParameters().get("text"));
+                outcome(chat.chatId, outboundMessage, false);
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Unexpected error while delivering the message to {}", chat.chatId, e);
+        } finally {
+            // Whatever happened, the chat must go on with its next message
+            synchronized (chat) {
+                if (done) {
+                    chat.messages.poll();
+                    chat.attempts = 0;
+                    chat.throttledAttempts = 0;
+                    this.capacity.release();
+                }
+                chat.nextAllowedAt = nextAttemptAt;
+                chat.scheduled = false;
+                if (!chat.messages.isEmpty())
+                    schedule(chat, nextAttemptAt);
+            }
+        }
+    }
+
+    private void outcome(Long chatId, OutboundMessage outboundMessage, boolean successful) {
+        try {
+            this.outcomeListener.accept(chatId, successful);
+        } catch (RuntimeException e) {
+            LOG.error("Error while notifying the outcome of the message to {}", chatId, e);
+        }
+        if (outboundMessage.outcomeListener() != null) {
+            try {
+                outboundMessage.outcomeListener().accept(successful);
+            } catch (RuntimeException e) {
+                LOG.error("Error while notifying the outcome of the message to {}", chatId, e);
+            }
+        }
+    }
+
+    private void schedule(ChatQueue chat, long readyAt) {
+        chat.scheduled = true;
+        chat.readyAt = readyAt;
+        this.readyChats.add(chat);
+    }
+
+    private static long backoffMillis(int attempts) {
+        return Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(attempts, 16));
+    }
+}
@@ -0,0 +1,67 @@
+package com.devpool.thothBot.telegram;
+
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.utility.BotUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Receives the Telegram updates pushed to the webhook, as an alternative to the long polling.
+ * When too many updates are pending, the new ones are refused, and Telegram delivers them again later.
+ */
+@RestController
+@ConditionalOnProperty(value = "thoth.telegram.webhook.enabled", havingValue = "true")
+public class TelegramWebhookController {
+    private static final Logger LOG = LoggerFactory.getLogger(TelegramWebhookController.class);
+    private static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    @Autowired
+    private TelegramFacade telegramFacade;
+
+    @Value("${thoth.telegram.webhook.secret-token:}")
+    private String secretToken;
+
+    @PostConstruct
+    public void post() {
+        if (this.secretToken.isEmpty())
+            LOG.warn("The Telegram webhook has no secret token: anyone can post updates to it");
+    }
+
+    @PostMapping("${thoth.telegram.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> onUpdate(@RequestHeader(value = SECRET_TOKEN_HEADER, required = false) String token,
+                                         @RequestBody String body) {
+        if (!this.secretToken.isEmpty() && (token == null || !MessageDigest.isEqual(
+                this.secretToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8)))) {
+            LOG.warn("Refusing a Telegram webhook update with a wrong secret token");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        Update update;
+        try {
+            update = BotUtils.parseUpdate(body);
+        } catch (RuntimeException e) {
+            LOG.warn("Cannot parse the Telegram webhook update: {}", e.toString());
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (update == null)
+            return ResponseEntity.badRequest().build();
+
+        return this.telegramFacade.admitUpdate(update) ?
+                ResponseEntity.ok().build() :
+                ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+    }
+}
@@ -58,8 +58,7 @@ public abstract class AbstractSubscriptionSelectionCmd extends AbstractCheckerTa
     public void execute(Update update, TelegramBot bot) {
         Long chatId = update.message().chat().id();
 
-        Map<String, Long> addresses = this.userDao.getUsers().stream().filter(
-                        u -> u.getChatId().equals(chatId))
+        Map<String, Long> addresses = this.userDao.getChatSubscriptions(chatId).stream()
                 .filter(this::acceptAddressSelection)
                 .collect(Collectors.toMap(User::getAddress, User::getId));
 
@@ -6,12 +6,12 @@ import com.devpool.thothBot.koios.KoiosFacade;
 import com.devpool.thothBot.scheduler.AbstractCheckerTask;
 import com.devpool.thothBot.scheduler.StakingRewardsCheckerTask;
 import com.devpool.thothBot.scheduler.TransactionCheckerTaskV2;
+import com.devpool.thothBot.util.MessageTemplates;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.LinkPreviewOptions;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.model.request.ParseMode;
 import com.pengrad.telegrambot.request.SendMessage;
-import com.vdurmont.emoji.EmojiParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
@@ -72,8 +72,7 @@ public class AccountInfoCmd extends AbstractCheckerTask implements IBotCommand {
         Long chatId = update.message().chat().id();
 
         try {
-            List<String> addresses = this.userDao.getUsers().stream().filter(
-                    u -> u.getChatId().equals(chatId)).map(
+            List<String> addresses = this.userDao.getChatSubscriptions(chatId).stream().map(
                     User::getAddress).collect(Collectors.toList());
 
             List<String> stakingAddr = addresses.stream().filter(User::isStakingAddress).collect(Collectors.toList());
@@ -150,7 +149,7 @@ public class AccountInfoCmd extends AbstractCheckerTask implements IBotCommand {
                 .collect(Collectors.toList());
 
         for (AddressInfo addrInfo : addressInfoList) {
-            messageBuilder.append(EmojiParser.parseToUnicode(":key: <a href=\""))
+            messageBuilder.append(MessageTemplates.emoji(":key: <a href=\""))
                     .append(TransactionCheckerTaskV2.CARDANO_SCAN_ADDR_KEY)
                     .append(addrInfo.getAddress())
                     .append("\">")
@@ -162,45 +161,45 @@ public class AccountInfoCmd extends AbstractCheckerTask implements IBotCommand {
             if (latestCardanoPriceUsd != null)
                 cardanoBalanceUsd = cardanoBalance * latestCardanoPriceUsd;
 
-            messageBuilder.append(EmojiParser.parseToUnicode(":white_small_square: "))
+            messageBuilder.append(MessageTemplates.emoji(":white_small_square: "))
                     .append("Balance: ")
-                    .append(String.format("%,.2f", cardanoBalance))
+                    .append(MessageTemplates.formatAmount(cardanoBalance))
                     .append(StakingRewardsCheckerTask.ADA_SYMBOL)
                     .append("\n");
 
             // USD value
             if (latestCardanoPriceUsd != null) {
-                messageBuilder.append(EmojiParser.parseToUnicode(":white_small_square: "))
+                messageBuilder.append(MessageTemplates.emoji(":white_small_square: "))
                         .append("USD Value: ")
-                        .append(String.format("%,.2f $", cardanoBalanceUsd))
+                        .append(MessageTemplates.formatAmount(cardanoBalanceUsd)).append(" $")
                         .append("\n");
             }
 
             messageBuilder
-                    .append(EmojiParser.parseToUnicode(":white_small_square: "))
+                    .append(MessageTemplates.emoji(":white_small_square: "))
                     .append("Stake Address: ")
                     .append(addrInfo.getStakeAddress() != null ? "YES" : "NO").append("\n");
 
             messageBuilder
-                    .append(EmojiParser.parseToUnicode(":white_small_square: "))
+                    .append(MessageTemplates.emoji(":white_small_square: "))
                     .append("Script Address: ")
                     .append(Boolean.TRUE.equals(addrInfo.getScriptAddress()) ? "YES" : "NO").append("\n");
 
             messageBuilder
-                    .append(EmojiParser.parseToUnicode(":white_small_square: "))
+                    .append(MessageTemplates.emoji(":white_small_square: "))
                     .append("UTXOs: ")
                     .append(addrInfo.getUtxoSet().size())
                     .append("\n\n");
         }
 
         for (String unresolvedAddress : unresolvedAddresses) {
-            messageBuilder.append(EmojiParser.parseToUnicode(":key: <a href=\""))
+            messageBuilder.append(MessageTemplates.emoji(":key: <a href=\""))
                     .append(TransactionCheckerTaskV2.CARDANO_SCAN_ADDR_KEY)
                     .append(unresolvedAddress)
                     .append("\">")
                     .append(handles.get(unresolvedAddress))
                     .append("</a>\n")
-                    .append(EmojiParser.parseToUnicode(":white_small_square: Data will be available soon\n\n"));
+                    .append(MessageTemplates.emoji(":white_small_square: Data will be available soon\n\n"));
         }
     }
 
@@ -217,7 +216,7 @@ public class AccountInfoCmd extends AbstractCheckerTask implements IBotCommand {
 
         for (AccountInfo accountInfo : accountInfoList) {
 
-            messageBuilder.append(EmojiParser.parseToUnicode(":key: <a href=\""))
+            messageBuilder.append(MessageTemplates.emoji(":key: <a href=\""))
                     .append(TransactionCheckerTaskV2.CARDANO_SCAN_STAKE_KEY)
                     .append(accountInfo.getStakeAddress())
                     .append("\">")
@@ -226,7 +225,7 @@ public class AccountInfoCmd extends AbstractCheckerTask implements IBotCommand {
 
             if (accountInfo.getDelegatedPool() != null) {
                 String poolName = poolNames.get(accountInfo.getDelegatedPool());
-                messageBuilder.append(EmojiParser.parseToUnicode(":classical_building: "))
+                messageBuilder.append(MessageTemplates.emoji(":classical_building: "))
                         .append("<a href=\"")
                         .append(CARDANO_SCAN_STAKE_POOL)
                         .append(accountInfo.getDelegatedPool())
@@ -236,7 +235,7 @@ public class AccountInfoCmd extends AbstractCheckerTask implements IBotCommand {
 
             if (accountInfo.getDelegatedDrep() != null) {
                 String drepFullHash = accountInfo.getDelegatedDrep();
-                messageBuilder.append(EmojiParser.parseToUnicode(":scales: "));
+                messageBuilder.append(MessageTemplates.emoji(":scales: "));
                 if (drepFullHash.startsWith(DREP_HASH_PREFIX)) {
                     messageBuilder.append("DRep <a href=\"")
                             .append(GOV_TOOLS_DREP)
@@ -255,39 +254,39 @@ public class AccountInfoCmd extends AbstractCheckerTask implements IBotCommand {
             if (latestCardanoPriceUsd != null)
                 cardanoBalanceUsd = cardanoBalance * latestCardanoPriceUsd;
 
-            messageBuilder.append(EmojiParser.parseToUnicode(":white_small_square: "))
+            messageBuilder.append(MessageTemplates.emoji(":white_small_square: "))
                     .append("Total Balance: ")
-                    .append(String.format("%,.2f", cardanoBalance))
+                    .append(MessageTemplates.formatAmount(cardanoBalance))
                     .append(StakingRewardsCheckerTask.ADA_SYMBOL)
                     .append("\n");
 
             // USD value
             if (latestCardanoPriceUsd != null) {
-                messageBuilder.append(EmojiParser.parseToUnicode(":white_small_square: "))
+                messageBuilder.append(MessageTemplates.emoji(":white_small_square: "))
                         .append("USD Value: ")
-                        .append(String.format("%,.2f $", cardanoBalanceUsd))
+                        .append(MessageTemplates.formatAmount(cardanoBalanceUsd)).append(" $")
                         .append("\n");
             }
 
             messageBuilder
-                    .append(EmojiParser.parseToUnicode(":white_small_square: "))
+                    .append(MessageTemplates.emoji(":white_small_square: "))
                     .append("Rewards: ")
-                    .append(String.format("%,.2f", Long.parseLong(accountInfo.getRewards()) / StakingRewardsCheckerTask.LOVELACE))
+                    .append(MessageTemplates.formatAmount(Long.parseLong(accountInfo.getRewards()) / StakingRewardsCheckerTask.LOVELACE))
                     .append(StakingRewardsCheckerTask.ADA_SYMBOL)
                     .append("\n")
-                    .append(EmojiParser.parseToUnicode(":white_small_square: "))
+                    .append(MessageTemplates.emoji(":white_small_square: "))
                     .append("Status: ").append(accountInfo.getStatus())
                     .append("\n\n");
         }
 
         for (String unresolvedAddress : unresolvedAddresses) {
-            messageBuilder.append(EmojiParser.parseToUnicode(":key: <a href=\""))
+            messageBuilder.append(MessageTemplates.emoji(":key: <a href=\""))
                     .append(TransactionCheckerTaskV2.CARDANO_SCAN_STAKE_KEY)
                     .append(unresolvedAddress)
                     .append("\">")
                     .append(handles.get(unresolvedAddress))
                     .append("</a>\n")
-                    .append(EmojiParser.parseToUnicode(":white_small_square: Data will be available soon\n\n"));
+                    .append(MessageTemplates.emoji(":white_small_square: Data will be available soon\n\n"));
         }
     }
 
@@ -2,12 +2,12 @@ package com.devpool.thothBot.telegram.command;
 
 import com.devpool.thothBot.exceptions.UserNotFoundException;
 import com.devpool.thothBot.scheduler.AbstractCheckerTask;
+import com.devpool.thothBot.util.MessageTemplates;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.LinkPreviewOptions;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.model.request.ParseMode;
 import com.pengrad.telegrambot.request.SendMessage;
-import com.vdurmont.emoji.EmojiParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -97,7 +97,7 @@ public class AccountRewardsCmd extends AbstractCheckerTask implements IBotComman
 
             // Render the response
             StringBuilder sb = new StringBuilder();
-            sb.append(EmojiParser.parseToUnicode(":bar_chart: Latest rewards for <a href=\""))
+            sb.append(MessageTemplates.emoji(":bar_chart: Latest rewards for <a href=\""))
                     .append(CARDANO_SCAN_STAKE_KEY)
                     .append(user.getAddress()).append("\">")
                     .append(handles.getOrDefault(user.getAddress(), shortenAddr(user.getAddress())))
@@ -107,21 +107,21 @@ public class AccountRewardsCmd extends AbstractCheckerTask implements IBotComman
                 var poolId = reward.getPoolId();
                 var amount = Double.parseDouble(reward.getAmount()) / LOVELACE;
                 var epoch = reward.getEarnedEpoch();
-                sb.append(EmojiParser.parseToUnicode(":hourglass_flowing_sand: Epoch "))
+                sb.append(MessageTemplates.emoji(":hourglass_flowing_sand: Epoch "))
                         .append(epoch).append("\n");
-                sb.append(EmojiParser.parseToUnicode(":classical_building: "))
+                sb.append(MessageTemplates.emoji(":classical_building: "))
                         .append("<a href=\"")
                         .append(CARDANO_SCAN_STAKE_POOL)
                         .append(poolId)
                         .append("\">")
                         .append(getPoolName(poolInfoList, poolId)).append("</a>\n");
-                sb.append(EmojiParser.parseToUnicode(":arrow_heading_down: "))
-                        .append(String.format("%,.2f", amount)).append(ADA_SYMBOL);
+                sb.append(MessageTemplates.emoji(":arrow_heading_down: "))
+                        .append(MessageTemplates.formatAmount(amount)).append(ADA_SYMBOL);
                 // USD value
                 if (latestCardanoPriceUsd != null) {
-                    sb.append(" (").append(String.format("%,.2f $", amount * latestCardanoPriceUsd)).append(")");
+                    sb.append(" (").append(MessageTemplates.formatAmount(amount * latestCardanoPriceUsd)).append(" $").append(")");
                 }
-                sb.append(EmojiParser.parseToUnicode("\n:label: Type "))
+                sb.append(MessageTemplates.emoji("\n:label: Type "))
                                 .append(reward.getType());
                 sb.append("\n\n");
             }
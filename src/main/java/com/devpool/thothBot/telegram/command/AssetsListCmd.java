@@ -4,6 +4,7 @@ import com.devpool.thothBot.dao.data.User;
 import com.devpool.thothBot.exceptions.UserNotFoundException;
 import com.devpool.thothBot.koios.AssetFacade;
 import com.devpool.thothBot.scheduler.AbstractCheckerTask;
+import com.devpool.thothBot.util.MessageTemplates;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.LinkPreviewOptions;
 import com.pengrad.telegrambot.model.Update;
@@ -14,7 +15,6 @@ import com.pengrad.telegrambot.request.EditMessageText;
 import com.pengrad.telegrambot.request.SendMessage;
 import com.pengrad.telegrambot.response.BaseResponse;
 import com.pengrad.telegrambot.response.SendResponse;
-import com.vdurmont.emoji.EmojiParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -150,7 +150,7 @@ public class AssetsListCmd extends AbstractCheckerTask implements IBotCommand {
                             asset.getPolicyId(), asset.getAssetName(), Long.parseLong(asset.getQuantity()));
                     String assetName = this.assetFacade.getAssetDisplayName(asset.getPolicyId(), asset.getAssetName());
                     // construct the inline button
-                    assetsPage.append(EmojiParser.parseToUnicode("\n:small_orange_diamond:"))
+                    assetsPage.append(MessageTemplates.emoji("\n:small_orange_diamond:"))
                             .append("<a href=\"https://pool.pm/").append(asset.getFingerprint())
                             .append("\">")
                             .append(assetName)
@@ -173,12 +173,12 @@ public class AssetsListCmd extends AbstractCheckerTask implements IBotCommand {
             InlineKeyboardButton[][] navigationButtons = new InlineKeyboardButton[1][2];
 
             // Prev
-            navigationButtons[0][0] = new InlineKeyboardButton(EmojiParser.parseToUnicode(":arrow_backward: PREV"))
+            navigationButtons[0][0] = new InlineKeyboardButton(MessageTemplates.emoji(":arrow_backward: PREV"))
                     .callbackData(CMD_PREFIX + CMD_DATA_SEPARATOR + userId +
                             CMD_DATA_SEPARATOR + Math.max(0, offsetNumber - ASSET_LIST_PAGE_SIZE));
 
             // Next
-            navigationButtons[0][1] = new InlineKeyboardButton(EmojiParser.parseToUnicode("NEXT :arrow_forward:"))
+            navigationButtons[0][1] = new InlineKeyboardButton(MessageTemplates.emoji("NEXT :arrow_forward:"))
                     .callbackData(CMD_PREFIX + CMD_DATA_SEPARATOR + userId +
                             CMD_DATA_SEPARATOR +
                             Math.min((assets.size() - ASSET_LIST_PAGE_SIZE + 1 > 0 ?
@@ -1,12 +1,12 @@
 package com.devpool.thothBot.telegram.command;
 
 import com.devpool.thothBot.scheduler.AbstractCheckerTask;
+import com.devpool.thothBot.util.MessageTemplates;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.LinkPreviewOptions;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.model.request.ParseMode;
 import com.pengrad.telegrambot.request.SendMessage;
-import com.vdurmont.emoji.EmojiParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -81,11 +81,12 @@ public class EpochCmd extends AbstractCheckerTask implements IBotCommand {
         var h = epochLeftoverDuration.toHoursPart();
         var m = epochLeftoverDuration.toMinutesPart();
         sb
-                .append(EmojiParser.parseToUnicode(":dollar: ADA price "))
-                .append(String.format("%,.2f $%n", latestCardanoPriceUsd))
-                .append(EmojiParser.parseToUnicode(":hourglass_flowing_sand: Epoch "))
+                .append(MessageTemplates.emoji(":dollar: ADA price "))
+                .append(latestCardanoPriceUsd != null ? MessageTemplates.formatAmount(latestCardanoPriceUsd) + " $" : "n/a")
+                .append(System.lineSeparator())
+                .append(MessageTemplates.emoji(":hourglass_flowing_sand: Epoch "))
                 .append(epoch.getEpochNo()).append("\n")
-                .append(EmojiParser.parseToUnicode(":stopwatch: Ends in "));
+                .append(MessageTemplates.emoji(":stopwatch: Ends in "));
         if (d > 0)
             sb.append(String.format("%dd %dh %dm %n", d, h, m));
         else
@@ -93,12 +94,12 @@ public class EpochCmd extends AbstractCheckerTask implements IBotCommand {
 
         BigDecimal activeStake = new BigDecimal(epoch.getActiveStake());
         activeStake = activeStake.divide(BigDecimal.valueOf(AbstractCheckerTask.LOVELACE), RoundingMode.FLOOR);
-        sb.append(EmojiParser.parseToUnicode("\uD83E\uDD69 Total stake: "))
+        sb.append(MessageTemplates.emoji("\uD83E\uDD69 Total stake: "))
                 .append(humanReadableValue(activeStake.longValue()))
                 .append(AbstractCheckerTask.ADA_SYMBOL)
                 .append("\n");
 
-        sb.append(EmojiParser.parseToUnicode(":twisted_rightwards_arrows: TXs count: ")).append(epoch.getTxCount());
+        sb.append(MessageTemplates.emoji(":twisted_rightwards_arrows: TXs count: ")).append(epoch.getTxCount());
 
         return sb.toString();
     }
@@ -123,7 +124,7 @@ public class EpochCmd extends AbstractCheckerTask implements IBotCommand {
 
     private void sendBackIssueMessage(TelegramBot bot, long chatId, String message) {
         bot.execute(new SendMessage(chatId,
-                EmojiParser.parseToUnicode(":warning: ") + message));
+                MessageTemplates.emoji(":warning: ") + message));
     }
 
     @Override
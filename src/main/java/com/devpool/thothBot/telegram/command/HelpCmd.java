@@ -1,13 +1,13 @@
 package com.devpool.thothBot.telegram.command;
 
 import com.devpool.thothBot.subscription.SubscriptionManager;
+import com.devpool.thothBot.util.MessageTemplates;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.LinkPreviewOptions;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.model.request.ParseMode;
 import com.pengrad.telegrambot.request.SendMessage;
 import com.pengrad.telegrambot.response.SendResponse;
-import com.vdurmont.emoji.EmojiParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -93,7 +93,7 @@ public class HelpCmd implements IBotCommand {
             StringBuilder commandsHelp = new StringBuilder();
             // Add commands help
             commandsHelp
-                    .append(EmojiParser.parseToUnicode(":white_small_square: "))
+                    .append(MessageTemplates.emoji(":white_small_square: "))
                     .append(this.getCommandPrefix())
                     .append(" - ")
                     .append(this.getDescription())
@@ -102,7 +102,7 @@ public class HelpCmd implements IBotCommand {
                 if (!command.showHelp(username)) continue;
 
                 commandsHelp
-                        .append(EmojiParser.parseToUnicode(":white_small_square: "))
+                        .append(MessageTemplates.emoji(":white_small_square: "))
                         .append(command.getCommandPrefix())
                         .append(" - ")
                         .append(command.getDescription())
@@ -111,12 +111,12 @@ public class HelpCmd implements IBotCommand {
             helpText = helpText.replace("$commands", commandsHelp.toString());
 
             // substitute emojis
-            helpText = helpText.replace("%robot", EmojiParser.parseToUnicode(":robot_face:"));
-            helpText = helpText.replace("%coffee", EmojiParser.parseToUnicode(":coffee:"));
-            helpText = helpText.replace("%information_source", EmojiParser.parseToUnicode(":information_source:"));
-            helpText = helpText.replace("%speech_balloon", EmojiParser.parseToUnicode(":speech_balloon:"));
-            helpText = helpText.replace("%speaking_head_in_silhouette", EmojiParser.parseToUnicode(":speaking_head_in_silhouette:"));
-            helpText = helpText.replace("%art", EmojiParser.parseToUnicode(":art:"));
+            helpText = helpText.replace("%robot", MessageTemplates.emoji(":robot_face:"));
+            helpText = helpText.replace("%coffee", MessageTemplates.emoji(":coffee:"));
+            helpText = helpText.replace("%information_source", MessageTemplates.emoji(":information_source:"));
+            helpText = helpText.replace("%speech_balloon", MessageTemplates.emoji(":speech_balloon:"));
+            helpText = helpText.replace("%speaking_head_in_silhouette", MessageTemplates.emoji(":speaking_head_in_silhouette:"));
+            helpText = helpText.replace("%art", MessageTemplates.emoji(":art:"));
             sb.append(helpText);
 
             // Grab the subscription help text
@@ -1,12 +1,12 @@
 package com.devpool.thothBot.telegram.command;
 
 import com.devpool.thothBot.scheduler.AbstractCheckerTask;
+import com.devpool.thothBot.util.MessageTemplates;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.LinkPreviewOptions;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.model.request.ParseMode;
 import com.pengrad.telegrambot.request.SendMessage;
-import com.vdurmont.emoji.EmojiParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -15,7 +15,6 @@ import rest.koios.client.backend.factory.options.Options;
 import rest.koios.client.backend.factory.options.filters.Filter;
 import rest.koios.client.backend.factory.options.filters.FilterType;
 
-import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -81,26 +80,28 @@ public class ProposalsCmd extends AbstractCheckerTask implements IBotCommand {
         }
     }
 
-    private String renderProposals(List<Proposal> proposals, Integer epochNo) throws URISyntaxException {
+    private String renderProposals(List<Proposal> proposals, Integer epochNo) {
         StringBuilder sb = new StringBuilder("Found ").append(proposals.size()).append(" active proposal(s)\n\n");
 
+        // Resolved concurrently, if not cached yet
+        var proposalContents = this.proposalContentCache.getProposalContents(proposals);
         for (Proposal proposal : proposals) {
-            var proposalContent = getProposalContent(proposal.getMetaJson(), proposal.getMetaUrl(), proposal.getProposalId());
-            sb.append(EmojiParser.parseToUnicode(":page_with_curl: <a href=\""))
+            var proposalContent = proposalContents.get(proposal.getProposalId());
+            sb.append(MessageTemplates.emoji(":page_with_curl: <a href=\""))
                     .append(String.format(GOV_TOOLS_PROPOSAL, proposal.getProposalId()))
                     .append("\">")
                     .append(proposalContent.title())
                     .append("</a>\n")
-                    .append(EmojiParser.parseToUnicode(":label: "))
+                    .append(MessageTemplates.emoji(":label: "))
                     .append(proposal.getProposalType()).append("\n")
-                    .append(EmojiParser.parseToUnicode(":hourglass_flowing_sand: Expiring epoch "))
+                    .append(MessageTemplates.emoji(":hourglass_flowing_sand: Expiring epoch "))
                     .append(proposal.getExpiration() == null ? "unknown" : proposal.getExpiration());
 
             if (Objects.equals(epochNo, proposal.getExpiration()))
                 sb.append(" (current)");
 
             if (!Optional.ofNullable(proposalContent.authors()).orElse(List.of()).isEmpty()) {
-                sb.append(EmojiParser.parseToUnicode("\n:black_nib: Authors "))
+                sb.append(MessageTemplates.emoji("\n:black_nib: Authors "))
                         .append(String.join(",", proposalContent.authors()));
             }
             sb.append("\n\n");
@@ -111,7 +112,7 @@ public class ProposalsCmd extends AbstractCheckerTask implements IBotCommand {
 
     private void sendBackIssueMessage(TelegramBot bot, long chatId, String message) {
         bot.execute(new SendMessage(chatId,
-                EmojiParser.parseToUnicode(":warning: ") + message));
+                MessageTemplates.emoji(":warning: ") + message));
     }
 
     @Override
@@ -1,7 +1,6 @@
 package com.devpool.thothBot.telegram.command.admin;
 
 import com.devpool.thothBot.dao.UserDao;
-import com.devpool.thothBot.dao.data.User;
 import com.devpool.thothBot.telegram.command.IBotCommand;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.Update;
@@ -17,7 +16,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
 
 @Component
 public class AdminNotifyAllCmd implements IBotCommand {
@@ -77,7 +75,7 @@ public class AdminNotifyAllCmd implements IBotCommand {
         String prefixPos0 = argsAsList.get(0);
         String notifyMsg = msg.replaceFirst(prefixPos0, "").trim();
 
-        List<Long> allUsersChatIds = userDao.getUsers().stream().map(User::getChatId).distinct().collect(Collectors.toList());
+        List<Long> allUsersChatIds = userDao.getChatIds();
 
         bot.execute(new SendMessage(update.message().chat().id(),
                 String.format("Ok, notifying all %d user(s) with the following message:%n%s", allUsersChatIds.size(), notifyMsg)));
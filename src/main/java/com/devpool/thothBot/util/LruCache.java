@@ -0,0 +1,64 @@
+package com.devpool.thothBot.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded, thread safe, cache that evicts the least recently used entry once the max size is reached
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final Map<K, V> entries;
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    public LruCache(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be greater than 0. maxSize=" + maxSize);
+
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                boolean evict = size() > LruCache.this.maxSize;
+                if (evict)
+                    LruCache.this.evictions.incrementAndGet();
+                return evict;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return this.entries.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        this.entries.put(key, value);
+    }
+
+    public synchronized V remove(K key) {
+        return this.entries.remove(key);
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the total number of entries evicted since the creation of the cache
+     */
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+}
@@ -0,0 +1,84 @@
+package com.devpool.thothBot.util;
+
+import com.vdurmont.emoji.EmojiParser;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Building blocks of the messages rendered by the tasks and the commands. The static fragments with emoji aliases are
+ * resolved once and then served from memory, while the amounts are formatted by per-thread cached formatters,
+ * with the same output of {@code %,.2f} and {@code %,d}.
+ */
+public class MessageTemplates {
+    private static final Map<String, String> FRAGMENTS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<DecimalFormat> AMOUNT_FORMAT = ThreadLocal.withInitial(() -> newFormat("#,##0.00"));
+    private static final ThreadLocal<DecimalFormat> QUANTITY_FORMAT = ThreadLocal.withInitial(() -> newFormat("#,##0"));
+
+    private MessageTemplates() {
+        // private
+    }
+
+    /**
+     * @param fragment a static message fragment, with emoji aliases like {@code :memo:}
+     * @return the fragment with the emoji aliases replaced by their unicode, resolved only the first time
+     */
+    public static String emoji(String fragment) {
+        String resolved = FRAGMENTS.get(fragment);
+        if (resolved == null) {
+            resolved = EmojiParser.parseToUnicode(fragment);
+            FRAGMENTS.putIfAbsent(fragment, resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * @return the amount with grouping and 2 decimals, like {@code String.format("%,.2f", amount)}
+     */
+    public static String formatAmount(double amount) {
+        return AMOUNT_FORMAT.get().format(amount);
+    }
+
+    /**
+     * @param quantity the exact amount, in the smallest unit
+     * @param decimals the decimals of the unit, like 6 for the lovelace
+     * @return the amount with grouping and 2 decimals, rounded half up without going through a double
+     */
+    public static String formatAmount(long quantity, int decimals) {
+        return AMOUNT_FORMAT.get().format(BigDecimal.valueOf(quantity, decimals));
+    }
+
+    /**
+     * Same as {@link #formatAmount(long, int)}, for the quantities not fitting a long
+     */
+    public static String formatAmount(BigInteger quantity, int decimals) {
+        return AMOUNT_FORMAT.get().format(new BigDecimal(quantity, decimals));
+    }
+
+    /**
+     * @return the quantity with grouping, like {@code String.format("%,d", quantity)}
+     */
+    public static String formatQuantity(long quantity) {
+        return QUANTITY_FORMAT.get().format(quantity);
+    }
+
+    /**
+     * Same as {@link #formatQuantity(long)}, for the quantities not fitting a long
+     */
+    public static String formatQuantity(BigInteger quantity) {
+        return QUANTITY_FORMAT.get().format(quantity);
+    }
+
+    private static DecimalFormat newFormat(String pattern) {
+        DecimalFormat format = new DecimalFormat(pattern,
+                DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)));
+        format.setRoundingMode(RoundingMode.HALF_UP);
+        return format;
+    }
+}
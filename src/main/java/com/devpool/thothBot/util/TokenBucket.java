@@ -0,0 +1,124 @@
+package com.devpool.thothBot.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread safe token bucket rate limiter. The bucket holds up to {@code capacity} tokens (the allowed burst) and it is
+ * refilled continuously at {@code refillPerSecond} tokens per second.
+ */
+public class TokenBucket {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double capacity;
+    private final LongSupplier nanoClock;
+    private double refillPerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this(capacity, refillPerSecond, System::nanoTime);
+    }
+
+    public TokenBucket(double capacity, double refillPerSecond, LongSupplier nanoClock) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be at least 1. capacity=" + capacity);
+        if (refillPerSecond <= 0)
+            throw new IllegalArgumentException("refillPerSecond must be greater than 0. refillPerSecond=" + refillPerSecond);
+
+        this.capacity = capacity;
+        this.refillPerSecond = refillPerSecond;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes a token, if available
+     *
+     * @return true if the token was taken
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    public synchronized boolean tryAcquire(double permits) {
+        refill();
+        if (this.tokens >= permits) {
+            this.tokens -= permits;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Takes a token, waiting for it if needed
+     */
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    public void acquire(double permits) throws InterruptedException {
+        acquire(permits, 0);
+    }
+
+    /**
+     * Takes the tokens, waiting until they are available while leaving at least {@code reserve} tokens in the bucket.
+     * This allows lower priority callers to never consume the tokens reserved to the higher priority ones.
+     *
+     * @param permits the tokens to take
+     * @param reserve the tokens that must be left in the bucket. It must be lower than the capacity
+     */
+    public void acquire(double permits, double reserve) throws InterruptedException {
+        if (permits + reserve > this.capacity)
+            throw new IllegalArgumentException("permits plus reserve cannot exceed the capacity " + this.capacity);
+
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (this.tokens >= permits + reserve) {
+                    this.tokens -= permits;
+                    return;
+                }
+                waitNanos = (long) Math.ceil((permits + reserve - this.tokens) / this.refillPerSecond * NANOS_PER_SECOND);
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1));
+        }
+    }
+
+    /**
+     * @return the tokens currently available
+     */
+    public synchronized double getAvailableTokens() {
+        refill();
+        return this.tokens;
+    }
+
+    public synchronized double getRefillPerSecond() {
+        return this.refillPerSecond;
+    }
+
+    /**
+     * Changes the refill rate. The tokens accumulated so far are kept.
+     */
+    public synchronized void setRefillPerSecond(double refillPerSecond) {
+        if (refillPerSecond <= 0)
+            throw new IllegalArgumentException("refillPerSecond must be greater than 0. refillPerSecond=" + refillPerSecond);
+        refill();
+        this.refillPerSecond = refillPerSecond;
+    }
+
+    public double getCapacity() {
+        return this.capacity;
+    }
+
+    private void refill() {
+        long now = this.nanoClock.getAsLong();
+        long elapsed = now - this.lastRefillNanos;
+        if (elapsed > 0) {
+            this.tokens = Math.min(this.capacity, this.tokens + elapsed * this.refillPerSecond / NANOS_PER_SECOND);
+            this.lastRefillNanos = now;
+        }
+    }
+}
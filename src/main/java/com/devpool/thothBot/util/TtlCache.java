@@ -0,0 +1,211 @@
+package com.devpool.thothBot.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread safe cache whose entries expire after a fixed time to live. Concurrent requests for the same missing key
+ * are coalesced: only one caller loads the value while the others wait for it (single-flight).
+ * Failed loads are not cached.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class TtlCache<K, V> {
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Result of a lookup
+     */
+    public enum Lookup {
+        HIT, COALESCED, MISS
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface BulkLoader<K, V> {
+        Map<K, V> load(List<K> keys) throws Exception;
+    }
+
+    private record Entry<V>(CompletableFuture<V> value, long expiresAt) {
+    }
+
+    public TtlCache(long ttl, TimeUnit unit) {
+        this(ttl, unit, System::nanoTime);
+    }
+
+    public TtlCache(long ttl, TimeUnit unit, LongSupplier nanoClock) {
+        if (ttl <= 0)
+            throw new IllegalArgumentException("ttl must be greater than 0. ttl=" + ttl);
+
+        this.ttlNanos = unit.toNanos(ttl);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Gets the value from the cache, loading it if missing or expired
+     *
+     * @param key    the key
+     * @param loader the loader of the value, invoked only if no other caller is already loading it
+     * @return the value
+     * @throws Exception the exception thrown by the loader
+     */
+    public V get(K key, Loader<V> loader) throws Exception {
+        return get(key, loader, null);
+    }
+
+    /**
+     * Same as {@link #get(Object, Loader)}, reporting to the given listener if the value was cached, loaded by
+     * another caller or loaded by this caller
+     */
+    public V get(K key, Loader<V> loader, Consumer<Lookup> lookupListener) throws Exception {
+        while (true) {
+            Entry<V> entry = this.entries.get(key);
+            if (entry != null && !isExpired(entry)) {
+                notify(lookupListener, entry.value().isDone() ? Lookup.HIT : Lookup.COALESCED);
+                return await(entry.value());
+            }
+
+            Entry<V> newEntry = new Entry<>(new CompletableFuture<>(), Long.MAX_VALUE);
+            boolean owned = entry == null ?
+                    this.entries.putIfAbsent(key, newEntry) == null :
+                    this.entries.replace(key, entry, newEntry);
+            if (!owned) continue;
+
+            notify(lookupListener, Lookup.MISS);
+            try {
+                V value = loader.load();
+                complete(key, newEntry, value);
+                return value;
+            } catch (Exception e) {
+                this.entries.remove(key, newEntry);
+                newEntry.value().completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Gets the values of the given keys, loading all the missing or expired ones with a single invocation
+     * of the loader. Keys missing from the map returned by the loader are not cached and are not part of the result.
+     *
+     * @param keys   the keys
+     * @param loader the loader of the given missing keys
+     * @return key -> value, in the same order of the given keys
+     * @throws Exception the exception thrown by the loader
+     */
+    public Map<K, V> getAll(Collection<K> keys, BulkLoader<K, V> loader, Consumer<Lookup> lookupListener)
+            throws Exception {
+        Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+        Map<K, Entry<V>> ownedEntries = new HashMap<>();
+
+        for (K key : keys) {
+            if (futures.containsKey(key)) continue;
+
+            while (true) {
+                Entry<V> entry = this.entries.get(key);
+                if (entry != null && !isExpired(entry)) {
+                    notify(lookupListener, entry.value().isDone() ? Lookup.HIT : Lookup.COALESCED);
+                    futures.put(key, entry.value());
+                    break;
+                }
+
+                Entry<V> newEntry = new Entry<>(new CompletableFuture<>(), Long.MAX_VALUE);
+                boolean owned = entry == null ?
+                        this.entries.putIfAbsent(key, newEntry) == null :
+                        this.entries.replace(key, entry, newEntry);
+                if (owned) {
+                    notify(lookupListener, Lookup.MISS);
+                    futures.put(key, newEntry.value());
+                    ownedEntries.put(key, newEntry);
+                    break;
+                }
+            }
+        }
+
+        if (!ownedEntries.isEmpty()) {
+            try {
+                Map<K, V> loaded = loader.load(new ArrayList<>(ownedEntries.keySet()));
+                for (Map.Entry<K, Entry<V>> owned : ownedEntries.entrySet()) {
+                    V value = loaded.get(owned.getKey());
+                    if (value == null) {
+                        this.entries.remove(owned.getKey(), owned.getValue());
+                        owned.getValue().value().complete(null);
+                    } else {
+                        complete(owned.getKey(), owned.getValue(), value);
+                    }
+                }
+            } catch (Exception e) {
+                for (Map.Entry<K, Entry<V>> owned : ownedEntries.entrySet()) {
+                    this.entries.remove(owned.getKey(), owned.getValue());
+                    owned.getValue().value().completeExceptionally(e);
+                }
+                throw e;
+            }
+        }
+
+        Map<K, V> values = new LinkedHashMap<>();
+        for (Map.Entry<K, CompletableFuture<V>> future : futures.entrySet()) {
+            V value = await(future.getValue());
+            if (value != null)
+                values.put(future.getKey(), value);
+        }
+        return values;
+    }
+
+    /**
+     * Removes the expired entries
+     */
+    public void cleanUp() {
+        this.entries.values().removeIf(this::isExpired);
+    }
+
+    public void invalidateAll() {
+        this.entries.clear();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    private void complete(K key, Entry<V> loadingEntry, V value) {
+        // Replace the loading entry with a completed one, starting the TTL now
+        this.entries.replace(key, loadingEntry, new Entry<>(loadingEntry.value(), this.nanoClock.getAsLong() + this.ttlNanos));
+        loadingEntry.value().complete(value);
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return entry.expiresAt() != Long.MAX_VALUE && this.nanoClock.getAsLong() - entry.expiresAt() >= 0;
+    }
+
+    private static void notify(Consumer<Lookup> lookupListener, Lookup lookup) {
+        if (lookupListener != null)
+            lookupListener.accept(lookup);
+    }
+
+    private static <V> V await(CompletableFuture<V> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause)
+                throw cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+-- Create new Notification Outbox table
+CREATE TABLE public.notification_outbox (
+    id bigint NOT NULL,
+    chat_id bigint NOT NULL,
+    message text NOT NULL,
+    created_at timestamp with time zone DEFAULT now() NOT NULL,
+    claimed_until timestamp with time zone,
+    attempts integer DEFAULT 0 NOT NULL,
+    sent_at timestamp with time zone
+);
+
+CREATE SEQUENCE public.notification_outbox_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+ALTER SEQUENCE public.notification_outbox_id_seq OWNED BY public.notification_outbox.id;
+ALTER TABLE ONLY public.notification_outbox ALTER COLUMN id SET DEFAULT nextval('public.notification_outbox_id_seq'::regclass);
+
+ALTER TABLE ONLY public.notification_outbox
+    ADD CONSTRAINT notification_outbox_pkey PRIMARY KEY (id);
+
+CREATE INDEX notification_outbox_pending_index ON public.notification_outbox USING btree (id) WHERE sent_at IS NULL;
+
+-- Subscriptions lookups by address. The ones by chat_id are served by chat_id_stake_addr_index (chat_id, addr)
+CREATE INDEX IF NOT EXISTS users_addr_index ON public.users USING btree (addr);
+
+-- Pool votes lookups by gov action
+CREATE INDEX IF NOT EXISTS pool_votes_gov_id_index ON public.pool_votes USING btree (gov_id, pool_id, block_time);
+
+-- Create new Proposal Contents table, caching the proposals metadata anchors
+CREATE TABLE public.proposal_contents (
+    gov_id character varying(128) NOT NULL,
+    meta_hash character varying(128) NOT NULL,
+    title text,
+    abstract text,
+    authors text[],
+    created_at timestamp with time zone DEFAULT now() NOT NULL
+);
+
+ALTER TABLE ONLY public.proposal_contents
+    ADD CONSTRAINT proposal_contents_pkey PRIMARY KEY (gov_id, meta_hash);
+
+-- Create new DRep Names table, caching the DReps metadata anchors
+CREATE TABLE public.drep_names (
+    drep_id character varying(128) NOT NULL,
+    meta_url text NOT NULL,
+    meta_hash character varying(128),
+    name text,
+    updated_at timestamp with time zone DEFAULT now() NOT NULL
+);
+
+ALTER TABLE ONLY public.drep_names
+    ADD CONSTRAINT drep_names_pkey PRIMARY KEY (drep_id);
+
+-- Create new Cluster Members table, the live bot instances sharing the subscriptions
+CREATE TABLE public.cluster_members (
+    instance_id character varying(128) NOT NULL,
+    heartbeat_at timestamp with time zone NOT NULL
+);
+
+ALTER TABLE ONLY public.cluster_members
+    ADD CONSTRAINT cluster_members_pkey PRIMARY KEY (instance_id);
+
+-- Create new Cluster Leases table, the instances running the global jobs
+CREATE TABLE public.cluster_leases (
+    name character varying(64) NOT NULL,
+    instance_id character varying(128) NOT NULL,
+    expires_at timestamp with time zone NOT NULL
+);
+
+ALTER TABLE ONLY public.cluster_leases
+    ADD CONSTRAINT cluster_leases_pkey PRIMARY KEY (name);
@@ -0,0 +1,178 @@
+package com.devpool.thothBot;
+
+import com.devpool.thothBot.cluster.ClusterCoordinator;
+import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.UsersShard;
+import com.devpool.thothBot.dao.data.User;
+import com.devpool.thothBot.doubles.koios.KoiosDataBuilder;
+import com.devpool.thothBot.koios.KoiosFacade;
+import com.devpool.thothBot.scheduler.TransactionCheckerTaskV2;
+import com.devpool.thothBot.telegram.TelegramFacade;
+import com.devpool.thothBot.util.AbstractIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import rest.koios.client.backend.api.base.Result;
+import rest.koios.client.backend.api.block.model.Block;
+import rest.koios.client.backend.api.block.model.BlockTxHash;
+import rest.koios.client.backend.api.network.model.Tip;
+import rest.koios.client.backend.api.transactions.model.TxInfo;
+import rest.koios.client.backend.factory.BackendService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("no-scheduler")
+@TestPropertySource(properties = "thoth.tx-checker.chain-follower.enabled=true")
+@DirtiesContext
+class ChainFollowerIntegrationTest extends AbstractIntegrationTest {
+    private static final String MATCHED_ADDR = "stake1uxpdrerp9wrxunfh6ukyv5267j70fzxgw0fr3z8zeac5vyqhf9jhy";
+    private static final String MATCHED_TX = "1c24ad6f41726f82ed20d4fcfb078c38b5a238e8e817e3c8cd65c7a9e844601f";
+    private static final String FAILING_ADDR = "stake1u8lffpd48ss4f2pe0rhhj4n2edkgwl38scl09f9f43y0azcnhxhwr";
+    private static final String FAILING_TX = "ae044c7dae684039d02f24470488597cd512673700c7b0aa1cf7f75e993cf143";
+    private static final String UNMATCHED_ADDR = "stake1u9ttjzthgk2y7x55c9f363a6vpcthv0ukl2d5mhtxvv4kusv5fmtz";
+    private static final int USERS_BLOCK_HEIGHT = 8700290;
+    private static final int TXS_BLOCK_HEIGHT = 8700295;
+    private static final int TIP_BLOCK_HEIGHT = 8700300;
+
+    @MockitoBean
+    private TelegramFacade telegramFacadeMock;
+
+    @MockitoBean
+    private KoiosFacade koiosFacade;
+
+    @MockitoBean
+    private ClusterCoordinator clusterCoordinator;
+
+    @Captor
+    private ArgumentCaptor<String> messageArgCaptor;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionCheckerTaskV2 transactionCheckerTask;
+
+    private final BackendService backendService = Mockito.mock(BackendService.class, Answers.RETURNS_DEEP_STUBS);
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        this.jdbcTemplate.update("DELETE FROM users");
+        // Consecutive IDs: with two shards, the unmatched user is in a different shard than the other two
+        this.userDao.addNewUser(new User(-1L, MATCHED_ADDR, USERS_BLOCK_HEIGHT, 0, 0L, 0L));
+        this.userDao.addNewUser(new User(-3L, UNMATCHED_ADDR, USERS_BLOCK_HEIGHT, 0, 0L, 0L));
+        this.userDao.addNewUser(new User(-2L, FAILING_ADDR, USERS_BLOCK_HEIGHT, 0, 0L, 0L));
+
+        Map<String, TxInfo> txInfos = KoiosDataBuilder.getTxInfoTestData().stream()
+                .filter(tx -> tx.getTxHash().equals(MATCHED_TX) || tx.getTxHash().equals(FAILING_TX))
+                .collect(Collectors.toMap(TxInfo::getTxHash, Function.identity(), (a, b) -> a));
+        txInfos.values().forEach(tx -> tx.setBlockHeight((long) TXS_BLOCK_HEIGHT));
+        // Makes the processing of the TX fail
+        txInfos.get(FAILING_TX).setFee("not-a-number");
+
+        Tip tip = new Tip();
+        tip.setBlockNo(TIP_BLOCK_HEIGHT);
+        Block block = new Block();
+        block.setHash("block-hash");
+        block.setBlockHeight(TXS_BLOCK_HEIGHT);
+        List<BlockTxHash> blockTxHashes = txInfos.keySet().stream().map(hash -> {
+            BlockTxHash blockTxHash = new BlockTxHash();
+            blockTxHash.setTxHash(hash);
+            return blockTxHash;
+        }).toList();
+
+        Mockito.when(this.backendService.getNetworkService().getChainTip())
+                .thenReturn(Result.<Tip>builder().successful(true).code(200).value(tip).build());
+        Mockito.when(this.backendService.getBlockService().getBlockList(Mockito.any()))
+                .thenReturn(Result.<List<Block>>builder().successful(true).code(200).value(List.of(block)).build());
+        Mockito.when(this.backendService.getBlockService().getBlockTransactions(Mockito.any(), Mockito.any()))
+                .thenReturn(Result.<List<BlockTxHash>>builder().successful(true).code(200).value(blockTxHashes).build());
+        Mockito.when(this.backendService.getTransactionsService().getTransactionInformation(Mockito.anyList(), Mockito.any()))
+                .thenReturn(Result.<List<TxInfo>>builder().successful(true).code(200)
+                        .value(List.copyOf(txInfos.values())).build());
+        Mockito.when(this.koiosFacade.getKoiosService()).thenReturn(this.backendService);
+        Mockito.when(this.clusterCoordinator.getShard()).thenReturn(UsersShard.ALL);
+        Mockito.when(this.clusterCoordinator.ownsShard(Mockito.any())).thenReturn(true);
+    }
+
+    @Test
+    public void followChainTest() {
+        this.transactionCheckerTask.run();
+
+        // Only the matched user is notified
+        Mockito.verify(this.telegramFacadeMock, Mockito.times(1))
+                .sendMessageTo(Mockito.eq(-1L), this.messageArgCaptor.capture());
+        Mockito.verify(this.telegramFacadeMock, Mockito.never()).sendMessageTo(Mockito.eq(-2L), Mockito.anyString());
+        Mockito.verify(this.telegramFacadeMock, Mockito.never()).sendMessageTo(Mockito.eq(-3L), Mockito.anyString());
+        assertTrue(this.messageArgCaptor.getValue().contains(MATCHED_TX));
+
+        // The failing user is left behind, to be processed again at the next run
+        Map<String, Integer> blockHeights = getBlockHeights();
+        assertEquals(TIP_BLOCK_HEIGHT, blockHeights.get(MATCHED_ADDR));
+        assertEquals(TIP_BLOCK_HEIGHT, blockHeights.get(UNMATCHED_ADDR));
+        assertEquals(USERS_BLOCK_HEIGHT, blockHeights.get(FAILING_ADDR));
+        assertEquals(USERS_BLOCK_HEIGHT, this.userDao.getLowestBlockHeight(UsersShard.ALL));
+    }
+
+    @Test
+    public void followChainTwoShardsTest() {
+        Map<String, Long> userIds = this.userDao.getUsers().stream().collect(Collectors.toMap(User::getAddress, User::getId));
+        UsersShard matchedShard = new UsersShard((int) (userIds.get(MATCHED_ADDR) % 2), 2);
+        UsersShard otherShard = new UsersShard(1 - matchedShard.index(), 2);
+
+        assertTrue(otherShard.owns(userIds.get(UNMATCHED_ADDR)));
+        assertTrue(matchedShard.owns(userIds.get(FAILING_ADDR)));
+
+        // The instance owning the shard of the matched user does not touch the users of the other shard
+        Mockito.when(this.clusterCoordinator.getShard()).thenReturn(matchedShard);
+        this.transactionCheckerTask.run();
+
+        Mockito.verify(this.telegramFacadeMock, Mockito.times(1))
+                .sendMessageTo(Mockito.eq(-1L), this.messageArgCaptor.capture());
+        Map<String, Integer> blockHeights = getBlockHeights();
+        assertEquals(TIP_BLOCK_HEIGHT, blockHeights.get(MATCHED_ADDR));
+        assertEquals(USERS_BLOCK_HEIGHT, blockHeights.get(UNMATCHED_ADDR));
+        assertEquals(USERS_BLOCK_HEIGHT, blockHeights.get(FAILING_ADDR));
+        assertEquals(USERS_BLOCK_HEIGHT, this.userDao.getLowestBlockHeight(otherShard));
+
+        // Then the instance owning the other shard catches up with its users
+        Mockito.when(this.clusterCoordinator.getShard()).thenReturn(otherShard);
+        this.transactionCheckerTask.run();
+
+        Mockito.verify(this.telegramFacadeMock, Mockito.times(1)).sendMessageTo(Mockito.eq(-1L), Mockito.anyString());
+        blockHeights = getBlockHeights();
+        assertEquals(TIP_BLOCK_HEIGHT, blockHeights.get(MATCHED_ADDR));
+        assertEquals(TIP_BLOCK_HEIGHT, blockHeights.get(UNMATCHED_ADDR));
+        assertEquals(USERS_BLOCK_HEIGHT, blockHeights.get(FAILING_ADDR));
+    }
+
+    @Test
+    public void followChainShardLostTest() {
+        // The shards changed while the run was collecting the TXs: the new owner notifies them
+        Mockito.when(this.clusterCoordinator.ownsShard(UsersShard.ALL)).thenReturn(false);
+        this.transactionCheckerTask.run();
+
+        Mockito.verify(this.telegramFacadeMock, Mockito.never()).sendMessageTo(Mockito.anyLong(), Mockito.anyString());
+        assertTrue(getBlockHeights().values().stream().allMatch(h -> h == USERS_BLOCK_HEIGHT));
+    }
+
+    private Map<String, Integer> getBlockHeights() {
+        return this.userDao.getUsers().stream().collect(Collectors.toMap(User::getAddress, User::getLastBlockHeight));
+    }
+}
@@ -0,0 +1,120 @@
+package com.devpool.thothBot;
+
+import com.devpool.thothBot.dao.CheckpointBatch;
+import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.UsersListener;
+import com.devpool.thothBot.dao.data.User;
+import com.devpool.thothBot.telegram.TelegramFacade;
+import com.devpool.thothBot.util.AbstractIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("no-scheduler")
+@TestPropertySource(properties = "thoth.users.checkpoint.flush-size=" + CheckpointBatchIntegrationTest.FLUSH_SIZE)
+@DirtiesContext
+class CheckpointBatchIntegrationTest extends AbstractIntegrationTest {
+    static final int FLUSH_SIZE = 3;
+
+    @MockitoBean
+    private TelegramFacade telegramFacadeMock;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final UsersListener usersListener = Mockito.mock(UsersListener.class);
+    private List<User> users;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.jdbcTemplate.update("DELETE FROM users");
+        this.userDao.addNewUser(new User(-1L, "stake1u8lffpd48ss4f2pe0rhhj4n2edkgwl38scl09f9f43y0azcnhxhwr", 0, 0, 0L, 0L));
+        this.userDao.addNewUser(new User(-1L, "stake1u8uekde7k8x8n9lh0zjnhymz66sqdpa0ms02z8cshajptac0d3j32", 0, 0, 0L, 0L));
+        this.userDao.addNewUser(new User(-2L, "stake1u9ttjzthgk2y7x55c9f363a6vpcthv0ukl2d5mhtxvv4kusv5fmtz", 0, 0, 0L, 0L));
+        this.users = this.userDao.getUsers();
+        this.userDao.addListener(this.usersListener);
+    }
+
+    @Test
+    public void flushedAtFlushSize() throws Exception {
+        Long firstId = this.users.get(0).getId();
+        Long secondId = this.users.get(1).getId();
+        CheckpointBatch checkpoints = this.userDao.newCheckpointBatch();
+
+        checkpoints.updateUserBlockHeight(firstId, 100);
+        checkpoints.updateUserBlockHeight(secondId, 200);
+        assertEquals(FLUSH_SIZE - 1, checkpoints.size());
+        assertEquals(0, this.userDao.getUser(firstId).getLastBlockHeight());
+        Mockito.verifyNoInteractions(this.usersListener);
+
+        // Any kind of checkpoint counts for the flush size
+        checkpoints.updateUserEpochNumber(firstId, 500);
+        assertEquals(0, checkpoints.size());
+        assertEquals(100, this.userDao.getUser(firstId).getLastBlockHeight());
+        assertEquals(200, this.userDao.getUser(secondId).getLastBlockHeight());
+        assertEquals(500, this.userDao.getUser(firstId).getLastEpochNumber());
+        Mockito.verify(this.usersListener).checkpointsUpdated(UsersListener.Checkpoint.BLOCK_HEIGHT,
+                Map.of(firstId, 100L, secondId, 200L));
+        Mockito.verify(this.usersListener).checkpointsUpdated(UsersListener.Checkpoint.EPOCH_NUMBER, Map.of(firstId, 500));
+    }
+
+    @Test
+    public void latestValueWritten() throws Exception {
+        Long firstId = this.users.get(0).getId();
+        CheckpointBatch checkpoints = this.userDao.newCheckpointBatch();
+
+        checkpoints.updateUserGovVotesBlockTime(firstId, 1000L);
+        checkpoints.updateUserGovVotesBlockTime(firstId, 2000L);
+        assertEquals(1, checkpoints.size());
+
+        checkpoints.close();
+        assertEquals(0, checkpoints.size());
+        assertEquals(2000L, this.userDao.getUser(firstId).getLastGovVotesBlockTime());
+        Mockito.verify(this.usersListener).checkpointsUpdated(UsersListener.Checkpoint.GOV_VOTES_BLOCK_TIME,
+                Map.of(firstId, 2000L));
+    }
+
+    @Test
+    public void closeFlushesEverything() throws Exception {
+        Long thirdId = this.users.get(2).getId();
+        try (CheckpointBatch checkpoints = this.userDao.newCheckpointBatch()) {
+            checkpoints.updateUserGovActionBlockTime(-1L, 3000L);
+            checkpoints.updateUserBlockHeight(thirdId, 300);
+            assertEquals(0, this.userDao.getUser(thirdId).getLastBlockHeight());
+        }
+
+        // The governance action time is written for all the subscriptions of the chat
+        assertEquals(3000L, this.userDao.getUser(this.users.get(0).getId()).getLastGovActionBlockTime());
+        assertEquals(3000L, this.userDao.getUser(this.users.get(1).getId()).getLastGovActionBlockTime());
+        assertEquals(0L, this.userDao.getUser(thirdId).getLastGovActionBlockTime());
+        assertEquals(300, this.userDao.getUser(thirdId).getLastBlockHeight());
+    }
+
+    @Test
+    public void removedSubscriptionIgnored() throws Exception {
+        User removed = this.users.get(2);
+        Long firstId = this.users.get(0).getId();
+        CheckpointBatch checkpoints = this.userDao.newCheckpointBatch();
+        checkpoints.updateUserBlockHeight(removed.getId(), 300);
+        checkpoints.updateUserBlockHeight(firstId, 100);
+        assertTrue(this.userDao.removeAddress(removed.getChatId(), removed.getAddress()));
+
+        checkpoints.close();
+        assertEquals(100, this.userDao.getUser(firstId).getLastBlockHeight());
+        assertEquals(2, this.userDao.countSubscriptions());
+    }
+}
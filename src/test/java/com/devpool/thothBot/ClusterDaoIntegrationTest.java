@@ -0,0 +1,75 @@
+package com.devpool.thothBot;
+
+import com.devpool.thothBot.dao.ClusterDao;
+import com.devpool.thothBot.telegram.TelegramFacade;
+import com.devpool.thothBot.util.AbstractIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("no-scheduler")
+@DirtiesContext
+class ClusterDaoIntegrationTest extends AbstractIntegrationTest {
+    private static final long LEASE_SECS = 30;
+
+    @MockitoBean
+    private TelegramFacade telegramFacadeMock;
+
+    @Autowired
+    private ClusterDao clusterDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.jdbcTemplate.update("DELETE FROM cluster_members");
+        this.jdbcTemplate.update("DELETE FROM cluster_leases");
+    }
+
+    @Test
+    public void heartbeatTest() {
+        assertEquals(List.of("instance-b"), this.clusterDao.heartbeat("instance-b", LEASE_SECS));
+        assertEquals(List.of("instance-a", "instance-b"), this.clusterDao.heartbeat("instance-a", LEASE_SECS));
+        assertEquals(List.of("instance-a", "instance-b"), this.clusterDao.heartbeat("instance-b", LEASE_SECS));
+
+        // The members not renewing their membership within the lease are removed
+        this.jdbcTemplate.update("update cluster_members set heartbeat_at = now() - interval '1 minute' " +
+                "where instance_id = 'instance-a'");
+        assertEquals(List.of("instance-b"), this.clusterDao.heartbeat("instance-b", LEASE_SECS));
+    }
+
+    @Test
+    public void leaseTest() {
+        assertTrue(this.clusterDao.acquireLease("leader", "instance-a", LEASE_SECS));
+        assertTrue(this.clusterDao.acquireLease("leader", "instance-a", LEASE_SECS));
+        assertFalse(this.clusterDao.acquireLease("leader", "instance-b", LEASE_SECS));
+        assertTrue(this.clusterDao.acquireLease("other", "instance-b", LEASE_SECS));
+
+        // Taken over once expired
+        this.jdbcTemplate.update("update cluster_leases set expires_at = now() - interval '1 second' " +
+                "where name = 'leader'");
+        assertTrue(this.clusterDao.acquireLease("leader", "instance-b", LEASE_SECS));
+        assertFalse(this.clusterDao.acquireLease("leader", "instance-a", LEASE_SECS));
+    }
+
+    @Test
+    public void leaveTest() {
+        this.clusterDao.heartbeat("instance-a", LEASE_SECS);
+        this.clusterDao.heartbeat("instance-b", LEASE_SECS);
+        assertTrue(this.clusterDao.acquireLease("leader", "instance-a", LEASE_SECS));
+
+        // The lease is released right away, without waiting for its expiry
+        this.clusterDao.leave("instance-a");
+        assertEquals(List.of("instance-b"), this.clusterDao.heartbeat("instance-b", LEASE_SECS));
+        assertTrue(this.clusterDao.acquireLease("leader", "instance-b", LEASE_SECS));
+    }
+}
@@ -0,0 +1,107 @@
+package com.devpool.thothBot;
+
+import com.devpool.thothBot.dao.CheckpointBatch;
+import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.data.User;
+import com.devpool.thothBot.telegram.NotificationOutbox;
+import com.devpool.thothBot.telegram.TelegramFacade;
+import com.devpool.thothBot.util.AbstractIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("no-scheduler")
+@TestPropertySource(properties = {
+        "thoth.notification.outbox.enabled=true",
+        // The outbox is polled by the tests only
+        "thoth.notification.outbox.poll-interval-ms=3600000",
+        "thoth.notification.outbox.lease-secs=1"})
+@DirtiesContext
+class NotificationOutboxIntegrationTest extends AbstractIntegrationTest {
+    private static final long CHAT_ID = -1L;
+
+    @MockitoBean
+    private TelegramFacade telegramFacadeMock;
+
+    @Autowired
+    private NotificationOutbox notificationOutbox;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long userId;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.jdbcTemplate.update("DELETE FROM users");
+        this.jdbcTemplate.update("DELETE FROM notification_outbox");
+        this.userDao.addNewUser(new User(CHAT_ID, "stake1u8lffpd48ss4f2pe0rhhj4n2edkgwl38scl09f9f43y0azcnhxhwr", 0, 0, 0L, 0L));
+        this.userId = this.userDao.getUsers().getFirst().getId();
+    }
+
+    @Test
+    public void checkpointWrittenWithTheMessages() throws Exception {
+        CheckpointBatch checkpoints = this.userDao.newCheckpointBatch();
+        this.notificationOutbox.send(CHAT_ID, "msg", () -> checkpoints.updateUserBlockHeight(this.userId, 100));
+
+        // Written in the outbox transaction, not when the batch is closed
+        assertEquals(0, checkpoints.size());
+        assertEquals(100, this.userDao.getUser(this.userId).getLastBlockHeight());
+        assertEquals(1, countPendingMessages());
+    }
+
+    @Test
+    public void checkpointRolledBackWithTheMessages() throws Exception {
+        CheckpointBatch checkpoints = this.userDao.newCheckpointBatch();
+        // The null message can't be stored in the outbox
+        assertThrows(Exception.class, () -> this.notificationOutbox.send(CHAT_ID, Arrays.asList("msg", null),
+                () -> checkpoints.updateUserBlockHeight(this.userId, 100)));
+
+        assertEquals(0, this.userDao.getUser(this.userId).getLastBlockHeight());
+        assertEquals(0, countPendingMessages());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void inFlightMessagesNotClaimedAgain() throws Exception {
+        this.notificationOutbox.send(CHAT_ID, "msg", () -> {
+        });
+
+        // Still waiting in the Telegram queue after the lease
+        ReflectionTestUtils.invokeMethod(this.notificationOutbox, "deliverPendingMessages");
+        TimeUnit.MILLISECONDS.sleep(1500);
+        ReflectionTestUtils.invokeMethod(this.notificationOutbox, "deliverPendingMessages");
+
+        ArgumentCaptor<Consumer<Boolean>> listenerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        Mockito.verify(this.telegramFacadeMock, Mockito.times(1))
+                .sendMessageTo(Mockito.eq(CHAT_ID), Mockito.eq("msg"), listenerCaptor.capture());
+        assertEquals(1, this.jdbcTemplate.queryForObject("select attempts from notification_outbox", Integer.class));
+
+        // Marked as sent once delivered
+        listenerCaptor.getValue().accept(true);
+        ReflectionTestUtils.invokeMethod(this.notificationOutbox, "deliverPendingMessages");
+        assertEquals(0, countPendingMessages());
+    }
+
+    private long countPendingMessages() {
+        return this.jdbcTemplate.queryForObject(
+                "select count(id) from notification_outbox where sent_at is null", Long.class);
+    }
+}
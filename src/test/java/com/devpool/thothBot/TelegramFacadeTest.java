@@ -3,6 +3,7 @@ package com.devpool.thothBot;
 import com.devpool.thothBot.doubles.commands.DummyCommandDouble;
 import com.devpool.thothBot.doubles.commands.ErrorCommandDouble;
 import com.devpool.thothBot.doubles.commands.LongCommandDouble;
+import com.devpool.thothBot.monitoring.MetricsHelper;
 import com.devpool.thothBot.telegram.TelegramFacade;
 import com.devpool.thothBot.telegram.command.IBotCommand;
 import com.devpool.thothBot.util.TelegramUtils;
@@ -22,9 +23,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 
 @SpringBootTest(classes = {DummyCommandDouble.class, ErrorCommandDouble.class, LongCommandDouble.class})
 @DirtiesContext
@@ -141,4 +144,32 @@ class TelegramFacadeTest {
                 sendMessages.stream().filter(
                         m -> m.getParameters().getOrDefault("text", "none").toString().contains("your command timed out")).count());
     }
+
+    @Test
+    public void testAdmissionReleasedOnTimeout() throws Exception {
+        MetricsHelper metricsHelperMock = Mockito.mock(MetricsHelper.class);
+        ReflectionTestUtils.setField(this.telegramFacade, "updatesAdmission", new Semaphore(1));
+        ReflectionTestUtils.setField(this.telegramFacade, "updatesAdmissionTimeoutMillis", 100L);
+        ReflectionTestUtils.setField(this.telegramFacade, "metricsHelper", metricsHelperMock);
+
+        Assertions.assertTrue(this.telegramFacade.admitUpdate(TelegramUtils.buildAnyCommandUpdate("/long", "thor")));
+
+        // The long command holds the only admission slot until its timeout
+        Assertions.assertFalse(this.telegramFacade.admitUpdate(TelegramUtils.buildAnyCommandUpdate("/dummy", "thor")));
+        Mockito.verify(metricsHelperMock).incrementCounter("telegram_rejected_updates");
+
+        Mockito.verify(this.telegramBotMock,
+                        Mockito.timeout(60 * 1000)
+                                .times(1))
+                .execute(this.sendMessageArgCaptor.capture());
+        Assertions.assertTrue(this.sendMessageArgCaptor.getValue().getParameters().getOrDefault("text", "none")
+                .toString().contains("your command timed out"));
+
+        // The interrupted command frees the slot for the next update
+        Assertions.assertTrue(this.telegramFacade.admitUpdate(TelegramUtils.buildAnyCommandUpdate("/dummy", "thor")));
+        Mockito.verify(this.telegramBotMock,
+                        Mockito.timeout(10 * 1000)
+                                .times(2))
+                .execute(Mockito.any(SendMessage.class));
+    }
 }
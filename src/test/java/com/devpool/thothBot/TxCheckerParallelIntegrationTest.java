@@ -0,0 +1,162 @@
+package com.devpool.thothBot;
+
+import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.data.User;
+import com.devpool.thothBot.doubles.koios.AccountServiceDouble;
+import com.devpool.thothBot.doubles.koios.BackendServiceDouble;
+import com.devpool.thothBot.doubles.koios.TransactionsServiceDouble;
+import com.devpool.thothBot.koios.KoiosFacade;
+import com.devpool.thothBot.scheduler.TransactionCheckerTaskV2;
+import com.devpool.thothBot.telegram.TelegramFacade;
+import com.devpool.thothBot.util.AbstractIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import rest.koios.client.backend.api.base.Result;
+import rest.koios.client.backend.api.base.common.UTxO;
+import rest.koios.client.backend.api.base.exception.ApiException;
+import rest.koios.client.backend.api.transactions.model.TxInfo;
+import rest.koios.client.backend.factory.options.Options;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("no-scheduler")
+@TestPropertySource(properties = {
+        "thoth.tx-checker.parallel.enabled=true",
+        "thoth.tx-checker.parallel.koios-permits=" + TxCheckerParallelIntegrationTest.KOIOS_PERMITS})
+@DirtiesContext
+class TxCheckerParallelIntegrationTest extends AbstractIntegrationTest {
+    static final int KOIOS_PERMITS = 2;
+    private static final List<User> TEST_USERS = new ArrayList<>();
+
+    static {
+        TEST_USERS.add(new User(-1L, "stake1u8lffpd48ss4f2pe0rhhj4n2edkgwl38scl09f9f43y0azcnhxhwr", 0, 0, 0L, 0L));
+        TEST_USERS.add(new User(-2L, "stake1u8uekde7k8x8n9lh0zjnhymz66sqdpa0ms02z8cshajptac0d3j32", 0, 0, 0L, 0L));
+        TEST_USERS.add(new User(-2L, "stake1u9ttjzthgk2y7x55c9f363a6vpcthv0ukl2d5mhtxvv4kusv5fmtz", 0, 0, 0L, 0L));
+        TEST_USERS.add(new User(-3L, "stake1uxpdrerp9wrxunfh6ukyv5267j70fzxgw0fr3z8zeac5vyqhf9jhy", 0, 0, 0L, 0L));
+        TEST_USERS.add(new User(-4L, "addr1wxwrp3hhg8xdddx7ecg6el2s2dj6h2c5g582yg2yxhupyns8feg4m", 0, 0, 0L, 0L));
+        TEST_USERS.add(new User(-5L, "addr1qy2jt0qpqz2z2z9zx5w4xemekkce7yderz53kjue53lpqv90lkfa9sgrfjuz6uvt4uqtrqhl2kj0a9lnr9ndzutx32gqleeckv", 0, 0, 0L, 0L));
+        TEST_USERS.add(new User(-43L, "stake1u8656c05pay70xtpcwp3dqgu4jwullv6qu9e50ykn59lz7g7vzwt7", 0, 0, 0L, 0L));
+    }
+
+    @MockitoBean
+    private TelegramFacade telegramFacadeMock;
+
+    @MockitoBean
+    private KoiosFacade koiosFacade;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionCheckerTaskV2 transactionCheckerTask;
+
+    // Koios calls in flight, and the highest number seen at the same time
+    private final AtomicInteger koiosCalls = new AtomicInteger();
+    private final AtomicInteger maxKoiosCalls = new AtomicInteger();
+    private final List<List<String>> txInfoRequests = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void beforeEach() {
+        BackendServiceDouble backendServiceDouble = Mockito.spy(new BackendServiceDouble());
+        Mockito.doReturn(new TransactionsServiceDouble() {
+            @Override
+            public Result<List<TxInfo>> getTransactionInformation(List<String> txHashes, Options options) throws ApiException {
+                txInfoRequests.add(List.copyOf(txHashes));
+                return trackKoiosCall(() -> super.getTransactionInformation(txHashes, options));
+            }
+        }).when(backendServiceDouble).getTransactionsService();
+        Mockito.doReturn(new AccountServiceDouble(BackendServiceDouble.BackendBehavior.NOMINAL) {
+            @Override
+            public Result<List<UTxO>> getAccountUTxOs(List<String> addressList, boolean extended, Options options) throws ApiException {
+                return trackKoiosCall(() -> super.getAccountUTxOs(addressList, extended, options));
+            }
+        }).when(backendServiceDouble).getAccountService();
+        Mockito.when(this.koiosFacade.getKoiosService()).thenReturn(backendServiceDouble);
+    }
+
+    @Test
+    public void parallelMatchesSequentialTest() {
+        // Small batches, to have more of them running at the same time
+        ReflectionTestUtils.setField(this.transactionCheckerTask, "usersBatchSize", 2);
+
+        List<String> sequentialMessages = runChecker(false);
+        int sequentialMaxKoiosCalls = this.maxKoiosCalls.getAndSet(0);
+        List<String> parallelMessages = runChecker(true);
+
+        assertEquals(1, sequentialMaxKoiosCalls);
+        assertTrue(this.maxKoiosCalls.get() > 1, "No Koios call ran in parallel");
+        assertTrue(this.maxKoiosCalls.get() <= KOIOS_PERMITS,
+                "Koios calls in parallel " + this.maxKoiosCalls.get() + " exceeding the permits");
+
+        // Same notifications, in any order
+        assertFalse(sequentialMessages.isEmpty());
+        Collections.sort(sequentialMessages);
+        Collections.sort(parallelMessages);
+        assertEquals(sequentialMessages, parallelMessages);
+    }
+
+    @Test
+    public void txInfoFetchedOncePerBatchTest() {
+        // All the users in a single batch
+        ReflectionTestUtils.setField(this.transactionCheckerTask, "usersBatchSize", 100);
+
+        runChecker(true);
+
+        List<String> requestedTxHashes = this.txInfoRequests.stream().flatMap(List::stream).toList();
+        assertFalse(requestedTxHashes.isEmpty());
+        assertEquals(new HashSet<>(requestedTxHashes).size(), requestedTxHashes.size(), "TX information fetched more than once");
+        this.txInfoRequests.forEach(request -> assertTrue(request.size() <= 50, "TX information request of " + request.size()));
+    }
+
+    private List<String> runChecker(boolean parallel) {
+        this.jdbcTemplate.update("DELETE FROM users");
+        TEST_USERS.forEach(this.userDao::addNewUser);
+        Mockito.clearInvocations(this.telegramFacadeMock);
+        ReflectionTestUtils.setField(this.transactionCheckerTask, "parallelEnabled", parallel);
+
+        this.transactionCheckerTask.run();
+
+        ArgumentCaptor<String> messageArgCaptor = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(this.telegramFacadeMock, Mockito.atLeastOnce())
+                .sendMessageTo(Mockito.anyLong(), messageArgCaptor.capture());
+        return new ArrayList<>(messageArgCaptor.getAllValues());
+    }
+
+    private <T> T trackKoiosCall(KoiosCall<T> call) throws ApiException {
+        int calls = this.koiosCalls.incrementAndGet();
+        this.maxKoiosCalls.accumulateAndGet(calls, Math::max);
+        try {
+            // Long enough for the other tasks to overlap
+            TimeUnit.MILLISECONDS.sleep(100);
+            return call.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(e.toString(), e);
+        } finally {
+            this.koiosCalls.decrementAndGet();
+        }
+    }
+
+    private interface KoiosCall<T> {
+        T call() throws ApiException;
+    }
+}
@@ -0,0 +1,157 @@
+package com.devpool.thothBot;
+
+import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.UsersShard;
+import com.devpool.thothBot.dao.data.User;
+import com.devpool.thothBot.telegram.TelegramFacade;
+import com.devpool.thothBot.util.AbstractIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("no-scheduler")
+@DirtiesContext
+class UserDaoIntegrationTest extends AbstractIntegrationTest {
+    private static final List<String> ADDRESSES = List.of(
+            "stake1u8lffpd48ss4f2pe0rhhj4n2edkgwl38scl09f9f43y0azcnhxhwr",
+            "addr1wxwrp3hhg8xdddx7ecg6el2s2dj6h2c5g582yg2yxhupyns8feg4m",
+            "stake1u8uekde7k8x8n9lh0zjnhymz66sqdpa0ms02z8cshajptac0d3j32",
+            "stake1u9ttjzthgk2y7x55c9f363a6vpcthv0ukl2d5mhtxvv4kusv5fmtz",
+            "addr1qy2jt0qpqz2z2z9zx5w4xemekkce7yderz53kjue53lpqv90lkfa9sgrfjuz6uvt4uqtrqhl2kj0a9lnr9ndzutx32gqleeckv",
+            "stake1uxpdrerp9wrxunfh6ukyv5267j70fzxgw0fr3z8zeac5vyqhf9jhy",
+            "stake1u8656c05pay70xtpcwp3dqgu4jwullv6qu9e50ykn59lz7g7vzwt7");
+
+    @MockitoBean
+    private TelegramFacade telegramFacadeMock;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < ADDRESSES.size(); i++)
+            this.userDao.addNewUser(new User((long) -(i % 3) - 1, ADDRESSES.get(i), 0, 0, 0L, 0L));
+        this.ids = this.userDao.getUsers().stream().map(User::getId).toList();
+    }
+
+    @Test
+    public void getUsersBatchesTest() {
+        List<List<User>> batches = this.userDao.getUsersBatches(UserDao.UsersFilter.ALL, 3).toList();
+
+        assertEquals(List.of(3, 3, 1), batches.stream().map(List::size).toList());
+        assertEquals(this.ids, batches.stream().flatMap(List::stream).map(User::getId).toList());
+
+        // A batch size dividing the number of users ends with a full batch
+        assertEquals(List.of(7), this.userDao.getUsersBatches(UserDao.UsersFilter.ALL, 7)
+                .map(List::size).toList());
+        assertThrows(IllegalArgumentException.class, () -> this.userDao.getUsersBatches(UserDao.UsersFilter.ALL, 0));
+    }
+
+    @Test
+    public void getUsersBatchesFilterAndShardTest() {
+        List<User> stakeUsers = this.userDao.getUsersBatches(UserDao.UsersFilter.STAKE_ADDRESSES, 2)
+                .flatMap(List::stream).toList();
+        List<User> addrUsers = this.userDao.getUsersBatches(UserDao.UsersFilter.NORMAL_ADDRESSES, 2)
+                .flatMap(List::stream).toList();
+        assertEquals(5, stakeUsers.size());
+        assertTrue(stakeUsers.stream().allMatch(User::isStakeAddress));
+        assertEquals(2, addrUsers.size());
+        assertTrue(addrUsers.stream().noneMatch(User::isStakeAddress));
+
+        // The shards split the users, without overlapping
+        List<Long> shardedIds = new ArrayList<>();
+        for (int index = 0; index < 3; index++) {
+            UsersShard shard = new UsersShard(index, 3);
+            List<User> shardUsers = this.userDao.getUsersBatches(UserDao.UsersFilter.ALL, 2, shard)
+                    .flatMap(List::stream).toList();
+            assertTrue(shardUsers.stream().allMatch(u -> shard.owns(u.getId())));
+            shardUsers.forEach(u -> shardedIds.add(u.getId()));
+        }
+        assertEquals(this.ids, shardedIds.stream().sorted().toList());
+        assertEquals(0, this.userDao.getUsersBatches(UserDao.UsersFilter.ALL, 2, UsersShard.NONE).count());
+    }
+
+    @Test
+    public void getUsersBatchesLazyTest() {
+        Iterator<List<User>> batches = this.userDao.getUsersBatches(UserDao.UsersFilter.ALL, 4).iterator();
+        assertEquals(this.ids.subList(0, 4), batches.next().stream().map(User::getId).toList());
+
+        // The next page is read after the last ID of the previous one, when needed
+        User removed = this.userDao.getUsersByIds(List.of(this.ids.get(4))).getFirst();
+        assertTrue(this.userDao.removeAddress(removed.getChatId(), removed.getAddress()));
+        this.userDao.addNewUser(new User(-10L, ADDRESSES.getFirst(), 0, 0, 0L, 0L));
+
+        List<User> nextBatch = batches.next();
+        assertEquals(3, nextBatch.size());
+        assertEquals(this.ids.subList(5, 7), nextBatch.subList(0, 2).stream().map(User::getId).toList());
+        assertEquals(-10L, nextBatch.get(2).getChatId());
+        assertFalse(batches.hasNext());
+    }
+
+    @Test
+    public void getUsersByIdsTest() {
+        assertEquals(List.of(), this.userDao.getUsersByIds(List.of()));
+
+        // Sorted by ID, ignoring the IDs not found
+        List<User> users = this.userDao.getUsersByIds(List.of(this.ids.get(5), -1L, this.ids.get(1)));
+        assertEquals(List.of(this.ids.get(1), this.ids.get(5)), users.stream().map(User::getId).toList());
+        assertEquals(ADDRESSES.get(1), users.get(0).getAddress());
+        assertEquals(ADDRESSES.get(5), users.get(1).getAddress());
+    }
+
+    @Test
+    public void chatSubscriptionsCacheTest() {
+        List<User> chatSubscriptions = this.userDao.getChatSubscriptions(-1L);
+        List<User> otherChatSubscriptions = this.userDao.getChatSubscriptions(-2L);
+        assertEquals(3, chatSubscriptions.size());
+        assertThrows(UnsupportedOperationException.class, () -> chatSubscriptions.add(chatSubscriptions.getFirst()));
+
+        // Served by the cache, not seeing the changes made by others to the DB
+        insertUser(-1L, ADDRESSES.get(1));
+        assertSame(chatSubscriptions, this.userDao.getChatSubscriptions(-1L));
+
+        // Invalidated by the subscriptions changes of the chat only
+        this.userDao.addNewUser(new User(-1L, ADDRESSES.get(2), 0, 0, 0L, 0L));
+        assertEquals(5, this.userDao.getChatSubscriptions(-1L).size());
+        assertSame(otherChatSubscriptions, this.userDao.getChatSubscriptions(-2L));
+
+        User removed = otherChatSubscriptions.getFirst();
+        assertTrue(this.userDao.removeAddress(removed.getChatId(), removed.getAddress()));
+        assertEquals(otherChatSubscriptions.size() - 1, this.userDao.getChatSubscriptions(-2L).size());
+    }
+
+    @Test
+    public void chatSubscriptionsCacheExpiryTest() {
+        long ttlSecs = (long) ReflectionTestUtils.getField(this.userDao, "chatCacheTtlSecs");
+        ReflectionTestUtils.setField(this.userDao, "chatCacheTtlSecs", 0L);
+        try {
+            assertEquals(3, this.userDao.getChatSubscriptions(-1L).size());
+            insertUser(-1L, ADDRESSES.get(1));
+            assertEquals(4, this.userDao.getChatSubscriptions(-1L).size());
+        } finally {
+            ReflectionTestUtils.setField(this.userDao, "chatCacheTtlSecs", ttlSecs);
+        }
+    }
+
+    private void insertUser(long chatId, String address) {
+        this.jdbcTemplate.update("insert into users (chat_id, addr, last_block_height, last_epoch_number, " +
+                "last_gov_votes_block_time, last_gov_action_block_time) values (?, ?, 0, 0, 0, 0)", chatId, address);
+    }
+}
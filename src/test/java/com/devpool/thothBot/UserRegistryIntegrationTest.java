@@ -0,0 +1,92 @@
+package com.devpool.thothBot;
+
+import com.devpool.thothBot.dao.SubscribedAddressIndex;
+import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.UserRegistry;
+import com.devpool.thothBot.dao.data.User;
+import com.devpool.thothBot.telegram.TelegramFacade;
+import com.devpool.thothBot.util.AbstractIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("no-scheduler")
+@TestPropertySource(properties = {
+        "thoth.users.registry.enabled=true",
+        "thoth.users.registry.listen-notify.enabled=true",
+        "thoth.users.registry.listen-notify.poll-ms=100"})
+@DirtiesContext
+class UserRegistryIntegrationTest extends AbstractIntegrationTest {
+    private static final String STAKE_ADDR = "stake1u8lffpd48ss4f2pe0rhhj4n2edkgwl38scl09f9f43y0azcnhxhwr";
+    private static final String OTHER_STAKE_ADDR = "stake1u8uekde7k8x8n9lh0zjnhymz66sqdpa0ms02z8cshajptac0d3j32";
+
+    @MockitoBean
+    private TelegramFacade telegramFacadeMock;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private UserRegistry userRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        this.jdbcTemplate.update("DELETE FROM users");
+        this.userDao.invalidateAddressIndex();
+        this.userDao.invalidateChatSubscriptions();
+        this.userDao.addNewUser(new User(-1L, STAKE_ADDR, 0, 0, 0L, 0L));
+        // Once listening, the listener invalidates the index for the changes missed before
+        TimeUnit.MILLISECONDS.sleep(500);
+    }
+
+    @Test
+    public void otherInstancesChangesReloaded() throws Exception {
+        assertTrue(this.userDao.getAddressIndex().contains(STAKE_ADDR));
+        assertEquals(1, this.userRegistry.snapshot().size());
+        assertEquals(0, this.userDao.getChatSubscriptions(-2L).size());
+
+        // Subscription added by another instance, bypassing this UserDao
+        this.jdbcTemplate.update("insert into users (chat_id, addr, last_block_height, last_epoch_number, " +
+                "last_gov_votes_block_time, last_gov_action_block_time) values (-2, ?, 0, 0, 0, 0)", OTHER_STAKE_ADDR);
+        assertFalse(this.userDao.getAddressIndex().contains(OTHER_STAKE_ADDR));
+        assertEquals(0, this.userDao.getChatSubscriptions(-2L).size());
+
+        this.jdbcTemplate.query("select pg_notify('thoth_users', 'other-instance')", rs -> null);
+        assertTrue(await(() -> this.userDao.getAddressIndex().contains(OTHER_STAKE_ADDR)));
+        assertTrue(this.userDao.getAddressIndex().contains(STAKE_ADDR));
+        assertEquals(2, this.userRegistry.snapshot().size());
+        assertEquals(1, this.userDao.getChatSubscriptions(-2L).size());
+    }
+
+    @Test
+    public void ownChangesNotReloaded() throws Exception {
+        SubscribedAddressIndex addressIndex = this.userDao.getAddressIndex();
+        this.userDao.addNewUser(new User(-2L, OTHER_STAKE_ADDR, 0, 0, 0L, 0L));
+
+        // The own notification is ignored, as the index is already up to date
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertTrue(addressIndex.isLoaded());
+        assertTrue(addressIndex.contains(OTHER_STAKE_ADDR));
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            if (condition.getAsBoolean()) return true;
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        return false;
+    }
+}
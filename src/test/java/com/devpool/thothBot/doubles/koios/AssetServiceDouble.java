@@ -10,6 +10,7 @@ import rest.koios.client.backend.factory.options.Options;
 import rest.koios.client.utils.Tuple;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class AssetServiceDouble implements AssetService {
@@ -71,7 +72,15 @@ public class AssetServiceDouble implements AssetService {
 
     @Override
     public Result<List<AssetInformation>> getAssetInformationBulk(List<Tuple<String, String>> list, Options options) throws ApiException {
-        return null;
+        List<AssetInformation> assetInformationList = new ArrayList<>();
+        for (Tuple<String, String> asset : list) {
+            try {
+                assetInformationList.add(KoiosDataBuilder.getAssetInformation(asset._1, asset._2));
+            } catch (Exception e) {
+                // Unknown asset, not returned
+            }
+        }
+        return Result.<List<AssetInformation>>builder().code(200).response("").successful(true).value(assetInformationList).build();
     }
 
     @Override
@@ -0,0 +1,105 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.scheduler.AssetDeltas;
+import com.devpool.thothBot.util.MessageTemplates;
+import org.junit.jupiter.api.Test;
+import rest.koios.client.backend.api.base.common.Asset;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssetDeltasTest {
+
+    @Test
+    public void sumsByFingerprint() {
+        AssetDeltas deltas = new AssetDeltas();
+        deltas.subtract(asset("asset1a", 0, "10"), 10);
+        deltas.subtract(asset("asset1a", 0, "10"), 10);
+        deltas.add(asset("asset1b", 6, "1500000"), 1500000);
+        deltas.add(asset("asset1a", 0, "5"), 5);
+
+        assertEquals(2, deltas.size());
+        assertEquals("asset1a", deltas.getAsset(0).getFingerprint());
+        assertEquals(-15, deltas.getQuantity(0));
+        assertEquals(0, deltas.getDecimals(0));
+        assertEquals(1500000, deltas.getQuantity("asset1b"));
+        assertEquals(6, deltas.getDecimals(1));
+        assertEquals(0, deltas.getQuantity("asset1c"));
+        assertTrue(deltas.hasSent());
+        assertTrue(deltas.hasReceived());
+    }
+
+    @Test
+    public void movedAssetsAreNeitherSentNorReceived() {
+        AssetDeltas deltas = new AssetDeltas();
+        deltas.subtract(asset("asset1a", 18, "1"), Long.MAX_VALUE);
+        deltas.add(asset("asset1a", 18, "1"), Long.MAX_VALUE);
+
+        assertEquals(1, deltas.size());
+        assertEquals(0, deltas.getQuantity(0));
+        assertFalse(deltas.hasSent());
+        assertFalse(deltas.hasReceived());
+    }
+
+    @Test
+    public void exactLargeQuantities() {
+        AssetDeltas deltas = new AssetDeltas();
+        deltas.add(asset("asset1a", 0, ""), 9007199254740993L);
+        deltas.subtract(asset("asset1a", 0, ""), 9007199254740992L);
+        assertEquals(1, deltas.getQuantity("asset1a"));
+
+    }
+
+    @Test
+    public void quantitiesBeyondLong() {
+        AssetDeltas deltas = new AssetDeltas();
+        // The max Cardano quantity, an unsigned 64 bits
+        deltas.add(asset("asset1a", 0, ""), "18446744073709551615");
+        deltas.add(asset("asset1b", 6, ""), Long.MAX_VALUE);
+        deltas.add(asset("asset1b", 6, ""), "1");
+        deltas.subtract(asset("asset1c", 0, ""), "18446744073709551615");
+        deltas.add(asset("asset1c", 0, ""), "18446744073709551614");
+
+        assertTrue(deltas.isLarge(0));
+        assertEquals(new BigInteger("18446744073709551615"), deltas.getLargeQuantity(0));
+        assertThrows(ArithmeticException.class, () -> deltas.getQuantity(0));
+        assertEquals(String.format("%,d", new BigInteger("18446744073709551615")),
+                MessageTemplates.formatQuantity(deltas.getLargeQuantity(0)));
+
+        assertTrue(deltas.isLarge(1));
+        assertEquals(String.format("%,.2f", new BigDecimal("9223372036854.775808")),
+                MessageTemplates.formatAmount(deltas.getLargeQuantity(1), deltas.getDecimals(1)));
+
+        // Back to a long once in range
+        assertFalse(deltas.isLarge(2));
+        assertEquals(-1, deltas.getQuantity("asset1c"));
+        assertTrue(deltas.hasSent());
+        assertTrue(deltas.hasReceived());
+        assertThrows(NumberFormatException.class, () -> deltas.add(asset("asset1d", 0, ""), "not-a-number"));
+    }
+
+    @Test
+    public void grows() {
+        AssetDeltas deltas = new AssetDeltas();
+        for (int i = 0; i < 1000; i++) {
+            deltas.add(asset("asset" + i, 0, ""), i);
+            deltas.subtract(asset("asset" + (i / 2), 0, ""), 1);
+        }
+
+        assertEquals(1000, deltas.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("asset" + i, deltas.getAsset(i).getFingerprint());
+            assertEquals(i < 500 ? i - 2 : i, deltas.getQuantity("asset" + i));
+        }
+    }
+
+    private static Asset asset(String fingerprint, Integer decimals, String quantity) {
+        Asset asset = new Asset();
+        asset.setFingerprint(fingerprint);
+        asset.setDecimals(decimals);
+        asset.setQuantity(quantity);
+        return asset;
+    }
+}
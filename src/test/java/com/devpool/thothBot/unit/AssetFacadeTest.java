@@ -0,0 +1,170 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.cluster.ClusterCoordinator;
+import com.devpool.thothBot.dao.AssetsCache;
+import com.devpool.thothBot.dao.AssetsDao;
+import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.data.Asset;
+import com.devpool.thothBot.dao.data.User;
+import com.devpool.thothBot.doubles.koios.AssetServiceDouble;
+import com.devpool.thothBot.koios.AssetFacade;
+import com.devpool.thothBot.koios.KoiosFacade;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import rest.koios.client.backend.api.account.AccountService;
+import rest.koios.client.backend.api.account.model.AccountAsset;
+import rest.koios.client.backend.api.asset.AssetService;
+import rest.koios.client.backend.api.asset.model.AssetInformation;
+import rest.koios.client.backend.api.base.Result;
+import rest.koios.client.backend.factory.BackendService;
+import rest.koios.client.utils.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class AssetFacadeTest {
+    private static final String USER_1 = "stake1u9ttjzthgk2y7x55c9f363a6vpcthv0ukl2d5mhtxvv4kusv5fmtz";
+    private static final String USER_2 = "stake1uxpdrerp9wrxunfh6ukyv5267j70fzxgw0fr3z8zeac5vyqhf9jhy";
+    private static final String GEN_HERO_POLICY_ID = "000dbe0b66e9ceb8357eeb7eacbdc6e2707345924ba86bf300d2ad8e";
+    private static final String LP_POLICY_ID = "0029cb7c88c7567b63d1a512c0ed626aa169688ec980730c0473b913";
+    private static final int BULK_SIZE = 2;
+
+    private AssetsDao assetsDao;
+    private AccountService accountService;
+    private AssetService assetService;
+    private UserDao userDao;
+    private AssetsCache assetsCache;
+    private AssetFacade assetFacade;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.assetsDao = mock(AssetsDao.class);
+        // Already cached when the facade starts
+        when(this.assetsDao.getAssets(anyInt())).thenReturn(List.of(new Asset(1L, LP_POLICY_ID, "6c70200b", "LP 0b", 6)));
+        when(this.assetsDao.getAssetInformation(anyString(), anyString())).thenReturn(Optional.empty());
+
+        this.assetsCache = new AssetsCache();
+        ReflectionTestUtils.setField(this.assetsCache, "assetsDao", this.assetsDao);
+        ReflectionTestUtils.setField(this.assetsCache, "metricsHelper", mock(MetricsHelper.class));
+        ReflectionTestUtils.setField(this.assetsCache, "maxSize", 10);
+        ReflectionTestUtils.setField(this.assetsCache, "negativeTtlSecs", 600L);
+        ReflectionTestUtils.setField(this.assetsCache, "warmUpEnabled", true);
+        this.assetsCache.post();
+
+        this.accountService = mock(AccountService.class);
+        this.assetService = spy(new AssetServiceDouble());
+        BackendService backendService = mock(BackendService.class);
+        when(backendService.getAccountService()).thenReturn(this.accountService);
+        when(backendService.getAssetService()).thenReturn(this.assetService);
+        KoiosFacade koiosFacade = mock(KoiosFacade.class);
+        when(koiosFacade.getKoiosService()).thenReturn(backendService);
+
+        ClusterCoordinator clusterCoordinator = mock(ClusterCoordinator.class);
+        when(clusterCoordinator.isLeader()).thenReturn(true);
+        this.userDao = mock(UserDao.class);
+
+        this.assetFacade = new AssetFacade();
+        ReflectionTestUtils.setField(this.assetFacade, "koiosFacade", koiosFacade);
+        ReflectionTestUtils.setField(this.assetFacade, "assetsDao", this.assetsDao);
+        ReflectionTestUtils.setField(this.assetFacade, "assetsCache", this.assetsCache);
+        ReflectionTestUtils.setField(this.assetFacade, "userDao", this.userDao);
+        ReflectionTestUtils.setField(this.assetFacade, "clusterCoordinator", clusterCoordinator);
+        ReflectionTestUtils.setField(this.assetFacade, "isFetchingEnabled", false);
+        ReflectionTestUtils.setField(this.assetFacade, "bulkSize", BULK_SIZE);
+        this.assetFacade.post();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        this.assetFacade.shutdown();
+    }
+
+    @Test
+    public void assetsResolvedInBulk() throws Exception {
+        when(this.userDao.getUsersBatches(UserDao.UsersFilter.ALL, BULK_SIZE)).thenAnswer(i -> Stream.of(List.of(
+                new User(1L, USER_1, 0, 0, 0L, 0L), new User(2L, USER_2, 0, 0, 0L, 0L))));
+        holding(USER_1, GEN_HERO_POLICY_ID + "47656e4865726f", LP_POLICY_ID + "6c702004", LP_POLICY_ID + "6c70200b");
+        holding(USER_2, LP_POLICY_ID + "6c702004", LP_POLICY_ID + "702004", LP_POLICY_ID + "deadbeef");
+
+        this.assetFacade.run();
+
+        // The shared and the cached assets are not asked for, the rest is asked for in bulk-size chunks
+        List<List<String>> requests = bulkRequests(2);
+        assertEquals(List.of(
+                List.of(GEN_HERO_POLICY_ID + "47656e4865726f", LP_POLICY_ID + "6c702004"),
+                List.of(LP_POLICY_ID + "702004", LP_POLICY_ID + "deadbeef")), requests);
+        verify(this.assetService, never()).getAssetInformation(anyString(), anyString());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Asset>> newAssets = ArgumentCaptor.forClass(List.class);
+        verify(this.assetsDao, times(2)).addNewAssets(newAssets.capture());
+        assertEquals(List.of(GEN_HERO_POLICY_ID + "47656e4865726f", LP_POLICY_ID + "6c702004", LP_POLICY_ID + "702004"),
+                newAssets.getAllValues().stream().flatMap(List::stream).map(a -> a.getPolicyId() + a.getAssetName()).toList());
+
+        // Not returned by Koios, hence unknown
+        assertTrue(this.assetsCache.isUnknown(LP_POLICY_ID, "deadbeef"));
+        assertFalse(this.assetsCache.isUnknown(LP_POLICY_ID, "702004"));
+        assertTrue(this.assetsCache.getAssetInformation(LP_POLICY_ID, "702004").isPresent());
+
+        // Nothing left to resolve on the next run
+        this.assetFacade.run();
+        bulkRequests(2);
+    }
+
+    @Test
+    public void unknownAssetNotResolvedAgain() throws Exception {
+        this.assetsCache.markUnknown(LP_POLICY_ID, "deadbeef");
+        when(this.userDao.getUsersBatches(UserDao.UsersFilter.ALL, BULK_SIZE)).thenAnswer(i -> Stream.of(List.of(
+                new User(1L, USER_1, 0, 0, 0L, 0L))));
+        holding(USER_1, LP_POLICY_ID + "deadbeef", LP_POLICY_ID + "6c70200b");
+
+        this.assetFacade.run();
+
+        verify(this.assetService, never()).getAssetInformationBulk(any(), any());
+        verify(this.assetsDao, never()).addNewAssets(any());
+    }
+
+    @Test
+    public void failedAssetMarkedUnknown() throws Exception {
+        doReturn(Result.<AssetInformation>builder().code(404).response("Not found").successful(false).build())
+                .when(this.assetService).getAssetInformation(LP_POLICY_ID, "deadbeef");
+
+        // An asset Koios can't return is not asked for again while unknown
+        assertEquals(12345L, this.assetFacade.getAssetQuantity(LP_POLICY_ID, "deadbeef", 12345L));
+        assertEquals(12345L, this.assetFacade.getAssetQuantity(LP_POLICY_ID, "deadbeef", 12345L));
+        verify(this.assetService, times(1)).getAssetInformation(LP_POLICY_ID, "deadbeef");
+        assertTrue(this.assetsCache.isUnknown(LP_POLICY_ID, "deadbeef"));
+        verify(this.assetsDao, never()).addNewAsset(anyString(), anyString(), anyString(), any());
+    }
+
+    private void holding(String address, String... assets) throws Exception {
+        List<AccountAsset> accountAssets = new ArrayList<>();
+        for (String asset : assets) {
+            AccountAsset accountAsset = new AccountAsset();
+            accountAsset.setStakeAddress(address);
+            accountAsset.setPolicyId(asset.substring(0, GEN_HERO_POLICY_ID.length()));
+            accountAsset.setAssetName(asset.substring(GEN_HERO_POLICY_ID.length()));
+            accountAsset.setQuantity("1");
+            accountAssets.add(accountAsset);
+        }
+        when(this.accountService.getAccountAssets(List.of(address), null, null)).thenReturn(
+                Result.<List<AccountAsset>>builder().code(200).response("").successful(true).value(accountAssets).build());
+    }
+
+    private List<List<String>> bulkRequests(int times) throws Exception {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Tuple<String, String>>> requests = ArgumentCaptor.forClass(List.class);
+        verify(this.assetService, times(times)).getAssetInformationBulk(requests.capture(), isNull());
+        return requests.getAllValues().stream().map(r -> r.stream().map(t -> t._1 + t._2).toList()).toList();
+    }
+}
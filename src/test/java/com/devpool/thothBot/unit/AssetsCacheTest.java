@@ -0,0 +1,102 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.dao.AssetsCache;
+import com.devpool.thothBot.dao.AssetsDao;
+import com.devpool.thothBot.dao.data.Asset;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class AssetsCacheTest {
+    private static final String POLICY_ID = "000dbe0b66e9ceb8357eeb7eacbdc6e2707345924ba86bf300d2ad8e";
+    private static final String OTHER_POLICY_ID = "0029cb7c88c7567b63d1a512c0ed626aa169688ec980730c0473b913";
+
+    private AssetsDao assetsDao;
+    private AssetsCache assetsCache;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.assetsDao = mock(AssetsDao.class);
+        when(this.assetsDao.getAssetInformation(anyString(), anyString())).thenReturn(Optional.empty());
+
+        this.assetsCache = new AssetsCache();
+        ReflectionTestUtils.setField(this.assetsCache, "assetsDao", this.assetsDao);
+        ReflectionTestUtils.setField(this.assetsCache, "metricsHelper", mock(MetricsHelper.class));
+        ReflectionTestUtils.setField(this.assetsCache, "maxSize", 10);
+        ReflectionTestUtils.setField(this.assetsCache, "negativeTtlSecs", 1L);
+        ReflectionTestUtils.setField(this.assetsCache, "warmUpEnabled", true);
+    }
+
+    @Test
+    public void warmedUpAssetsServed() {
+        Asset genHero = new Asset(1L, POLICY_ID, "47656e4865726f", "GenHero", 0);
+        Asset lp = new Asset(2L, OTHER_POLICY_ID, "6c702004", "LP", 6);
+        when(this.assetsDao.getAssets(10)).thenReturn(List.of(genHero, lp));
+        this.assetsCache.post();
+
+        assertEquals(2, this.assetsCache.size());
+        assertEquals(Optional.of(genHero), this.assetsCache.getAssetInformation(POLICY_ID, "47656e4865726f"));
+        assertEquals(Optional.of(lp), this.assetsCache.getAssetInformation(OTHER_POLICY_ID, "6c702004"));
+        verify(this.assetsDao, never()).getAssetInformation(anyString(), anyString());
+    }
+
+    @Test
+    public void warmUpFailureTolerated() {
+        when(this.assetsDao.getAssets(anyInt())).thenThrow(new DataAccessResourceFailureException("DB down"));
+        this.assetsCache.post();
+
+        assertEquals(0, this.assetsCache.size());
+        Asset genHero = new Asset(1L, POLICY_ID, "47656e4865726f", "GenHero", 0);
+        when(this.assetsDao.getAssetInformation(POLICY_ID, "47656e4865726f")).thenReturn(Optional.of(genHero));
+
+        // Loaded from the DB on the first miss, then served from memory
+        assertEquals(Optional.of(genHero), this.assetsCache.getAssetInformation(POLICY_ID, "47656e4865726f"));
+        assertEquals(Optional.of(genHero), this.assetsCache.getAssetInformation(POLICY_ID, "47656e4865726f"));
+        verify(this.assetsDao, times(1)).getAssetInformation(POLICY_ID, "47656e4865726f");
+    }
+
+    @Test
+    public void unknownAssetNegativelyCached() throws Exception {
+        ReflectionTestUtils.setField(this.assetsCache, "warmUpEnabled", false);
+        this.assetsCache.post();
+
+        assertFalse(this.assetsCache.isUnknown(POLICY_ID, "6c702004"));
+        this.assetsCache.markUnknown(POLICY_ID, "6c702004");
+        assertTrue(this.assetsCache.isUnknown(POLICY_ID, "6c702004"));
+        assertFalse(this.assetsCache.isUnknown(OTHER_POLICY_ID, "6c702004"));
+
+        // Not looked for in the DB while the negative entry is valid
+        assertEquals(Optional.empty(), this.assetsCache.getAssetInformation(POLICY_ID, "6c702004"));
+        verify(this.assetsDao, never()).getAssetInformation(anyString(), anyString());
+
+        TimeUnit.MILLISECONDS.sleep(1100);
+        assertFalse(this.assetsCache.isUnknown(POLICY_ID, "6c702004"));
+        assertEquals(Optional.empty(), this.assetsCache.getAssetInformation(POLICY_ID, "6c702004"));
+        verify(this.assetsDao, times(1)).getAssetInformation(POLICY_ID, "6c702004");
+    }
+
+    @Test
+    public void newAssetsReplaceUnknown() {
+        ReflectionTestUtils.setField(this.assetsCache, "warmUpEnabled", false);
+        this.assetsCache.post();
+
+        this.assetsCache.markUnknown(POLICY_ID, "47656e4865726f");
+        Asset genHero = new Asset(null, POLICY_ID, "47656e4865726f", "GenHero", 0);
+        this.assetsCache.addNewAssets(List.of(genHero));
+
+        verify(this.assetsDao).addNewAssets(List.of(genHero));
+        assertFalse(this.assetsCache.isUnknown(POLICY_ID, "47656e4865726f"));
+        assertEquals(Optional.of(genHero), this.assetsCache.getAssetInformation(POLICY_ID, "47656e4865726f"));
+        verify(this.assetsDao, never()).getAssetInformation(anyString(), anyString());
+    }
+}
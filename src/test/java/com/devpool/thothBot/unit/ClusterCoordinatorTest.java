@@ -0,0 +1,114 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.cluster.ClusterCoordinator;
+import com.devpool.thothBot.dao.ClusterDao;
+import com.devpool.thothBot.dao.UsersShard;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ClusterCoordinatorTest {
+    private static final String INSTANCE_ID = "instance-b";
+    private static final long LEASE_SECS = 1;
+
+    private ClusterDao clusterDao;
+    private ClusterCoordinator clusterCoordinator;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.clusterDao = mock(ClusterDao.class);
+        this.clusterCoordinator = new ClusterCoordinator();
+        ReflectionTestUtils.setField(this.clusterCoordinator, "clusterDao", this.clusterDao);
+        ReflectionTestUtils.setField(this.clusterCoordinator, "metricsHelper", mock(MetricsHelper.class));
+        ReflectionTestUtils.setField(this.clusterCoordinator, "enabled", true);
+        ReflectionTestUtils.setField(this.clusterCoordinator, "instanceId", INSTANCE_ID);
+        ReflectionTestUtils.setField(this.clusterCoordinator, "leaseSecs", LEASE_SECS);
+        // As after post(), with the heartbeats sent by the tests only
+        ReflectionTestUtils.setField(this.clusterCoordinator, "shard", UsersShard.NONE);
+        ReflectionTestUtils.setField(this.clusterCoordinator, "leader", false);
+    }
+
+    @Test
+    public void shardTakenOnceMembersStable() throws Exception {
+        when(this.clusterDao.heartbeat(INSTANCE_ID, LEASE_SECS)).thenReturn(List.of("instance-a", INSTANCE_ID));
+        heartbeat();
+        assertEquals(UsersShard.NONE, this.clusterCoordinator.getShard());
+
+        TimeUnit.MILLISECONDS.sleep(1100);
+        heartbeat();
+        assertEquals(new UsersShard(1, 2), this.clusterCoordinator.getShard());
+
+        // A joining member makes the shard given up right away, until the membership is stable again
+        when(this.clusterDao.heartbeat(INSTANCE_ID, LEASE_SECS)).thenReturn(List.of("instance-a", INSTANCE_ID, "instance-c"));
+        UsersShard runShard = this.clusterCoordinator.getShard();
+        assertTrue(this.clusterCoordinator.ownsShard(runShard));
+        heartbeat();
+        assertEquals(UsersShard.NONE, this.clusterCoordinator.getShard());
+        // The runs started on the previous shard stop
+        assertFalse(this.clusterCoordinator.ownsShard(runShard));
+        heartbeat();
+        assertEquals(UsersShard.NONE, this.clusterCoordinator.getShard());
+
+        TimeUnit.MILLISECONDS.sleep(1100);
+        heartbeat();
+        assertEquals(new UsersShard(1, 3), this.clusterCoordinator.getShard());
+        assertFalse(this.clusterCoordinator.ownsShard(runShard));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void leadershipChanges() {
+        Consumer<Boolean> listener = mock(Consumer.class);
+        this.clusterCoordinator.addLeadershipListener(listener);
+        verify(listener).accept(false);
+
+        when(this.clusterDao.heartbeat(INSTANCE_ID, LEASE_SECS)).thenReturn(List.of(INSTANCE_ID));
+        when(this.clusterDao.acquireLease(anyString(), eq(INSTANCE_ID), eq(LEASE_SECS))).thenReturn(true);
+        heartbeat();
+        heartbeat();
+        assertTrue(this.clusterCoordinator.isLeader());
+        verify(listener, times(1)).accept(true);
+
+        // Stepping down when the membership can't be renewed
+        when(this.clusterDao.heartbeat(INSTANCE_ID, LEASE_SECS)).thenThrow(new DataAccessResourceFailureException("DB down"));
+        heartbeat();
+        assertFalse(this.clusterCoordinator.isLeader());
+        assertEquals(UsersShard.NONE, this.clusterCoordinator.getShard());
+        verify(listener, times(2)).accept(false);
+    }
+
+    @Test
+    public void shardLostOnFailure() throws Exception {
+        when(this.clusterDao.heartbeat(INSTANCE_ID, LEASE_SECS)).thenReturn(List.of(INSTANCE_ID));
+        heartbeat();
+        TimeUnit.MILLISECONDS.sleep(1100);
+        heartbeat();
+        assertEquals(UsersShard.ALL, this.clusterCoordinator.getShard());
+
+        // Once back, the shard is taken again after a lease period, as the others could have taken it over
+        when(this.clusterDao.heartbeat(INSTANCE_ID, LEASE_SECS))
+                .thenThrow(new DataAccessResourceFailureException("DB down"))
+                .thenReturn(List.of(INSTANCE_ID));
+        heartbeat();
+        assertEquals(UsersShard.NONE, this.clusterCoordinator.getShard());
+        heartbeat();
+        assertEquals(UsersShard.NONE, this.clusterCoordinator.getShard());
+        TimeUnit.MILLISECONDS.sleep(1100);
+        heartbeat();
+        assertEquals(UsersShard.ALL, this.clusterCoordinator.getShard());
+    }
+
+    private void heartbeat() {
+        ReflectionTestUtils.invokeMethod(this.clusterCoordinator, "heartbeat");
+    }
+}
@@ -0,0 +1,140 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.dao.DrepNameDao;
+import com.devpool.thothBot.koios.DrepNameCache;
+import com.devpool.thothBot.model.model.Body;
+import com.devpool.thothBot.model.model.DrepMetadata;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import rest.koios.client.backend.api.governance.model.DRepInfo;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class DrepNameCacheTest {
+    private static final String DREP_ID = "drep1ygr9tuapcanc3kpeyy4dc3vmrz9cfe5q7v9wj3x9j0ap3tswtre9j";
+    private static final String META_URL = "https://example.com/drep.json";
+    private static final String NEW_META_URL = "https://example.com/drep-v2.json";
+    private static final long TTL_SECS = 3600;
+
+    private DrepNameDao drepNameDao;
+    private RestTemplate restTemplate;
+    private DrepNameCache drepNameCache;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.drepNameDao = mock(DrepNameDao.class);
+        this.restTemplate = mock(RestTemplate.class);
+        when(this.drepNameDao.getDrepNames(anyCollection())).thenReturn(Map.of());
+
+        this.drepNameCache = new DrepNameCache();
+        ReflectionTestUtils.setField(this.drepNameCache, "drepNameDao", this.drepNameDao);
+        ReflectionTestUtils.setField(this.drepNameCache, "restTemplate", this.restTemplate);
+        ReflectionTestUtils.setField(this.drepNameCache, "metricsHelper", mock(MetricsHelper.class));
+        ReflectionTestUtils.setField(this.drepNameCache, "maxSize", 10);
+        ReflectionTestUtils.setField(this.drepNameCache, "ttlSecs", TTL_SECS);
+        ReflectionTestUtils.setField(this.drepNameCache, "negativeTtlSecs", TTL_SECS);
+        ReflectionTestUtils.setField(this.drepNameCache, "fetchThreads", 2);
+        ReflectionTestUtils.setField(this.drepNameCache, "fetchTimeoutSecs", 1L);
+        this.drepNameCache.post();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        this.drepNameCache.shutdown();
+    }
+
+    @Test
+    public void missingNameFetched() {
+        when(this.restTemplate.getForEntity(URI.create(META_URL), DrepMetadata.class)).thenReturn(metadata("Thor"));
+
+        assertEquals(Map.of(DREP_ID, "Thor"), this.drepNameCache.getDrepNames(List.of(drep(META_URL))));
+        verify(this.drepNameDao).saveDrepName(argThat(n -> n.drepId().equals(DREP_ID) && n.name().equals("Thor")
+                && n.metaUrl().equals(META_URL)));
+
+        // Served from memory
+        assertEquals(Map.of(DREP_ID, "Thor"), this.drepNameCache.getDrepNames(List.of(drep(META_URL))));
+        verify(this.restTemplate, times(1)).getForEntity(any(URI.class), eq(DrepMetadata.class));
+        verify(this.drepNameDao, times(1)).getDrepNames(anyCollection());
+    }
+
+    @Test
+    public void staleNameServedWhileRefreshed() throws Exception {
+        when(this.drepNameDao.getDrepNames(anyCollection())).thenReturn(Map.of(DREP_ID,
+                new DrepNameDao.DrepName(DREP_ID, META_URL, null, "Old name", System.currentTimeMillis())));
+        when(this.restTemplate.getForEntity(URI.create(NEW_META_URL), DrepMetadata.class)).thenReturn(metadata("New name"));
+
+        // The anchor changed: the stored name is served right away, and refreshed in background
+        assertEquals(Map.of(DREP_ID, "Old name"), this.drepNameCache.getDrepNames(List.of(drep(NEW_META_URL))));
+        verify(this.drepNameDao, timeout(5000)).saveDrepName(argThat(n -> n.name().equals("New name")));
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals(Map.of(DREP_ID, "New name"), this.drepNameCache.getDrepNames(List.of(drep(NEW_META_URL))));
+        verify(this.restTemplate, times(1)).getForEntity(any(URI.class), eq(DrepMetadata.class));
+    }
+
+    @Test
+    public void singleFetchPerMiss() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(this.restTemplate.getForEntity(URI.create(META_URL), DrepMetadata.class)).thenAnswer(i -> {
+            release.await();
+            return metadata("Thor");
+        });
+
+        try {
+            // Not waited for past the fetch timeout, the second miss joins the fetch in flight
+            assertEquals(Map.of(), this.drepNameCache.getDrepNames(List.of(drep(META_URL))));
+            assertEquals(Map.of(), this.drepNameCache.getDrepNames(List.of(drep(META_URL))));
+        } finally {
+            release.countDown();
+        }
+        verify(this.drepNameDao, timeout(5000)).saveDrepName(any());
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals(Map.of(DREP_ID, "Thor"), this.drepNameCache.getDrepNames(List.of(drep(META_URL))));
+        verify(this.restTemplate, times(1)).getForEntity(any(URI.class), eq(DrepMetadata.class));
+    }
+
+    @Test
+    public void previousNameKeptOnFailure() throws Exception {
+        when(this.drepNameDao.getDrepNames(anyCollection())).thenReturn(Map.of(DREP_ID, new DrepNameDao.DrepName(
+                DREP_ID, META_URL, null, "Old name", System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(TTL_SECS + 1))));
+        when(this.restTemplate.getForEntity(URI.create(META_URL), DrepMetadata.class))
+                .thenThrow(new ResourceAccessException("IPFS gateway down"));
+
+        assertEquals(Map.of(DREP_ID, "Old name"), this.drepNameCache.getDrepNames(List.of(drep(META_URL))));
+        verify(this.restTemplate, timeout(5000)).getForEntity(any(URI.class), eq(DrepMetadata.class));
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        // Still served, and retried only after the negative TTL
+        assertEquals(Map.of(DREP_ID, "Old name"), this.drepNameCache.getDrepNames(List.of(drep(META_URL))));
+        verify(this.restTemplate, times(1)).getForEntity(any(URI.class), eq(DrepMetadata.class));
+        verify(this.drepNameDao, never()).saveDrepName(any());
+    }
+
+    private static DRepInfo drep(String metaUrl) {
+        DRepInfo drep = new DRepInfo();
+        drep.setDrepId(DREP_ID);
+        drep.setMetaUrl(metaUrl);
+        return drep;
+    }
+
+    private static ResponseEntity<DrepMetadata> metadata(String givenName) {
+        Body body = new Body();
+        body.setGivenName(givenName);
+        DrepMetadata metadata = new DrepMetadata();
+        metadata.setBody(body);
+        return ResponseEntity.ok(metadata);
+    }
+}
@@ -0,0 +1,72 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.koios.KoiosRateLimiter;
+import com.devpool.thothBot.koios.KoiosRequestPriority;
+import org.junit.jupiter.api.Test;
+import rest.koios.client.backend.api.base.Result;
+import rest.koios.client.backend.api.base.exception.ApiException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KoiosRateLimiterTest {
+
+    @Test
+    public void slowDownAndRecover() {
+        KoiosRateLimiter rateLimiter = new KoiosRateLimiter(10, 2, 10, 2);
+
+        rateLimiter.onResponse(429);
+        assertEquals(5, rateLimiter.getCurrentRequestsPerSec(), 0.0001);
+        rateLimiter.onResponse(503);
+        assertEquals(2.5, rateLimiter.getCurrentRequestsPerSec(), 0.0001);
+        rateLimiter.onResponse(500);
+        assertEquals(2, rateLimiter.getCurrentRequestsPerSec(), 0.0001);
+
+        // Client errors are not a reason to slow down
+        rateLimiter.onResponse(404);
+        assertEquals(2.1, rateLimiter.getCurrentRequestsPerSec(), 0.0001);
+
+        for (int i = 0; i < 200; i++)
+            rateLimiter.onResponse(200);
+        assertEquals(10, rateLimiter.getCurrentRequestsPerSec(), 0.0001);
+    }
+
+    @Test
+    public void interruptedWhileWaiting() throws Exception {
+        // A single token, refilled far too slowly for the test
+        KoiosRateLimiter rateLimiter = new KoiosRateLimiter(0.001, 0.001, 1, 0);
+        StatusService service = rateLimiter.rateLimited(
+                () -> Result.<String>builder().successful(true).code(200).value("ok").build(), StatusService.class);
+
+        assertEquals("ok", service.getStatus().getValue());
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(ApiException.class, service::getStatus);
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void priorityPropagatedToOtherThreads() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        KoiosRequestPriority.set(KoiosRequestPriority.INTERACTIVE);
+        try {
+            assertEquals(KoiosRequestPriority.INTERACTIVE,
+                    executor.submit(KoiosRequestPriority.propagate(KoiosRequestPriority::current)).get());
+            // The priority of the pool thread is restored after the task
+            assertEquals(KoiosRequestPriority.BACKGROUND, executor.submit(KoiosRequestPriority::current).get());
+        } finally {
+            KoiosRequestPriority.reset();
+            executor.shutdown();
+        }
+    }
+
+    public interface StatusService {
+        Result<String> getStatus() throws ApiException;
+    }
+}
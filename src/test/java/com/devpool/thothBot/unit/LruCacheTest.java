@@ -0,0 +1,48 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.util.LruCache;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LruCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LruCache<String, Integer> cache = new LruCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+
+        // "a" becomes the most recently used
+        assertEquals(1, cache.get("a"));
+        cache.put("d", 4);
+
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(4, cache.get("d"));
+    }
+
+    @Test
+    public void removeAndClear() {
+        LruCache<String, Integer> cache = new LruCache<>(2);
+        cache.put("a", 1);
+        cache.put("a", 2);
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.remove("a"));
+        assertNull(cache.get("a"));
+
+        cache.put("b", 1);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void invalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new LruCache<String, String>(0));
+    }
+}
@@ -0,0 +1,56 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.util.MessageTemplates;
+import com.vdurmont.emoji.EmojiParser;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageTemplatesTest {
+
+    @Test
+    public void emoji() {
+        String fragment = "\n:small_blue_diamond: Fee ";
+        assertEquals(EmojiParser.parseToUnicode(fragment), MessageTemplates.emoji(fragment));
+        assertSame(MessageTemplates.emoji(fragment), MessageTemplates.emoji(fragment));
+        assertEquals("No emoji", MessageTemplates.emoji("No emoji"));
+    }
+
+    @Test
+    public void formatAmount() {
+        for (double amount : new double[]{0, 0.1, 0.125, 1.5, -1.5, 999.999, 1000, 1234567.891, -9876543.21, 45000000000.0}) {
+            assertEquals(String.format("%,.2f", amount), MessageTemplates.formatAmount(amount));
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            double amount = random.nextLong(100_000_000_000_000L) / 1000000.0;
+            assertEquals(String.format("%,.2f", amount), MessageTemplates.formatAmount(amount));
+        }
+    }
+
+    @Test
+    public void formatFixedPointAmount() {
+        assertEquals(String.format("%,.2f", 0.17), MessageTemplates.formatAmount(174433, 6));
+        assertEquals(String.format("%,.2f", -12345.68), MessageTemplates.formatAmount(-12345678912L, 6));
+        assertEquals(String.format("%,.2f", 1.01), MessageTemplates.formatAmount(1005, 3));
+        assertEquals(String.format("%,.2f", 1234.0), MessageTemplates.formatAmount(1234, 0));
+        // 9.22 units of an 18 decimals token, and the whole ADA supply in lovelace, beyond the double precision
+        assertEquals(String.format("%,.2f", 9.22), MessageTemplates.formatAmount(Long.MAX_VALUE, 18));
+        assertEquals(String.format("%,.2f", new BigDecimal("45000000000.01")), MessageTemplates.formatAmount(45000000000005000L, 6));
+    }
+
+    @Test
+    public void formatQuantity() {
+        for (long quantity : new long[]{0, 1, -1, 999, 1000, 1234567, -1234567, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertEquals(String.format("%,d", quantity), MessageTemplates.formatQuantity(quantity));
+        }
+        BigInteger maxQuantity = new BigInteger("18446744073709551615");
+        assertEquals(String.format("%,d", maxQuantity), MessageTemplates.formatQuantity(maxQuantity));
+        assertEquals(String.format("%,.2f", new BigDecimal("18446744073709.55")), MessageTemplates.formatAmount(maxQuantity, 6));
+    }
+}
@@ -0,0 +1,136 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.dao.ProposalContentDao;
+import com.devpool.thothBot.koios.ProposalContentCache;
+import com.devpool.thothBot.model.model.proposal.ProposalAuthors;
+import com.devpool.thothBot.model.model.proposal.ProposalBody;
+import com.devpool.thothBot.model.model.proposal.ProposalContent;
+import com.devpool.thothBot.model.model.proposal.ProposalMetadata;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import rest.koios.client.backend.api.governance.model.Proposal;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ProposalContentCacheTest {
+    private static final String PROPOSAL_ID = "gov_action1zhuz5djmmmjg8f9s8pe6grfc98xg3szglums8cgm6qwancp4eytqqmpu0pr";
+    private static final String OTHER_PROPOSAL_ID = "gov_action1pvv5wmjqhwa4u85vu9f4ydmzu2mgt8n7et967ph2urhx53r70xusqnmm525";
+    private static final String META_URL = "https://example.com/proposal.json";
+    private static final String SLOW_META_URL = "https://example.com/slow-proposal.json";
+    private static final String META_HASH = "a1b2c3";
+
+    private ProposalContentDao proposalContentDao;
+    private RestTemplate restTemplate;
+    private ProposalContentCache proposalContentCache;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.proposalContentDao = mock(ProposalContentDao.class);
+        this.restTemplate = mock(RestTemplate.class);
+        when(this.proposalContentDao.getProposalContent(anyString(), anyString())).thenReturn(Optional.empty());
+
+        this.proposalContentCache = new ProposalContentCache();
+        ReflectionTestUtils.setField(this.proposalContentCache, "proposalContentDao", this.proposalContentDao);
+        ReflectionTestUtils.setField(this.proposalContentCache, "restTemplate", this.restTemplate);
+        ReflectionTestUtils.setField(this.proposalContentCache, "metricsHelper", mock(MetricsHelper.class));
+        ReflectionTestUtils.setField(this.proposalContentCache, "maxSize", 10);
+        ReflectionTestUtils.setField(this.proposalContentCache, "negativeTtlSecs", 1L);
+        ReflectionTestUtils.setField(this.proposalContentCache, "fetchThreads", 2);
+        ReflectionTestUtils.setField(this.proposalContentCache, "fetchTimeoutSecs", 1L);
+        this.proposalContentCache.post();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        this.proposalContentCache.shutdown();
+    }
+
+    @Test
+    public void resolvedContentStored() throws Exception {
+        when(this.restTemplate.getForEntity(URI.create(META_URL), ProposalMetadata.class)).thenReturn(ResponseEntity.ok(
+                new ProposalMetadata(new ProposalBody("Treasury withdrawal", "Funding"), List.of(new ProposalAuthors("thor")))));
+
+        ProposalContent content = this.proposalContentCache.getProposalContent(null, META_URL, META_HASH, PROPOSAL_ID);
+        assertEquals(new ProposalContent("Treasury withdrawal", "Funding", List.of("thor")), content);
+        verify(this.proposalContentDao).addProposalContent(PROPOSAL_ID, META_HASH, content);
+
+        // Served from memory, without asking the DB or the anchor again
+        assertSame(content, this.proposalContentCache.getProposalContent(null, META_URL, META_HASH, PROPOSAL_ID));
+        verify(this.restTemplate, times(1)).getForEntity(any(URI.class), eq(ProposalMetadata.class));
+        verify(this.proposalContentDao, times(1)).getProposalContent(PROPOSAL_ID, META_HASH);
+    }
+
+    @Test
+    public void storedContentServed() throws Exception {
+        ProposalContent stored = new ProposalContent("Stored title", null, List.of());
+        when(this.proposalContentDao.getProposalContent(PROPOSAL_ID, META_HASH)).thenReturn(Optional.of(stored));
+
+        assertSame(stored, this.proposalContentCache.getProposalContent(null, META_URL, META_HASH, PROPOSAL_ID));
+        assertSame(stored, this.proposalContentCache.getProposalContent(null, META_URL, META_HASH, PROPOSAL_ID));
+        verify(this.proposalContentDao, times(1)).getProposalContent(PROPOSAL_ID, META_HASH);
+        verifyNoInteractions(this.restTemplate);
+    }
+
+    @Test
+    public void unresolvedRetriedAfterNegativeTtl() throws Exception {
+        when(this.restTemplate.getForEntity(URI.create(META_URL), ProposalMetadata.class))
+                .thenThrow(new ResourceAccessException("IPFS gateway down"));
+
+        ProposalContent content = this.proposalContentCache.getProposalContent(null, META_URL, META_HASH, PROPOSAL_ID);
+        assertEquals(PROPOSAL_ID.substring(PROPOSAL_ID.length() - 8), content.title());
+        assertSame(content, this.proposalContentCache.getProposalContent(null, META_URL, META_HASH, PROPOSAL_ID));
+        verify(this.restTemplate, times(1)).getForEntity(any(URI.class), eq(ProposalMetadata.class));
+        verify(this.proposalContentDao, never()).addProposalContent(anyString(), anyString(), any());
+
+        // Resolved again once the negative entry expired
+        TimeUnit.MILLISECONDS.sleep(1100);
+        this.proposalContentCache.getProposalContent(null, META_URL, META_HASH, PROPOSAL_ID);
+        verify(this.restTemplate, times(2)).getForEntity(any(URI.class), eq(ProposalMetadata.class));
+    }
+
+    @Test
+    public void defaultContentOnTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(this.restTemplate.getForEntity(URI.create(SLOW_META_URL), ProposalMetadata.class)).thenAnswer(i -> {
+            release.await();
+            return ResponseEntity.ok(new ProposalMetadata(new ProposalBody("Late title", null), null));
+        });
+        when(this.restTemplate.getForEntity(URI.create(META_URL), ProposalMetadata.class)).thenReturn(ResponseEntity.ok(
+                new ProposalMetadata(new ProposalBody("Parameter change", null), null)));
+
+        try {
+            Map<String, ProposalContent> contents = this.proposalContentCache.getProposalContents(
+                    List.of(proposal(PROPOSAL_ID, SLOW_META_URL), proposal(OTHER_PROPOSAL_ID, META_URL)));
+
+            // The slow anchor is not waited for past the fetch timeout
+            assertEquals(List.of(PROPOSAL_ID, OTHER_PROPOSAL_ID), List.copyOf(contents.keySet()));
+            assertEquals(PROPOSAL_ID.substring(PROPOSAL_ID.length() - 8), contents.get(PROPOSAL_ID).title());
+            assertEquals("Parameter change", contents.get(OTHER_PROPOSAL_ID).title());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static Proposal proposal(String proposalId, String metaUrl) {
+        Proposal proposal = new Proposal();
+        proposal.setProposalId(proposalId);
+        proposal.setMetaUrl(metaUrl);
+        proposal.setMetaHash(META_HASH);
+        return proposal;
+    }
+}
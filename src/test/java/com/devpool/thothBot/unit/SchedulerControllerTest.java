@@ -0,0 +1,101 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.cluster.ClusterCoordinator;
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import com.devpool.thothBot.scheduler.GovernanceDrepVotesCheckerTask;
+import com.devpool.thothBot.scheduler.GovernanceNewProposalsTask;
+import com.devpool.thothBot.scheduler.GovernanceSpoVotesCheckerTask;
+import com.devpool.thothBot.scheduler.RetiredPoolCheckerTask;
+import com.devpool.thothBot.scheduler.SchedulerController;
+import com.devpool.thothBot.scheduler.StakingRewardsCheckerTask;
+import com.devpool.thothBot.scheduler.TransactionCheckerTaskV2;
+import com.devpool.thothBot.subscription.SubscriptionManager;
+import io.micrometer.core.instrument.Tag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class SchedulerControllerTest {
+    private static final String TX_CHECKER = "tx-checker";
+    private static final String RETIRED_POOLS = "retired-pools";
+
+    private final TransactionCheckerTaskV2 txCheckerTask = mock(TransactionCheckerTaskV2.class);
+    private final RetiredPoolCheckerTask retiredPoolTask = mock(RetiredPoolCheckerTask.class);
+    private final MetricsHelper metricsHelper = mock(MetricsHelper.class);
+    private final ClusterCoordinator clusterCoordinator = mock(ClusterCoordinator.class);
+    private final MockEnvironment environment = new MockEnvironment();
+    private SchedulerController schedulerController;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.schedulerController = new SchedulerController(this.txCheckerTask, mock(StakingRewardsCheckerTask.class),
+                mock(SubscriptionManager.class), mock(GovernanceDrepVotesCheckerTask.class), this.retiredPoolTask,
+                mock(GovernanceSpoVotesCheckerTask.class), mock(GovernanceNewProposalsTask.class));
+        ReflectionTestUtils.setField(this.schedulerController, "environment", this.environment);
+        ReflectionTestUtils.setField(this.schedulerController, "metricsHelper", this.metricsHelper);
+        ReflectionTestUtils.setField(this.schedulerController, "clusterCoordinator", this.clusterCoordinator);
+        ReflectionTestUtils.setField(this.schedulerController, "disableScheduler", false);
+        ReflectionTestUtils.setField(this.schedulerController, "disableSubscriptionManager", true);
+        ReflectionTestUtils.setField(this.schedulerController, "scheduledJobsInitialDelaySecs", 0L);
+        ReflectionTestUtils.setField(this.schedulerController, "govSpoVotesEnabled", false);
+        ReflectionTestUtils.setField(this.schedulerController, "govNewPropEnabled", false);
+
+        // Only the tasks under test are scheduled
+        for (String task : new String[]{TX_CHECKER, "staking-rewards", "gov-drep-votes", RETIRED_POOLS})
+            this.environment.setProperty("thoth.scheduler." + task + ".interval-secs", "0");
+    }
+
+    @AfterEach
+    public void afterEach() {
+        this.schedulerController.shutdown();
+    }
+
+    @Test
+    public void tickSkippedWhileRunning() throws Exception {
+        this.environment.setProperty("thoth.scheduler." + TX_CHECKER + ".interval-secs", "1");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(i -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).doThrow(new IllegalStateException("failing run")).doNothing().when(this.txCheckerTask).run();
+
+        this.schedulerController.post();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // The next tick finds the first run still active
+        verify(this.metricsHelper, timeout(5000)).incrementCounter("scheduler_skipped_ticks", Tag.of("task", TX_CHECKER));
+        verify(this.txCheckerTask, times(1)).run();
+
+        // Once done, the following ticks run the task again, even after a failed run
+        release.countDown();
+        verify(this.txCheckerTask, timeout(5000).times(3)).run();
+        verify(this.metricsHelper, atLeast(3)).recordTime(eq("scheduler_task_duration"), anyLong(),
+                eq(TimeUnit.MILLISECONDS), eq(Tag.of("task", TX_CHECKER)));
+    }
+
+    @Test
+    public void leaderOnlyTasks() throws Exception {
+        this.environment.setProperty("thoth.scheduler." + TX_CHECKER + ".interval-secs", "1");
+        this.environment.setProperty("thoth.scheduler." + RETIRED_POOLS + ".interval-secs", "1");
+        when(this.clusterCoordinator.isLeader()).thenReturn(false);
+
+        this.schedulerController.post();
+
+        // The checker tasks run on every instance, the global jobs on the leader only
+        verify(this.txCheckerTask, timeout(5000).atLeast(2)).run();
+        verify(this.retiredPoolTask, never()).run();
+
+        when(this.clusterCoordinator.isLeader()).thenReturn(true);
+        verify(this.retiredPoolTask, timeout(5000)).run();
+    }
+}
@@ -0,0 +1,75 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.dao.SubscribedAddressIndex;
+import com.devpool.thothBot.dao.data.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubscribedAddressIndexTest {
+    private static final String STAKE_ADDR = "stake1u8uekde7k8x8n9lh0zjnhymz66sqdpa0ms02z8cshajptac0d3j32";
+    private static final String ADDR = "addr1qy2jt0qpqz2z2z9zx5w4xemekkce7yderz53kjue53lpqv90lkfa9sgrfjuz6uvt4uqtrqhl2kj0a9lnr9ndzutx32gqleeckv";
+
+    @Test
+    public void indexLoadAndLookup() {
+        SubscribedAddressIndex index = new SubscribedAddressIndex();
+        index.add(1, STAKE_ADDR);
+        assertFalse(index.isLoaded());
+        assertEquals(0, index.getSubscriptionIds(STAKE_ADDR).length);
+
+        index.loadIfNeeded(() -> List.of(user(1L, -1L, STAKE_ADDR), user(2L, -2L, STAKE_ADDR), user(3L, -2L, ADDR)));
+        assertTrue(index.isLoaded());
+        assertEquals(2, index.size());
+        assertArrayEquals(new long[]{1, 2}, index.getSubscriptionIds(STAKE_ADDR));
+        assertArrayEquals(new long[]{3}, index.getSubscriptionIds(ADDR));
+        assertEquals(0, index.getSubscriptionIds("stake1unknown").length);
+        assertEquals(0, index.getSubscriptionIds(null).length);
+
+        // Loading again has no effect
+        index.loadIfNeeded(List::of);
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void indexAddAndRemove() {
+        SubscribedAddressIndex index = new SubscribedAddressIndex();
+        index.loadIfNeeded(List::of);
+
+        index.add(10, ADDR);
+        index.add(10, ADDR);
+        index.add(11, ADDR);
+        assertArrayEquals(new long[]{10, 11}, index.getSubscriptionIds(ADDR));
+        assertTrue(index.contains(ADDR));
+
+        index.remove(10, ADDR);
+        assertArrayEquals(new long[]{11}, index.getSubscriptionIds(ADDR));
+
+        index.remove(11, ADDR);
+        assertFalse(index.contains(ADDR));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void indexInvalidated() {
+        SubscribedAddressIndex index = new SubscribedAddressIndex();
+        index.loadIfNeeded(() -> List.of(user(1L, -1L, STAKE_ADDR)));
+
+        // Still served until reloaded
+        index.invalidate();
+        assertFalse(index.isLoaded());
+        assertArrayEquals(new long[]{1}, index.getSubscriptionIds(STAKE_ADDR));
+
+        index.loadIfNeeded(() -> List.of(user(2L, -2L, ADDR)));
+        assertTrue(index.isLoaded());
+        assertFalse(index.contains(STAKE_ADDR));
+        assertArrayEquals(new long[]{2}, index.getSubscriptionIds(ADDR));
+    }
+
+    private static User user(Long id, Long chatId, String address) {
+        User u = new User(chatId, address, 0, 0, 0L, 0L);
+        u.setId(id);
+        return u;
+    }
+}
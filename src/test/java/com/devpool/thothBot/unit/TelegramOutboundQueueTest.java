@@ -0,0 +1,143 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.monitoring.MetricsHelper;
+import com.devpool.thothBot.telegram.TelegramOutboundQueue;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.ResponseParameters;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class TelegramOutboundQueueTest {
+
+    @Test
+    public void perChatOrdering() throws Exception {
+        TelegramBot bot = mock(TelegramBot.class);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        SendResponse ok = response(true, 200, null);
+        when(bot.execute(any(SendMessage.class))).thenAnswer(i -> {
+            SendMessage sm = i.getArgument(0);
+            sent.add(sm.getParameters().get("chat_id") + ":" + sm.getParameters().get("text"));
+            return ok;
+        });
+
+        AtomicInteger successful = new AtomicInteger(0);
+        TelegramOutboundQueue queue = new TelegramOutboundQueue(bot, mock(MetricsHelper.class),
+                (chatId, outcome) -> successful.incrementAndGet(), 100, 1000, 1000, 100, 3, 4);
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue(1L, new SendMessage(1L, "msg" + i));
+            queue.enqueue(2L, new SendMessage(2L, "msg" + i));
+        }
+        queue.shutdown(10, TimeUnit.SECONDS);
+
+        assertEquals(20, successful.get());
+        assertEquals(0, queue.getQueueDepth());
+        for (long chatId = 1; chatId <= 2; chatId++) {
+            String prefix = chatId + ":";
+            List<String> chatMessages = sent.stream().filter(m -> m.startsWith(prefix)).toList();
+            for (int i = 0; i < 10; i++)
+                assertEquals(prefix + "msg" + i, chatMessages.get(i));
+        }
+    }
+
+    @Test
+    public void retryAfterThrottling() throws Exception {
+        TelegramBot bot = mock(TelegramBot.class);
+        SendResponse throttled = response(false, 429, 1);
+        SendResponse serverError = response(false, 502, null);
+        SendResponse ok = response(true, 200, null);
+        when(bot.execute(any(SendMessage.class))).thenReturn(throttled, serverError, ok);
+
+        List<Boolean> outcomes = new CopyOnWriteArrayList<>();
+        TelegramOutboundQueue queue = new TelegramOutboundQueue(bot, mock(MetricsHelper.class),
+                (chatId, outcome) -> outcomes.add(outcome), 100, 1000, 1000, 100, 3, 1);
+        long start = System.nanoTime();
+        queue.enqueue(1L, new SendMessage(1L, "msg"));
+        queue.shutdown(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of(true), outcomes);
+        verify(bot, times(3)).execute(any(SendMessage.class));
+        // 1 sec of retry_after, plus 2 secs of backoff
+        assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(3));
+    }
+
+    @Test
+    public void giveUpOnClientErrors() throws Exception {
+        TelegramBot bot = mock(TelegramBot.class);
+        SendResponse blocked = response(false, 403, null);
+        when(bot.execute(any(SendMessage.class))).thenReturn(blocked);
+
+        List<Boolean> outcomes = new CopyOnWriteArrayList<>();
+        TelegramOutboundQueue queue = new TelegramOutboundQueue(bot, mock(MetricsHelper.class),
+                (chatId, outcome) -> outcomes.add(outcome), 100, 1000, 1000, 100, 3, 1);
+        queue.enqueue(1L, new SendMessage(1L, "msg"));
+        queue.shutdown(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of(false), outcomes);
+        verify(bot, times(1)).execute(any(SendMessage.class));
+    }
+
+    @Test
+    public void throttlingRetriesCapped() throws Exception {
+        TelegramBot bot = mock(TelegramBot.class);
+        SendResponse throttled = response(false, 429, 0);
+        when(bot.execute(any(SendMessage.class))).thenReturn(throttled);
+
+        List<Boolean> outcomes = new CopyOnWriteArrayList<>();
+        TelegramOutboundQueue queue = new TelegramOutboundQueue(bot, mock(MetricsHelper.class),
+                (chatId, outcome) -> outcomes.add(outcome), 100, 1000, 1000, 100, 3, 1);
+        queue.enqueue(1L, new SendMessage(1L, "msg"));
+        queue.shutdown(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of(false), outcomes);
+        assertEquals(0, queue.getQueueDepth());
+        verify(bot, times(10)).execute(any(SendMessage.class));
+    }
+
+    @Test
+    public void throwingListener() throws Exception {
+        TelegramBot bot = mock(TelegramBot.class);
+        SendResponse ok = response(true, 200, null);
+        when(bot.execute(any(SendMessage.class))).thenReturn(ok);
+        MetricsHelper metricsHelper = mock(MetricsHelper.class);
+        doThrow(new IllegalStateException("metrics")).when(metricsHelper)
+                .recordTime(anyString(), anyLong(), any(TimeUnit.class));
+
+        List<Boolean> outcomes = new CopyOnWriteArrayList<>();
+        TelegramOutboundQueue queue = new TelegramOutboundQueue(bot, metricsHelper,
+                (chatId, outcome) -> {
+                    throw new IllegalStateException("listener");
+                }, 100, 1000, 1000, 100, 3, 1);
+        queue.enqueue(1L, new SendMessage(1L, "msg0"), outcome -> {
+            throw new IllegalStateException("message listener");
+        });
+        queue.enqueue(1L, new SendMessage(1L, "msg1"), outcomes::add);
+        queue.shutdown(10, TimeUnit.SECONDS);
+
+        // The chat is not stuck on the first message
+        assertEquals(List.of(true), outcomes);
+        assertEquals(0, queue.getQueueDepth());
+        verify(bot, times(2)).execute(any(SendMessage.class));
+    }
+
+    private static SendResponse response(boolean ok, int errorCode, Integer retryAfter) {
+        SendResponse response = mock(SendResponse.class);
+        when(response.isOk()).thenReturn(ok);
+        when(response.errorCode()).thenReturn(errorCode);
+        if (retryAfter != null) {
+            ResponseParameters parameters = mock(ResponseParameters.class);
+            when(parameters.retryAfter()).thenReturn(retryAfter);
+            when(response.parameters()).thenReturn(parameters);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,68 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.telegram.TelegramFacade;
+import com.devpool.thothBot.telegram.TelegramWebhookController;
+import com.pengrad.telegrambot.model.Update;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class TelegramWebhookControllerTest {
+    private static final String SECRET_TOKEN = "webhook-secret";
+    private static final String UPDATE = """
+            {"update_id": 560604466, "message": {"message_id": 224, "date": 1667733684, "text": "/help",
+            "from": {"id": 1683539744, "is_bot": false, "username": "thor"},
+            "chat": {"id": 1683539744, "type": "private"}}}
+            """;
+
+    private TelegramFacade telegramFacade;
+    private TelegramWebhookController controller;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.telegramFacade = mock(TelegramFacade.class);
+        when(this.telegramFacade.admitUpdate(any(Update.class))).thenReturn(true);
+        this.controller = new TelegramWebhookController();
+        ReflectionTestUtils.setField(this.controller, "telegramFacade", this.telegramFacade);
+        ReflectionTestUtils.setField(this.controller, "secretToken", SECRET_TOKEN);
+    }
+
+    @Test
+    public void secretTokenChecked() {
+        assertEquals(HttpStatus.UNAUTHORIZED, this.controller.onUpdate(null, UPDATE).getStatusCode());
+        assertEquals(HttpStatus.UNAUTHORIZED, this.controller.onUpdate("wrong-secret", UPDATE).getStatusCode());
+        assertEquals(HttpStatus.UNAUTHORIZED, this.controller.onUpdate(SECRET_TOKEN + "x", UPDATE).getStatusCode());
+        verifyNoInteractions(this.telegramFacade);
+
+        assertEquals(HttpStatus.OK, this.controller.onUpdate(SECRET_TOKEN, UPDATE).getStatusCode());
+        verify(this.telegramFacade).admitUpdate(argThat(u -> u.updateId() == 560604466 &&
+                "/help".equals(u.message().text())));
+    }
+
+    @Test
+    public void noSecretToken() {
+        ReflectionTestUtils.setField(this.controller, "secretToken", "");
+        assertEquals(HttpStatus.OK, this.controller.onUpdate(null, UPDATE).getStatusCode());
+        assertEquals(HttpStatus.OK, this.controller.onUpdate("any", UPDATE).getStatusCode());
+    }
+
+    @Test
+    public void invalidUpdate() {
+        assertEquals(HttpStatus.BAD_REQUEST, this.controller.onUpdate(SECRET_TOKEN, "not an update").getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, this.controller.onUpdate(SECRET_TOKEN, "").getStatusCode());
+        verifyNoInteractions(this.telegramFacade);
+    }
+
+    @Test
+    public void notAdmittedUpdate() {
+        when(this.telegramFacade.admitUpdate(any(Update.class))).thenReturn(false);
+
+        // Telegram delivers it again later
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, this.controller.onUpdate(SECRET_TOKEN, UPDATE).getStatusCode());
+    }
+}
@@ -0,0 +1,72 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.util.TokenBucket;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTest {
+
+    @Test
+    public void burstAndRefill() {
+        AtomicLong clock = new AtomicLong(0);
+        TokenBucket bucket = new TokenBucket(2, 1, clock::get);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertFalse(bucket.tryAcquire());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(bucket.tryAcquire());
+
+        // Never more than the capacity
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertEquals(2, bucket.getAvailableTokens(), 0.0001);
+    }
+
+    @Test
+    public void changeRate() {
+        AtomicLong clock = new AtomicLong(0);
+        TokenBucket bucket = new TokenBucket(1, 1, clock::get);
+        assertTrue(bucket.tryAcquire());
+
+        bucket.setRefillPerSecond(4);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        assertTrue(bucket.tryAcquire());
+        assertEquals(4, bucket.getRefillPerSecond(), 0.0001);
+        assertThrows(IllegalArgumentException.class, () -> bucket.setRefillPerSecond(0));
+    }
+
+    @Test
+    public void acquireWaits() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 20);
+        bucket.acquire();
+
+        long start = System.nanoTime();
+        bucket.acquire();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 30, "Waited only " + elapsedMillis + " ms");
+    }
+
+    @Test
+    public void acquireWithReserve() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(3, 20);
+        bucket.acquire(1, 2);
+        assertEquals(2, bucket.getAvailableTokens(), 0.1);
+
+        // The reserved tokens are left to the callers without reserve
+        long start = System.nanoTime();
+        bucket.acquire(1, 2);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 30, "Waited only " + elapsedMillis + " ms");
+        assertTrue(bucket.tryAcquire(2));
+
+        assertThrows(IllegalArgumentException.class, () -> bucket.acquire(1, 3));
+    }
+}
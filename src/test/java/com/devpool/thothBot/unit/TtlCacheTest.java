@@ -0,0 +1,93 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.util.TtlCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TtlCacheTest {
+
+    @Test
+    public void expiration() throws Exception {
+        AtomicLong clock = new AtomicLong(0);
+        AtomicInteger loads = new AtomicInteger(0);
+        TtlCache<String, Integer> cache = new TtlCache<>(20, TimeUnit.SECONDS, clock::get);
+
+        assertEquals(1, cache.get("tip", loads::incrementAndGet));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(19));
+        assertEquals(1, cache.get("tip", loads::incrementAndGet));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, cache.get("tip", loads::incrementAndGet));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        cache.cleanUp();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void failuresAreNotCached() throws Exception {
+        TtlCache<String, Integer> cache = new TtlCache<>(20, TimeUnit.SECONDS);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("tip", () -> {
+            throw new IllegalStateException("KO");
+        }));
+        assertEquals(0, cache.size());
+        assertEquals(7, cache.get("tip", () -> 7));
+    }
+
+    @Test
+    public void singleFlight() throws Exception {
+        TtlCache<String, Integer> cache = new TtlCache<>(20, TimeUnit.SECONDS);
+        AtomicInteger loads = new AtomicInteger(0);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<Integer> first = executor.submit(() -> cache.get("tip", () -> {
+                loading.countDown();
+                release.await();
+                return loads.incrementAndGet();
+            }));
+            loading.await();
+
+            CountDownLatch coalesced = new CountDownLatch(1);
+            Future<Integer> second = executor.submit(() -> cache.get("tip", loads::incrementAndGet,
+                    lookup -> {
+                        if (lookup == TtlCache.Lookup.COALESCED) coalesced.countDown();
+                    }));
+
+            // The second request must wait for the first one, without loading the value again
+            assertTrue(coalesced.await(5, TimeUnit.SECONDS));
+            release.countDown();
+            assertEquals(1, first.get());
+            assertEquals(1, second.get());
+            assertEquals(1, loads.get());
+        }
+    }
+
+    @Test
+    public void getAllLoadsOnlyMissingKeys() throws Exception {
+        TtlCache<String, String> cache = new TtlCache<>(1, TimeUnit.HOURS);
+        cache.get("pool1", () -> "info1");
+
+        Map<String, String> values = cache.getAll(List.of("pool1", "pool2", "pool3"), missing -> {
+            assertEquals(List.of("pool2", "pool3"), missing.stream().sorted().toList());
+            // pool3 does not exist
+            return Map.of("pool2", "info2");
+        }, null);
+
+        assertEquals(List.of("pool1", "pool2"), List.copyOf(values.keySet()));
+        assertEquals("info2", values.get("pool2"));
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,139 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.cluster.ClusterCoordinator;
+import com.devpool.thothBot.dao.UserDao;
+import com.devpool.thothBot.dao.UserRegistry;
+import com.devpool.thothBot.dao.UsersListener;
+import com.devpool.thothBot.dao.UsersSnapshot;
+import com.devpool.thothBot.dao.data.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class UserRegistryTest {
+    private static final String STAKE_ADDR = "stake1u8uekde7k8x8n9lh0zjnhymz66sqdpa0ms02z8cshajptac0d3j32";
+    private static final String ADDR = "addr1qy2jt0qpqz2z2z9zx5w4xemekkce7yderz53kjue53lpqv90lkfa9sgrfjuz6uvt4uqtrqhl2kj0a9lnr9ndzutx32gqleeckv";
+
+    private UserDao userDao;
+    private JdbcTemplate jdbcTemplate;
+    private UserRegistry userRegistry;
+
+    @BeforeEach
+    public void beforeEach() {
+        this.userDao = mock(UserDao.class);
+        this.jdbcTemplate = mock(JdbcTemplate.class);
+        when(this.userDao.getUsers()).thenReturn(List.of(user(1L, -1L, STAKE_ADDR), user(2L, -2L, ADDR)));
+
+        this.userRegistry = new UserRegistry();
+        ReflectionTestUtils.setField(this.userRegistry, "userDao", this.userDao);
+        ReflectionTestUtils.setField(this.userRegistry, "jdbcTemplate", this.jdbcTemplate);
+        ReflectionTestUtils.setField(this.userRegistry, "enabled", true);
+        // Only announcing the changes: the listener thread is not started without post()
+        ReflectionTestUtils.setField(this.userRegistry, "listenNotifyEnabled", true);
+    }
+
+    @Test
+    public void keptUpToDate() {
+        UsersSnapshot snapshot = this.userRegistry.snapshot();
+        assertEquals(2, snapshot.size());
+        assertSame(snapshot, this.userRegistry.snapshot());
+
+        this.userRegistry.userAdded(user(3L, -1L, ADDR));
+        this.userRegistry.userRemoved(2L);
+        this.userRegistry.checkpointsUpdated(UsersListener.Checkpoint.BLOCK_HEIGHT, Map.of(1L, 100L));
+        this.userRegistry.checkpointsUpdated(UsersListener.Checkpoint.GOV_ACTION_BLOCK_TIME, Map.of(-1L, 2000L));
+
+        UsersSnapshot updated = this.userRegistry.snapshot();
+        assertEquals(List.of(1L, 3L), updated.getUsers().stream().map(User::getId).sorted().toList());
+        assertEquals(100, updated.getUser(1L).getLastBlockHeight());
+        assertEquals(2000L, updated.getUser(1L).getLastGovActionBlockTime());
+        assertEquals(2000L, updated.getUser(3L).getLastGovActionBlockTime());
+        // The previous snapshot is not modified
+        assertEquals(2, snapshot.size());
+        assertEquals(0, snapshot.getUser(1L).getLastBlockHeight());
+        verify(this.userDao, times(1)).getUsers();
+    }
+
+    @Test
+    public void onlySubscriptionsChangesNotified() {
+        this.userRegistry.snapshot();
+
+        this.userRegistry.checkpointsUpdated(UsersListener.Checkpoint.BLOCK_HEIGHT, Map.of(1L, 100L));
+        this.userRegistry.checkpointsUpdated(UsersListener.Checkpoint.EPOCH_NUMBER, Map.of(1L, 500));
+        verifyNoInteractions(this.jdbcTemplate);
+
+        this.userRegistry.userAdded(user(3L, -1L, ADDR));
+        this.userRegistry.userRemoved(3L);
+        verify(this.jdbcTemplate, times(2)).query(eq("select pg_notify(?, ?)"), ArgumentMatchers.<ResultSetExtractor<Object>>any(),
+                eq("thoth_users"), anyString());
+    }
+
+    @Test
+    public void notifiedBeforeLoading() {
+        // The other instances are notified even if this one never loaded its registry
+        this.userRegistry.userAdded(user(3L, -1L, ADDR));
+        verify(this.jdbcTemplate).query(eq("select pg_notify(?, ?)"), ArgumentMatchers.<ResultSetExtractor<Object>>any(),
+                eq("thoth_users"), anyString());
+        verify(this.userDao, never()).getUsers();
+    }
+
+    @Test
+    public void failedReloadKeepsRegistry() {
+        UsersSnapshot snapshot = this.userRegistry.snapshot();
+        ReflectionTestUtils.setField(this.userRegistry, "reloadNeeded", true);
+        when(this.userDao.getUsers()).thenThrow(new DataAccessResourceFailureException("DB down"));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> this.userRegistry.snapshot());
+
+        // The registry is not emptied, and the reload is attempted again at the next snapshot
+        assertEquals(snapshot.size(), ((Map<?, ?>) ReflectionTestUtils.getField(this.userRegistry, "users")).size());
+        assertEquals(true, ReflectionTestUtils.getField(this.userRegistry, "reloadNeeded"));
+
+        doReturn(List.of(user(1L, -1L, STAKE_ADDR))).when(this.userDao).getUsers();
+        assertEquals(1, this.userRegistry.snapshot().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reloadedWhenLeader() {
+        ClusterCoordinator clusterCoordinator = mock(ClusterCoordinator.class);
+        ReflectionTestUtils.setField(this.userRegistry, "clusterCoordinator", clusterCoordinator);
+        // Without the listener thread
+        ReflectionTestUtils.setField(this.userRegistry, "listenNotifyEnabled", false);
+        this.userRegistry.post();
+        ArgumentCaptor<Consumer<Boolean>> leadershipListener = ArgumentCaptor.forClass(Consumer.class);
+        verify(clusterCoordinator).addLeadershipListener(leadershipListener.capture());
+
+        assertEquals(0, this.userRegistry.snapshot().getUser(1L).getLastGovActionBlockTime());
+        leadershipListener.getValue().accept(false);
+        this.userRegistry.snapshot();
+        verify(this.userDao, times(1)).getUsers();
+
+        // The checkpoints written by the previous leader are read again
+        User updated = user(1L, -1L, STAKE_ADDR);
+        updated.setLastGovActionBlockTime(2000L);
+        when(this.userDao.getUsers()).thenReturn(List.of(updated, user(2L, -2L, ADDR)));
+        leadershipListener.getValue().accept(true);
+        assertEquals(2000L, this.userRegistry.snapshot().getUser(1L).getLastGovActionBlockTime());
+        verify(this.userDao, times(2)).getUsers();
+    }
+
+    private static User user(Long id, Long chatId, String address) {
+        User u = new User(chatId, address, 0, 0, 0L, 0L);
+        u.setId(id);
+        return u;
+    }
+}
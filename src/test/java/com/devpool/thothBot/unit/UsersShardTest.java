@@ -0,0 +1,29 @@
+package com.devpool.thothBot.unit;
+
+import com.devpool.thothBot.dao.UsersShard;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsersShardTest {
+
+    @Test
+    public void singleInstanceOwnsAll() {
+        for (long id = 1; id <= 100; id++) {
+            assertTrue(UsersShard.ALL.owns(id));
+            assertFalse(UsersShard.NONE.owns(id));
+        }
+    }
+
+    @Test
+    public void everyUserHasExactlyOneOwner() {
+        int count = 3;
+        for (long id = 1; id <= 1000; id++) {
+            int owners = 0;
+            for (int index = 0; index < count; index++) {
+                if (new UsersShard(index, count).owns(id)) owners++;
+            }
+            assertEquals(1, owners, "user " + id);
+        }
+    }
+}